@@ -1,5 +1,6 @@
 package com.jbossmanager;
 
+import com.jbossmanager.controller.MainController;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -8,10 +9,13 @@ import javafx.stage.Stage;
 
 public class Main extends Application {
     
+    private MainController controller;
+    
     @Override
     public void start(Stage primaryStage) throws Exception {
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/MainView.fxml"));
         Parent root = loader.load();
+        controller = loader.getController();
         
         Scene scene = new Scene(root, 1000, 900);
         scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
@@ -23,6 +27,13 @@ public class Main extends Application {
         primaryStage.show();
     }
     
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown();
+        }
+    }
+    
     public static void main(String[] args) {
         launch(args);
     }
@@ -1,12 +1,23 @@
 package com.jbossmanager;
 
+import com.jbossmanager.cli.ManagerCli;
+
+import java.util.Arrays;
+
 /**
  * Launcher class used as the main class in the executable JAR.
  * This is needed because JavaFX modules are loaded differently when packaged.
+ * <p>
+ * When the first argument is {@code --cli}, the headless {@link ManagerCli} runs instead
+ * and JavaFX is never started.
  */
 public class MainLauncher {
     
     public static void main(String[] args) {
+        if (args.length > 0 && "--cli".equals(args[0])) {
+            ManagerCli.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         Main.main(args);
     }
 }
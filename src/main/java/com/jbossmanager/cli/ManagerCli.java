@@ -0,0 +1,311 @@
+package com.jbossmanager.cli;
+
+import com.jbossmanager.model.EJBSnapshot;
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueSnapshot;
+import com.jbossmanager.service.ConnectionService;
+import com.jbossmanager.service.EJBService;
+import com.jbossmanager.service.JMSService;
+import com.jbossmanager.service.MetricsPoller;
+import com.jbossmanager.service.PrometheusExporter;
+import com.jbossmanager.service.RequestScheduler;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless command line interface sharing the service layer with the JavaFX application.
+ * <p>
+ * No JavaFX toolkit class is loaded, so the command starts quickly and can be used from
+ * scripts and cron jobs:
+ * <pre>
+ * java -jar jboss-manager.jar --cli [options] &lt;command&gt; [arguments]
+ * </pre>
+ */
+public class ManagerCli {
+    
+    /** Environment variable holding the password when {@code --password} is not given. */
+    public static final String PASSWORD_ENV = "JBOSS_MANAGER_PASSWORD";
+    
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+    
+    /** Port of the metrics endpoint when neither {@code --metrics-port} nor the system property is set. */
+    static final int DEFAULT_METRICS_PORT = 9404;
+    
+    private static final String USAGE = String.join(System.lineSeparator(),
+        "Usage: jboss-manager --cli [options] <command> [arguments]",
+        "",
+        "Options:",
+        "  --host <host>          Server host (default: localhost)",
+        "  --port <port>          Management port (default: 9990)",
+        "  --user <username>      Management user",
+        "  --password <password>  Management password (default: $" + PASSWORD_ENV + ")",
+        "  --format <json|csv>    Output format (default: json)",
+        "  --metrics-port <port>  Port of the serve command (default: " + DEFAULT_METRICS_PORT + ")",
+        "  --interval <seconds>   Poll interval of the serve command (default: "
+            + MetricsPoller.DEFAULT_INTERVAL_SECONDS + ")",
+        "",
+        "Commands:",
+        "  queues                         List JMS queues with their metrics",
+        "  ejbs                           List EJB components",
+        "  deploy <file>                  Deploy a JAR, WAR or EAR package",
+        "  undeploy <deployment>          Undeploy a deployment",
+        "  pause <[server/]queue>         Pause a JMS queue",
+        "  resume <[server/]queue>        Resume a JMS queue",
+        "  serve                          Poll the server and serve Prometheus metrics on /metrics");
+    
+    private static final List<String> QUEUE_COLUMNS = Arrays.asList(
+        "server", "name", "jndiName", "status", "messageCount", "consumerCount", "durable");
+    private static final List<String> EJB_COLUMNS = Arrays.asList(
+        "deployment", "name", "type", "jndiName", "status");
+    private static final List<String> RESULT_COLUMNS = Arrays.asList(
+        "command", "target", "outcome");
+    
+    // Keep the loggers referenced so their level is not lost when they are garbage collected
+    private static final List<Logger> QUIET_LOGGERS = Arrays.asList(
+        Logger.getLogger("org.jboss"), Logger.getLogger("org.xnio"), Logger.getLogger("org.wildfly"));
+    
+    private final ConnectionService connectionService;
+    private final JMSService jmsService;
+    private final EJBService ejbService;
+    
+    public ManagerCli() {
+        this(new ConnectionService());
+    }
+    
+    public ManagerCli(ConnectionService connectionService) {
+        this.connectionService = connectionService;
+        this.jmsService = new JMSService(connectionService);
+        this.ejbService = new EJBService(connectionService);
+    }
+    
+    public static void main(String[] args) {
+        // The remoting stack logs its versions at INFO level, keep stderr for errors
+        for (Logger logger : QUIET_LOGGERS) {
+            logger.setLevel(Level.WARNING);
+        }
+        System.exit(new ManagerCli().run(args, System.out, System.err));
+    }
+    
+    /**
+     * Run a command.
+     * 
+     * @param args The options, command and arguments
+     * @param out The stream receiving the results
+     * @param err The stream receiving errors and usage
+     * @return The process exit code
+     */
+    public int run(String[] args, PrintStream out, PrintStream err) {
+        String host = "localhost";
+        int port = 9990;
+        String username = "";
+        String password = System.getenv(PASSWORD_ENV);
+        OutputFormat format = OutputFormat.JSON;
+        int metricsPort = PrometheusExporter.configuredPort();
+        if (metricsPort < 0) {
+            metricsPort = DEFAULT_METRICS_PORT;
+        }
+        int interval = MetricsPoller.DEFAULT_INTERVAL_SECONDS;
+        List<String> command = new ArrayList<>();
+        
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--host":
+                        host = optionValue(args, ++i);
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(optionValue(args, ++i));
+                        break;
+                    case "--user":
+                        username = optionValue(args, ++i);
+                        break;
+                    case "--password":
+                        password = optionValue(args, ++i);
+                        break;
+                    case "--format":
+                        format = OutputFormat.parse(optionValue(args, ++i));
+                        break;
+                    case "--metrics-port":
+                        metricsPort = Integer.parseInt(optionValue(args, ++i));
+                        break;
+                    case "--interval":
+                        interval = Integer.parseInt(optionValue(args, ++i));
+                        if (interval <= 0) {
+                            throw new IllegalArgumentException("Interval must be positive");
+                        }
+                        break;
+                    case "--help":
+                    case "-h":
+                        out.println(USAGE);
+                        return EXIT_OK;
+                    default:
+                        command.add(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        
+        if (command.isEmpty() || command.size() != expectedArguments(command.get(0)) + 1) {
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        
+        if (!connectionService.isConnected()
+                && !connectionService.connect(host, port, username, password == null ? "" : password)) {
+            err.println("Failed to connect: " + connectionService.getConnectionSnapshot().connectionStatus());
+            return EXIT_FAILED;
+        }
+        
+        try {
+            if ("serve".equals(command.get(0))) {
+                return serve(metricsPort, interval, err);
+            }
+            return execute(command.get(0), command.size() > 1 ? command.get(1) : null, format, out, err);
+        } catch (Exception e) {
+            err.println("Error: " + e.getMessage());
+            return EXIT_FAILED;
+        } finally {
+            connectionService.disconnect();
+        }
+    }
+    
+    /**
+     * Execute a command on the connected server.
+     */
+    private int execute(String command, String argument, OutputFormat format, PrintStream out, PrintStream err)
+            throws Exception {
+        boolean success;
+        switch (command) {
+            case "queues":
+                List<List<Object>> queueRows = new ArrayList<>();
+                boolean complete = true;
+                for (MessagingServer server : jmsService.getMessagingServers()) {
+                    for (QueueSnapshot queue : server.getQueues()) {
+                        queueRows.add(Arrays.asList(queue.serverName(), queue.name(), queue.jndiName(),
+                            queue.status(), queue.messageCount(), queue.consumerCount(), queue.durable()));
+                    }
+                    // The queues read are written all the same, the others fail the command
+                    for (String failure : server.getFailures()) {
+                        err.println("Not read: " + server.getName() + "/" + failure);
+                        complete = false;
+                    }
+                }
+                format.write(QUEUE_COLUMNS, queueRows, out);
+                return complete ? EXIT_OK : EXIT_FAILED;
+            case "ejbs":
+                List<List<Object>> ejbRows = new ArrayList<>();
+                List<String> failures = new ArrayList<>();
+                for (EJBSnapshot ejb : ejbService.getEJBs(batch -> { }, failures::add)) {
+                    ejbRows.add(Arrays.asList(ejb.deploymentName(), ejb.name(), ejb.type().getDisplayName(),
+                        ejb.jndiName(), "Deployed"));
+                }
+                format.write(EJB_COLUMNS, ejbRows, out);
+                for (String failure : failures) {
+                    err.println("Not read: " + failure);
+                }
+                return failures.isEmpty() ? EXIT_OK : EXIT_FAILED;
+            case "deploy":
+                success = ejbService.deployEJB(new File(argument));
+                break;
+            case "undeploy":
+                success = ejbService.undeployEJB(argument);
+                break;
+            case "pause":
+                success = jmsService.stopQueue(serverName(argument), queueName(argument));
+                break;
+            case "resume":
+                success = jmsService.startQueue(serverName(argument), queueName(argument));
+                break;
+            default:
+                throw new IllegalStateException("Unknown command: " + command);
+        }
+        
+        List<List<Object>> rows = new ArrayList<>();
+        rows.add(Arrays.asList(command, argument, success ? "success" : "failed"));
+        format.write(RESULT_COLUMNS, rows, out);
+        return success ? EXIT_OK : EXIT_FAILED;
+    }
+    
+    /**
+     * Poll the server at a fixed interval and serve the metrics until the process is stopped.
+     */
+    private int serve(int metricsPort, int intervalSeconds, PrintStream err) throws Exception {
+        PrometheusExporter exporter = new PrometheusExporter();
+        jmsService.addRefreshListener(exporter::updateMessaging);
+        ejbService.addRefreshListener(exporter::updateEJBs);
+        exporter.start(metricsPort);
+        err.println("Serving metrics on http://localhost:" + exporter.getPort() + PrometheusExporter.PATH);
+        
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    RequestScheduler.inBackground(() -> {
+                        jmsService.getMessagingServers();
+                        return ejbService.getEJBs();
+                    });
+                } catch (Exception e) {
+                    err.println("Error: " + e.getMessage());
+                }
+                Thread.sleep(intervalSeconds * 1000L);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exporter.stop();
+        }
+        return EXIT_OK;
+    }
+    
+    /**
+     * Get the number of arguments of a command, or -1 if the command is unknown.
+     */
+    private static int expectedArguments(String command) {
+        switch (command) {
+            case "queues":
+            case "ejbs":
+            case "serve":
+                return 0;
+            case "deploy":
+            case "undeploy":
+            case "pause":
+            case "resume":
+                return 1;
+            default:
+                return -1;
+        }
+    }
+    
+    private static String optionValue(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+    
+    /**
+     * Get the messaging server of a {@code [server/]queue} argument.
+     */
+    static String serverName(String queue) {
+        int slash = queue.indexOf('/');
+        return slash < 0 ? JMSService.DEFAULT_SERVER : queue.substring(0, slash);
+    }
+    
+    /**
+     * Get the queue name of a {@code [server/]queue} argument.
+     */
+    static String queueName(String queue) {
+        int slash = queue.indexOf('/');
+        return slash < 0 ? queue : queue.substring(slash + 1);
+    }
+}
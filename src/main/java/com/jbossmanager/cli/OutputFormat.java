@@ -0,0 +1,99 @@
+package com.jbossmanager.cli;
+
+import org.jboss.dmr.ModelNode;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Output formats of the command line interface.
+ * <p>
+ * Results are tables: a list of column names and rows of values in the same order.
+ * Values are written as JSON numbers and booleans when they are {@link Number}s and
+ * {@link Boolean}s, and as strings otherwise.
+ */
+public enum OutputFormat {
+    
+    /** An array of objects, one per row. */
+    JSON {
+        @Override
+        public void write(List<String> columns, List<List<Object>> rows, PrintStream out) {
+            ModelNode array = new ModelNode().setEmptyList();
+            for (List<Object> row : rows) {
+                ModelNode object = array.add();
+                for (int i = 0; i < columns.size(); i++) {
+                    setValue(object.get(columns.get(i)), row.get(i));
+                }
+            }
+            out.println(array.toJSONString(false));
+        }
+    },
+    
+    /** RFC 4180 comma-separated values with a header line. */
+    CSV {
+        @Override
+        public void write(List<String> columns, List<List<Object>> rows, PrintStream out) {
+            out.println(csvLine(columns));
+            for (List<Object> row : rows) {
+                out.println(csvLine(row));
+            }
+        }
+    };
+    
+    /**
+     * Write a table of results.
+     * 
+     * @param columns The column names
+     * @param rows The rows, each with one value per column
+     * @param out The stream to write to
+     */
+    public abstract void write(List<String> columns, List<List<Object>> rows, PrintStream out);
+    
+    /**
+     * Parse a format name, ignoring case.
+     * 
+     * @param name The format name ("json" or "csv")
+     * @return The output format
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    public static OutputFormat parse(String name) {
+        for (OutputFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown output format: " + name);
+    }
+    
+    private static void setValue(ModelNode node, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Boolean) {
+            node.set((Boolean) value);
+        } else if (value instanceof Integer) {
+            node.set((Integer) value);
+        } else if (value instanceof Number) {
+            node.set(((Number) value).longValue());
+        } else {
+            node.set(value.toString());
+        }
+    }
+    
+    private static String csvLine(List<?> values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            Object value = values.get(i);
+            String text = value == null ? "" : value.toString();
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                line.append('"').append(text.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(text);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,191 @@
+package com.jbossmanager.controller;
+
+import com.jbossmanager.model.ConnectionProfile;
+import com.jbossmanager.service.DeploymentComparison;
+import com.jbossmanager.service.DeploymentComparisonService;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.fxml.FXML;
+import javafx.scene.control.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller class for the window comparing the deployments of several servers, with one
+ * column per server telling if each deployment is missing there or has different content.
+ * <p>
+ * The servers are read and compared on a background thread; only the resulting matrix is
+ * shown on the JavaFX thread.
+ */
+public class DeploymentComparisonController {
+    
+    private static final int SHORT_HASH_LENGTH = 8;
+    
+    // FXML injected fields
+    @FXML private ListView<ConnectionProfile> profilesList;
+    @FXML private Button compareButton;
+    @FXML private CheckBox differencesOnlyBox;
+    @FXML private TableView<DeploymentComparison.Row> comparisonTable;
+    @FXML private TableColumn<DeploymentComparison.Row, String> deploymentColumn;
+    @FXML private Label summaryLabel;
+    
+    private final DeploymentComparisonService comparisonService = new DeploymentComparisonService();
+    private final ObservableList<DeploymentComparison.Row> rows = FXCollections.observableArrayList();
+    private DeploymentComparison comparison;
+    
+    /**
+     * Initialize the controller.
+     */
+    @FXML
+    public void initialize() {
+        profilesList.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        deploymentColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getName()));
+        differencesOnlyBox.selectedProperty().addListener((obs, oldVal, newVal) -> showRows());
+        comparisonTable.setItems(rows);
+    }
+    
+    /**
+     * Set the saved profiles the servers to compare are chosen from, all selected.
+     * 
+     * @param profiles The connection profiles
+     */
+    public void setProfiles(List<ConnectionProfile> profiles) {
+        profilesList.getItems().setAll(profiles);
+        profilesList.getSelectionModel().selectAll();
+    }
+    
+    /**
+     * Handle compare button click.
+     */
+    @FXML
+    private void handleCompare() {
+        List<ConnectionProfile> selected = new ArrayList<>(profilesList.getSelectionModel().getSelectedItems());
+        if (selected.size() < 2) {
+            summaryLabel.setText("Select at least two servers to compare");
+            return;
+        }
+        
+        compareButton.setDisable(true);
+        summaryLabel.setText("Reading the deployments of " + selected.size() + " servers...");
+        long start = System.nanoTime();
+        new Thread(() -> {
+            try {
+                DeploymentComparison result = comparisonService.compare(selected);
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                Platform.runLater(() -> {
+                    compareButton.setDisable(false);
+                    showComparison(result, elapsed);
+                });
+            } catch (Exception e) {
+                Platform.runLater(() -> {
+                    compareButton.setDisable(false);
+                    summaryLabel.setText("Error comparing deployments: " + e.getMessage());
+                });
+            }
+        }, "deployment-comparison").start();
+    }
+    
+    private void showComparison(DeploymentComparison result, long elapsedMillis) {
+        comparison = result;
+        
+        List<TableColumn<DeploymentComparison.Row, ?>> columns = new ArrayList<>();
+        columns.add(deploymentColumn);
+        for (int i = 0; i < result.getNodes().size(); i++) {
+            int node = i;
+            TableColumn<DeploymentComparison.Row, DeploymentComparison.Status> column =
+                new TableColumn<>(result.getNodes().get(node));
+            column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getStatus(node)));
+            column.setCellFactory(col -> new StatusCell(node));
+            column.setSortable(false);
+            columns.add(column);
+        }
+        comparisonTable.getColumns().setAll(columns);
+        showRows();
+        
+        StringBuilder summary = new StringBuilder(String.format("%d deployments on %d servers, %d differ (%d ms)",
+            result.getRows().size(), result.getNodes().size(), result.getDriftCount(), elapsedMillis));
+        for (Map.Entry<String, String> error : result.getErrors().entrySet()) {
+            summary.append(" - ").append(error.getKey()).append(" unreachable: ").append(error.getValue());
+        }
+        summaryLabel.setText(summary.toString());
+    }
+    
+    private void showRows() {
+        if (comparison == null) {
+            return;
+        }
+        if (!differencesOnlyBox.isSelected()) {
+            rows.setAll(comparison.getRows());
+            return;
+        }
+        List<DeploymentComparison.Row> drifted = new ArrayList<>();
+        for (DeploymentComparison.Row row : comparison.getRows()) {
+            if (!row.isConsistent()) {
+                drifted.add(row);
+            }
+        }
+        rows.setAll(drifted);
+    }
+    
+    /**
+     * Get the text shown for a deployment on a server.
+     */
+    static String statusText(DeploymentComparison.Status status, String contentHash) {
+        switch (status) {
+            case MATCHING:
+                return contentHash != null ? shortHash(contentHash) : "unmanaged";
+            case DIFFERENT:
+                return "different " + (contentHash != null ? shortHash(contentHash) : "(unmanaged)");
+            case DISABLED:
+                return "disabled";
+            case MISSING:
+                return "missing";
+            default:
+                return "unreachable";
+        }
+    }
+    
+    private static String shortHash(String hash) {
+        return hash.length() > SHORT_HASH_LENGTH ? hash.substring(0, SHORT_HASH_LENGTH) : hash;
+    }
+    
+    /**
+     * Cell of a server column, styled after the state of the deployment there.
+     */
+    private static final class StatusCell extends TableCell<DeploymentComparison.Row, DeploymentComparison.Status> {
+        private final int node;
+        
+        StatusCell(int node) {
+            this.node = node;
+        }
+        
+        @Override
+        protected void updateItem(DeploymentComparison.Status item, boolean empty) {
+            super.updateItem(item, empty);
+            for (DeploymentComparison.Status status : DeploymentComparison.Status.values()) {
+                getStyleClass().remove(styleClass(status));
+            }
+            DeploymentComparison.Row row = getTableRow() != null ? getTableRow().getItem() : null;
+            if (empty || item == null || row == null) {
+                setText(null);
+                setTooltip(null);
+                return;
+            }
+            setText(statusText(item, row.getContentHash(node)));
+            setTooltip(row.getContentHash(node) != null ? new Tooltip(row.getContentHash(node)) : null);
+            getStyleClass().add(styleClass(item));
+        }
+        
+        private static String styleClass(DeploymentComparison.Status status) {
+            return "deployment-" + status.name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
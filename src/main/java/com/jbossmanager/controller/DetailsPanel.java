@@ -0,0 +1,126 @@
+package com.jbossmanager.controller;
+
+import javafx.beans.binding.Bindings;
+import javafx.beans.value.ObservableBooleanValue;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.Label;
+import javafx.scene.layout.GridPane;
+
+/**
+ * Details panel showing the properties of the selected resource with a fixed set of label
+ * rows, created once.
+ * <p>
+ * Showing a resource binds the value labels to its properties, so that a refresh of the
+ * resource only changes their text. Showing the resource already shown does nothing; rows
+ * not used by a resource are hidden.
+ */
+final class DetailsPanel {
+    
+    private final Label titleLabel;
+    private final Label[] nameLabels;
+    private final Label[] valueLabels;
+    private Object source;
+    private int row;
+    
+    /**
+     * Create the rows of the panel.
+     * 
+     * @param grid The grid to add the rows to
+     * @param titleLabel The label showing the name of the resource
+     * @param rows The maximum number of rows shown for a resource
+     */
+    DetailsPanel(GridPane grid, Label titleLabel, int rows) {
+        this.titleLabel = titleLabel;
+        this.nameLabels = new Label[rows];
+        this.valueLabels = new Label[rows];
+        for (int i = 0; i < rows; i++) {
+            nameLabels[i] = new Label();
+            valueLabels[i] = new Label();
+            grid.addRow(i, nameLabels[i], valueLabels[i]);
+        }
+        clear();
+    }
+    
+    /**
+     * Check if a resource is the one shown.
+     * 
+     * @param resource The resource
+     * @return true if its properties are bound to the panel
+     */
+    boolean isShowing(Object resource) {
+        return source != null && source == resource;
+    }
+    
+    /**
+     * Start showing a resource, before adding its rows with {@link #row}.
+     * 
+     * @param resource The resource
+     * @param title The property holding the name of the resource
+     */
+    void begin(Object resource, ObservableValue<String> title) {
+        unbind();
+        source = resource;
+        row = 0;
+        titleLabel.textProperty().bind(title);
+    }
+    
+    /**
+     * Show a property in the next row.
+     * 
+     * @param name The name of the row
+     * @param value The property
+     */
+    void row(String name, ObservableValue<?> value) {
+        nameLabels[row].setText(name);
+        valueLabels[row].textProperty().bind(Bindings.convert(value));
+        showRow(row++, true);
+    }
+    
+    /**
+     * Show a boolean property in the next row as Yes or No.
+     * 
+     * @param name The name of the row
+     * @param value The property
+     */
+    void row(String name, ObservableBooleanValue value) {
+        nameLabels[row].setText(name);
+        valueLabels[row].textProperty().bind(Bindings.when(value).then("Yes").otherwise("No"));
+        showRow(row++, true);
+    }
+    
+    /**
+     * Finish showing a resource, hiding the rows it does not use.
+     */
+    void end() {
+        for (int i = row; i < nameLabels.length; i++) {
+            showRow(i, false);
+        }
+    }
+    
+    /**
+     * Show no resource.
+     */
+    void clear() {
+        unbind();
+        source = null;
+        titleLabel.setText("Details");
+        for (int i = 0; i < nameLabels.length; i++) {
+            showRow(i, false);
+        }
+    }
+    
+    private void unbind() {
+        titleLabel.textProperty().unbind();
+        for (Label valueLabel : valueLabels) {
+            valueLabel.textProperty().unbind();
+        }
+    }
+    
+    private void showRow(int index, boolean visible) {
+        // Hidden rows take no space, so that the rows shown stay together
+        nameLabels[index].setVisible(visible);
+        nameLabels[index].setManaged(visible);
+        valueLabels[index].setVisible(visible);
+        valueLabels[index].setManaged(visible);
+    }
+}
@@ -0,0 +1,158 @@
+package com.jbossmanager.controller;
+
+import com.jbossmanager.service.LatencyHistogram;
+import com.jbossmanager.service.ManagementMetrics;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.fxml.FXML;
+import javafx.scene.control.*;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Controller class for the diagnostics window showing management request statistics.
+ */
+public class DiagnosticsController {
+    
+    private static final Duration REFRESH_INTERVAL = Duration.seconds(2);
+    
+    // FXML injected fields
+    @FXML private TableView<ManagementMetrics.Snapshot> metricsTable;
+    @FXML private TableColumn<ManagementMetrics.Snapshot, String> operationColumn;
+    @FXML private TableColumn<ManagementMetrics.Snapshot, Long> countColumn;
+    @FXML private TableColumn<ManagementMetrics.Snapshot, Long> errorsColumn;
+    @FXML private TableColumn<ManagementMetrics.Snapshot, Double> p50Column;
+    @FXML private TableColumn<ManagementMetrics.Snapshot, Double> p99Column;
+    @FXML private TableColumn<ManagementMetrics.Snapshot, Double> maxColumn;
+    @FXML private TableColumn<ManagementMetrics.Snapshot, Double> meanColumn;
+    @FXML private TableColumn<ManagementMetrics.Snapshot, Long> requestBytesColumn;
+    @FXML private TableColumn<ManagementMetrics.Snapshot, Long> responseBytesColumn;
+    @FXML private Label summaryLabel;
+    
+    private ManagementMetrics metrics;
+    private UiUpdateDispatcher uiUpdates;
+    private Timeline refreshTimeline;
+    
+    /**
+     * Initialize the controller.
+     */
+    @FXML
+    public void initialize() {
+        bind(operationColumn, ManagementMetrics.Snapshot::getOperation);
+        bind(countColumn, ManagementMetrics.Snapshot::getCount);
+        bind(errorsColumn, ManagementMetrics.Snapshot::getErrors);
+        bindMillis(p50Column, ManagementMetrics.Snapshot::getP50Millis);
+        bindMillis(p99Column, ManagementMetrics.Snapshot::getP99Millis);
+        bindMillis(maxColumn, ManagementMetrics.Snapshot::getMaxMillis);
+        bindMillis(meanColumn, ManagementMetrics.Snapshot::getMeanMillis);
+        bind(requestBytesColumn, ManagementMetrics.Snapshot::getRequestBytes);
+        bind(responseBytesColumn, ManagementMetrics.Snapshot::getResponseBytes);
+        
+        refreshTimeline = new Timeline(new KeyFrame(REFRESH_INTERVAL, event -> refresh()));
+        refreshTimeline.setCycleCount(Timeline.INDEFINITE);
+    }
+    
+    /**
+     * Set the metrics to display and start refreshing them periodically.
+     * 
+     * @param metrics The management metrics
+     * @param stage The diagnostics window, refreshing stops when it is closed
+     */
+    public void setMetrics(ManagementMetrics metrics, Stage stage) {
+        this.metrics = metrics;
+        refresh();
+        refreshTimeline.play();
+        stage.setOnHidden(event -> refreshTimeline.stop());
+    }
+    
+    /**
+     * Set the dispatcher of the UI updates, whose statistics are shown with the metrics.
+     * 
+     * @param uiUpdates The dispatcher
+     */
+    void setUiUpdates(UiUpdateDispatcher uiUpdates) {
+        this.uiUpdates = uiUpdates;
+    }
+    
+    /**
+     * Handle reset button click.
+     */
+    @FXML
+    private void handleReset() {
+        metrics.reset();
+        refresh();
+    }
+    
+    /**
+     * Handle export button click.
+     */
+    @FXML
+    private void handleExport() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Export Diagnostics");
+        fileChooser.setInitialFileName("management-metrics.json");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON", "*.json"));
+        
+        File file = fileChooser.showSaveDialog(metricsTable.getScene().getWindow());
+        if (file != null) {
+            try {
+                Files.writeString(file.toPath(), metrics.toJson(), StandardCharsets.UTF_8);
+                summaryLabel.setText("Exported to " + file.getName());
+            } catch (Exception e) {
+                summaryLabel.setText("Error exporting: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Reload the statistics into the table.
+     */
+    private void refresh() {
+        List<ManagementMetrics.Snapshot> snapshots = metrics.snapshot();
+        metricsTable.getItems().setAll(snapshots);
+        
+        long requests = 0;
+        long errors = 0;
+        for (ManagementMetrics.Snapshot snapshot : snapshots) {
+            if (!ManagementMetrics.QUEUE_WAIT.equals(snapshot.getOperation())) {
+                requests += snapshot.getCount();
+                errors += snapshot.getErrors();
+            }
+        }
+        String summary = requests + " requests, " + errors + " errors";
+        if (uiUpdates != null) {
+            LatencyHistogram batchTimes = uiUpdates.getBatchTimes();
+            summary += String.format(" - UI updates: %d in %d batches (%d coalesced), p99 %.2f ms, max %.2f ms,"
+                    + " max pending %d",
+                uiUpdates.getUpdateCount(), batchTimes.getCount(), uiUpdates.getCoalescedCount(),
+                batchTimes.getPercentile(0.99) / 1000.0, batchTimes.getMax() / 1000.0, uiUpdates.getMaxPendingCount());
+        }
+        summaryLabel.setText(summary);
+    }
+    
+    private static <T> void bind(TableColumn<ManagementMetrics.Snapshot, T> column,
+                                 Function<ManagementMetrics.Snapshot, T> getter) {
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(getter.apply(cell.getValue())));
+    }
+    
+    private static void bindMillis(TableColumn<ManagementMetrics.Snapshot, Double> column,
+                                   Function<ManagementMetrics.Snapshot, Double> getter) {
+        bind(column, getter);
+        column.setCellFactory(col -> new TableCell<ManagementMetrics.Snapshot, Double>() {
+            @Override
+            protected void updateItem(Double item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : String.format("%.2f", item));
+            }
+        });
+    }
+}
@@ -0,0 +1,265 @@
+package com.jbossmanager.controller;
+
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Watchdog measuring how long the JavaFX thread takes to run a probe posted to it, and
+ * reporting the stalls, when a probe waits for longer than a threshold.
+ * <p>
+ * A watchdog thread posts a probe with {@link Platform#runLater} a few times per threshold,
+ * one at a time, so that an idle application does not need animation pulses to be watched.
+ * Once the pending probe is older than the threshold, the stack of the JavaFX thread is
+ * captured and the stall is attributed to the task set with {@link #beginTask}, or else to
+ * the innermost application frame of the stack. The stall is appended with its stack to a
+ * report log right away, so that it is kept when the JavaFX thread never recovers, and its
+ * final duration is appended once the probe runs. The log is rotated once it exceeds a size,
+ * and a report that cannot be written is given to a failure listener, once until one is again.
+ * The longest probe delay of every second is given to a listener, e.g. to show it.
+ */
+final class FxStallWatchdog {
+    
+    /** Default number of milliseconds a probe waits after which the JavaFX thread is stalled. */
+    static final long DEFAULT_STALL_THRESHOLD_MILLIS = 500;
+    
+    /** Default size of the report log after which it is moved aside and a new one started. */
+    static final long DEFAULT_MAX_LOG_BYTES = 1024 * 1024;
+    
+    private static final long DELAY_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_STACK_DEPTH = 40;
+    
+    /**
+     * Stall in progress, as captured by the watchdog thread.
+     */
+    private static final class Stall {
+        private final long sinceNanos;
+        private final String task;
+        private final StackTraceElement[] stack;
+        
+        Stall(long sinceNanos, String task, StackTraceElement[] stack) {
+            this.sinceNanos = sinceNanos;
+            this.task = task;
+            this.stack = stack;
+        }
+    }
+    
+    private final Thread fxThread;
+    private final Consumer<Runnable> fxExecutor;
+    private final long thresholdNanos;
+    private final Path logFile;
+    private final long maxLogBytes;
+    private final LongConsumer delayListener;
+    private volatile Consumer<IOException> failureListener = e -> { };
+    private volatile boolean probePending;
+    private volatile long probeRunNanos;
+    private volatile String currentTask;
+    private volatile int stallCount;
+    private ScheduledExecutorService executor;
+    
+    // Only used on the JavaFX thread
+    private long windowStartNanos;
+    private long windowMaxDelayNanos;
+    
+    // Only used on the watchdog thread
+    private long probePostedNanos;
+    private Stall stall;
+    private boolean failing;
+    
+    /**
+     * Create a watchdog.
+     * 
+     * @param fxThread The JavaFX thread
+     * @param delayListener Called on the JavaFX thread every second with the longest probe delay, in nanoseconds
+     */
+    FxStallWatchdog(Thread fxThread, LongConsumer delayListener) {
+        this(fxThread, Platform::runLater, delayListener, DEFAULT_STALL_THRESHOLD_MILLIS,
+            Paths.get(System.getProperty("user.home"), ".jbossmanager", "stalls.log"), DEFAULT_MAX_LOG_BYTES);
+    }
+    
+    FxStallWatchdog(Thread fxThread, Consumer<Runnable> fxExecutor, LongConsumer delayListener,
+                    long thresholdMillis, Path logFile, long maxLogBytes) {
+        this.fxThread = fxThread;
+        this.fxExecutor = fxExecutor;
+        this.delayListener = delayListener;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.logFile = logFile;
+        this.maxLogBytes = maxLogBytes;
+        this.windowStartNanos = System.nanoTime();
+    }
+    
+    /**
+     * Start probing the JavaFX thread and checking for stalls.
+     */
+    synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fx-stall-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(thresholdNanos / 5, TimeUnit.MILLISECONDS.toNanos(10));
+        executor.scheduleAtFixedRate(() -> check(System.nanoTime()), 0, period, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Stop probing. A probe already posted still runs, without effect.
+     */
+    synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+    
+    /**
+     * Set the listener told when the stalls cannot be written, once until they are again.
+     * 
+     * @param listener The listener, called on the watchdog thread
+     */
+    void setFailureListener(Consumer<IOException> listener) {
+        failureListener = listener;
+    }
+    
+    /**
+     * Name the task the JavaFX thread is about to run, until {@link #endTask}.
+     * 
+     * @param task The task, e.g. "tree rebuild"
+     * @return The task it runs within, to be given to {@link #endTask}
+     */
+    String beginTask(String task) {
+        String previous = currentTask;
+        currentTask = task;
+        return previous;
+    }
+    
+    /**
+     * Mark the end of the task named by {@link #beginTask}.
+     * 
+     * @param previous The task returned by {@link #beginTask}
+     */
+    void endTask(String previous) {
+        currentTask = previous;
+    }
+    
+    /**
+     * Get the number of stalls detected.
+     * 
+     * @return The number of stalls
+     */
+    int getStallCount() {
+        return stallCount;
+    }
+    
+    /**
+     * Record that a probe ran on the JavaFX thread.
+     * 
+     * @param postedNanos The time the probe was posted
+     * @param now The time it ran
+     */
+    void probeRan(long postedNanos, long now) {
+        windowMaxDelayNanos = Math.max(windowMaxDelayNanos, now - postedNanos);
+        if (now - windowStartNanos >= DELAY_WINDOW_NANOS) {
+            delayListener.accept(windowMaxDelayNanos);
+            windowStartNanos = now;
+            windowMaxDelayNanos = 0;
+        }
+        probeRunNanos = now;
+        probePending = false;
+    }
+    
+    /**
+     * Check the pending probe, capturing and reporting a stall when it waits too long and
+     * reporting its duration once the probe ran, and post the next probe. Called on the
+     * watchdog thread.
+     * 
+     * @param now The current time
+     */
+    void check(long now) {
+        if (probePending) {
+            if (stall == null && now - probePostedNanos > thresholdNanos) {
+                stall = new Stall(probePostedNanos, currentTask, fxThread.getStackTrace());
+                stallCount++;
+                reportStall(stall, now - stall.sinceNanos);
+            }
+            return;
+        }
+        if (stall != null) {
+            reportRecovery(stall, probeRunNanos - stall.sinceNanos);
+            stall = null;
+        }
+        
+        long posted = now;
+        probePostedNanos = posted;
+        probePending = true;
+        fxExecutor.accept(() -> probeRan(posted, System.nanoTime()));
+    }
+    
+    /**
+     * Get what a stall is attributed to: the task named, or the innermost application frame.
+     */
+    static String attribute(String task, StackTraceElement[] stack) {
+        if (task != null) {
+            return task;
+        }
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().startsWith("com.jbossmanager.")
+                && !frame.getClassName().startsWith(FxStallWatchdog.class.getName())) {
+                return frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1)
+                    + "." + frame.getMethodName();
+            }
+        }
+        return "unknown task";
+    }
+    
+    private void reportStall(Stall stall, long elapsedNanos) {
+        StringBuilder report = new StringBuilder();
+        report.append(Instant.now()).append(" JavaFX thread stalled for more than ")
+            .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append(" ms in ")
+            .append(attribute(stall.task, stall.stack)).append(System.lineSeparator());
+        for (int i = 0; i < Math.min(stall.stack.length, MAX_STACK_DEPTH); i++) {
+            report.append("    at ").append(stall.stack[i]).append(System.lineSeparator());
+        }
+        append(report);
+    }
+    
+    private void reportRecovery(Stall stall, long durationNanos) {
+        append(Instant.now() + " JavaFX thread stalled " + TimeUnit.NANOSECONDS.toMillis(durationNanos)
+            + " ms in " + attribute(stall.task, stall.stack) + System.lineSeparator());
+    }
+    
+    private void append(CharSequence report) {
+        try {
+            if (logFile.getParent() != null) {
+                Files.createDirectories(logFile.getParent());
+            }
+            // Keep the previous reports in a single older log
+            if (Files.exists(logFile) && Files.size(logFile) + report.length() > maxLogBytes) {
+                Files.move(logFile, logFile.resolveSibling(logFile.getFileName() + ".1"),
+                    StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.writeString(logFile, report, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            failing = false;
+        } catch (IOException e) {
+            if (!failing) {
+                failing = true;
+                failureListener.accept(e);
+            }
+        }
+    }
+}
@@ -1,14 +1,39 @@
 package com.jbossmanager.controller;
 
+import com.jbossmanager.model.ConnectionProfile;
+import com.jbossmanager.model.ConnectionSnapshot;
+import com.jbossmanager.model.QueueAlert;
 import com.jbossmanager.model.EJBComponent;
+import com.jbossmanager.model.EJBSnapshot;
 import com.jbossmanager.model.JMSQueue;
+import com.jbossmanager.model.JMSTopic;
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.ResourceChange;
+import com.jbossmanager.model.QueueSnapshot;
 import com.jbossmanager.model.ServerConnection;
+import com.jbossmanager.model.TopicSnapshot;
+import com.jbossmanager.service.AlertEngine;
+import com.jbossmanager.service.AlertLog;
+import com.jbossmanager.service.ConnectionMonitor;
+import com.jbossmanager.service.ConnectionProfileStore;
 import com.jbossmanager.service.ConnectionService;
+import com.jbossmanager.service.ConnectionWarmer;
 import com.jbossmanager.service.EJBService;
 import com.jbossmanager.service.JMSService;
+import com.jbossmanager.service.MessageExportService;
+import com.jbossmanager.service.MetricsHistoryStore;
+import com.jbossmanager.service.MetricsPoller;
+import com.jbossmanager.service.PrometheusExporter;
+import com.jbossmanager.service.RequestScheduler;
+import com.jbossmanager.service.ResourceChangeLog;
+import com.jbossmanager.service.ResourceChangeTracker;
+import com.jbossmanager.service.ResourceSearchIndex;
+import com.jbossmanager.service.ResourceSnapshotStore;
 
-import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.GridPane;
@@ -18,21 +43,51 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Controller class for the main view.
  */
 public class MainController {
     
+    private static final DateTimeFormatter SNAPSHOT_TIME_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+    
+    /** Maximum number of resources shown by a search. */
+    private static final int MAX_SEARCH_RESULTS = 1000;
+    
+    /** Minutes between two compactions of the search index. */
+    private static final long SEARCH_INDEX_COMPACTION_MINUTES = 5;
+    
     // FXML injected fields
+    @FXML private ComboBox<ConnectionProfile> profileBox;
     @FXML private TextField hostField;
     @FXML private TextField portField;
     @FXML private TextField usernameField;
     @FXML private PasswordField passwordField;
     @FXML private Button connectButton;
     @FXML private Label statusLabel;
+    @FXML private Label latencyLabel;
+    @FXML private TextField searchField;
     @FXML private TreeView<Object> resourcesTree;
     @FXML private Label detailsTitleLabel;
     @FXML private GridPane detailsGrid;
@@ -42,50 +97,304 @@ public class MainController {
     @FXML private Button restartButton;
     @FXML private Button deployButton;
     @FXML private Button undeployButton;
+    @FXML private Button exportButton;
+    @FXML private Button removeMessagesButton;
+    @FXML private Button moveMessagesButton;
+    @FXML private Button expireMessagesButton;
     @FXML private Label statusBarLabel;
+    @FXML private ProgressBar taskProgressBar;
+    @FXML private Label frameTimeLabel;
     @FXML private Button refreshButton;
     
     // Services
     private ConnectionService connectionService;
     private JMSService jmsService;
     private EJBService ejbService;
+    private MessageExportService messageExportService;
+    private MetricsPoller metricsPoller;
+    private ConnectionMonitor connectionMonitor;
+    private AlertEngine alertEngine;
+    private AlertLog alertLog;
+    private ResourceChangeTracker changeTracker;
+    private PrometheusExporter prometheusExporter;
+    private MetricsHistoryStore metricsHistory;
+    private ResourceSnapshotStore snapshotStore;
+    private ConnectionProfileStore profileStore;
+    private ConnectionWarmer connectionWarmer;
+    
+    // Listeners moved along when switching connections
+    private Consumer<List<MessagingServer>> messagingRefreshListener;
+    private Consumer<List<EJBSnapshot>> ejbRefreshListener;
+    private Consumer<ConnectionSnapshot> connectionStateListener;
+    private ConnectionMonitor.Listener connectionMonitorListener;
     
     // State
+    private final ServerConnection serverConnection = new ServerConnection();
     private Object selectedResource;
+    private AtomicBoolean exportCancelled;
+    // Latest reads of the queues shown in the tree by queue key, and their rates by "server/queue"
+    // key; a view model is only created for the queue selected and by the dashboard
+    private final Map<String, QueueSnapshot> loadedQueues = new LinkedHashMap<>();
+    private Map<String, Double> queueRatesByKey = Map.of();
+    private boolean connecting;
+    private boolean resourcesStale;
+    private boolean liveResourcesLoaded;
+    
+    // Resources tree being filled, only used on the JavaFX thread
+    private TreeItem<Object> messagingItem;
+    private TreeItem<Object> ejbsItem;
+    private final Map<String, TreeItem<Object>> deploymentItems = new HashMap<>();
+    private final Map<String, TreeItem<Object>> queuesItems = new HashMap<>();
+    private final Map<String, Object> resourcesByKey = new HashMap<>();
+    private int loadGeneration;
+    private int renderedGeneration;
+    private boolean messagingReplaced;
+    private boolean ejbsReplaced;
+    private long firstItemNanos;
+    private boolean resourcesLoading;
+    private boolean reloadScheduled;
+    private TreeItem<Object> resourcesRoot;
+    private DetailsPanel detailsPanel;
+    
+    // Updates posted by the background threads, applied once per animation pulse
+    private final UiUpdateDispatcher uiUpdates = new UiUpdateDispatcher();
+    private FxStallWatchdog stallWatchdog;
+    private QueueDashboardController queueDashboard;
+    private final QueueRateTracker queueRates = new QueueRateTracker();
+    
+    // Index of the keys of the resources in the tree, only used on the search thread. It is kept
+    // from one load to the next and follows the resource changes; see resourceKey methods
+    private final ResourceSearchIndex<String> searchIndex = new ResourceSearchIndex<>();
+    private final ScheduledExecutorService searchExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "resource-search");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     /**
      * Initialize the controller.
      */
     @FXML
     public void initialize() {
+        // Report the stalls of the JavaFX thread, which is the one running this method
+        stallWatchdog = new FxStallWatchdog(Thread.currentThread(), this::showFrameTime);
+        stallWatchdog.setFailureListener(e -> uiUpdates.post(
+            () -> updateStatusBar("Stall report not written: " + e.getMessage())));
+        stallWatchdog.start();
+        
         // Initialize services
-        connectionService = new ConnectionService();
-        jmsService = new JMSService(connectionService);
-        ejbService = new EJBService(connectionService);
+        snapshotStore = new ResourceSnapshotStore();
+        
+        // Evaluate alert rules on every metrics poll
+        alertEngine = new AlertEngine();
+        alertLog = new AlertLog();
+        alertLog.setFailureListener(e -> uiUpdates.post(
+            () -> updateStatusBar("Alert log not written: " + e.getMessage())));
+        alertEngine.addAlertListener(alertLog);
+        alertEngine.addAlertListener(alert -> uiUpdates.post(
+            "alert:" + alert.getServerName() + "/" + alert.getQueueName() + "/" + alert.getRuleName(),
+            () -> handleAlert(alert)));
+        
+        // Publish what changed between two reads of the resources
+        changeTracker = new ResourceChangeTracker();
+        ResourceChangeLog changeLog = new ResourceChangeLog();
+        changeLog.setFailureListener(e -> uiUpdates.post(
+            () -> updateStatusBar("Change log not written: " + e.getMessage())));
+        changeTracker.addChangeListener(changeLog);
+        
+        // Keep the polled metrics on disk between runs
+        try {
+            metricsHistory = new MetricsHistoryStore();
+            metricsHistory.setFailureListener(e -> uiUpdates.post(
+                () -> updateStatusBar("Metrics history not recorded: " + e.getMessage())));
+        } catch (IOException e) {
+            statusBarLabel.setText("Metrics history unavailable: " + e.getMessage());
+        }
+        
+        // Serve the polled metrics to Prometheus when enabled
+        prometheusExporter = new PrometheusExporter();
+        int metricsPort = PrometheusExporter.configuredPort();
+        if (metricsPort >= 0) {
+            try {
+                prometheusExporter.start(metricsPort);
+            } catch (IOException e) {
+                statusBarLabel.setText("Metrics endpoint unavailable: " + e.getMessage());
+            }
+        }
+        
+        messagingRefreshListener = servers -> {
+            List<ResourceChange> changes = changeTracker.compareMessaging(servers);
+            if (!changes.isEmpty()) {
+                uiUpdates.post(() -> handleResourceChanges(changes, servers));
+            }
+            if (metricsHistory != null) {
+                metricsHistory.recordMessaging(servers);
+            }
+            prometheusExporter.updateMessaging(servers);
+        };
+        ejbRefreshListener = ejbs -> {
+            List<ResourceChange> changes = changeTracker.compareEJBs(ejbs);
+            if (!changes.isEmpty()) {
+                uiUpdates.post(() -> handleResourceChanges(changes, List.of()));
+            }
+            if (metricsHistory != null) {
+                metricsHistory.recordEJBs(ejbs);
+            }
+            prometheusExporter.updateEJBs(ejbs);
+        };
+        // Update UI when connection status changes, the connection being only changed on this thread
+        connectionStateListener = state -> uiUpdates.post(serverConnection, () -> serverConnection.update(state));
+        serverConnection.connectedProperty().addListener((obs, oldVal, newVal) -> updateConnectionStatus(newVal));
+        serverConnection.connectionStatusProperty().addListener((obs, oldVal, newVal) -> statusLabel.setText(newVal));
+        connectionMonitorListener = new ConnectionMonitor.Listener() {
+            @Override
+            public void heartbeat(long roundTripNanos) {
+                uiUpdates.post(latencyLabel, () -> latencyLabel.setText(formatRoundTrip(roundTripNanos)));
+            }
+            
+            @Override
+            public void connectionLost(String reason) {
+                uiUpdates.post(() -> {
+                    latencyLabel.setText("");
+                    updateStatusBar("Connection lost: " + reason);
+                });
+            }
+            
+            @Override
+            public void reconnecting(int attempt, long delayMillis) {
+                uiUpdates.post(statusLabel, () -> {
+                    statusLabel.setText(String.format("Reconnecting in %.1f s (attempt %d)", delayMillis / 1000.0, attempt));
+                    statusLabel.getStyleClass().remove("status-disconnected");
+                    if (!statusLabel.getStyleClass().contains("status-reconnecting")) {
+                        statusLabel.getStyleClass().add("status-reconnecting");
+                    }
+                });
+            }
+            
+            @Override
+            public void reconnected() {
+                uiUpdates.post(() -> {
+                    updateConnectionStatus(true);
+                    loadResources();
+                    updateStatusBar("Reconnected to server");
+                });
+            }
+        };
+        
+        ConnectionService initialConnection = new ConnectionService();
+        attachConnection(initialConnection, new JMSService(initialConnection), new EJBService(initialConnection));
+        
+        // Connect the saved profiles in the background
+        profileStore = new ConnectionProfileStore();
+        connectionWarmer = new ConnectionWarmer(snapshotStore);
+        try {
+            profileBox.getItems().setAll(profileStore.load());
+        } catch (IOException e) {
+            statusBarLabel.setText("Failed to load connection profiles: " + e.getMessage());
+        }
+        profileBox.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null) {
+                hostField.setText(newVal.getHost());
+                portField.setText(String.valueOf(newVal.getPort()));
+                usernameField.setText(newVal.getUsername());
+                passwordField.setText(newVal.getPassword());
+            }
+        });
+        connectionWarmer.warmUp(profileBox.getItems().stream()
+            .filter(profile -> profile.isConnectOnStartup() && profile.isPasswordSaved())
+            .collect(Collectors.toList()));
         
         // Set default values
         hostField.setText("localhost");
         portField.setText("9990");
         
+        // Rows of the details panel, bound to the selected resource
+        detailsPanel = new DetailsPanel(detailsGrid, detailsTitleLabel, 7);
+        
         // Initialize tree
-        TreeItem<Object> rootItem = new TreeItem<>("Server Resources");
-        rootItem.setExpanded(true);
-        resourcesTree.setRoot(rootItem);
+        resourcesRoot = new TreeItem<>("Server Resources");
+        resourcesRoot.setExpanded(true);
+        resourcesTree.setRoot(resourcesRoot);
         resourcesTree.setShowRoot(false);
+        searchField.textProperty().addListener((obs, oldVal, newVal) -> searchResources());
+        // Reclaim the room left in the search index by the removed resources now and then
+        searchExecutor.scheduleWithFixedDelay(searchIndex::compact, SEARCH_INDEX_COMPACTION_MINUTES,
+            SEARCH_INDEX_COMPACTION_MINUTES, TimeUnit.MINUTES);
+        resourcesTree.setCellFactory(tree -> new TreeCell<Object>() {
+            @Override
+            protected void updateItem(Object item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : item.toString());
+                getStyleClass().remove("alert");
+                if (!empty && item instanceof QueueSnapshot && alertEngine.isFiring(
+                        ((QueueSnapshot) item).serverName(), ((QueueSnapshot) item).name())) {
+                    getStyleClass().add("alert");
+                }
+            }
+        });
         
         // Disable buttons initially
         refreshButton.setDisable(true);
         disableOperationButtons(true);
+    }
+    
+    /**
+     * Release what the controller started, when the application exits: the polling and the
+     * connection, the connections made in the background, the metrics endpoint, the alert log,
+     * the metrics history and the background threads.
+     */
+    public void shutdown() {
+        stallWatchdog.stop();
+        connectionMonitor.stop();
+        metricsPoller.stop();
+        connectionService.disconnect();
+        connectionWarmer.shutdown();
+        prometheusExporter.stop();
+        alertLog.close();
+        if (metricsHistory != null) {
+            try {
+                metricsHistory.close();
+            } catch (IOException e) {
+                // The window is closing, there is nothing left to show it in
+            }
+        }
+        searchExecutor.shutdownNow();
+    }
+    
+    /**
+     * Use a connection and its services, e.g. one connected in the background.
+     * The listeners of the previous connection are moved to the new one.
+     */
+    private void attachConnection(ConnectionService newConnectionService, JMSService newJmsService,
+                                  EJBService newEjbService) {
+        if (connectionService != null) {
+            connectionMonitor.stop();
+            metricsPoller.stop();
+            jmsService.removeRefreshListener(messagingRefreshListener);
+            ejbService.removeRefreshListener(ejbRefreshListener);
+            connectionService.removeStateListener(connectionStateListener);
+        }
         
-        // Update UI when connection status changes
-        ServerConnection serverConnection = connectionService.getServerConnection();
-        serverConnection.connectedProperty().addListener((obs, oldVal, newVal) -> {
-            updateConnectionStatus(newVal);
-        });
+        connectionService = newConnectionService;
+        jmsService = newJmsService;
+        ejbService = newEjbService;
+        messageExportService = new MessageExportService(jmsService);
+        // The EJB statistics are only read at each refresh for the metrics endpoint
+        metricsPoller = new MetricsPoller(jmsService, prometheusExporter.getPort() >= 0 ? ejbService : null);
+        queueRates.reset();
+        connectionMonitor = new ConnectionMonitor(connectionService);
+        connectionMonitor.addListener(connectionMonitorListener);
+        connectionMonitor.addSubscription(metricsPoller);
+        // The first read of the new connection is compared with nothing
+        changeTracker.reset();
+        resetSearchIndex();
+        jmsService.addRefreshListener(messagingRefreshListener);
+        ejbService.addRefreshListener(ejbRefreshListener);
         
-        serverConnection.connectionStatusProperty().addListener((obs, oldVal, newVal) -> {
-            statusLabel.setText(newVal);
-        });
+        connectionService.addStateListener(connectionStateListener);
+        // Replaces a state of the previous connection still pending
+        ConnectionSnapshot state = connectionService.getConnectionSnapshot();
+        uiUpdates.post(serverConnection, () -> serverConnection.update(state));
     }
     
     /**
@@ -93,9 +402,23 @@ public class MainController {
      */
     @FXML
     private void handleConnect() {
-        if (connectionService.isConnected()) {
-            // Disconnect
+        if (connectionService.isConnected() || connectionMonitor.isReconnecting()) {
+            // Disconnect, giving up any reconnection in progress
+            if (exportCancelled != null) {
+                exportCancelled.set(true);
+            }
+            connectionMonitor.stop();
+            metricsPoller.stop();
             connectionService.disconnect();
+            loadGeneration++;
+            resourcesLoading = false;
+            queueRates.reset();
+            latencyLabel.setText("");
+            updateConnectionStatus(false);
+            alertEngine.reset();
+            changeTracker.reset();
+            resetSearchIndex();
+            prometheusExporter.clear();
             connectButton.setText("Connect");
             clearResources();
             disableOperationButtons(true);
@@ -109,26 +432,54 @@ public class MainController {
                 String username = usernameField.getText();
                 String password = passwordField.getText();
                 
+                // Switch instantly to a profile connected in the background
+                ConnectionWarmer.WarmConnection warm = takeWarmConnection(host, port, username, password);
+                if (warm != null) {
+                    attachConnection(warm.getConnectionService(), warm.getJmsService(), warm.getEjbService());
+                    updateConnectionStatus(true);
+                    statusLabel.setText(connectionService.getConnectionSnapshot().connectionStatus());
+                    connectButton.setText("Disconnect");
+                    refreshButton.setDisable(false);
+                    if (warm.getServers() != null) {
+                        renderResources(warm.getServers(), warm.getEjbs(), false);
+                    }
+                    loadResources();
+                    startMetricsPolling();
+                    connectionMonitor.start();
+                    updateStatusBar("Connected to server (profile " + warm.getProfile().getName() + ")"
+                        + (warm.getError() != null ? ": " + warm.getError() : ""));
+                    return;
+                }
+                
                 updateStatusBar("Connecting to server...");
+                connecting = true;
+                liveResourcesLoaded = false;
+                loadSnapshot(host, port);
                 
                 // Connect in background thread
                 new Thread(() -> {
                     try {
                         boolean connected = connectionService.connect(host, port, username, password);
                         
-                        Platform.runLater(() -> {
+                        uiUpdates.post(() -> {
+                            connecting = false;
                             if (connected) {
                                 connectButton.setText("Disconnect");
                                 refreshButton.setDisable(false);
                                 loadResources();
+                                startMetricsPolling();
+                                connectionMonitor.start();
                                 updateStatusBar("Connected to server");
                             } else {
+                                clearResources();
                                 updateStatusBar("Failed to connect: " + 
-                                    connectionService.getServerConnection().getConnectionStatus());
+                                    connectionService.getConnectionSnapshot().connectionStatus());
                             }
                         });
                     } catch (Exception e) {
-                        Platform.runLater(() -> {
+                        uiUpdates.post(() -> {
+                            connecting = false;
+                            clearResources();
                             updateStatusBar("Error connecting: " + e.getMessage());
                         });
                     }
@@ -139,6 +490,101 @@ public class MainController {
         }
     }
     
+    /**
+     * Handle save profile button click.
+     */
+    @FXML
+    private void handleSaveProfile() {
+        int port;
+        try {
+            port = Integer.parseInt(portField.getText());
+        } catch (NumberFormatException e) {
+            updateStatusBar("Invalid port number");
+            return;
+        }
+        
+        ConnectionProfile selected = profileBox.getSelectionModel().getSelectedItem();
+        TextInputDialog dialog = new TextInputDialog(selected != null ? selected.getName() : hostField.getText());
+        dialog.setTitle("Save Profile");
+        dialog.setHeaderText("Save the connection details as a profile, connected when the application starts");
+        dialog.setContentText("Profile name:");
+        
+        Optional<String> name = dialog.showAndWait().map(String::trim).filter(value -> !value.isEmpty());
+        if (name.isPresent()) {
+            String password = passwordField.getText();
+            boolean savePassword = password.isEmpty() || confirmSavePassword();
+            ConnectionProfile profile = new ConnectionProfile(name.get(), hostField.getText(), port,
+                usernameField.getText(), password, savePassword, savePassword);
+            List<ConnectionProfile> profiles = new ArrayList<>(profileBox.getItems());
+            if (profiles.removeIf(existing -> existing.getName().equals(profile.getName()))) {
+                // Connected in the background with the former details
+                connectionWarmer.discard(profile.getName());
+            }
+            profiles.add(profile);
+            saveProfiles(profiles);
+            profileBox.getSelectionModel().select(profile);
+            updateStatusBar("Profile " + profile.getName() + " saved");
+        }
+    }
+    
+    /**
+     * Handle delete profile button click.
+     */
+    @FXML
+    private void handleDeleteProfile() {
+        ConnectionProfile selected = profileBox.getSelectionModel().getSelectedItem();
+        if (selected != null) {
+            List<ConnectionProfile> profiles = new ArrayList<>(profileBox.getItems());
+            profiles.remove(selected);
+            saveProfiles(profiles);
+            connectionWarmer.discard(selected.getName());
+            updateStatusBar("Profile " + selected.getName() + " deleted");
+        }
+    }
+    
+    /**
+     * Ask the user whether the password is saved with a profile.
+     * 
+     * @return true if the password is saved
+     */
+    private boolean confirmSavePassword() {
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "", ButtonType.YES, ButtonType.NO);
+        alert.setTitle("Save Password");
+        alert.setHeaderText("Save the password with the profile?");
+        alert.setContentText("The password is stored unencrypted in the profiles file, readable only by you."
+            + "\nProfiles without a saved password are not connected at startup.");
+        
+        Optional<ButtonType> result = alert.showAndWait();
+        return result.isPresent() && result.get() == ButtonType.YES;
+    }
+    
+    private void saveProfiles(List<ConnectionProfile> profiles) {
+        try {
+            profileStore.save(profiles);
+            profileBox.getItems().setAll(profiles);
+        } catch (IOException e) {
+            updateStatusBar("Failed to save profiles: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Take the background connection of the profile matching the connection details, if it is
+     * ready. One still warming up is discarded, the caller connects on its own.
+     */
+    private ConnectionWarmer.WarmConnection takeWarmConnection(String host, int port, String username, String password) {
+        for (ConnectionProfile profile : profileBox.getItems()) {
+            if (profile.matches(host, port, username) && profile.getPassword().equals(password)) {
+                ConnectionWarmer.WarmConnection warm = connectionWarmer.take(profile.getName());
+                if (warm != null && warm.getConnectionService().isConnected()) {
+                    return warm;
+                }
+                // Still warming up, the connection made now replaces it
+                connectionWarmer.discard(profile.getName());
+            }
+        }
+        return null;
+    }
+    
     /**
      * Handle refresh button click.
      */
@@ -150,6 +596,80 @@ public class MainController {
         }
     }
     
+    /**
+     * Handle diagnostics button click.
+     */
+    @FXML
+    private void handleDiagnostics() {
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/DiagnosticsView.fxml"));
+            Parent root = loader.load();
+            
+            Stage stage = new Stage();
+            stage.initOwner(getStage());
+            stage.setTitle("Diagnostics - Management Requests");
+            Scene scene = new Scene(root);
+            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
+            stage.setScene(scene);
+            
+            DiagnosticsController controller = loader.getController();
+            controller.setUiUpdates(uiUpdates);
+            controller.setMetrics(connectionService.getMetrics(), stage);
+            stage.show();
+        } catch (Exception e) {
+            updateStatusBar("Error opening diagnostics: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Handle queue dashboard button click.
+     */
+    @FXML
+    private void handleQueueDashboard() {
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/QueueDashboardView.fxml"));
+            Parent root = loader.load();
+            
+            Stage stage = new Stage();
+            stage.initOwner(getStage());
+            stage.setTitle("Queue Dashboard");
+            Scene scene = new Scene(root);
+            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
+            stage.setScene(scene);
+            
+            QueueDashboardController controller = loader.getController();
+            controller.setQueues(loadedQueues.values(), queueRatesByKey, stage, () -> queueDashboard = null);
+            queueDashboard = controller;
+            stage.show();
+        } catch (Exception e) {
+            updateStatusBar("Error opening queue dashboard: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Handle deployment comparison button click.
+     */
+    @FXML
+    private void handleDeploymentComparison() {
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/DeploymentComparisonView.fxml"));
+            Parent root = loader.load();
+            
+            Stage stage = new Stage();
+            stage.initOwner(getStage());
+            stage.setTitle("Deployment Comparison");
+            Scene scene = new Scene(root);
+            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
+            stage.setScene(scene);
+            
+            DeploymentComparisonController controller = loader.getController();
+            controller.setProfiles(profileBox.getItems());
+            stage.show();
+        } catch (Exception e) {
+            updateStatusBar("Error opening deployment comparison: " + e.getMessage());
+        }
+    }
+    
     /**
      * Handle resource selection in the tree view.
      */
@@ -160,18 +680,35 @@ public class MainController {
             Object value = selectedItem.getValue();
             selectedResource = value;
             
-            if (value instanceof JMSQueue) {
-                displayJMSQueueDetails((JMSQueue) value);
+            if (value instanceof QueueSnapshot) {
+                // The view model is only created for the queue shown, from its latest read
+                JMSQueue queue = createQueueModel((QueueSnapshot) value);
+                selectedResource = queue;
+                displayJMSQueueDetails(queue);
                 enableJMSOperations(true);
                 enableEJBOperations(false);
-            } else if (value instanceof EJBComponent) {
-                displayEJBDetails((EJBComponent) value);
+            } else if (value instanceof TopicSnapshot) {
+                // Like for the beans, the view model is only created for the topic shown
+                JMSTopic topic = new JMSTopic((TopicSnapshot) value);
+                selectedResource = topic;
+                displayJMSTopicDetails(topic);
+                disableOperationButtons(true);
+            } else if (value instanceof EJBSnapshot) {
+                // The view model is only created for the bean shown
+                EJBComponent ejb = new EJBComponent((EJBSnapshot) value);
+                selectedResource = ejb;
+                displayEJBDetails(ejb);
                 enableJMSOperations(false);
                 enableEJBOperations(true);
             } else {
                 clearDetails();
                 disableOperationButtons(true);
             }
+            
+            // Cached resources are only shown until the live ones are loaded
+            if (resourcesStale) {
+                disableOperationButtons(true);
+            }
         } else {
             clearDetails();
             disableOperationButtons(true);
@@ -189,18 +726,18 @@ public class MainController {
             
             new Thread(() -> {
                 try {
-                    boolean success = jmsService.startQueue(queue.getName());
+                    boolean success = jmsService.startQueue(queue.getServerName(), queue.getName());
                     
-                    Platform.runLater(() -> {
+                    uiUpdates.post(() -> {
                         if (success) {
                             updateStatusBar("Queue " + queue.getName() + " started successfully");
-                            refreshJMSQueue(queue);
+                            refreshJMSQueue(queue.getServerName(), queue.getName());
                         } else {
                             updateStatusBar("Failed to start queue " + queue.getName());
                         }
                     });
                 } catch (Exception e) {
-                    Platform.runLater(() -> {
+                    uiUpdates.post(() -> {
                         updateStatusBar("Error starting queue: " + e.getMessage());
                     });
                 }
@@ -219,18 +756,18 @@ public class MainController {
             
             new Thread(() -> {
                 try {
-                    boolean success = jmsService.stopQueue(queue.getName());
+                    boolean success = jmsService.stopQueue(queue.getServerName(), queue.getName());
                     
-                    Platform.runLater(() -> {
+                    uiUpdates.post(() -> {
                         if (success) {
                             updateStatusBar("Queue " + queue.getName() + " stopped successfully");
-                            refreshJMSQueue(queue);
+                            refreshJMSQueue(queue.getServerName(), queue.getName());
                         } else {
                             updateStatusBar("Failed to stop queue " + queue.getName());
                         }
                     });
                 } catch (Exception e) {
-                    Platform.runLater(() -> {
+                    uiUpdates.post(() -> {
                         updateStatusBar("Error stopping queue: " + e.getMessage());
                     });
                 }
@@ -249,18 +786,18 @@ public class MainController {
             
             new Thread(() -> {
                 try {
-                    boolean success = jmsService.restartQueue(queue.getName());
+                    boolean success = jmsService.restartQueue(queue.getServerName(), queue.getName());
                     
-                    Platform.runLater(() -> {
+                    uiUpdates.post(() -> {
                         if (success) {
                             updateStatusBar("Queue " + queue.getName() + " restarted successfully");
-                            refreshJMSQueue(queue);
+                            refreshJMSQueue(queue.getServerName(), queue.getName());
                         } else {
                             updateStatusBar("Failed to restart queue " + queue.getName());
                         }
                     });
                 } catch (Exception e) {
-                    Platform.runLater(() -> {
+                    uiUpdates.post(() -> {
                         updateStatusBar("Error restarting queue: " + e.getMessage());
                     });
                 }
@@ -268,6 +805,257 @@ public class MainController {
         }
     }
     
+    /**
+     * Handle export button click. Starts exporting the selected queue's messages,
+     * or cancels the export that is currently running.
+     */
+    @FXML
+    private void handleExport() {
+        if (exportCancelled != null) {
+            exportCancelled.set(true);
+            exportButton.setDisable(true);
+            updateStatusBar("Cancelling export...");
+            return;
+        }
+        
+        if (selectedResource instanceof JMSQueue) {
+            JMSQueue queue = (JMSQueue) selectedResource;
+            
+            FileChooser fileChooser = new FileChooser();
+            fileChooser.setTitle("Export Messages");
+            fileChooser.setInitialFileName(queue.getName() + ".ndjson");
+            fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Newline-delimited JSON", "*.ndjson", "*.jsonl"),
+                new FileChooser.ExtensionFilter("All Files", "*.*")
+            );
+            
+            File file = fileChooser.showSaveDialog(getStage());
+            if (file != null) {
+                AtomicBoolean cancelled = new AtomicBoolean(false);
+                exportCancelled = cancelled;
+                exportButton.setText("Cancel Export");
+                taskProgressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+                taskProgressBar.setVisible(true);
+                updateStatusBar("Exporting messages from " + queue.getName() + "...");
+                
+                new Thread(() -> {
+                    try {
+                        // Messages counted when the export started, some may be consumed meanwhile
+                        AtomicLong expected = new AtomicLong();
+                        long exported = messageExportService.exportMessages(queue.getServerName(), queue.getName(), null, file.toPath(),
+                            (count, total, bytes, elapsed) -> {
+                                expected.set(total);
+                                uiUpdates.post(taskProgressBar, () -> {
+                                    taskProgressBar.setProgress(total > 0 ? (double) count / total : 1.0);
+                                    updateStatusBar(String.format("Exported %d/%d messages (%.0f msg/s, %.1f MB)",
+                                        count, total, count * 1000.0 / Math.max(elapsed, 1), bytes / (1024.0 * 1024.0)));
+                                });
+                            },
+                            cancelled);
+                        
+                        // After the progress updates
+                        uiUpdates.post(() -> {
+                            finishExport();
+                            if (cancelled.get()) {
+                                updateStatusBar("Export cancelled after " + exported + " messages");
+                            } else if (exported < expected.get()) {
+                                updateStatusBar("Exported " + exported + " of " + expected.get() + " messages to "
+                                    + file.getName() + ", the others were consumed or expired during the export");
+                            } else {
+                                updateStatusBar("Exported " + exported + " messages to " + file.getName());
+                            }
+                        });
+                    } catch (Exception e) {
+                        uiUpdates.post(() -> {
+                            finishExport();
+                            updateStatusBar("Error exporting messages: " + e.getMessage());
+                        });
+                    }
+                }).start();
+            }
+        }
+    }
+    
+    /**
+     * Handle remove messages button click.
+     */
+    @FXML
+    private void handleRemoveMessages() {
+        if (selectedResource instanceof JMSQueue) {
+            JMSQueue queue = (JMSQueue) selectedResource;
+            String header = "Remove messages from " + queue.getName();
+            Optional<String> filter = askMessageFilter("Remove Messages", header);
+            if (filter.isPresent()) {
+                runBulkOperation("Remove Messages", header, "Removed", queue, null, filter.get(),
+                    () -> jmsService.removeMessages(queue.getServerName(), queue.getName(), filter.get()));
+            }
+        }
+    }
+    
+    /**
+     * Handle move messages button click.
+     */
+    @FXML
+    private void handleMoveMessages() {
+        if (selectedResource instanceof JMSQueue) {
+            JMSQueue queue = (JMSQueue) selectedResource;
+            
+            List<String> targetNames = new ArrayList<>();
+            for (QueueSnapshot other : loadedQueues.values()) {
+                if (other.serverName().equals(queue.getServerName()) && !other.name().equals(queue.getName())) {
+                    targetNames.add(other.name());
+                }
+            }
+            if (targetNames.isEmpty()) {
+                updateStatusBar("No other queue to move messages to");
+                return;
+            }
+            
+            ChoiceDialog<String> targetDialog = new ChoiceDialog<>(targetNames.get(0), targetNames);
+            targetDialog.setTitle("Move Messages");
+            targetDialog.setHeaderText("Move messages from " + queue.getName());
+            targetDialog.setContentText("Destination queue:");
+            Optional<String> targetName = targetDialog.showAndWait();
+            if (targetName.isEmpty()) {
+                return;
+            }
+            
+            String header = "Move messages from " + queue.getName() + " to " + targetName.get();
+            Optional<String> filter = askMessageFilter("Move Messages", header);
+            if (filter.isPresent()) {
+                runBulkOperation("Move Messages", header, "Moved", queue, targetName.get(), filter.get(),
+                    () -> jmsService.moveMessages(queue.getServerName(), queue.getName(), filter.get(), targetName.get()));
+            }
+        }
+    }
+    
+    /**
+     * Handle expire messages button click.
+     */
+    @FXML
+    private void handleExpireMessages() {
+        if (selectedResource instanceof JMSQueue) {
+            JMSQueue queue = (JMSQueue) selectedResource;
+            String header = "Expire messages in " + queue.getName();
+            Optional<String> filter = askMessageFilter("Expire Messages", header);
+            if (filter.isPresent()) {
+                runBulkOperation("Expire Messages", header, "Expired", queue, null, filter.get(),
+                    () -> jmsService.expireMessages(queue.getServerName(), queue.getName(), filter.get()));
+            }
+        }
+    }
+    
+    /**
+     * Ask the user for a JMS selector. An empty selector matches all messages.
+     */
+    private Optional<String> askMessageFilter(String title, String header) {
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle(title);
+        dialog.setHeaderText(header);
+        dialog.setContentText("JMS selector (empty for all messages):");
+        return dialog.showAndWait().map(String::trim);
+    }
+    
+    /**
+     * Ask the user to confirm a bulk message operation, showing the queue and the selector.
+     */
+    private boolean confirmBulkOperation(String title, String header, JMSQueue queue, String filter) {
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Confirm " + title);
+        alert.setHeaderText(header);
+        String selector = filter.isEmpty()
+            ? "none, all " + queue.getMessageCount() + " messages of the queue"
+            : filter;
+        alert.setContentText("Queue: " + queue.getServerName() + "/" + queue.getName()
+            + "\nSelector: " + selector + "\n\nAre you sure?");
+        
+        Optional<ButtonType> result = alert.showAndWait();
+        return result.isPresent() && result.get() == ButtonType.OK;
+    }
+    
+    /**
+     * Run a bulk message operation in the background once confirmed, report the number of
+     * affected messages and the elapsed time, and refresh only the queues it touched.
+     */
+    private void runBulkOperation(String title, String header, String verb, JMSQueue queue, String otherQueueName,
+                                  String filter, Callable<Integer> operation) {
+        if (!confirmBulkOperation(title, header, queue, filter)) {
+            return;
+        }
+        
+        updateStatusBar("Processing messages in " + queue.getName() + "...");
+        taskProgressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        taskProgressBar.setVisible(true);
+        
+        new Thread(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                int count = operation.call();
+                long elapsed = System.currentTimeMillis() - start;
+                
+                uiUpdates.post(() -> {
+                    taskProgressBar.setVisible(exportCancelled != null);
+                    updateStatusBar(verb + " " + count + " messages in " + queue.getName() + " (" + elapsed + " ms)");
+                    refreshJMSQueue(queue.getServerName(), queue.getName());
+                    if (otherQueueName != null) {
+                        refreshJMSQueue(queue.getServerName(), otherQueueName);
+                    }
+                });
+            } catch (Exception e) {
+                uiUpdates.post(() -> {
+                    taskProgressBar.setVisible(exportCancelled != null);
+                    updateStatusBar("Error processing messages: " + e.getMessage());
+                });
+            }
+        }).start();
+    }
+    
+    /**
+     * Create the view model of a queue shown in the tree, from its latest read.
+     */
+    private JMSQueue createQueueModel(QueueSnapshot snapshot) {
+        QueueSnapshot latest = loadedQueues.getOrDefault(queueKey(snapshot.serverName(), snapshot.name()), snapshot);
+        JMSQueue queue = new JMSQueue(latest);
+        Double rate = queueRatesByKey.get(QueueRateTracker.key(latest.serverName(), latest.name()));
+        if (rate != null) {
+            queue.setMessageRate(rate);
+        }
+        queue.setAlerting(alertEngine.isFiring(latest.serverName(), latest.name()));
+        return queue;
+    }
+    
+    /**
+     * Get the view model of a queue if it is the one selected.
+     */
+    private JMSQueue selectedQueue(String serverName, String name) {
+        if (selectedResource instanceof JMSQueue) {
+            JMSQueue queue = (JMSQueue) selectedResource;
+            if (queue.getServerName().equals(serverName) && queue.getName().equals(name)) {
+                return queue;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Show the queues of the tree in the dashboard after they changed, if it is open.
+     */
+    private void updateQueueDashboard() {
+        if (queueDashboard != null) {
+            queueDashboard.update(loadedQueues.values(), queueRatesByKey);
+        }
+    }
+    
+    /**
+     * Reset the export controls after an export has ended.
+     */
+    private void finishExport() {
+        exportCancelled = null;
+        exportButton.setText("Export");
+        exportButton.setDisable(!(selectedResource instanceof JMSQueue));
+        taskProgressBar.setVisible(false);
+    }
+    
     /**
      * Handle deploy button click.
      */
@@ -288,7 +1076,7 @@ public class MainController {
                 try {
                     boolean success = ejbService.deployEJB(file);
                     
-                    Platform.runLater(() -> {
+                    uiUpdates.post(() -> {
                         if (success) {
                             updateStatusBar(file.getName() + " deployed successfully");
                             loadResources();
@@ -297,7 +1085,7 @@ public class MainController {
                         }
                     });
                 } catch (Exception e) {
-                    Platform.runLater(() -> {
+                    uiUpdates.post(() -> {
                         updateStatusBar("Error deploying: " + e.getMessage());
                     });
                 }
@@ -327,7 +1115,7 @@ public class MainController {
                     try {
                         boolean success = ejbService.undeployEJB(deploymentName);
                         
-                        Platform.runLater(() -> {
+                        uiUpdates.post(() -> {
                             if (success) {
                                 updateStatusBar(deploymentName + " undeployed successfully");
                                 loadResources();
@@ -336,7 +1124,7 @@ public class MainController {
                             }
                         });
                     } catch (Exception e) {
-                        Platform.runLater(() -> {
+                        uiUpdates.post(() -> {
                             updateStatusBar("Error undeploying: " + e.getMessage());
                         });
                     }
@@ -354,142 +1142,808 @@ public class MainController {
         }
         
         updateStatusBar("Loading resources...");
+        ConnectionSnapshot connection = connectionService.getConnectionSnapshot();
+        String host = connection.host();
+        int port = connection.port();
         
-        new Thread(() -> {
-            try {
-                // Get JMS queues
-                List<JMSQueue> queues = jmsService.getQueues();
-                
-                // Get EJBs
-                List<EJBComponent> ejbs = ejbService.getEJBs();
-                
-                Platform.runLater(() -> {
-                    // Clear existing resources
-                    clearResources();
-                    
-                    // Create root items
-                    TreeItem<Object> rootItem = resourcesTree.getRoot();
-                    TreeItem<Object> jmsQueuesItem = new TreeItem<>("JMS Queues");
-                    TreeItem<Object> ejbsItem = new TreeItem<>("EJBs");
-                    
-                    // Add JMS queues
-                    for (JMSQueue queue : queues) {
-                        TreeItem<Object> queueItem = new TreeItem<>(queue);
-                        jmsQueuesItem.getChildren().add(queueItem);
+        // Batches of an older load still arriving are dropped
+        int generation = ++loadGeneration;
+        long start = System.nanoTime();
+        firstItemNanos = -1;
+        resourcesLoading = true;
+        
+        // Read the queues and the EJBs at the same time, each shown as soon as it arrives
+        CompletableFuture<List<MessagingServer>> servers = loadInBackground("messaging-loader", () -> {
+            List<MessagingServer> loaded = jmsService.getMessagingServers();
+            uiUpdates.post(() -> appendResources(generation, start, loaded, null));
+            return loaded;
+        });
+        // Deployments whose EJBs could not be read, the others being shown all the same
+        List<String> ejbFailures = new ArrayList<>();
+        CompletableFuture<List<EJBSnapshot>> ejbs = loadInBackground("ejb-loader", () -> ejbService.getEJBs(
+            batch -> uiUpdates.post(() -> appendResources(generation, start, null, batch)), ejbFailures::add));
+        
+        servers.thenAcceptBoth(ejbs, (loadedServers, loadedEjbs) -> {
+            List<String> failures = new ArrayList<>();
+            for (MessagingServer server : loadedServers) {
+                for (String failure : server.getFailures()) {
+                    failures.add(server.getName() + "/" + failure);
+                }
+            }
+            failures.addAll(ejbFailures);
+            uiUpdates.post(() -> {
+                if (generation == loadGeneration) {
+                    // Without any EJB batch, the EJBs shown before are gone
+                    if (!ejbsReplaced) {
+                        appendResources(generation, start, null, List.of());
                     }
-                    
-                    // Add EJBs (grouped by deployment)
-                    ejbs.stream()
-                        .map(EJBComponent::getDeploymentName)
-                        .distinct()
-                        .forEach(deploymentName -> {
-                            TreeItem<Object> deploymentItem = new TreeItem<>(deploymentName);
-                            
-                            ejbs.stream()
-                                .filter(ejb -> ejb.getDeploymentName().equals(deploymentName))
-                                .forEach(ejb -> {
-                                    TreeItem<Object> ejbItem = new TreeItem<>(ejb);
-                                    deploymentItem.getChildren().add(ejbItem);
-                                });
-                            
-                            ejbsItem.getChildren().add(deploymentItem);
-                        });
-                    
-                    // Add to root
-                    rootItem.getChildren().add(jmsQueuesItem);
-                    rootItem.getChildren().add(ejbsItem);
-                    
-                    // Expand root items
-                    jmsQueuesItem.setExpanded(true);
-                    ejbsItem.setExpanded(true);
-                    
-                    updateStatusBar("Resources loaded successfully");
-                });
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    updateStatusBar("Error loading resources: " + e.getMessage());
-                });
+                    resourcesLoading = false;
+                    updateStatusBar(formatLoadTime(System.nanoTime() - start, firstItemNanos) + formatFailures(failures));
+                }
+            });
+            
+            // Keep them to be shown immediately on the next connection
+            try {
+                snapshotStore.save(host, port, loadedServers, loadedEjbs);
+            } catch (IOException e) {
+                uiUpdates.post(() -> updateStatusBar("Failed to save resources snapshot: " + e.getMessage()));
             }
-        }).start();
+        }).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            uiUpdates.post(() -> {
+                if (generation == loadGeneration) {
+                    resourcesLoading = false;
+                    updateStatusBar("Error loading resources: " + cause.getMessage());
+                }
+            });
+            return null;
+        });
     }
     
     /**
-     * Clear resources from the tree view.
+     * Run a load on its own thread. Its reads are background requests, so that the actions of
+     * the user, such as stopping a queue, run before the reads still queued.
      */
-    private void clearResources() {
-        TreeItem<Object> rootItem = resourcesTree.getRoot();
-        rootItem.getChildren().clear();
-        clearDetails();
+    private static <T> CompletableFuture<T> loadInBackground(String name, Callable<T> loader) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        new Thread(() -> {
+            try {
+                result.complete(RequestScheduler.inBackground(loader));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }, name).start();
+        return result;
     }
     
     /**
-     * Display JMS queue details.
+     * Add resources of a load in progress to the tree. Each section keeps the resources shown
+     * before, such as those of a snapshot, until its first batch replaces them: the messaging
+     * servers all at once, the EJBs with their first batch.
+     * 
+     * @param servers The messaging servers read, null if the batch has none
+     * @param ejbs The EJB components of the batch, null if it has none
      */
-    private void displayJMSQueueDetails(JMSQueue queue) {
-        clearDetails();
+    private void appendResources(int generation, long start, List<MessagingServer> servers, List<EJBSnapshot> ejbs) {
+        if (generation != loadGeneration) {
+            return;
+        }
+        if (servers == null) {
+            servers = List.of();
+        }
+        TreeRebuildEvent rebuildEvent = new TreeRebuildEvent();
+        rebuildEvent.begin();
         
-        detailsTitleLabel.setText(queue.getName());
+        String previousTask = stallWatchdog.beginTask("tree rebuild");
+        int nodeCount;
+        try {
+            if (renderedGeneration != generation) {
+                renderedGeneration = generation;
+                messagingReplaced = false;
+                ejbsReplaced = false;
+                if (resourcesRoot.getChildren().isEmpty()) {
+                    beginResourcesTree(false);
+                }
+                liveResourcesLoaded = true;
+            }
+            if (ejbs == null) {
+                ejbs = List.of();
+                replaceMessagingItems();
+            } else if (!ejbsReplaced) {
+                replaceEJBItems();
+            }
+            nodeCount = addServerItems(servers) + addEJBItems(ejbs);
+            indexResources(servers, ejbs);
+        } finally {
+            stallWatchdog.endTask(previousTask);
+        }
+        if (nodeCount > 0 && firstItemNanos < 0) {
+            firstItemNanos = System.nanoTime() - start;
+        }
         
-        // Add details to grid
-        int row = 0;
+        rebuildEvent.end();
+        if (rebuildEvent.shouldCommit()) {
+            rebuildEvent.nodeCount = nodeCount;
+            rebuildEvent.queueCount = servers.stream().mapToInt(server -> server.getQueues().size()).sum();
+            rebuildEvent.topicCount = servers.stream().mapToInt(server -> server.getTopics().size()).sum();
+            rebuildEvent.ejbCount = ejbs.size();
+            rebuildEvent.commit();
+        }
+    }
+    
+    /**
+     * Format the duration of a resources load for the status bar.
+     * 
+     * @param totalNanos The time until all resources were loaded
+     * @param firstItemNanos The time until the first resources were shown, or -1 if there were none
+     * @return The status message
+     */
+    static String formatLoadTime(long totalNanos, long firstItemNanos) {
+        long total = TimeUnit.NANOSECONDS.toMillis(totalNanos);
+        if (firstItemNanos < 0) {
+            return String.format("Resources loaded in %d ms", total);
+        }
+        return String.format("Resources loaded in %d ms (first shown after %d ms)", total,
+            TimeUnit.NANOSECONDS.toMillis(firstItemNanos));
+    }
+    
+    /**
+     * Format the resources a load could not read, to follow its duration in the status bar.
+     * 
+     * @param failures The resources not read, with the reason
+     * @return The message, empty if all resources were read
+     */
+    static String formatFailures(List<String> failures) {
+        if (failures.isEmpty()) {
+            return "";
+        }
+        return String.format(", %d not read (%s%s)", failures.size(), failures.get(0),
+            failures.size() > 1 ? ", ..." : "");
+    }
+    
+    /**
+     * Show the resources saved on the last connection to a server until the live ones are loaded.
+     */
+    private void loadSnapshot(String host, int port) {
+        new Thread(() -> {
+            ResourceSnapshotStore.Snapshot snapshot = snapshotStore.load(host, port);
+            if (snapshot == null) {
+                return;
+            }
+            uiUpdates.post(() -> {
+                // Live resources may already be there, and a failed connection clears the tree
+                if (liveResourcesLoaded || !connecting) {
+                    return;
+                }
+                renderResources(snapshot.getServers(), snapshot.getEjbs(), true);
+                updateStatusBar("Showing cached resources from "
+                    + SNAPSHOT_TIME_FORMAT.format(Instant.ofEpochMilli(snapshot.getSavedAt())) + ", connecting...");
+            });
+        }, "snapshot-loader").start();
+    }
+    
+    /**
+     * Rebuild the resources tree.
+     * 
+     * @param servers The messaging servers with their queues and topics
+     * @param ejbs The EJB components
+     * @param stale true if the resources come from a snapshot and are not live
+     */
+    private void renderResources(List<MessagingServer> servers, List<EJBSnapshot> ejbs, boolean stale) {
+        TreeRebuildEvent rebuildEvent = new TreeRebuildEvent();
+        rebuildEvent.begin();
         
-        detailsGrid.add(new Label("Name:"), 0, row);
-        detailsGrid.add(new Label(queue.getName()), 1, row++);
+        String previousTask = stallWatchdog.beginTask("tree rebuild");
+        try {
+            beginResourcesTree(stale);
+            addServerItems(servers);
+            addEJBItems(ejbs);
+            indexResources(servers, ejbs);
+        } finally {
+            stallWatchdog.endTask(previousTask);
+        }
         
-        detailsGrid.add(new Label("JNDI Name:"), 0, row);
-        detailsGrid.add(new Label(queue.getJndiName()), 1, row++);
+        rebuildEvent.end();
+        if (rebuildEvent.shouldCommit()) {
+            rebuildEvent.nodeCount = countNodes(resourcesRoot) - 1;
+            rebuildEvent.queueCount = loadedQueues.size();
+            rebuildEvent.topicCount = servers.stream().mapToInt(server -> server.getTopics().size()).sum();
+            rebuildEvent.ejbCount = ejbs.size();
+            rebuildEvent.commit();
+        }
+    }
+    
+    /**
+     * Replace the resources tree with empty messaging and EJB items.
+     * 
+     * @param stale true if the resources come from a snapshot and are not live
+     */
+    private void beginResourcesTree(boolean stale) {
+        // No change tells how the live resources differ from those of a snapshot
+        if (stale || resourcesStale) {
+            resetSearchIndex();
+        }
         
-        detailsGrid.add(new Label("Status:"), 0, row);
-        detailsGrid.add(new Label(queue.getStatus()), 1, row++);
+        // Clear existing resources
+        clearResources();
+        resourcesStale = stale;
+        liveResourcesLoaded = !stale;
+        if (stale) {
+            resourcesTree.getStyleClass().add("stale");
+        }
         
-        detailsGrid.add(new Label("Message Count:"), 0, row);
-        detailsGrid.add(new Label(String.valueOf(queue.getMessageCount())), 1, row++);
+        // Create root items
+        TreeItem<Object> rootItem = resourcesRoot;
+        messagingItem = new TreeItem<>("Messaging");
+        ejbsItem = new TreeItem<>("EJBs");
+        deploymentItems.clear();
+        queuesItems.clear();
         
-        detailsGrid.add(new Label("Consumer Count:"), 0, row);
-        detailsGrid.add(new Label(String.valueOf(queue.getConsumerCount())), 1, row++);
+        // Add to root
+        rootItem.getChildren().add(messagingItem);
+        rootItem.getChildren().add(ejbsItem);
         
-        detailsGrid.add(new Label("Durable:"), 0, row);
-        detailsGrid.add(new Label(queue.isDurable() ? "Yes" : "No"), 1, row++);
+        // Expand root items
+        messagingItem.setExpanded(true);
+        ejbsItem.setExpanded(true);
     }
     
     /**
-     * Display EJB details.
+     * Remove the messaging servers shown before those of the load in progress.
      */
-    private void displayEJBDetails(EJBComponent ejb) {
-        clearDetails();
-        
-        detailsTitleLabel.setText(ejb.getName());
-        
-        // Add details to grid
-        int row = 0;
+    private void replaceMessagingItems() {
+        messagingReplaced = true;
+        messagingItem.getChildren().clear();
+        queuesItems.clear();
+        loadedQueues.clear();
+        updateQueueDashboard();
+        boolean selected = selectedResource instanceof JMSQueue || selectedResource instanceof JMSTopic;
+        removeResources(selected, "queue/", "topic/");
+    }
+    
+    /**
+     * Remove the EJBs shown before those of the load in progress.
+     */
+    private void replaceEJBItems() {
+        ejbsReplaced = true;
+        ejbsItem.getChildren().clear();
+        deploymentItems.clear();
+        removeResources(selectedResource instanceof EJBComponent, "ejb/");
+    }
+    
+    /**
+     * Forget the resources of a section of the tree being replaced. Those of a snapshot also
+     * leave the search index, since no change tells how the live resources differ from them;
+     * the tree is no longer stale once both sections are replaced.
+     * 
+     * @param selected true if the selected resource is in the section
+     * @param prefixes The prefixes of the keys of the section
+     */
+    private void removeResources(boolean selected, String... prefixes) {
+        resourcesByKey.keySet().removeIf(key -> startsWithAny(key, prefixes));
+        if (resourcesStale) {
+            searchExecutor.execute(() -> searchIndex.removeIf(key -> startsWithAny(key, prefixes)));
+            if (messagingReplaced && ejbsReplaced) {
+                resourcesStale = false;
+                resourcesTree.getStyleClass().remove("stale");
+            }
+        }
+        if (selected) {
+            selectedResource = null;
+            clearDetails();
+            disableOperationButtons(true);
+        }
+    }
+    
+    /**
+     * Tell whether a key starts with one of the prefixes.
+     */
+    private static boolean startsWithAny(String key, String... prefixes) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Add JMS queues and topics to the tree (grouped by messaging server), shown as read. The
+     * view models are only created for the queue selected, the metrics refreshes keeping the
+     * latest reads of the others.
+     * 
+     * @return The number of items added
+     */
+    private int addServerItems(List<MessagingServer> servers) {
+        int count = 0;
+        for (MessagingServer server : servers) {
+            TreeItem<Object> serverItem = new TreeItem<>(server.getName());
+            TreeItem<Object> queuesItem = new TreeItem<>("JMS Queues");
+            TreeItem<Object> topicsItem = new TreeItem<>("JMS Topics");
+            
+            for (QueueSnapshot snapshot : server.getQueues()) {
+                String key = queueKey(snapshot.serverName(), snapshot.name());
+                queuesItem.getChildren().add(new TreeItem<>(snapshot));
+                loadedQueues.put(key, snapshot);
+                resourcesByKey.put(key, snapshot);
+            }
+            for (TopicSnapshot topic : server.getTopics()) {
+                topicsItem.getChildren().add(new TreeItem<>(topic));
+                resourcesByKey.put(topicKey(topic.serverName(), topic.name()), topic);
+            }
+            queuesItems.put(server.getName(), queuesItem);
+            
+            serverItem.getChildren().add(queuesItem);
+            serverItem.getChildren().add(topicsItem);
+            serverItem.setExpanded(true);
+            queuesItem.setExpanded(true);
+            messagingItem.getChildren().add(serverItem);
+            count += 3 + server.getQueues().size() + server.getTopics().size();
+        }
+        updateQueueDashboard();
+        return count;
+    }
+    
+    /**
+     * Add EJBs to the tree (grouped by deployment), after those of the same deployment
+     * already shown.
+     * 
+     * @return The number of items added
+     */
+    private int addEJBItems(List<EJBSnapshot> ejbs) {
+        Map<String, List<TreeItem<Object>>> byDeployment = new LinkedHashMap<>();
+        for (EJBSnapshot ejb : ejbs) {
+            byDeployment.computeIfAbsent(ejb.deploymentName(), name -> new ArrayList<>()).add(new TreeItem<>(ejb));
+            resourcesByKey.put(ejbKey(ejb.deploymentName(), ejb.name()), ejb);
+        }
         
-        detailsGrid.add(new Label("Name:"), 0, row);
-        detailsGrid.add(new Label(ejb.getName()), 1, row++);
+        int count = ejbs.size();
+        for (Map.Entry<String, List<TreeItem<Object>>> deployment : byDeployment.entrySet()) {
+            TreeItem<Object> deploymentItem = deploymentItems.get(deployment.getKey());
+            if (deploymentItem == null) {
+                deploymentItem = new TreeItem<>(deployment.getKey());
+                deploymentItems.put(deployment.getKey(), deploymentItem);
+                ejbsItem.getChildren().add(deploymentItem);
+                count++;
+            }
+            deploymentItem.getChildren().addAll(deployment.getValue());
+        }
+        return count;
+    }
+    
+    /**
+     * Add the resources of a load not indexed yet to the search index, on the search thread,
+     * and search again if a search is shown. The resources already indexed are left as they
+     * are; those removed since are taken out by {@link #handleResourceChanges}.
+     */
+    private void indexResources(List<MessagingServer> servers, List<EJBSnapshot> ejbs) {
+        searchExecutor.execute(() -> {
+            for (MessagingServer server : servers) {
+                for (QueueSnapshot queue : server.getQueues()) {
+                    indexResource(queueKey(queue.serverName(), queue.name()), queue.name(), queue.jndiName());
+                }
+                for (TopicSnapshot topic : server.getTopics()) {
+                    indexResource(topicKey(topic.serverName(), topic.name()), topic.name(), topic.jndiName());
+                }
+            }
+            for (EJBSnapshot ejb : ejbs) {
+                indexResource(ejbKey(ejb.deploymentName(), ejb.name()), ejb.name(), ejb.jndiName());
+            }
+        });
+        if (!searchField.getText().isEmpty()) {
+            searchResources();
+        }
+    }
+    
+    /**
+     * Add a resource to the search index unless it is there already, on the search thread.
+     */
+    private void indexResource(String key, String... texts) {
+        if (!searchIndex.contains(key)) {
+            searchIndex.add(key, texts);
+        }
+    }
+    
+    /**
+     * Empty the search index, when the resources shown next are not described by changes
+     * from those shown before.
+     */
+    private void resetSearchIndex() {
+        searchExecutor.execute(searchIndex::clear);
+    }
+    
+    /**
+     * Get the key of a queue in the search index, the same from one load to the next.
+     */
+    private static String queueKey(String serverName, String name) {
+        return "queue/" + serverName + "/" + name;
+    }
+    
+    /**
+     * Get the key of a topic in the search index.
+     */
+    private static String topicKey(String serverName, String name) {
+        return "topic/" + serverName + "/" + name;
+    }
+    
+    /**
+     * Get the key of an EJB in the search index.
+     */
+    private static String ejbKey(String deploymentName, String name) {
+        return "ejb/" + deploymentName + "/" + name;
+    }
+    
+    /**
+     * Search the resources matching the search field on the search thread, then show them
+     * instead of the whole tree. An empty search field shows the whole tree again.
+     */
+    private void searchResources() {
+        String query = searchField.getText().trim();
+        if (query.isEmpty()) {
+            resourcesTree.setRoot(resourcesRoot);
+            return;
+        }
+        searchExecutor.execute(() -> {
+            long start = System.nanoTime();
+            List<String> keys = searchIndex.search(query, MAX_SEARCH_RESULTS + 1);
+            long elapsed = System.nanoTime() - start;
+            uiUpdates.post(searchField, () -> {
+                // Superseded by another keystroke
+                if (!query.equals(searchField.getText().trim())) {
+                    return;
+                }
+                List<Object> matches = new ArrayList<>(keys.size());
+                List<String> gone = new ArrayList<>();
+                for (String key : keys) {
+                    Object resource = resourcesByKey.get(key);
+                    if (resource != null) {
+                        matches.add(resource);
+                    } else {
+                        gone.add(key);
+                    }
+                }
+                // Resources no change reports gone, such as topics, leave the index once found
+                if (!gone.isEmpty() && !resourcesLoading) {
+                    searchExecutor.execute(() -> gone.forEach(searchIndex::remove));
+                }
+                boolean truncated = matches.size() > MAX_SEARCH_RESULTS;
+                List<Object> shown = truncated ? matches.subList(0, MAX_SEARCH_RESULTS) : matches;
+                String previousTask = stallWatchdog.beginTask("search results");
+                try {
+                    resourcesTree.setRoot(searchResultsTree(shown));
+                } finally {
+                    stallWatchdog.endTask(previousTask);
+                }
+                updateStatusBar(String.format("%s%d resources matching \"%s\" found in %.1f ms",
+                    truncated ? "First " : "", shown.size(), query, elapsed / 1_000_000.0));
+            });
+        });
+    }
+    
+    /**
+     * Create a tree of the resources found by a search, grouped like the whole tree.
+     */
+    private static TreeItem<Object> searchResultsTree(List<Object> matches) {
+        Map<String, TreeItem<Object>> queuesItems = new LinkedHashMap<>();
+        Map<String, TreeItem<Object>> topicsItems = new LinkedHashMap<>();
+        Map<String, TreeItem<Object>> deploymentItems = new LinkedHashMap<>();
+        for (Object match : matches) {
+            if (match instanceof QueueSnapshot) {
+                groupItem(queuesItems, ((QueueSnapshot) match).serverName(), "JMS Queues").getChildren().add(new TreeItem<>(match));
+            } else if (match instanceof TopicSnapshot) {
+                groupItem(topicsItems, ((TopicSnapshot) match).serverName(), "JMS Topics").getChildren().add(new TreeItem<>(match));
+            } else if (match instanceof EJBSnapshot) {
+                String deploymentName = ((EJBSnapshot) match).deploymentName();
+                groupItem(deploymentItems, deploymentName, deploymentName).getChildren().add(new TreeItem<>(match));
+            }
+        }
         
-        detailsGrid.add(new Label("Type:"), 0, row);
-        detailsGrid.add(new Label(ejb.getType()), 1, row++);
+        TreeItem<Object> rootItem = new TreeItem<>("Search Results");
+        rootItem.setExpanded(true);
+        if (!queuesItems.isEmpty() || !topicsItems.isEmpty()) {
+            TreeItem<Object> messaging = new TreeItem<>("Messaging");
+            Map<String, TreeItem<Object>> serverItems = new LinkedHashMap<>();
+            for (Map.Entry<String, TreeItem<Object>> queues : queuesItems.entrySet()) {
+                groupItem(serverItems, queues.getKey(), queues.getKey()).getChildren().add(queues.getValue());
+            }
+            for (Map.Entry<String, TreeItem<Object>> topics : topicsItems.entrySet()) {
+                groupItem(serverItems, topics.getKey(), topics.getKey()).getChildren().add(topics.getValue());
+            }
+            messaging.getChildren().addAll(serverItems.values());
+            messaging.setExpanded(true);
+            rootItem.getChildren().add(messaging);
+        }
+        if (!deploymentItems.isEmpty()) {
+            TreeItem<Object> ejbs = new TreeItem<>("EJBs");
+            ejbs.getChildren().addAll(deploymentItems.values());
+            ejbs.setExpanded(true);
+            rootItem.getChildren().add(ejbs);
+        }
+        return rootItem;
+    }
+    
+    /**
+     * Get the expanded item of a group of search results, created on first use.
+     */
+    private static TreeItem<Object> groupItem(Map<String, TreeItem<Object>> items, String key, String label) {
+        return items.computeIfAbsent(key, name -> {
+            TreeItem<Object> item = new TreeItem<>(label);
+            item.setExpanded(true);
+            return item;
+        });
+    }
+    
+    /**
+     * Count the items of a subtree, including its root.
+     */
+    private static int countNodes(TreeItem<Object> item) {
+        int count = 1;
+        for (TreeItem<Object> child : item.getChildren()) {
+            count += countNodes(child);
+        }
+        return count;
+    }
+    
+    /**
+     * Start refreshing the queue metrics in the background.
+     */
+    private void startMetricsPolling() {
+        metricsPoller.start(MetricsPoller.DEFAULT_INTERVAL_SECONDS,
+            servers -> {
+                // Alerts and rates from the samples taken at the polling interval only, not from
+                // the other reads such as tree loads, on the polling thread
+                alertEngine.evaluate(servers);
+                Map<String, Double> rates = queueRates.update(servers, System.nanoTime());
+                uiUpdates.post(metricsPoller, () -> applyMetrics(servers, rates));
+            },
+            e -> uiUpdates.post(statusBarLabel, () -> updateStatusBar("Error refreshing metrics: " + e.getMessage())));
+    }
+    
+    /**
+     * Keep the refreshed metrics and the message rates computed from the polls for the queues
+     * shown in the tree, and copy them to the queue selected and the dashboard.
+     */
+    private void applyMetrics(List<MessagingServer> servers, Map<String, Double> rates) {
+        String previousTask = stallWatchdog.beginTask("metrics update");
+        try {
+            queueRatesByKey = rates;
+            for (MessagingServer server : servers) {
+                for (QueueSnapshot refreshed : server.getQueues()) {
+                    loadedQueues.replace(queueKey(refreshed.serverName(), refreshed.name()), refreshed);
+                }
+            }
+            if (selectedResource instanceof JMSQueue) {
+                JMSQueue queue = (JMSQueue) selectedResource;
+                QueueSnapshot latest = loadedQueues.get(queueKey(queue.getServerName(), queue.getName()));
+                if (latest != null) {
+                    queue.update(latest);
+                }
+                Double rate = rates.get(QueueRateTracker.key(queue.getServerName(), queue.getName()));
+                if (rate != null) {
+                    queue.setMessageRate(rate);
+                }
+            }
+            updateQueueDashboard();
+        } finally {
+            stallWatchdog.endTask(previousTask);
+        }
+    }
+    
+    /**
+     * Highlight the queue an alert belongs to and show the alert in the status bar.
+     */
+    private void handleAlert(QueueAlert alert) {
+        JMSQueue selected = selectedQueue(alert.getServerName(), alert.getQueueName());
+        if (selected != null) {
+            selected.setAlerting(alertEngine.isFiring(alert.getServerName(), alert.getQueueName()));
+        }
+        if (loadedQueues.containsKey(queueKey(alert.getServerName(), alert.getQueueName()))) {
+            // The cells ask the alert engine whether their queue is alerting
+            resourcesTree.refresh();
+        }
+        if (alert.getState() == QueueAlert.State.FIRING) {
+            updateStatusBar("Alert: " + alert.getServerName() + "/" + alert.getQueueName() + " - " + alert.getMessage());
+        }
+    }
+    
+    /**
+     * Apply the changes found by a read of the resources to the tree and the search index, and
+     * show the queues that were paused or lost their consumers. Queues created or removed
+     * between two metrics refreshes are added to or removed from the tree in place; the other
+     * changes are found by a load of the resources, which shows them already.
+     * 
+     * @param changes The changes, in the order found
+     * @param servers The messaging servers of the read, empty for a read of the EJBs
+     */
+    private void handleResourceChanges(List<ResourceChange> changes, List<MessagingServer> servers) {
+        Map<String, QueueSnapshot> readQueues = new HashMap<>();
+        List<String> removedKeys = new ArrayList<>();
+        List<String> removedDeployments = new ArrayList<>();
+        boolean treeChanged = false;
+        for (ResourceChange change : changes) {
+            switch (change.getType()) {
+                case QUEUE_ADDED:
+                    if (readQueues.isEmpty()) {
+                        for (MessagingServer server : servers) {
+                            for (QueueSnapshot queue : server.getQueues()) {
+                                readQueues.put(queueKey(queue.serverName(), queue.name()), queue);
+                            }
+                        }
+                    }
+                    treeChanged |= addQueue(readQueues.get(queueKey(change.getParentName(), change.getName())));
+                    break;
+                case QUEUE_REMOVED:
+                    treeChanged |= removeQueue(change.getParentName(), change.getName());
+                    removedKeys.add(queueKey(change.getParentName(), change.getName()));
+                    break;
+                case BEAN_REMOVED:
+                    removedKeys.add(ejbKey(change.getParentName(), change.getName()));
+                    break;
+                case DEPLOYMENT_REMOVED:
+                    removedDeployments.add(ejbKey(change.getParentName(), ""));
+                    break;
+                case QUEUE_PAUSED:
+                    updateStatusBar("Queue paused: " + change.getParentName() + "/" + change.getName());
+                    break;
+                case QUEUE_CONSUMERS_LOST:
+                    updateStatusBar("Queue lost its consumers: " + change.getParentName() + "/" + change.getName());
+                    break;
+                default:
+                    break;
+            }
+        }
         
-        detailsGrid.add(new Label("Deployment:"), 0, row);
-        detailsGrid.add(new Label(ejb.getDeploymentName()), 1, row++);
+        if (!removedKeys.isEmpty() || !removedDeployments.isEmpty()) {
+            searchExecutor.execute(() -> {
+                removedKeys.forEach(searchIndex::remove);
+                for (String prefix : removedDeployments) {
+                    searchIndex.removeIf(key -> key.startsWith(prefix));
+                }
+            });
+        }
+        if (treeChanged && !searchField.getText().isEmpty()) {
+            searchResources();
+        }
+    }
+    
+    /**
+     * Show a queue created on the server, unless it is shown already.
+     * 
+     * @param snapshot The queue as read, null if not found in the read
+     * @return true if the tree was changed
+     */
+    private boolean addQueue(QueueSnapshot snapshot) {
+        if (snapshot == null) {
+            return false;
+        }
+        String key = queueKey(snapshot.serverName(), snapshot.name());
+        if (resourcesByKey.containsKey(key)) {
+            return false;
+        }
+        TreeItem<Object> queuesItem = queuesItems.get(snapshot.serverName());
+        if (queuesItem == null) {
+            // A new messaging server, unless a load is already showing it
+            if (!resourcesLoading && !reloadScheduled) {
+                // Several queues changing in one refresh reload the tree once
+                reloadScheduled = true;
+                uiUpdates.post(() -> {
+                    reloadScheduled = false;
+                    loadResources();
+                });
+            }
+            return false;
+        }
         
+        queuesItem.getChildren().add(new TreeItem<>(snapshot));
+        loadedQueues.put(key, snapshot);
+        resourcesByKey.put(key, snapshot);
+        updateQueueDashboard();
+        searchExecutor.execute(() -> indexResource(key, snapshot.name(), snapshot.jndiName()));
+        return true;
+    }
+    
+    /**
+     * Stop showing a queue removed from the server.
+     * 
+     * @return true if the tree was changed
+     */
+    private boolean removeQueue(String serverName, String name) {
+        String key = queueKey(serverName, name);
+        Object removed = resourcesByKey.get(key);
+        if (!(removed instanceof QueueSnapshot)) {
+            return false;
+        }
+        resourcesByKey.remove(key);
+        TreeItem<Object> queuesItem = queuesItems.get(serverName);
+        if (queuesItem != null) {
+            queuesItem.getChildren().removeIf(item -> item.getValue() == removed);
+        }
+        loadedQueues.remove(key);
+        updateQueueDashboard();
+        if (selectedQueue(serverName, name) != null) {
+            selectedResource = null;
+            clearDetails();
+            disableOperationButtons(true);
+        }
+        return true;
+    }
+    
+    /**
+     * Clear resources from the tree view.
+     */
+    private void clearResources() {
+        resourcesRoot.getChildren().clear();
+        resourcesByKey.clear();
+        if (!searchField.getText().isEmpty()) {
+            resourcesTree.setRoot(resourcesRoot);
+        }
+        loadedQueues.clear();
+        updateQueueDashboard();
+        resourcesStale = false;
+        resourcesTree.getStyleClass().remove("stale");
+        clearDetails();
+    }
+    
+    /**
+     * Display JMS queue details.
+     */
+    private void displayJMSQueueDetails(JMSQueue queue) {
+        if (detailsPanel.isShowing(queue)) {
+            return;
+        }
+        detailsPanel.begin(queue, queue.nameProperty());
+        detailsPanel.row("Name:", queue.nameProperty());
+        detailsPanel.row("Server:", queue.serverNameProperty());
+        detailsPanel.row("JNDI Name:", queue.jndiNameProperty());
+        detailsPanel.row("Status:", queue.statusProperty());
+        detailsPanel.row("Message Count:", queue.messageCountProperty());
+        detailsPanel.row("Consumer Count:", queue.consumerCountProperty());
+        detailsPanel.row("Durable:", queue.durableProperty());
+        detailsPanel.end();
+    }
+    
+    /**
+     * Display JMS topic details.
+     */
+    private void displayJMSTopicDetails(JMSTopic topic) {
+        if (detailsPanel.isShowing(topic)) {
+            return;
+        }
+        detailsPanel.begin(topic, topic.nameProperty());
+        detailsPanel.row("Name:", topic.nameProperty());
+        detailsPanel.row("Server:", topic.serverNameProperty());
+        detailsPanel.row("JNDI Name:", topic.jndiNameProperty());
+        detailsPanel.row("Subscriptions:", topic.subscriptionCountProperty());
+        detailsPanel.row("Durable Subscriptions:", topic.durableSubscriptionCountProperty());
+        detailsPanel.row("Message Count:", topic.messageCountProperty());
+        detailsPanel.row("Durable Backlog:", topic.durableMessageCountProperty());
+        detailsPanel.end();
+    }
+    
+    /**
+     * Display EJB details.
+     */
+    private void displayEJBDetails(EJBComponent ejb) {
+        if (detailsPanel.isShowing(ejb)) {
+            return;
+        }
+        detailsPanel.begin(ejb, ejb.nameProperty());
+        detailsPanel.row("Name:", ejb.nameProperty());
+        detailsPanel.row("Type:", ejb.typeProperty());
+        detailsPanel.row("Deployment:", ejb.deploymentNameProperty());
         if (ejb.getJndiName() != null && !ejb.getJndiName().isEmpty()) {
-            detailsGrid.add(new Label("JNDI Name:"), 0, row);
-            detailsGrid.add(new Label(ejb.getJndiName()), 1, row++);
+            detailsPanel.row("JNDI Name:", ejb.jndiNameProperty());
         }
-        
-        detailsGrid.add(new Label("Status:"), 0, row);
-        detailsGrid.add(new Label(ejb.getStatus()), 1, row++);
-        
-        detailsGrid.add(new Label("Stateful:"), 0, row);
-        detailsGrid.add(new Label(ejb.isStateful() ? "Yes" : "No"), 1, row++);
+        detailsPanel.row("Status:", ejb.statusProperty());
+        detailsPanel.row("Stateful:", ejb.statefulProperty());
+        detailsPanel.end();
     }
     
     /**
      * Clear details panel.
      */
     private void clearDetails() {
-        detailsTitleLabel.setText("Details");
-        detailsGrid.getChildren().clear();
+        detailsPanel.clear();
     }
     
     /**
@@ -499,6 +1953,10 @@ public class MainController {
         startButton.setDisable(!enable);
         stopButton.setDisable(!enable);
         restartButton.setDisable(!enable);
+        exportButton.setDisable(!enable && exportCancelled == null);
+        removeMessagesButton.setDisable(!enable);
+        moveMessagesButton.setDisable(!enable);
+        expireMessagesButton.setDisable(!enable);
         deployButton.setDisable(true);
         undeployButton.setDisable(true);
     }
@@ -510,6 +1968,10 @@ public class MainController {
         startButton.setDisable(true);
         stopButton.setDisable(true);
         restartButton.setDisable(true);
+        exportButton.setDisable(exportCancelled == null);
+        removeMessagesButton.setDisable(true);
+        moveMessagesButton.setDisable(true);
+        expireMessagesButton.setDisable(true);
         deployButton.setDisable(!enable);
         undeployButton.setDisable(!enable);
     }
@@ -521,6 +1983,10 @@ public class MainController {
         startButton.setDisable(disable);
         stopButton.setDisable(disable);
         restartButton.setDisable(disable);
+        exportButton.setDisable(disable && exportCancelled == null);
+        removeMessagesButton.setDisable(disable);
+        moveMessagesButton.setDisable(disable);
+        expireMessagesButton.setDisable(disable);
         deployButton.setDisable(disable);
         undeployButton.setDisable(disable);
     }
@@ -529,6 +1995,7 @@ public class MainController {
      * Update connection status in the UI.
      */
     private void updateConnectionStatus(boolean connected) {
+        statusLabel.getStyleClass().remove("status-reconnecting");
         if (connected) {
             statusLabel.setText("Connected");
             statusLabel.getStyleClass().remove("status-disconnected");
@@ -540,6 +2007,26 @@ public class MainController {
         }
     }
     
+    /**
+     * Format a heartbeat round-trip time for the status line.
+     */
+    private static String formatRoundTrip(long roundTripNanos) {
+        return String.format("RTT %.1f ms", roundTripNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    
+    /**
+     * Show the longest time the JavaFX thread took to respond in the last second in the
+     * status bar, highlighted when it makes the window feel sluggish.
+     */
+    private void showFrameTime(long delayNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(delayNanos);
+        frameTimeLabel.setText("UI delay " + millis + " ms");
+        frameTimeLabel.getStyleClass().remove("frame-slow");
+        if (millis > 100) {
+            frameTimeLabel.getStyleClass().add("frame-slow");
+        }
+    }
+    
     /**
      * Update status bar message.
      */
@@ -550,18 +2037,26 @@ public class MainController {
     /**
      * Refresh a JMS queue's status.
      */
-    private void refreshJMSQueue(JMSQueue queue) {
+    private void refreshJMSQueue(String serverName, String queueName) {
+        String key = queueKey(serverName, queueName);
         new Thread(() -> {
             try {
-                jmsService.updateQueueStatus(queue);
-                
-                Platform.runLater(() -> {
-                    if (selectedResource == queue) {
-                        displayJMSQueueDetails(queue);
+                // The queue may be shown and is only changed on the JavaFX thread, the last read winning
+                QueueSnapshot refreshed = jmsService.readQueue(serverName, queueName);
+                uiUpdates.post(key, () -> {
+                    loadedQueues.replace(key, refreshed);
+                    JMSQueue queue = selectedQueue(serverName, queueName);
+                    if (queue != null) {
+                        queue.update(refreshed);
                     }
+                    updateQueueDashboard();
                 });
             } catch (Exception e) {
-                Platform.runLater(() -> {
+                uiUpdates.post(key, () -> {
+                    JMSQueue queue = selectedQueue(serverName, queueName);
+                    if (queue != null) {
+                        queue.setStatus("Error");
+                    }
                     updateStatusBar("Error refreshing queue: " + e.getMessage());
                 });
             }
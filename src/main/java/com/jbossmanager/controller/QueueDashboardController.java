@@ -0,0 +1,150 @@
+package com.jbossmanager.controller;
+
+import com.jbossmanager.model.JMSQueue;
+import com.jbossmanager.model.QueueSnapshot;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.fxml.FXML;
+import javafx.scene.control.*;
+import javafx.stage.Stage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller class for the dashboard window showing the live metrics of all JMS queues.
+ * <p>
+ * The rows are created when the window is opened, from the queues shown in the resources
+ * tree, and updated in place by the metrics refreshes; only the visible rows have cells.
+ * The table is sorted again once per refresh, and only when a refreshed value broke the
+ * order, which is nearly sorted then.
+ */
+public class QueueDashboardController {
+    
+    // FXML injected fields
+    @FXML private TableView<JMSQueue> queuesTable;
+    @FXML private TableColumn<JMSQueue, String> serverColumn;
+    @FXML private TableColumn<JMSQueue, String> nameColumn;
+    @FXML private TableColumn<JMSQueue, Number> depthColumn;
+    @FXML private TableColumn<JMSQueue, Number> consumersColumn;
+    @FXML private TableColumn<JMSQueue, Number> rateColumn;
+    @FXML private TableColumn<JMSQueue, Number> addedColumn;
+    @FXML private TableColumn<JMSQueue, String> statusColumn;
+    @FXML private Label summaryLabel;
+    
+    private final ObservableList<JMSQueue> rows = FXCollections.observableArrayList();
+    private Map<String, JMSQueue> rowsByKey = new HashMap<>();
+    
+    /**
+     * Initialize the controller.
+     */
+    @FXML
+    public void initialize() {
+        serverColumn.setCellValueFactory(cell -> cell.getValue().serverNameProperty());
+        nameColumn.setCellValueFactory(cell -> cell.getValue().nameProperty());
+        depthColumn.setCellValueFactory(cell -> cell.getValue().messageCountProperty());
+        consumersColumn.setCellValueFactory(cell -> cell.getValue().consumerCountProperty());
+        rateColumn.setCellValueFactory(cell -> cell.getValue().messageRateProperty());
+        addedColumn.setCellValueFactory(cell -> cell.getValue().messagesAddedProperty());
+        statusColumn.setCellValueFactory(cell -> cell.getValue().statusProperty());
+        rateColumn.setCellFactory(col -> new TableCell<JMSQueue, Number>() {
+            @Override
+            protected void updateItem(Number item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : String.format("%.1f", item.doubleValue()));
+            }
+        });
+        
+        // Largest backlog first
+        depthColumn.setSortType(TableColumn.SortType.DESCENDING);
+        queuesTable.getSortOrder().add(depthColumn);
+        queuesTable.setItems(rows);
+    }
+    
+    /**
+     * Show the queues of the resources tree until the window is closed.
+     * 
+     * @param queues The queues shown in the resources tree
+     * @param rates The messages added per second by "server/queue" key
+     * @param stage The dashboard window
+     * @param onClosed Called when the window is closed
+     */
+    public void setQueues(Collection<QueueSnapshot> queues, Map<String, Double> rates, Stage stage,
+            Runnable onClosed) {
+        update(queues, rates);
+        stage.setOnHidden(event -> onClosed.run());
+    }
+    
+    /**
+     * Update the rows after a metrics refresh or a change of the queues of the resources tree,
+     * sort them again and update the summary.
+     * 
+     * @param queues The queues shown in the resources tree
+     * @param rates The messages added per second by "server/queue" key
+     */
+    public void update(Collection<QueueSnapshot> queues, Map<String, Double> rates) {
+        Map<String, JMSQueue> previous = rowsByKey;
+        rowsByKey = new HashMap<>(queues.size() * 2);
+        List<JMSQueue> added = new ArrayList<>();
+        for (QueueSnapshot snapshot : queues) {
+            String key = QueueRateTracker.key(snapshot.serverName(), snapshot.name());
+            JMSQueue row = previous.remove(key);
+            if (row == null) {
+                row = new JMSQueue(snapshot);
+                added.add(row);
+            } else {
+                row.update(snapshot);
+            }
+            Double rate = rates.get(key);
+            if (rate != null) {
+                row.setMessageRate(rate);
+            }
+            rowsByKey.put(key, row);
+        }
+        if (!previous.isEmpty()) {
+            rows.removeAll(new HashSet<>(previous.values()));
+        }
+        rows.addAll(added);
+        sortIfNeeded();
+        
+        long depth = 0;
+        int withoutConsumers = 0;
+        int paused = 0;
+        for (JMSQueue queue : rows) {
+            depth += queue.getMessageCount();
+            if (queue.getConsumerCount() == 0) {
+                withoutConsumers++;
+            }
+            if ("Paused".equals(queue.getStatus())) {
+                paused++;
+            }
+        }
+        summaryLabel.setText(String.format("%d queues, %d messages, %d without consumers, %d paused",
+            rows.size(), depth, withoutConsumers, paused));
+    }
+    
+    private void sortIfNeeded() {
+        Comparator<JMSQueue> comparator = queuesTable.getComparator();
+        if (comparator != null && !isSorted(rows, comparator)) {
+            queuesTable.sort();
+        }
+    }
+    
+    /**
+     * Check if a list is sorted, so that a refresh leaving the order unchanged does not move rows.
+     */
+    static <T> boolean isSorted(List<T> list, Comparator<? super T> comparator) {
+        for (int i = 1; i < list.size(); i++) {
+            if (comparator.compare(list.get(i - 1), list.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
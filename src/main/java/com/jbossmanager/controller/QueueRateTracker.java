@@ -0,0 +1,82 @@
+package com.jbossmanager.controller;
+
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueSnapshot;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracker computing the rate of messages added to each queue from two successive polls.
+ * <p>
+ * The rate only depends on the counters polled and the times of the polls, taken on the
+ * polling thread: neither the queues refreshed by user operations in between nor the delay
+ * before the JavaFX thread shows the metrics change it.
+ */
+final class QueueRateTracker {
+    
+    /**
+     * Messages added to a queue as of a poll.
+     */
+    private static final class PolledCount {
+        private final long messagesAdded;
+        private final long polledNanos;
+        
+        PolledCount(long messagesAdded, long polledNanos) {
+            this.messagesAdded = messagesAdded;
+            this.polledNanos = polledNanos;
+        }
+    }
+    
+    // Guarded by this
+    private Map<String, PolledCount> previous = new HashMap<>();
+    
+    /**
+     * Record a poll and get the rates since the previous one.
+     * 
+     * @param servers The messaging servers polled
+     * @param polledNanos The time of the poll
+     * @return The messages added per second by "server/queue" key, for the queues polled
+     *         before and whose counter did not start again from 0 since
+     */
+    synchronized Map<String, Double> update(List<MessagingServer> servers, long polledNanos) {
+        Map<String, PolledCount> current = new HashMap<>();
+        Map<String, Double> rates = new HashMap<>();
+        for (MessagingServer server : servers) {
+            for (QueueSnapshot queue : server.getQueues()) {
+                String key = key(queue.serverName(), queue.name());
+                current.put(key, new PolledCount(queue.messagesAdded(), polledNanos));
+                PolledCount last = previous.get(key);
+                if (last == null || polledNanos <= last.polledNanos) {
+                    continue;
+                }
+                long added = queue.messagesAdded() - last.messagesAdded;
+                // The counter starts again from 0 when the server restarts
+                if (added >= 0) {
+                    rates.put(key, added / ((polledNanos - last.polledNanos) / 1e9));
+                }
+            }
+        }
+        previous = current;
+        return rates;
+    }
+    
+    /**
+     * Forget the polls, e.g. when disconnected.
+     */
+    synchronized void reset() {
+        previous = new HashMap<>();
+    }
+    
+    /**
+     * Get the key of the rate of a queue.
+     * 
+     * @param serverName The messaging server of the queue
+     * @param name The queue name
+     * @return The key
+     */
+    static String key(String serverName, String name) {
+        return serverName + "/" + name;
+    }
+}
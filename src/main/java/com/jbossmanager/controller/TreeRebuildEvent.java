@@ -0,0 +1,30 @@
+package com.jbossmanager.controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event emitted when the resources tree is rebuilt.
+ */
+@Name("com.jbossmanager.TreeRebuild")
+@Label("Resources Tree Rebuild")
+@Category({"JBoss Manager", "User Interface"})
+@Description("Rebuild of the resources tree on the JavaFX application thread")
+@StackTrace(false)
+class TreeRebuildEvent extends jdk.jfr.Event {
+    
+    @Label("Node Count")
+    int nodeCount;
+    
+    @Label("Queue Count")
+    int queueCount;
+    
+    @Label("Topic Count")
+    int topicCount;
+    
+    @Label("EJB Count")
+    int ejbCount;
+}
@@ -0,0 +1,25 @@
+package com.jbossmanager.controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event emitted when a batch of UI updates is applied.
+ */
+@Name("com.jbossmanager.UiUpdateBatch")
+@Label("UI Update Batch")
+@Category({"JBoss Manager", "User Interface"})
+@Description("Batch of UI updates applied on an animation pulse of the JavaFX application thread")
+@StackTrace(false)
+class UiUpdateBatchEvent extends jdk.jfr.Event {
+    
+    @Label("Update Count")
+    int updateCount;
+    
+    @Label("Coalesced Count")
+    @Description("Updates replaced by a later update of the same key before the batch")
+    int coalescedCount;
+}
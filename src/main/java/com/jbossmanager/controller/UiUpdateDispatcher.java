@@ -0,0 +1,179 @@
+package com.jbossmanager.controller;
+
+import com.jbossmanager.service.LatencyHistogram;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Dispatcher applying the UI updates posted by background threads in one batch per animation
+ * pulse, instead of one {@link Platform#runLater} each.
+ * <p>
+ * An update posted with a key replaces the pending update of the same key, so that a fast
+ * poller only gets its latest value shown. Updates are applied in the order they were last
+ * posted. The number of pending updates and the time taken by each batch are recorded, and
+ * each batch emits a {@link UiUpdateBatchEvent}.
+ */
+final class UiUpdateDispatcher {
+    
+    private final Consumer<Runnable> batchScheduler;
+    private final LatencyHistogram batchTimes = new LatencyHistogram();
+    
+    // Guarded by this
+    private Map<Object, Runnable> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+    private int coalescedInBatch;
+    private int maxPendingCount;
+    private long updateCount;
+    private long coalescedCount;
+    
+    /**
+     * Create a dispatcher applying the updates on the next animation pulse.
+     */
+    UiUpdateDispatcher() {
+        this(UiUpdateDispatcher::runOnNextPulse);
+    }
+    
+    /**
+     * Create a dispatcher applying the updates when the scheduler runs a batch.
+     * 
+     * @param batchScheduler Called with the batch to run once a first update is pending
+     */
+    UiUpdateDispatcher(Consumer<Runnable> batchScheduler) {
+        this.batchScheduler = batchScheduler;
+    }
+    
+    /**
+     * Post an update replacing the pending update of the same key.
+     * 
+     * @param key The key of the updated value, such as the label it is shown in
+     * @param update The update, run on the JavaFX thread
+     */
+    void post(Object key, Runnable update) {
+        boolean schedule;
+        synchronized (this) {
+            // Removed first, so that the update moves to the end of the batch
+            if (pending.remove(key) != null) {
+                coalescedInBatch++;
+                coalescedCount++;
+            }
+            pending.put(key, update);
+            maxPendingCount = Math.max(maxPendingCount, pending.size());
+            schedule = !scheduled;
+            scheduled = true;
+        }
+        if (schedule) {
+            batchScheduler.accept(this::applyPending);
+        }
+    }
+    
+    /**
+     * Post an update never replaced by another one.
+     * 
+     * @param update The update, run on the JavaFX thread
+     */
+    void post(Runnable update) {
+        post(new Object(), update);
+    }
+    
+    /**
+     * Apply the pending updates. An update failing does not prevent the others from being
+     * applied, its exception goes to the uncaught exception handler of the thread.
+     */
+    void applyPending() {
+        Map<Object, Runnable> batch;
+        int coalesced;
+        synchronized (this) {
+            batch = pending;
+            coalesced = coalescedInBatch;
+            pending = new LinkedHashMap<>();
+            coalescedInBatch = 0;
+            scheduled = false;
+        }
+        
+        UiUpdateBatchEvent event = new UiUpdateBatchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        for (Runnable update : batch.values()) {
+            try {
+                update.run();
+            } catch (RuntimeException e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+        batchTimes.record((System.nanoTime() - start) / 1000);
+        synchronized (this) {
+            updateCount += batch.size();
+        }
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.updateCount = batch.size();
+            event.coalescedCount = coalesced;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Get the number of updates waiting for the next batch.
+     * 
+     * @return The number of pending updates
+     */
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+    
+    /**
+     * Get the largest number of updates that were waiting for a batch.
+     * 
+     * @return The maximum number of pending updates
+     */
+    synchronized int getMaxPendingCount() {
+        return maxPendingCount;
+    }
+    
+    /**
+     * Get the number of updates applied.
+     * 
+     * @return The number of updates
+     */
+    synchronized long getUpdateCount() {
+        return updateCount;
+    }
+    
+    /**
+     * Get the number of updates replaced by a later update of the same key.
+     * 
+     * @return The number of coalesced updates
+     */
+    synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+    
+    /**
+     * Get the time taken by each batch, in microseconds.
+     * 
+     * @return The histogram of the batch times
+     */
+    LatencyHistogram getBatchTimes() {
+        return batchTimes;
+    }
+    
+    /**
+     * Run a batch on the next animation pulse, with an animation timer started on the
+     * JavaFX thread and stopped by its first frame.
+     */
+    private static void runOnNextPulse(Runnable batch) {
+        Platform.runLater(() -> new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                batch.run();
+            }
+        }.start());
+    }
+}
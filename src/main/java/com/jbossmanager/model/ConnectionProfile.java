@@ -0,0 +1,88 @@
+package com.jbossmanager.model;
+
+/**
+ * Model class representing saved connection details of a JBoss/WildFly server.
+ */
+public class ConnectionProfile {
+    
+    private final String name;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final boolean passwordSaved;
+    private final boolean connectOnStartup;
+    
+    /**
+     * Create a profile.
+     * 
+     * @param name The profile name
+     * @param host The server host
+     * @param port The management port
+     * @param username The management user
+     * @param password The management password, empty if not saved
+     * @param passwordSaved true if the user chose to save the password with the profile
+     * @param connectOnStartup true to connect the profile in the background at startup
+     */
+    public ConnectionProfile(String name, String host, int port, String username, String password,
+                             boolean passwordSaved, boolean connectOnStartup) {
+        this.name = name;
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.passwordSaved = passwordSaved;
+        this.connectOnStartup = connectOnStartup;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getHost() {
+        return host;
+    }
+    
+    public int getPort() {
+        return port;
+    }
+    
+    public String getUsername() {
+        return username;
+    }
+    
+    public String getPassword() {
+        return password;
+    }
+    
+    /**
+     * Check if the password is saved with the profile. Otherwise it is only kept while the
+     * application runs, and the profile is not saved with it.
+     * 
+     * @return true if the user chose to save the password
+     */
+    public boolean isPasswordSaved() {
+        return passwordSaved;
+    }
+    
+    public boolean isConnectOnStartup() {
+        return connectOnStartup;
+    }
+    
+    /**
+     * Check if the profile connects to the given server with the given user.
+     * 
+     * @param host The server host
+     * @param port The management port
+     * @param username The management user
+     * @return true if the connection details match
+     */
+    public boolean matches(String host, int port, String username) {
+        return this.host.equals(host) && this.port == port && this.username.equals(username);
+    }
+    
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,39 @@
+package com.jbossmanager.model;
+
+/**
+ * Immutable state of the connection to a server, published by the connection service from
+ * the thread that connects or loses the connection. The {@link ServerConnection} shown to the
+ * user is updated from it on the JavaFX thread.
+ * <p>
+ * The password is not part of it; only the connection service keeps it.
+ * 
+ * @param host The server hostname or IP address
+ * @param port The management port
+ * @param username The management user
+ * @param serverVersion The product version of the server, "Unknown" until connected
+ * @param connected true if the connection is established
+ * @param connectionStatus The status shown to the user, such as "Connected" or the reason of a failure
+ */
+public record ConnectionSnapshot(String host, int port, String username, String serverVersion,
+                                 boolean connected, String connectionStatus) {
+    
+    /** State of a connection service that never connected. */
+    public static final ConnectionSnapshot DISCONNECTED =
+        new ConnectionSnapshot("localhost", 9990, "", "Unknown", false, "Disconnected");
+    
+    /**
+     * Get the same connection with another state.
+     * 
+     * @param connected true if the connection is established
+     * @param connectionStatus The status shown to the user
+     * @return The new state
+     */
+    public ConnectionSnapshot withStatus(boolean connected, String connectionStatus) {
+        return new ConnectionSnapshot(host, port, username, serverVersion, connected, connectionStatus);
+    }
+    
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,66 @@
+package com.jbossmanager.model;
+
+import java.util.Objects;
+
+/**
+ * Immutable state of a deployment as read from a server, with the hash identifying its content.
+ */
+public final class DeploymentInfo {
+    
+    private final String name;
+    private final String contentHash;
+    private final boolean enabled;
+    
+    /**
+     * Create a deployment.
+     * 
+     * @param name The deployment name
+     * @param contentHash The hexadecimal SHA-1 hash of the managed content, or null for unmanaged content
+     * @param enabled true if the deployment is enabled
+     */
+    public DeploymentInfo(String name, String contentHash, boolean enabled) {
+        this.name = Objects.requireNonNull(name);
+        this.contentHash = contentHash;
+        this.enabled = enabled;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Get the hash of the deployment content, the same on every server the same archive was
+     * deployed to.
+     * 
+     * @return The hexadecimal hash, or null if the content is not managed by the server
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DeploymentInfo)) {
+            return false;
+        }
+        DeploymentInfo other = (DeploymentInfo) o;
+        return enabled == other.enabled && name.equals(other.name) && Objects.equals(contentHash, other.contentHash);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, contentHash, enabled);
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
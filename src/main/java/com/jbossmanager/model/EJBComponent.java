@@ -4,9 +4,12 @@ import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.SimpleLongProperty;
 
 /**
- * Model class representing an EJB component on the JBoss/WildFly server.
+ * Model class representing an EJB component on the JBoss/WildFly server, bound to the
+ * views. The services return {@link EJBSnapshot} instances instead.
  */
 public class EJBComponent {
     
@@ -16,6 +19,9 @@ public class EJBComponent {
     private final StringProperty jndiName = new SimpleStringProperty(this, "jndiName", "");
     private final StringProperty status = new SimpleStringProperty(this, "status", "Unknown");
     private final BooleanProperty stateful = new SimpleBooleanProperty(this, "stateful", false);
+    private final LongProperty invocations = new SimpleLongProperty(this, "invocations", 0);
+    private final LongProperty executionTime = new SimpleLongProperty(this, "executionTime", 0);
+    private final LongProperty peakConcurrentUsage = new SimpleLongProperty(this, "peakConcurrentUsage", 0);
     
     public EJBComponent() {
     }
@@ -26,6 +32,21 @@ public class EJBComponent {
         setDeploymentName(deploymentName);
     }
     
+    /**
+     * Create the view model of a bean read by the services.
+     * 
+     * @param snapshot The bean
+     */
+    public EJBComponent(EJBSnapshot snapshot) {
+        this(snapshot.name(), snapshot.type().getDisplayName(), snapshot.deploymentName());
+        setJndiName(snapshot.jndiName());
+        setStatus("Deployed");
+        setStateful(snapshot.isStateful());
+        setInvocations(snapshot.invocations());
+        setExecutionTime(snapshot.executionTime());
+        setPeakConcurrentUsage(snapshot.peakConcurrentUsage());
+    }
+    
     // Name property
     public StringProperty nameProperty() {
         return name;
@@ -104,6 +125,45 @@ public class EJBComponent {
         this.stateful.set(stateful);
     }
     
+    // Invocations property
+    public LongProperty invocationsProperty() {
+        return invocations;
+    }
+    
+    public long getInvocations() {
+        return invocations.get();
+    }
+    
+    public void setInvocations(long invocations) {
+        this.invocations.set(invocations);
+    }
+    
+    // Execution Time property (total, in milliseconds)
+    public LongProperty executionTimeProperty() {
+        return executionTime;
+    }
+    
+    public long getExecutionTime() {
+        return executionTime.get();
+    }
+    
+    public void setExecutionTime(long executionTime) {
+        this.executionTime.set(executionTime);
+    }
+    
+    // Peak Concurrent Usage property
+    public LongProperty peakConcurrentUsageProperty() {
+        return peakConcurrentUsage;
+    }
+    
+    public long getPeakConcurrentUsage() {
+        return peakConcurrentUsage.get();
+    }
+    
+    public void setPeakConcurrentUsage(long peakConcurrentUsage) {
+        this.peakConcurrentUsage.set(peakConcurrentUsage);
+    }
+    
     @Override
     public String toString() {
         return getName();
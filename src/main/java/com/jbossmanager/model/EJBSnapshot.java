@@ -0,0 +1,41 @@
+package com.jbossmanager.model;
+
+import java.util.Objects;
+
+/**
+ * Immutable state of an EJB component as read from the server, used by the services instead
+ * of {@link EJBComponent} so that reading thousands of beans does not allocate JavaFX
+ * properties. A view model is created from it only for the bean shown to the user.
+ * <p>
+ * Deployment names are interned, since every bean of a deployment repeats it.
+ * 
+ * @param name The bean name
+ * @param type The kind of bean
+ * @param deploymentName The name of the deployment containing the bean
+ * @param jndiName The first JNDI name of the bean, or an empty string if it has none (message-driven beans)
+ * @param invocations The number of invocations of the bean methods
+ * @param executionTime The total time spent executing the bean methods, in milliseconds
+ * @param peakConcurrentUsage The highest number of concurrent invocations
+ */
+public record EJBSnapshot(String name, EJBType type, String deploymentName, String jndiName,
+                          long invocations, long executionTime, long peakConcurrentUsage) {
+    
+    public EJBSnapshot {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(type);
+        deploymentName = deploymentName.intern();
+    }
+    
+    public EJBSnapshot(String name, EJBType type, String deploymentName, String jndiName) {
+        this(name, type, deploymentName, jndiName, 0, 0, 0);
+    }
+    
+    public boolean isStateful() {
+        return type.isStateful();
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
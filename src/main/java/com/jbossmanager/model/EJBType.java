@@ -0,0 +1,64 @@
+package com.jbossmanager.model;
+
+/**
+ * Kinds of EJB components, with the type of their resources in the EJB subsystem.
+ */
+public enum EJBType {
+    
+    STATELESS("Stateless Session Bean", "stateless-session-bean", false),
+    STATEFUL("Stateful Session Bean", "stateful-session-bean", true),
+    MESSAGE_DRIVEN("Message-Driven Bean", "message-driven-bean", false),
+    SINGLETON("Singleton Bean", "singleton-bean", false);
+    
+    private final String displayName;
+    private final String resourceType;
+    private final boolean stateful;
+    
+    EJBType(String displayName, String resourceType, boolean stateful) {
+        this.displayName = displayName;
+        this.resourceType = resourceType;
+        this.stateful = stateful;
+    }
+    
+    /**
+     * Get the name shown to the user, such as "Stateless Session Bean".
+     * 
+     * @return The display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * Get the type of the bean resources in the EJB subsystem of a deployment.
+     * 
+     * @return The resource type, such as {@code stateless-session-bean}
+     */
+    public String getResourceType() {
+        return resourceType;
+    }
+    
+    public boolean isStateful() {
+        return stateful;
+    }
+    
+    /**
+     * Find a type by its display name.
+     * 
+     * @param displayName The display name
+     * @return The type, or null if unknown
+     */
+    public static EJBType fromDisplayName(String displayName) {
+        for (EJBType type : values()) {
+            if (type.displayName.equals(displayName)) {
+                return type;
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
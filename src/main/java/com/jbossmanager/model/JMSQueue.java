@@ -6,18 +6,27 @@ import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
 
 /**
- * Model class representing a JMS Queue on the JBoss/WildFly server.
+ * Model class representing a JMS Queue on the JBoss/WildFly server, bound to the views and
+ * changed only on the JavaFX thread. The services return {@link QueueSnapshot} instances instead.
  */
 public class JMSQueue {
     
     private final StringProperty name = new SimpleStringProperty(this, "name", "");
+    private final StringProperty serverName = new SimpleStringProperty(this, "serverName", "default");
     private final StringProperty jndiName = new SimpleStringProperty(this, "jndiName", "");
     private final StringProperty status = new SimpleStringProperty(this, "status", "Unknown");
     private final IntegerProperty messageCount = new SimpleIntegerProperty(this, "messageCount", 0);
     private final IntegerProperty consumerCount = new SimpleIntegerProperty(this, "consumerCount", 0);
+    private final LongProperty messagesAdded = new SimpleLongProperty(this, "messagesAdded", 0);
+    private final DoubleProperty messageRate = new SimpleDoubleProperty(this, "messageRate", 0);
     private final BooleanProperty durable = new SimpleBooleanProperty(this, "durable", false);
+    private final BooleanProperty alerting = new SimpleBooleanProperty(this, "alerting", false);
     
     public JMSQueue() {
     }
@@ -27,6 +36,32 @@ public class JMSQueue {
         setJndiName(jndiName);
     }
     
+    /**
+     * Create the view model of a queue read by the services.
+     * 
+     * @param snapshot The queue
+     */
+    public JMSQueue(QueueSnapshot snapshot) {
+        setServerName(snapshot.serverName());
+        setName(snapshot.name());
+        update(snapshot);
+    }
+    
+    /**
+     * Copy the attributes and metrics of a new read of the queue. The message rate and the
+     * alerting state, computed by the application, are left unchanged.
+     * 
+     * @param snapshot The queue as read again
+     */
+    public void update(QueueSnapshot snapshot) {
+        setJndiName(snapshot.jndiName());
+        setStatus(snapshot.status());
+        setMessageCount(snapshot.messageCount());
+        setConsumerCount(snapshot.consumerCount());
+        setMessagesAdded(snapshot.messagesAdded());
+        setDurable(snapshot.durable());
+    }
+    
     // Name property
     public StringProperty nameProperty() {
         return name;
@@ -40,6 +75,19 @@ public class JMSQueue {
         this.name.set(name);
     }
     
+    // Server Name property
+    public StringProperty serverNameProperty() {
+        return serverName;
+    }
+    
+    public String getServerName() {
+        return serverName.get();
+    }
+    
+    public void setServerName(String serverName) {
+        this.serverName.set(serverName);
+    }
+    
     // JNDI Name property
     public StringProperty jndiNameProperty() {
         return jndiName;
@@ -92,6 +140,32 @@ public class JMSQueue {
         this.consumerCount.set(consumerCount);
     }
     
+    // Messages Added property
+    public LongProperty messagesAddedProperty() {
+        return messagesAdded;
+    }
+    
+    public long getMessagesAdded() {
+        return messagesAdded.get();
+    }
+    
+    public void setMessagesAdded(long messagesAdded) {
+        this.messagesAdded.set(messagesAdded);
+    }
+    
+    // Message Rate property, messages added per second between the last two refreshes
+    public DoubleProperty messageRateProperty() {
+        return messageRate;
+    }
+    
+    public double getMessageRate() {
+        return messageRate.get();
+    }
+    
+    public void setMessageRate(double messageRate) {
+        this.messageRate.set(messageRate);
+    }
+    
     // Durable property
     public BooleanProperty durableProperty() {
         return durable;
@@ -105,6 +179,19 @@ public class JMSQueue {
         this.durable.set(durable);
     }
     
+    // Alerting property
+    public BooleanProperty alertingProperty() {
+        return alerting;
+    }
+    
+    public boolean isAlerting() {
+        return alerting.get();
+    }
+    
+    public void setAlerting(boolean alerting) {
+        this.alerting.set(alerting);
+    }
+    
     @Override
     public String toString() {
         return getName();
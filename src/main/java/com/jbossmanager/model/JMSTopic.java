@@ -0,0 +1,141 @@
+package com.jbossmanager.model;
+
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.SimpleLongProperty;
+
+/**
+ * Model class representing a JMS Topic on the JBoss/WildFly server, bound to the views.
+ * The services return {@link TopicSnapshot} instances instead.
+ */
+public class JMSTopic {
+    
+    private final StringProperty name = new SimpleStringProperty(this, "name", "");
+    private final StringProperty serverName = new SimpleStringProperty(this, "serverName", "default");
+    private final StringProperty jndiName = new SimpleStringProperty(this, "jndiName", "");
+    private final IntegerProperty subscriptionCount = new SimpleIntegerProperty(this, "subscriptionCount", 0);
+    private final IntegerProperty durableSubscriptionCount = new SimpleIntegerProperty(this, "durableSubscriptionCount", 0);
+    private final LongProperty messageCount = new SimpleLongProperty(this, "messageCount", 0);
+    private final LongProperty durableMessageCount = new SimpleLongProperty(this, "durableMessageCount", 0);
+    
+    public JMSTopic() {
+    }
+    
+    public JMSTopic(String name, String jndiName) {
+        setName(name);
+        setJndiName(jndiName);
+    }
+    
+    /**
+     * Create the view model of a topic read by the services.
+     * 
+     * @param snapshot The topic
+     */
+    public JMSTopic(TopicSnapshot snapshot) {
+        this(snapshot.name(), snapshot.jndiName());
+        setServerName(snapshot.serverName());
+        setSubscriptionCount(snapshot.subscriptionCount());
+        setDurableSubscriptionCount(snapshot.durableSubscriptionCount());
+        setMessageCount(snapshot.messageCount());
+        setDurableMessageCount(snapshot.durableMessageCount());
+    }
+    
+    // Name property
+    public StringProperty nameProperty() {
+        return name;
+    }
+    
+    public String getName() {
+        return name.get();
+    }
+    
+    public void setName(String name) {
+        this.name.set(name);
+    }
+    
+    // Server Name property
+    public StringProperty serverNameProperty() {
+        return serverName;
+    }
+    
+    public String getServerName() {
+        return serverName.get();
+    }
+    
+    public void setServerName(String serverName) {
+        this.serverName.set(serverName);
+    }
+    
+    // JNDI Name property
+    public StringProperty jndiNameProperty() {
+        return jndiName;
+    }
+    
+    public String getJndiName() {
+        return jndiName.get();
+    }
+    
+    public void setJndiName(String jndiName) {
+        this.jndiName.set(jndiName);
+    }
+    
+    // Subscription Count property
+    public IntegerProperty subscriptionCountProperty() {
+        return subscriptionCount;
+    }
+    
+    public int getSubscriptionCount() {
+        return subscriptionCount.get();
+    }
+    
+    public void setSubscriptionCount(int subscriptionCount) {
+        this.subscriptionCount.set(subscriptionCount);
+    }
+    
+    // Durable Subscription Count property
+    public IntegerProperty durableSubscriptionCountProperty() {
+        return durableSubscriptionCount;
+    }
+    
+    public int getDurableSubscriptionCount() {
+        return durableSubscriptionCount.get();
+    }
+    
+    public void setDurableSubscriptionCount(int durableSubscriptionCount) {
+        this.durableSubscriptionCount.set(durableSubscriptionCount);
+    }
+    
+    // Message Count property
+    public LongProperty messageCountProperty() {
+        return messageCount;
+    }
+    
+    public long getMessageCount() {
+        return messageCount.get();
+    }
+    
+    public void setMessageCount(long messageCount) {
+        this.messageCount.set(messageCount);
+    }
+    
+    // Durable Message Count property (backlog of the durable subscribers)
+    public LongProperty durableMessageCountProperty() {
+        return durableMessageCount;
+    }
+    
+    public long getDurableMessageCount() {
+        return durableMessageCount.get();
+    }
+    
+    public void setDurableMessageCount(long durableMessageCount) {
+        this.durableMessageCount.set(durableMessageCount);
+    }
+    
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,47 @@
+package com.jbossmanager.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Model class representing an ActiveMQ messaging server and its JMS destinations, as read
+ * from the server, and the destinations that could not be read. Its lists are filled by the
+ * reading thread and not changed afterwards.
+ */
+public class MessagingServer {
+    
+    private final String name;
+    private final List<QueueSnapshot> queues = new ArrayList<>();
+    private final List<TopicSnapshot> topics = new ArrayList<>();
+    private final List<String> failures = new ArrayList<>();
+    
+    public MessagingServer(String name) {
+        this.name = name;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public List<QueueSnapshot> getQueues() {
+        return queues;
+    }
+    
+    public List<TopicSnapshot> getTopics() {
+        return topics;
+    }
+    
+    /**
+     * Get the destinations that could not be read, e.g. "jms-queue orders: failure description".
+     * 
+     * @return The failures, empty if all destinations were read
+     */
+    public List<String> getFailures() {
+        return failures;
+    }
+    
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
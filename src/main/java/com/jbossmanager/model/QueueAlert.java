@@ -0,0 +1,62 @@
+package com.jbossmanager.model;
+
+import java.time.Instant;
+
+/**
+ * Model class representing a state change of an alert rule for a JMS queue.
+ */
+public class QueueAlert {
+    
+    /**
+     * State of an alert.
+     */
+    public enum State {
+        FIRING,
+        RESOLVED
+    }
+    
+    private final Instant timestamp;
+    private final State state;
+    private final String ruleName;
+    private final String serverName;
+    private final String queueName;
+    private final String message;
+    
+    public QueueAlert(Instant timestamp, State state, String ruleName, String serverName, String queueName, String message) {
+        this.timestamp = timestamp;
+        this.state = state;
+        this.ruleName = ruleName;
+        this.serverName = serverName;
+        this.queueName = queueName;
+        this.message = message;
+    }
+    
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    public String getRuleName() {
+        return ruleName;
+    }
+    
+    public String getServerName() {
+        return serverName;
+    }
+    
+    public String getQueueName() {
+        return queueName;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    @Override
+    public String toString() {
+        return timestamp + " " + state + " " + serverName + "/" + queueName + " [" + ruleName + "] " + message;
+    }
+}
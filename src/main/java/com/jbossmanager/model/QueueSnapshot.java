@@ -0,0 +1,35 @@
+package com.jbossmanager.model;
+
+import java.util.Objects;
+
+/**
+ * Immutable state of a JMS queue as read from the server, used by the services instead of
+ * {@link JMSQueue} so that refreshing thousands of queues does not allocate JavaFX
+ * properties off the JavaFX thread. The queues shown are updated from it on the JavaFX thread.
+ * 
+ * @param serverName The name of the messaging server of the queue
+ * @param name The queue name
+ * @param jndiName The first JNDI name of the queue, or an empty string if it has none
+ * @param status "Running", "Paused", or "Unknown" if the server does not tell
+ * @param messageCount The number of messages in the queue
+ * @param consumerCount The number of consumers of the queue
+ * @param messagesAdded The number of messages added since the server started
+ * @param durable true if the queue is durable
+ */
+public record QueueSnapshot(String serverName, String name, String jndiName, String status, int messageCount,
+                            int consumerCount, long messagesAdded, boolean durable) {
+    
+    public QueueSnapshot {
+        Objects.requireNonNull(name);
+        serverName = serverName.intern();
+    }
+    
+    public QueueSnapshot(String serverName, String name, String jndiName) {
+        this(serverName, name, jndiName, "Unknown", 0, 0, 0, false);
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
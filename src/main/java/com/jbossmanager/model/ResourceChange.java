@@ -0,0 +1,86 @@
+package com.jbossmanager.model;
+
+import java.time.Instant;
+
+/**
+ * Model class representing a difference between two successive reads of the resources of
+ * a server.
+ */
+public class ResourceChange {
+    
+    /**
+     * Kind of change.
+     */
+    public enum Type {
+        DEPLOYMENT_ADDED,
+        DEPLOYMENT_REMOVED,
+        BEAN_ADDED,
+        BEAN_REMOVED,
+        QUEUE_ADDED,
+        QUEUE_REMOVED,
+        QUEUE_PAUSED,
+        QUEUE_RESUMED,
+        QUEUE_CONSUMERS_LOST,
+        QUEUE_CONSUMERS_RESTORED
+    }
+    
+    private final Instant timestamp;
+    private final Type type;
+    private final String parentName;
+    private final String name;
+    
+    /**
+     * Create a change.
+     * 
+     * @param timestamp The time of the read revealing the change
+     * @param type The kind of change
+     * @param parentName The messaging server of a queue, or the deployment of a bean or the deployment itself
+     * @param name The name of the queue or bean, or null for a deployment
+     */
+    public ResourceChange(Instant timestamp, Type type, String parentName, String name) {
+        this.timestamp = timestamp;
+        this.type = type;
+        this.parentName = parentName;
+        this.name = name;
+    }
+    
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public String getParentName() {
+        return parentName;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Check if the change adds or removes a resource, rather than changing its state.
+     * 
+     * @return true for added and removed resources
+     */
+    public boolean isStructural() {
+        switch (type) {
+            case DEPLOYMENT_ADDED:
+            case DEPLOYMENT_REMOVED:
+            case BEAN_ADDED:
+            case BEAN_REMOVED:
+            case QUEUE_ADDED:
+            case QUEUE_REMOVED:
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return timestamp + " " + type + " " + (name == null ? parentName : parentName + "/" + name);
+    }
+}
@@ -8,7 +8,9 @@ import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 
 /**
- * Model class representing a connection to a JBoss/WildFly server.
+ * Model class representing a connection to a JBoss/WildFly server, bound to the views and
+ * changed only on the JavaFX thread. The connection service publishes {@link ConnectionSnapshot}
+ * instances instead.
  */
 public class ServerConnection {
     
@@ -30,6 +32,20 @@ public class ServerConnection {
         setPassword(password);
     }
     
+    /**
+     * Copy the state published by the connection service. The password is left unchanged.
+     * 
+     * @param snapshot The state of the connection
+     */
+    public void update(ConnectionSnapshot snapshot) {
+        setHost(snapshot.host());
+        setPort(snapshot.port());
+        setUsername(snapshot.username());
+        setServerVersion(snapshot.serverVersion());
+        setConnected(snapshot.connected());
+        setConnectionStatus(snapshot.connectionStatus());
+    }
+    
     // Host property
     public StringProperty hostProperty() {
         return host;
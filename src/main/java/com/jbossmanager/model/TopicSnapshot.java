@@ -0,0 +1,33 @@
+package com.jbossmanager.model;
+
+import java.util.Objects;
+
+/**
+ * Immutable state of a JMS topic as read from the server. The resources tree stores it, and a
+ * {@link JMSTopic} view model is created from it only for the topic shown to the user.
+ * 
+ * @param serverName The name of the messaging server of the topic
+ * @param name The topic name
+ * @param jndiName The first JNDI name of the topic, or an empty string if it has none
+ * @param subscriptionCount The number of subscriptions of the topic
+ * @param durableSubscriptionCount The number of durable subscriptions of the topic
+ * @param messageCount The number of messages in all subscriptions
+ * @param durableMessageCount The number of messages in the durable subscriptions
+ */
+public record TopicSnapshot(String serverName, String name, String jndiName, int subscriptionCount,
+                            int durableSubscriptionCount, long messageCount, long durableMessageCount) {
+    
+    public TopicSnapshot {
+        Objects.requireNonNull(name);
+        serverName = serverName.intern();
+    }
+    
+    public TopicSnapshot(String serverName, String name, String jndiName) {
+        this(serverName, name, jndiName, 0, 0, 0, 0);
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,256 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueAlert;
+import com.jbossmanager.model.QueueSnapshot;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Service class evaluating alert rules against every JMS metrics sample.
+ * <p>
+ * The engine keeps a small state per queue (last depth, length of the current increasing
+ * streak and a bit mask of the rules currently firing). Each sample updates that state in
+ * place, and the rules are only evaluated again for the queues whose state changed: the rules
+ * only look at that state, so the others keep firing as they did. Listeners are only notified
+ * when a rule starts or stops firing for a queue.
+ * <p>
+ * The samples should be taken at a fixed interval, such as the polls of a
+ * {@link MetricsPoller}, since trend rules count samples.
+ */
+public class AlertEngine {
+    
+    /** Maximum number of rules, one bit of the firing mask per rule. */
+    public static final int MAX_RULES = Long.SIZE;
+    
+    /**
+     * Listener notified when an alert starts or stops firing.
+     */
+    public interface AlertListener {
+        
+        /**
+         * Called on the refreshing thread for every alert state change.
+         * 
+         * @param alert The alert
+         */
+        void onAlert(QueueAlert alert);
+    }
+    
+    /**
+     * Metrics and trend state of one queue, as seen by the alert rules.
+     */
+    public static final class QueueState {
+        
+        private final String serverName;
+        private final String queueName;
+        private long depth = -1;
+        private int consumerCount;
+        private boolean paused;
+        private int increasingSamples;
+        private long firingMask;
+        private long lastCycle;
+        
+        QueueState(String serverName, String queueName) {
+            this.serverName = serverName;
+            this.queueName = queueName;
+        }
+        
+        /**
+         * Update the state with a sample.
+         * 
+         * @return true if the state seen by the rules changed, false otherwise
+         */
+        boolean update(long newDepth, int newConsumerCount, boolean newPaused, long cycle) {
+            int newIncreasingSamples = depth >= 0 && newDepth > depth ? increasingSamples + 1 : 0;
+            boolean changed = newDepth != depth || newConsumerCount != consumerCount || newPaused != paused
+                || newIncreasingSamples != increasingSamples;
+            increasingSamples = newIncreasingSamples;
+            depth = newDepth;
+            consumerCount = newConsumerCount;
+            paused = newPaused;
+            lastCycle = cycle;
+            return changed;
+        }
+        
+        public String getServerName() {
+            return serverName;
+        }
+        
+        public String getQueueName() {
+            return queueName;
+        }
+        
+        public long getDepth() {
+            return depth;
+        }
+        
+        public int getConsumerCount() {
+            return consumerCount;
+        }
+        
+        public boolean isPaused() {
+            return paused;
+        }
+        
+        public int getIncreasingSamples() {
+            return increasingSamples;
+        }
+    }
+    
+    private final List<AlertRule> rules;
+    private final Map<String, Map<String, QueueState>> states = new HashMap<>();
+    private final List<AlertListener> listeners = new CopyOnWriteArrayList<>();
+    private long cycle;
+    private int stateCount;
+    
+    public AlertEngine() {
+        this(AlertRule.defaultRules());
+    }
+    
+    public AlertEngine(List<AlertRule> rules) {
+        if (rules.size() > MAX_RULES) {
+            throw new IllegalArgumentException("At most " + MAX_RULES + " rules are supported");
+        }
+        this.rules = new ArrayList<>(rules);
+    }
+    
+    /**
+     * Add a listener notified when alerts start or stop firing.
+     * 
+     * @param listener The listener
+     */
+    public void addAlertListener(AlertListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Remove an alert listener.
+     * 
+     * @param listener The listener
+     */
+    public void removeAlertListener(AlertListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Get the rules evaluated by this engine.
+     * 
+     * @return The rules, which cannot be changed since the firing state has one bit per rule
+     */
+    public List<AlertRule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+    
+    /**
+     * Evaluate the rules against a metrics sample, for the queues whose state changed since the
+     * previous sample.
+     * 
+     * @param servers The messaging servers with their current queue metrics
+     */
+    public synchronized void evaluate(List<MessagingServer> servers) {
+        cycle++;
+        int seen = 0;
+        Instant now = null;
+        
+        for (MessagingServer server : servers) {
+            Map<String, QueueState> serverStates = states.get(server.getName());
+            if (serverStates == null) {
+                serverStates = new HashMap<>();
+                states.put(server.getName(), serverStates);
+            }
+            
+            for (QueueSnapshot queue : server.getQueues()) {
+                QueueState state = serverStates.get(queue.name());
+                if (state == null) {
+                    state = new QueueState(server.getName(), queue.name());
+                    serverStates.put(queue.name(), state);
+                    stateCount++;
+                }
+                seen++;
+                if (!state.update(queue.messageCount(), queue.consumerCount(), "Paused".equals(queue.status()), cycle)) {
+                    continue;
+                }
+                
+                long firing = 0;
+                for (int i = 0; i < rules.size(); i++) {
+                    if (rules.get(i).matches(state)) {
+                        firing |= 1L << i;
+                    }
+                }
+                
+                long changed = firing ^ state.firingMask;
+                state.firingMask = firing;
+                if (changed != 0) {
+                    if (now == null) {
+                        now = Instant.now();
+                    }
+                    notifyChanges(state, changed, firing, now);
+                }
+            }
+        }
+        
+        // Forget queues that are gone, resolving their alerts
+        if (seen < stateCount) {
+            removeStaleStates(now != null ? now : Instant.now());
+        }
+    }
+    
+    /**
+     * Check whether any rule is firing for a queue.
+     * 
+     * @param serverName The name of the messaging server
+     * @param queueName The name of the queue
+     * @return true if at least one rule is firing, false otherwise
+     */
+    public synchronized boolean isFiring(String serverName, String queueName) {
+        Map<String, QueueState> serverStates = states.get(serverName);
+        QueueState state = serverStates != null ? serverStates.get(queueName) : null;
+        return state != null && state.firingMask != 0;
+    }
+    
+    /**
+     * Forget all queue states, e.g. after disconnecting from the server.
+     */
+    public synchronized void reset() {
+        states.clear();
+        stateCount = 0;
+    }
+    
+    private void notifyChanges(QueueState state, long changed, long firing, Instant now) {
+        while (changed != 0) {
+            int index = Long.numberOfTrailingZeros(changed);
+            changed &= changed - 1;
+            
+            AlertRule rule = rules.get(index);
+            boolean nowFiring = (firing & (1L << index)) != 0;
+            QueueAlert alert = new QueueAlert(now, nowFiring ? QueueAlert.State.FIRING : QueueAlert.State.RESOLVED, rule.getName(),
+                state.getServerName(), state.getQueueName(), nowFiring ? rule.describe(state) : "Resolved");
+            for (AlertListener listener : listeners) {
+                listener.onAlert(alert);
+            }
+        }
+    }
+    
+    private void removeStaleStates(Instant now) {
+        for (Map<String, QueueState> serverStates : states.values()) {
+            Iterator<QueueState> iterator = serverStates.values().iterator();
+            while (iterator.hasNext()) {
+                QueueState state = iterator.next();
+                if (state.lastCycle != cycle) {
+                    iterator.remove();
+                    stateCount--;
+                    if (state.firingMask != 0) {
+                        notifyChanges(state, state.firingMask, 0, now);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.QueueAlert;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Alert listener appending every alert state change, with its timestamp, to a log file.
+ * <p>
+ * The alerts are handed to a writer thread keeping the file open, so that the thread
+ * evaluating the alerts never waits for the disk; the file is flushed once no alert is left
+ * to write. A failed write is given to the failure listener once; the next alerts are still
+ * written when possible, and a failure after a write succeeded again is reported again.
+ */
+public class AlertLog implements AlertEngine.AlertListener {
+    
+    private final Path logFile;
+    private volatile Consumer<IOException> failureListener = e -> { };
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "alert-log");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Only used on the writer thread
+    private BufferedWriter out;
+    private boolean failing;
+    
+    public AlertLog() {
+        this(Paths.get(System.getProperty("user.home"), ".jbossmanager", "alerts.log"));
+    }
+    
+    public AlertLog(Path logFile) {
+        this.logFile = logFile;
+    }
+    
+    /**
+     * Get the file the alerts are written to.
+     * 
+     * @return The log file
+     */
+    public Path getLogFile() {
+        return logFile;
+    }
+    
+    /**
+     * Set the listener told when the alerts cannot be written, once until they are again.
+     * 
+     * @param listener The listener, called on the writer thread
+     */
+    public void setFailureListener(Consumer<IOException> listener) {
+        failureListener = listener;
+    }
+    
+    @Override
+    public void onAlert(QueueAlert alert) {
+        pending.incrementAndGet();
+        writer.execute(() -> write(alert));
+    }
+    
+    /**
+     * Write the alerts still pending and close the file. Alerts given afterwards are dropped.
+     */
+    public void close() {
+        writer.execute(this::closeFile);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void write(QueueAlert alert) {
+        // Flushed with the last alert given so far
+        boolean last = pending.decrementAndGet() == 0;
+        try {
+            if (out == null) {
+                if (logFile.getParent() != null) {
+                    Files.createDirectories(logFile.getParent());
+                }
+                out = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            out.write(alert.toString());
+            out.newLine();
+            if (last) {
+                out.flush();
+            }
+            failing = false;
+        } catch (IOException e) {
+            // Logging alerts must never break the metrics refresh, the file is opened again next time
+            closeFile();
+            if (!failing) {
+                failing = true;
+                failureListener.accept(e);
+            }
+        }
+    }
+    
+    private void closeFile() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // The alerts buffered are lost, as for a failed write
+            }
+            out = null;
+        }
+    }
+}
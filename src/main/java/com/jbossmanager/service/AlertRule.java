@@ -0,0 +1,111 @@
+package com.jbossmanager.service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A rule evaluated against the latest metrics of every JMS queue.
+ * <p>
+ * Rules only look at the precomputed {@link AlertEngine.QueueState} of a queue, so evaluating
+ * a rule is a constant-time check regardless of how many samples have been taken.
+ */
+public final class AlertRule {
+    
+    private final String name;
+    private final Predicate<AlertEngine.QueueState> condition;
+    private final Function<AlertEngine.QueueState, String> description;
+    
+    public AlertRule(String name, Predicate<AlertEngine.QueueState> condition,
+                     Function<AlertEngine.QueueState, String> description) {
+        this.name = name;
+        this.condition = condition;
+        this.description = description;
+    }
+    
+    /**
+     * Fires when a queue holds more than the given number of messages.
+     * 
+     * @param threshold The maximum number of messages
+     * @return The rule
+     */
+    public static AlertRule depthAbove(long threshold) {
+        return new AlertRule("depth-above-" + threshold,
+            state -> state.getDepth() > threshold,
+            state -> "Queue depth " + state.getDepth() + " exceeds " + threshold);
+    }
+    
+    /**
+     * Fires when a queue holds messages but has no consumer.
+     * 
+     * @return The rule
+     */
+    public static AlertRule noConsumersWithBacklog() {
+        return new AlertRule("no-consumers",
+            state -> state.getConsumerCount() == 0 && state.getDepth() > 0,
+            state -> "No consumers while " + state.getDepth() + " messages are waiting");
+    }
+    
+    /**
+     * Fires when the depth of a queue has increased for the given number of consecutive samples.
+     * 
+     * @param samples The number of consecutive increasing samples
+     * @return The rule
+     */
+    public static AlertRule depthIncreasing(int samples) {
+        return new AlertRule("depth-increasing-" + samples,
+            state -> state.getIncreasingSamples() >= samples,
+            state -> "Queue depth increased for " + state.getIncreasingSamples() + " samples, now " + state.getDepth());
+    }
+    
+    /**
+     * Fires when a dead letter queue is not empty. Queues named "DLQ" or ending in "DLQ"
+     * are considered dead letter queues.
+     * 
+     * @return The rule
+     */
+    public static AlertRule deadLetterNotEmpty() {
+        return new AlertRule("dlq-not-empty",
+            state -> state.getDepth() > 0 && state.getQueueName().toUpperCase(Locale.ROOT).endsWith("DLQ"),
+            state -> "Dead letter queue holds " + state.getDepth() + " messages");
+    }
+    
+    /**
+     * Get the rules used when no other rules are configured.
+     * 
+     * @return The default rules
+     */
+    public static List<AlertRule> defaultRules() {
+        return List.of(depthAbove(1000), noConsumersWithBacklog(), depthIncreasing(5), deadLetterNotEmpty());
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Check whether the rule fires for a queue.
+     * 
+     * @param state The current state of the queue
+     * @return true if the rule fires, false otherwise
+     */
+    public boolean matches(AlertEngine.QueueState state) {
+        return condition.test(state);
+    }
+    
+    /**
+     * Describe why the rule fires for a queue.
+     * 
+     * @param state The current state of the queue
+     * @return The alert message
+     */
+    public String describe(AlertEngine.QueueState state) {
+        return description.apply(state);
+    }
+    
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,118 @@
+package com.jbossmanager.service;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read of the attributes a view shows of all the children of a type, so that the server does
+ * not send whole resources (every configuration attribute and nested resource) only for most
+ * of them to be thrown away.
+ * <p>
+ * Following the {@link OperationPlan} of the connection, the read is a {@code query} selecting
+ * the attributes, or a read of the attributes only of a wildcard address, or for servers not
+ * supporting wildcard addresses a read of the children of the parent resource. {@link #items}
+ * gives the result of any of them as the per-address items returned by wildcard reads.
+ */
+final class AttributeProjection {
+    
+    private final ModelNode parentAddress;
+    private final String childType;
+    private final List<String> attributes;
+    private final boolean includeRuntime;
+    
+    /**
+     * Create a projection.
+     * 
+     * @param parentAddress The address of the parent resource, possibly with wildcards
+     * @param childType The type of the children to read
+     * @param attributes The attributes to read, at least one
+     * @param includeRuntime true to read runtime attributes as well
+     */
+    AttributeProjection(ModelNode parentAddress, String childType, List<String> attributes, boolean includeRuntime) {
+        if (attributes.isEmpty()) {
+            throw new IllegalArgumentException("A projection needs at least one attribute");
+        }
+        this.parentAddress = parentAddress.clone();
+        this.childType = childType;
+        this.attributes = Collections.unmodifiableList(new ArrayList<>(attributes));
+        this.includeRuntime = includeRuntime;
+    }
+    
+    String getChildType() {
+        return childType;
+    }
+    
+    List<String> getAttributes() {
+        return attributes;
+    }
+    
+    /**
+     * Create the read operation, usable as a composite step.
+     * 
+     * @param plan The operation plan of the connection
+     * @return The read operation
+     */
+    ModelNode createRead(OperationPlan plan) {
+        ModelNode op = new ModelNode();
+        if (!plan.supportsWildcardReads()) {
+            op.get("operation").set("read-children-resources");
+            op.get("child-type").set(childType);
+            op.get("include-runtime").set(includeRuntime);
+            op.get("address").set(parentAddress);
+            return op;
+        }
+        
+        ModelNode address = parentAddress.clone();
+        address.add(childType, "*");
+        op.get("address").set(address);
+        if (plan.supportsQueryReads()) {
+            // The query only returns the selected attributes, runtime ones included
+            op.get("operation").set("query");
+            for (String attribute : attributes) {
+                op.get("select").add(attribute);
+            }
+        } else {
+            op.get("operation").set("read-resource");
+            op.get("attributes-only").set(true);
+            op.get("include-runtime").set(includeRuntime);
+        }
+        return op;
+    }
+    
+    /**
+     * Get the children read by {@link #createRead} as items with an {@code address}, an
+     * {@code outcome} and the attributes as {@code result}.
+     * 
+     * @param result The result of the read
+     * @return The items, empty if the result is undefined
+     */
+    List<ModelNode> items(ModelNode result) {
+        if (result.getType() == ModelType.LIST) {
+            return result.asList();
+        }
+        List<ModelNode> items = new ArrayList<>();
+        if (result.getType() != ModelType.OBJECT) {
+            return items;
+        }
+        // Children of the parent resource, keyed by name
+        for (String name : result.keys()) {
+            ModelNode item = new ModelNode();
+            item.get("address").set(parentAddress);
+            item.get("address").add(childType, name);
+            item.get("outcome").set("success");
+            ModelNode child = result.get(name);
+            ModelNode selected = item.get("result").setEmptyObject();
+            for (String attribute : attributes) {
+                if (child.has(attribute)) {
+                    selected.get(attribute).set(child.get(attribute));
+                }
+            }
+            items.add(item);
+        }
+        return items;
+    }
+}
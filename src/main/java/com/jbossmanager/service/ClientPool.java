@@ -0,0 +1,193 @@
+package com.jbossmanager.service;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of management clients of the same server, each with its own connection, so that
+ * several requests can run at the same time.
+ * <p>
+ * A client is leased for the duration of a request and returned afterwards. When the pool is
+ * drained, new leases are refused, the clients still leased are waited for, and every client
+ * is closed.
+ */
+public class ClientPool {
+    
+    private final List<ModelControllerClient> clients;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Deque<ModelControllerClient> idle;
+    
+    // Guarded by lock
+    private boolean closing;
+    private boolean closed;
+    
+    /**
+     * Create a pool of the given clients, all idle.
+     * 
+     * @param clients The clients, at least one
+     */
+    public ClientPool(List<ModelControllerClient> clients) {
+        if (clients.isEmpty()) {
+            throw new IllegalArgumentException("A client pool needs at least one client");
+        }
+        this.clients = Collections.unmodifiableList(new ArrayList<>(clients));
+        this.idle = new ArrayDeque<>(clients);
+    }
+    
+    /**
+     * Get the number of clients in the pool.
+     * 
+     * @return The pool size
+     */
+    public int size() {
+        return clients.size();
+    }
+    
+    /**
+     * Lease a client, waiting until one is returned if all of them are leased.
+     * 
+     * @return The client, to give back with {@link #release}
+     * @throws IOException if the pool is drained or closed, or the wait is interrupted
+     */
+    public ModelControllerClient lease() throws IOException {
+        return lease(Long.MAX_VALUE);
+    }
+    
+    /**
+     * Lease a client, waiting at most the given time until one is returned.
+     * 
+     * @param timeoutMillis The maximum time to wait
+     * @return The client, to give back with {@link #release}
+     * @throws IOException if no client was returned in time, the pool is drained or closed,
+     *                     or the wait is interrupted
+     */
+    public ModelControllerClient lease(long timeoutMillis) throws IOException {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (!closing && idle.isEmpty()) {
+                if (remaining <= 0) {
+                    throw new IOException("No management client available in " + timeoutMillis + " ms");
+                }
+                remaining = changed.awaitNanos(remaining);
+            }
+            if (closing) {
+                throw new IOException("Connection closed");
+            }
+            return idle.poll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a management client", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Give back a leased client.
+     * 
+     * @param client The client returned by {@link #lease}
+     */
+    public void release(ModelControllerClient client) {
+        lock.lock();
+        try {
+            if (!closed) {
+                idle.add(client);
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Get the number of clients currently leased.
+     * 
+     * @return The number of leased clients
+     */
+    public int getLeasedCount() {
+        lock.lock();
+        try {
+            return closed ? 0 : clients.size() - idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Refuse new leases, wait for the leased clients to be returned and close all clients.
+     * Clients still leased after the timeout are closed as well, failing their requests.
+     * 
+     * @param timeoutMillis The maximum time to wait for the leased clients
+     * @return true if all clients were returned in time, false otherwise
+     */
+    public boolean drain(long timeoutMillis) {
+        boolean drained;
+        lock.lock();
+        try {
+            closing = true;
+            changed.signalAll();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (idle.size() < clients.size() && remaining > 0) {
+                remaining = changed.awaitNanos(remaining);
+            }
+            drained = idle.size() == clients.size();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drained = false;
+        } finally {
+            lock.unlock();
+        }
+        close();
+        return drained;
+    }
+    
+    /**
+     * Close all clients immediately, failing the requests in progress.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closing = true;
+            closed = true;
+            idle.clear();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (ModelControllerClient client : clients) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+    
+    /**
+     * Check if the pool is closed.
+     * 
+     * @return true once all clients are closed
+     */
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
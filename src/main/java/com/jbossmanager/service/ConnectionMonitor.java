@@ -0,0 +1,310 @@
+package com.jbossmanager.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service class sending a heartbeat to the connected server to measure the round-trip time
+ * and to detect dropped or hung connections.
+ * <p>
+ * When a heartbeat fails or is not answered in time, the connection is closed so that
+ * requests fail fast, the subscriptions (such as metrics polling) are suspended, and the
+ * connection is established again with exponential backoff. The delays are jittered so that
+ * several clients disconnected at the same time do not reconnect in lockstep. Once
+ * reconnected, the subscriptions are resumed.
+ * <p>
+ * Every {@link #start()} and {@link #stop()} begins a new generation, and the tasks of an
+ * earlier generation are dropped: a reconnection still blocked in the server handshake when
+ * the monitor is stopped and started again has no effect once it returns.
+ */
+public class ConnectionMonitor {
+    
+    /** Default number of milliseconds between two heartbeats. */
+    public static final long DEFAULT_HEARTBEAT_INTERVAL_MILLIS = 5000;
+    
+    /** Default number of milliseconds after which an unanswered heartbeat means the connection is hung. */
+    public static final long DEFAULT_HEARTBEAT_TIMEOUT_MILLIS = 10000;
+    
+    /** Default delay before the first reconnection attempt. */
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 1000;
+    
+    /** Default maximum delay between two reconnection attempts. */
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 60000;
+    
+    /**
+     * Listener notified on the monitor thread of the connection health.
+     */
+    public interface Listener {
+        
+        /**
+         * Called when the server answered a heartbeat.
+         * 
+         * @param roundTripNanos The round-trip time of the heartbeat
+         */
+        default void heartbeat(long roundTripNanos) {
+        }
+        
+        /**
+         * Called when the connection was found dropped or hung and has been closed.
+         * 
+         * @param reason The reason of the failure
+         */
+        default void connectionLost(String reason) {
+        }
+        
+        /**
+         * Called when a reconnection attempt is scheduled.
+         * 
+         * @param attempt The number of the attempt, starting at 1
+         * @param delayMillis The delay before the attempt
+         */
+        default void reconnecting(int attempt, long delayMillis) {
+        }
+        
+        /**
+         * Called when the connection has been established again.
+         */
+        default void reconnected() {
+        }
+    }
+    
+    /**
+     * Background work depending on the connection, suspended during an outage.
+     */
+    public interface Subscription {
+        
+        /**
+         * Stop the work until {@link #resume()} is called.
+         */
+        void suspend();
+        
+        /**
+         * Start again the work suspended by {@link #suspend()}.
+         */
+        void resume();
+    }
+    
+    private final ConnectionService connectionService;
+    private final long heartbeatIntervalMillis;
+    private final long heartbeatTimeoutMillis;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService executor;
+    private int generation;
+    private volatile boolean reconnecting;
+    private volatile long lastRoundTripNanos = -1;
+    
+    // Only used on the monitor thread
+    private int attempt;
+    
+    public ConnectionMonitor(ConnectionService connectionService) {
+        this(connectionService, DEFAULT_HEARTBEAT_INTERVAL_MILLIS, DEFAULT_HEARTBEAT_TIMEOUT_MILLIS,
+            DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+    
+    public ConnectionMonitor(ConnectionService connectionService, long heartbeatIntervalMillis,
+                             long heartbeatTimeoutMillis, long initialBackoffMillis, long maxBackoffMillis) {
+        this.connectionService = connectionService;
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        this.heartbeatTimeoutMillis = heartbeatTimeoutMillis;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+    
+    /**
+     * Add a listener of the connection health.
+     * 
+     * @param listener The listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Remove a listener of the connection health.
+     * 
+     * @param listener The listener
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Add work to suspend during an outage and resume once reconnected.
+     * 
+     * @param subscription The subscription
+     */
+    public void addSubscription(Subscription subscription) {
+        subscriptions.add(subscription);
+    }
+    
+    /**
+     * Remove a subscription.
+     * 
+     * @param subscription The subscription
+     */
+    public void removeSubscription(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+    
+    /**
+     * Start sending heartbeats. Does nothing if the monitor is already running.
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int current = ++generation;
+        schedule(current, () -> heartbeat(current), heartbeatIntervalMillis);
+    }
+    
+    /**
+     * Stop sending heartbeats and give up any reconnection in progress.
+     */
+    public synchronized void stop() {
+        generation++;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        reconnecting = false;
+        lastRoundTripNanos = -1;
+    }
+    
+    /**
+     * Check if the monitor is running.
+     * 
+     * @return true if running, false otherwise
+     */
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+    
+    /**
+     * Check if the connection was lost and is being established again.
+     * 
+     * @return true while reconnecting, false otherwise
+     */
+    public boolean isReconnecting() {
+        return reconnecting;
+    }
+    
+    /**
+     * Get the round-trip time of the last answered heartbeat.
+     * 
+     * @return The round-trip time in nanoseconds, or -1 if none since the connection was established
+     */
+    public long getLastRoundTripNanos() {
+        return lastRoundTripNanos;
+    }
+    
+    /**
+     * Get the delay before a reconnection attempt: exponential up to the maximum, half of it
+     * fixed and the other half random.
+     * 
+     * @param attempt The number of the attempt, starting at 1
+     * @param initialMillis The delay before the first attempt
+     * @param maxMillis The maximum delay
+     * @param random The source of the jitter
+     * @return The delay in milliseconds
+     */
+    static long backoffDelay(int attempt, long initialMillis, long maxMillis, Random random) {
+        long ceiling = Math.min(maxMillis, initialMillis << Math.min(attempt - 1, 20));
+        long fixed = ceiling / 2;
+        return fixed + (long) (random.nextDouble() * (ceiling - fixed));
+    }
+    
+    /**
+     * Check that a task belongs to the running generation of the monitor.
+     */
+    private synchronized boolean isCurrent(int taskGeneration) {
+        return executor != null && generation == taskGeneration;
+    }
+    
+    private synchronized void schedule(int taskGeneration, Runnable task, long delayMillis) {
+        if (isCurrent(taskGeneration)) {
+            executor.schedule(() -> {
+                if (isCurrent(taskGeneration)) {
+                    task.run();
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private void heartbeat(int taskGeneration) {
+        long roundTrip;
+        try {
+            roundTrip = connectionService.ping(heartbeatTimeoutMillis);
+        } catch (IOException e) {
+            if (isCurrent(taskGeneration)) {
+                connectionLost(taskGeneration, e.getMessage());
+            }
+            return;
+        }
+        if (!isCurrent(taskGeneration)) {
+            return;
+        }
+        lastRoundTripNanos = roundTrip;
+        for (Listener listener : listeners) {
+            listener.heartbeat(roundTrip);
+        }
+        schedule(taskGeneration, () -> heartbeat(taskGeneration), heartbeatIntervalMillis);
+    }
+    
+    private void connectionLost(int taskGeneration, String reason) {
+        reconnecting = true;
+        lastRoundTripNanos = -1;
+        attempt = 0;
+        for (Subscription subscription : subscriptions) {
+            subscription.suspend();
+        }
+        connectionService.connectionLost(reason);
+        for (Listener listener : listeners) {
+            listener.connectionLost(reason);
+        }
+        scheduleReconnect(taskGeneration);
+    }
+    
+    private void scheduleReconnect(int taskGeneration) {
+        attempt++;
+        long delay = backoffDelay(attempt, initialBackoffMillis, maxBackoffMillis, ThreadLocalRandom.current());
+        for (Listener listener : listeners) {
+            listener.reconnecting(attempt, delay);
+        }
+        schedule(taskGeneration, () -> reconnect(taskGeneration), delay);
+    }
+    
+    private void reconnect(int taskGeneration) {
+        boolean reconnected = connectionService.reconnect();
+        if (!isCurrent(taskGeneration)) {
+            // Stopped while connecting: the caller disconnected, and may have connected again,
+            // which the connection service does not let a reconnection replace
+            return;
+        }
+        if (!reconnected) {
+            scheduleReconnect(taskGeneration);
+            return;
+        }
+        reconnecting = false;
+        for (Subscription subscription : subscriptions) {
+            subscription.resume();
+        }
+        for (Listener listener : listeners) {
+            listener.reconnected();
+        }
+        schedule(taskGeneration, () -> heartbeat(taskGeneration), heartbeatIntervalMillis);
+    }
+}
@@ -0,0 +1,102 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.ConnectionProfile;
+import org.jboss.dmr.ModelNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service class saving the connection profiles to a JSON file.
+ * <p>
+ * The management password is only written for the profiles whose user chose to save it, so
+ * that they can be connected at startup. It is not encrypted, the file is therefore only
+ * readable by its owner where the file system allows it. Passwords of profiles saved before
+ * the choice existed are not loaded, and are removed from the file the next time it is saved.
+ */
+public class ConnectionProfileStore {
+    
+    private final Path file;
+    
+    public ConnectionProfileStore() {
+        this(Paths.get(System.getProperty("user.home"), ".jbossmanager", "profiles.json"));
+    }
+    
+    public ConnectionProfileStore(Path file) {
+        this.file = file;
+    }
+    
+    /**
+     * Load the saved profiles.
+     * 
+     * @return The profiles, empty if none were saved
+     * @throws IOException if the file cannot be read
+     */
+    public List<ConnectionProfile> load() throws IOException {
+        List<ConnectionProfile> profiles = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return profiles;
+        }
+        
+        ModelNode json = ModelNode.fromJSONString(Files.readString(file, StandardCharsets.UTF_8));
+        if (!json.hasDefined("profiles")) {
+            return profiles;
+        }
+        for (ModelNode node : json.get("profiles").asList()) {
+            boolean passwordSaved = node.get("save-password").asBoolean(false);
+            profiles.add(new ConnectionProfile(
+                node.get("name").asString(),
+                node.get("host").asString(),
+                node.get("port").asInt(9990),
+                node.get("username").asString(""),
+                passwordSaved ? node.get("password").asString("") : "",
+                passwordSaved,
+                node.get("connect-on-startup").asBoolean(false)));
+        }
+        return profiles;
+    }
+    
+    /**
+     * Save the profiles, replacing the saved ones.
+     * 
+     * @param profiles The profiles to save
+     * @throws IOException if the file cannot be written
+     */
+    public void save(List<ConnectionProfile> profiles) throws IOException {
+        ModelNode json = new ModelNode();
+        ModelNode list = json.get("profiles").setEmptyList();
+        for (ConnectionProfile profile : profiles) {
+            ModelNode node = list.add();
+            node.get("name").set(profile.getName());
+            node.get("host").set(profile.getHost());
+            node.get("port").set(profile.getPort());
+            node.get("username").set(profile.getUsername());
+            node.get("save-password").set(profile.isPasswordSaved());
+            if (profile.isPasswordSaved()) {
+                node.get("password").set(profile.getPassword());
+            }
+            node.get("connect-on-startup").set(profile.isConnectOnStartup());
+        }
+        
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.setPosixFilePermissions(temporary, PosixFilePermissions.fromString("rw-------"));
+            }
+            Files.writeString(temporary, json.toJSONString(false), StandardCharsets.UTF_8);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
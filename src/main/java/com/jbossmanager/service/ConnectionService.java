@@ -1,8 +1,11 @@
 package com.jbossmanager.service;
 
-import com.jbossmanager.model.ServerConnection;
+import com.jbossmanager.model.ConnectionSnapshot;
 import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
 import org.jboss.dmr.ModelNode;
+import org.jboss.threads.AsyncFuture;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
@@ -11,17 +14,88 @@ import javax.security.auth.callback.PasswordCallback;
 import javax.security.auth.callback.UnsupportedCallbackException;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 /**
  * Service class for managing connections to JBoss/WildFly servers.
+ * <p>
+ * A connection uses a small {@link ClientPool} so that requests from several threads run in
+ * parallel. The pool and its scheduler are published together once the connection is
+ * established; on disconnect they are drained in the background, letting the requests in
+ * progress complete.
+ * <p>
+ * The {@link OperationPlan} of a connection is probed on the first connection to a given
+ * server version and subsystems, and reused for every later connection to the same kind of server
+ * once a probe fully succeeded.
  */
 public class ConnectionService {
     
-    private ModelControllerClient client;
-    private ServerConnection serverConnection;
+    /** System property overriding the default number of clients per connection. */
+    public static final String POOL_SIZE_PROPERTY = "jbossmanager.clientPoolSize";
+    
+    /** Default number of clients per connection. */
+    public static final int DEFAULT_POOL_SIZE = 3;
+    
+    /** Maximum time to wait for the requests in progress when disconnecting. */
+    public static final long DRAIN_TIMEOUT_MILLIS = 5000;
+    
+    /** Operation plans by server version and subsystems, shared by all connections. */
+    private static final Map<String, OperationPlan> PLANS = new ConcurrentHashMap<>();
+    
+    /**
+     * Clients of an established connection and the scheduler dispatching requests to them.
+     * The heartbeat has a client of its own, so that it never waits for the pool: a server
+     * busy with long requests is not taken for a dead one.
+     */
+    private static final class Session {
+        private final ClientPool pool;
+        private final RequestScheduler scheduler;
+        private final ModelControllerClient heartbeatClient;
+        private OperationPlan plan = OperationPlan.DEFAULT;
+        
+        Session(ClientPool pool, RequestScheduler scheduler, ModelControllerClient heartbeatClient) {
+            this.pool = pool;
+            this.scheduler = scheduler;
+            this.heartbeatClient = heartbeatClient;
+        }
+        
+        void drain() {
+            scheduler.drain(DRAIN_TIMEOUT_MILLIS);
+            pool.drain(DRAIN_TIMEOUT_MILLIS);
+            closeHeartbeatClient();
+        }
+        
+        void close() {
+            scheduler.shutdown();
+            pool.close();
+            closeHeartbeatClient();
+        }
+        
+        private void closeHeartbeatClient() {
+            closeQuietly(heartbeatClient);
+        }
+    }
+    
+    private volatile Session session;
+    private volatile String outage;
+    private volatile ConnectionSnapshot state = ConnectionSnapshot.DISCONNECTED;
+    private volatile String password = "";
+    private final List<Consumer<ConnectionSnapshot>> stateListeners = new CopyOnWriteArrayList<>();
+    private final ManagementMetrics metrics = new ManagementMetrics();
+    private volatile Set<String> subsystems = Collections.emptySet();
     
     public ConnectionService() {
-        this.serverConnection = new ServerConnection();
     }
     
     /**
@@ -34,10 +108,18 @@ public class ConnectionService {
      * @return true if connection was successful, false otherwise
      */
     public boolean connect(String host, int port, String username, String password) {
-        serverConnection.setHost(host);
-        serverConnection.setPort(port);
-        serverConnection.setUsername(username);
-        serverConnection.setPassword(password);
+        return connect(host, port, username, password, false);
+    }
+    
+    /**
+     * Connect to the server, or establish again a lost connection.
+     * 
+     * @param resuming true to use the connection only if the lost one was neither closed nor
+     *                 replaced in the meantime, false to replace any connection
+     */
+    private boolean connect(String host, int port, String username, String password, boolean resuming) {
+        this.password = password;
+        ConnectionSnapshot connecting = new ConnectionSnapshot(host, port, username, "Unknown", false, "Connecting");
         
         try {
             // Create a callback handler for authentication
@@ -54,83 +136,413 @@ public class ConnectionService {
                 }
             };
             
-            // Create the client connection
-            client = ModelControllerClient.Factory.create(
-                InetAddress.getByName(host), 
-                port,
-                callbackHandler
-            );
-            
-            // Test connection with a simple operation
-            ModelNode op = new ModelNode();
-            op.get("operation").set("read-attribute");
-            op.get("name").set("server-state");
-            op.get("address").setEmptyList();
+            // Create the client connections, recording statistics for every request; the
+            // clients created before one fails are closed
+            List<ModelControllerClient> created = new ArrayList<>();
+            Session newSession;
+            try {
+                ModelControllerClient heartbeatClient = createClient(host, port, callbackHandler);
+                created.add(heartbeatClient);
+                List<ModelControllerClient> clients = new ArrayList<>();
+                for (int i = 0; i < configuredPoolSize(); i++) {
+                    ModelControllerClient client = createClient(host, port, callbackHandler);
+                    created.add(client);
+                    clients.add(new InstrumentedClient(client, metrics));
+                }
+                ClientPool pool = new ClientPool(clients);
+                newSession = new Session(pool,
+                    new RequestScheduler(pool, RequestScheduler.configuredBackgroundRate(), metrics),
+                    heartbeatClient);
+            } catch (IOException | RuntimeException e) {
+                for (ModelControllerClient client : created) {
+                    closeQuietly(client);
+                }
+                throw e;
+            }
             
-            ModelNode result = client.execute(op);
+            // Test the connection and read the server details in a single request
+            ModelNode result;
+            try {
+                result = newSession.scheduler.execute(createHandshakeOperation());
+            } catch (IOException | RuntimeException e) {
+                newSession.close();
+                throw e;
+            }
             boolean success = "success".equals(result.get("outcome").asString());
             
             if (success) {
-                serverConnection.setConnected(true);
-                serverConnection.setConnectionStatus("Connected");
-                
-                // Get server version
-                ModelNode versionOp = new ModelNode();
-                versionOp.get("operation").set("read-attribute");
-                versionOp.get("name").set("product-version");
-                versionOp.get("address").setEmptyList();
-                
-                ModelNode versionResult = client.execute(versionOp);
-                if ("success".equals(versionResult.get("outcome").asString())) {
-                    String version = versionResult.get("result").asString();
-                    serverConnection.setServerVersion(version);
+                ModelNode steps = result.get("result");
+                String serverVersion = steps.hasDefined("step-2", "result")
+                    ? steps.get("step-2", "result").asString() : connecting.serverVersion();
+                Set<String> names = new TreeSet<>();
+                if (steps.hasDefined("step-3", "result")) {
+                    for (ModelNode subsystem : steps.get("step-3", "result").asList()) {
+                        names.add(subsystem.asString());
+                    }
+                }
+                newSession.plan = operationPlan(newSession, serverVersion, names);
+                if (!publish(newSession, resuming)) {
+                    // Disconnected or connected again while reconnecting
+                    newSession.close();
+                    return false;
                 }
+                subsystems = Collections.unmodifiableSet(names);
+                setState(new ConnectionSnapshot(host, port, username, serverVersion, true, "Connected"));
             } else {
-                serverConnection.setConnected(false);
-                serverConnection.setConnectionStatus("Failed: " + result.get("failure-description").asString());
+                newSession.close();
+                setState(connecting.withStatus(false, "Failed: " + result.get("failure-description").asString()));
             }
             
             return success;
         } catch (Exception e) {
-            serverConnection.setConnected(false);
-            serverConnection.setConnectionStatus("Error: " + e.getMessage());
+            setState(connecting.withStatus(false, "Error: " + e.getMessage()));
             return false;
         }
     }
     
     /**
-     * Disconnect from the server.
+     * Connect again to the server of the last connection, with the same credentials. The new
+     * connection is only used if the lost one is still lost once it is established: a
+     * reconnection never replaces a connection closed or established again in the meantime.
+     * 
+     * @return true if connection was successful, false otherwise
      */
-    public void disconnect() {
-        if (client != null) {
+    public boolean reconnect() {
+        ConnectionSnapshot last = state;
+        return connect(last.host(), last.port(), last.username(), password, true);
+    }
+    
+    /**
+     * Check that the server answers, without waiting behind the scheduled requests or for a
+     * client of the pool: the ping goes through the dedicated heartbeat client.
+     * 
+     * @param timeoutMillis The maximum time to wait for the answer
+     * @return The round-trip time in nanoseconds
+     * @throws IOException if the server does not answer in time or the connection is broken
+     */
+    public long ping(long timeoutMillis) throws IOException {
+        Session current = session;
+        if (current == null) {
+            throw new IOException("Not connected to server");
+        }
+        
+        ModelNode op = new ModelNode();
+        op.get("operation").set("read-attribute");
+        op.get("name").set("server-state");
+        op.get("address").setEmptyList();
+        
+        long start = System.nanoTime();
+        AsyncFuture<ModelNode> future = current.heartbeatClient.executeAsync(Operation.Factory.create(op),
+            OperationMessageHandler.DISCARD);
+        try {
+            future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return System.nanoTime() - start;
+        } catch (TimeoutException e) {
+            future.asyncCancel(true);
+            throw new IOException("No answer from server in " + timeoutMillis + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the server", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+    
+    /**
+     * Close a connection that no longer works. Pending and running requests fail, and new
+     * ones fail immediately until the connection is established again.
+     * 
+     * @param reason The reason the connection was lost
+     */
+    public void connectionLost(String reason) {
+        Session lost;
+        synchronized (this) {
+            lost = session;
+            if (lost == null) {
+                return;
+            }
+            outage = reason;
+            session = null;
+        }
+        lost.close();
+        setState(state.withStatus(false, "Connection lost: " + reason));
+    }
+    
+    /**
+     * Get the number of clients per connection configured with {@link #POOL_SIZE_PROPERTY}.
+     * 
+     * @return The configured pool size
+     */
+    public static int configuredPoolSize() {
+        return Math.max(1, Integer.getInteger(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE));
+    }
+    
+    /**
+     * Get the cached operation plan of a server, probing it on the first connection to this
+     * kind of server. A failed probe leaves everything assumed available until the next connection;
+     * the plan of a partly failed probe is only used for this connection.
+     */
+    private static OperationPlan operationPlan(Session newSession, String version, Set<String> installed) {
+        Set<String> relevant = OperationPlan.relevantSubsystems(installed);
+        String key = version + " " + relevant;
+        OperationPlan plan = PLANS.get(key);
+        if (plan != null) {
+            return plan;
+        }
+        
+        ModelNode probe = OperationPlan.createProbeOperation(relevant);
+        if (probe == null) {
+            plan = new OperationPlan(version, relevant, true, true, null, null);
+        } else {
+            ModelNode response;
             try {
-                client.close();
+                response = newSession.scheduler.execute(probe);
             } catch (IOException e) {
-                // Ignore
-            } finally {
-                client = null;
-                serverConnection.setConnected(false);
-                serverConnection.setConnectionStatus("Disconnected");
+                return new OperationPlan(version, relevant, true, true, null, null);
+            }
+            plan = OperationPlan.fromProbeResponse(version, relevant, response);
+            if (!OperationPlan.isCompleteProbe(response)) {
+                return plan;
+            }
+        }
+        PLANS.put(key, plan);
+        return plan;
+    }
+    
+    /**
+     * Make an established connection the current one, replacing any previous connection.
+     * 
+     * @param resuming true to only end an outage, leaving a closed or current connection as is
+     * @return true if published, false if not resuming an outage
+     */
+    private boolean publish(Session newSession, boolean resuming) {
+        Session previous;
+        synchronized (this) {
+            if (resuming && outage == null) {
+                return false;
             }
+            previous = session;
+            session = newSession;
+            outage = null;
+        }
+        if (previous != null) {
+            drainInBackground(previous);
+        }
+        return true;
+    }
+    
+    /**
+     * Let the requests in progress on a closed connection complete, then close its clients,
+     * without blocking the caller.
+     */
+    private static void drainInBackground(Session closed) {
+        Thread drain = new Thread(closed::drain, "connection-drain");
+        drain.setDaemon(true);
+        drain.start();
+    }
+    
+    private static void closeQuietly(ModelControllerClient client) {
+        try {
+            client.close();
+        } catch (IOException e) {
+            // Ignore
         }
     }
     
     /**
-     * Get the current server connection.
+     * Create the management client of a new connection.
+     * 
+     * @param host The server hostname or IP address
+     * @param port The management port
+     * @param callbackHandler The handler providing the credentials
+     * @return The client
+     * @throws IOException if the client cannot be created
+     */
+    protected ModelControllerClient createClient(String host, int port, CallbackHandler callbackHandler) throws IOException {
+        return ModelControllerClient.Factory.create(InetAddress.getByName(host), port, callbackHandler);
+    }
+    
+    /**
+     * Create the composite operation reading the server state, the product version and the
+     * installed subsystems when connecting.
+     * 
+     * @return The handshake operation
+     */
+    static ModelNode createHandshakeOperation() {
+        ModelNode op = new ModelNode();
+        op.get("operation").set("composite");
+        op.get("address").setEmptyList();
+        ModelNode steps = op.get("steps");
+        
+        ModelNode state = steps.add();
+        state.get("operation").set("read-attribute");
+        state.get("name").set("server-state");
+        state.get("address").setEmptyList();
+        
+        ModelNode version = steps.add();
+        version.get("operation").set("read-attribute");
+        version.get("name").set("product-version");
+        version.get("address").setEmptyList();
+        
+        ModelNode subsystemNames = steps.add();
+        subsystemNames.get("operation").set("read-children-names");
+        subsystemNames.get("child-type").set("subsystem");
+        subsystemNames.get("address").setEmptyList();
+        return op;
+    }
+    
+    /**
+     * Disconnect from the server.
+     */
+    public void disconnect() {
+        Session closed = detach();
+        if (closed != null) {
+            drainInBackground(closed);
+        }
+    }
+    
+    /**
+     * Disconnect from the server, waiting for the requests in progress to complete and the
+     * clients to be closed. Meant for short-lived connections, which leave no drain thread behind.
+     */
+    public void disconnectAndWait() {
+        Session closed = detach();
+        if (closed != null) {
+            closed.drain();
+        }
+    }
+    
+    /**
+     * Mark the connection as closed.
+     * 
+     * @return The session of the connection, or null if there was none
+     */
+    private Session detach() {
+        Session closed;
+        synchronized (this) {
+            closed = session;
+            if (closed == null && outage == null) {
+                return null;
+            }
+            session = null;
+            outage = null;
+        }
+        subsystems = Collections.emptySet();
+        setState(state.withStatus(false, "Disconnected"));
+        return closed;
+    }
+    
+    /**
+     * Get the current state of the connection.
+     * 
+     * @return The state published last
+     */
+    public ConnectionSnapshot getConnectionSnapshot() {
+        return state;
+    }
+    
+    /**
+     * Add a listener called with every new state of the connection.
+     * 
+     * @param listener The listener, called on the thread connecting, losing or closing the connection
+     */
+    public void addStateListener(Consumer<ConnectionSnapshot> listener) {
+        stateListeners.add(listener);
+    }
+    
+    /**
+     * Remove a connection state listener.
+     * 
+     * @param listener The listener
+     */
+    public void removeStateListener(Consumer<ConnectionSnapshot> listener) {
+        stateListeners.remove(listener);
+    }
+    
+    private void setState(ConnectionSnapshot newState) {
+        state = newState;
+        for (Consumer<ConnectionSnapshot> listener : stateListeners) {
+            listener.accept(newState);
+        }
+    }
+    
+    /**
+     * Get the clients of the current connection.
+     * 
+     * @return The client pool, or null when not connected
+     */
+    public ClientPool getClientPool() {
+        Session current = session;
+        return current != null ? current.pool : null;
+    }
+    
+    /**
+     * Execute a management operation through the request scheduler, with the priority
+     * of the calling thread (see {@link RequestScheduler#inBackground}).
+     * 
+     * @param operation The operation to execute
+     * @return The result of the operation
+     * @throws IOException if the operation cannot be executed
+     */
+    public ModelNode execute(ModelNode operation) throws IOException {
+        Session current = session;
+        if (current == null) {
+            String reason = outage;
+            if (reason != null) {
+                // Fail fast while the connection is being established again
+                throw new IOException("Connection to server lost (" + reason + "), reconnecting");
+            }
+            throw new IllegalStateException("Not connected to server");
+        }
+        return current.scheduler.execute(operation);
+    }
+    
+    /**
+     * Get the statistics of the management requests sent to the server.
+     * 
+     * @return The management metrics
+     */
+    public ManagementMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Get the subsystems installed on the connected server, read when connecting.
+     * 
+     * @return The subsystem names, empty when not connected
+     */
+    public Set<String> getSubsystems() {
+        return subsystems;
+    }
+    
+    /**
+     * Check if the connection was lost and not established again or closed since.
+     * 
+     * @return true during an outage, false otherwise
+     */
+    public boolean isConnectionLost() {
+        return outage != null;
+    }
+    
+    /**
+     * Get what may be asked to the connected server.
      * 
-     * @return The server connection
+     * @return The operation plan of the connection, {@link OperationPlan#DEFAULT} when not connected
      */
-    public ServerConnection getServerConnection() {
-        return serverConnection;
+    public OperationPlan getOperationPlan() {
+        Session current = session;
+        return current != null ? current.plan : OperationPlan.DEFAULT;
     }
     
     /**
-     * Get the model controller client.
+     * Get the request scheduler of the current connection.
      * 
-     * @return The model controller client
+     * @return The request scheduler, or null when not connected
      */
-    public ModelControllerClient getClient() {
-        return client;
+    public RequestScheduler getScheduler() {
+        Session current = session;
+        return current != null ? current.scheduler : null;
     }
     
     /**
@@ -139,6 +551,6 @@ public class ConnectionService {
      * @return true if connected, false otherwise
      */
     public boolean isConnected() {
-        return client != null && serverConnection.isConnected();
+        return session != null && state.connected();
     }
 }
@@ -0,0 +1,250 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.ConnectionProfile;
+import com.jbossmanager.model.EJBSnapshot;
+import com.jbossmanager.model.MessagingServer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Service class connecting saved profiles in the background, so that switching to one of
+ * them does not wait for the connection handshake or the initial resource load.
+ * <p>
+ * Profiles are connected in parallel. Once connected, the resources of each profile are
+ * loaded with background priority and saved as a snapshot. A warmed-up connection is handed
+ * over with {@link #take(String)}; the ones never taken are closed by {@link #discard(String)}
+ * or {@link #shutdown()}. A connection is owned by the warmer while it is mapped to its
+ * profile: a handshake ending after its profile was discarded disconnects on its own.
+ */
+public class ConnectionWarmer {
+    
+    /** Maximum number of profiles connected at the same time. */
+    public static final int MAX_PARALLEL_CONNECTIONS = 4;
+    
+    /** Seconds {@link #shutdown()} waits for the handshakes in progress. */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+    
+    /**
+     * State of a warmed-up profile.
+     */
+    public enum State {
+        CONNECTING,
+        LOADING,
+        READY,
+        FAILED
+    }
+    
+    /**
+     * Connection of a profile, with the services and the resources loaded in the background.
+     */
+    public static final class WarmConnection {
+        private final ConnectionProfile profile;
+        private final ConnectionService connectionService;
+        private final JMSService jmsService;
+        private final EJBService ejbService;
+        private volatile State state = State.CONNECTING;
+        private volatile List<MessagingServer> servers;
+        private volatile List<EJBSnapshot> ejbs;
+        private volatile String error;
+        
+        WarmConnection(ConnectionProfile profile, ConnectionService connectionService) {
+            this.profile = profile;
+            this.connectionService = connectionService;
+            this.jmsService = new JMSService(connectionService);
+            this.ejbService = new EJBService(connectionService);
+        }
+        
+        public ConnectionProfile getProfile() {
+            return profile;
+        }
+        
+        public ConnectionService getConnectionService() {
+            return connectionService;
+        }
+        
+        public JMSService getJmsService() {
+            return jmsService;
+        }
+        
+        public EJBService getEjbService() {
+            return ejbService;
+        }
+        
+        public State getState() {
+            return state;
+        }
+        
+        /**
+         * Get the messaging servers loaded in the background.
+         * 
+         * @return The messaging servers, or null if they are not loaded yet
+         */
+        public List<MessagingServer> getServers() {
+            return servers;
+        }
+        
+        /**
+         * Get the EJB components loaded in the background.
+         * 
+         * @return The EJB components, or null if they are not loaded yet
+         */
+        public List<EJBSnapshot> getEjbs() {
+            return ejbs;
+        }
+        
+        /**
+         * Get the reason of a failed warm-up, or of a failed resource load or snapshot save
+         * of a connection ready all the same.
+         * 
+         * @return The error message, or null
+         */
+        public String getError() {
+            return error;
+        }
+    }
+    
+    private final Supplier<ConnectionService> connectionFactory;
+    private final ResourceSnapshotStore snapshotStore;
+    private final Map<String, WarmConnection> connections = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    
+    public ConnectionWarmer(ResourceSnapshotStore snapshotStore) {
+        this(ConnectionService::new, snapshotStore);
+    }
+    
+    public ConnectionWarmer(Supplier<ConnectionService> connectionFactory, ResourceSnapshotStore snapshotStore) {
+        this.connectionFactory = connectionFactory;
+        this.snapshotStore = snapshotStore;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(MAX_PARALLEL_CONNECTIONS, runnable -> {
+            Thread thread = new Thread(runnable, "connection-warmer-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Start connecting profiles in the background. Profiles already warming up are skipped.
+     * 
+     * @param profiles The profiles to connect
+     */
+    public void warmUp(List<ConnectionProfile> profiles) {
+        for (ConnectionProfile profile : profiles) {
+            WarmConnection connection = new WarmConnection(profile, connectionFactory.get());
+            if (connections.putIfAbsent(profile.getName(), connection) == null) {
+                executor.execute(() -> warmUp(connection));
+            }
+        }
+    }
+    
+    /**
+     * Get the warm-up state of a profile without taking its connection.
+     * 
+     * @param profileName The profile name
+     * @return The connection, or null if the profile is not warming up
+     */
+    public WarmConnection get(String profileName) {
+        return connections.get(profileName);
+    }
+    
+    /**
+     * Take the connection of a profile once it is connected and its resources are loaded, so
+     * that the warmer no longer reads on it. The caller becomes responsible for disconnecting it.
+     * 
+     * @param profileName The profile name
+     * @return The connection, or null if the profile is not ready
+     */
+    public WarmConnection take(String profileName) {
+        WarmConnection connection = connections.get(profileName);
+        if (connection == null || connection.getState() != State.READY) {
+            return null;
+        }
+        return connections.remove(profileName, connection) ? connection : null;
+    }
+    
+    /**
+     * Disconnect the connection of a profile that was not taken, e.g. when the profile is
+     * deleted or its connection details change.
+     * 
+     * @param profileName The profile name
+     */
+    public void discard(String profileName) {
+        WarmConnection connection = connections.remove(profileName);
+        if (connection != null) {
+            connection.getConnectionService().disconnect();
+        }
+    }
+    
+    /**
+     * Stop warming up and disconnect all connections that were not taken. Waits a few seconds
+     * for the handshakes in progress; those still running afterwards disconnect when they end.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (String profileName : connections.keySet()) {
+            discard(profileName);
+        }
+    }
+    
+    private void warmUp(WarmConnection connection) {
+        ConnectionProfile profile = connection.getProfile();
+        ConnectionService connectionService = connection.getConnectionService();
+        if (!connectionService.connect(profile.getHost(), profile.getPort(), profile.getUsername(), profile.getPassword())) {
+            connection.error = connectionService.getConnectionSnapshot().connectionStatus();
+            connection.state = State.FAILED;
+            connections.remove(profile.getName(), connection);
+            connectionService.disconnect();
+            return;
+        }
+        
+        // Discarded during the handshake, the session is not owned by anyone else
+        if (!isOwned(connection)) {
+            connectionService.disconnectAndWait();
+            return;
+        }
+        
+        connection.state = State.LOADING;
+        try {
+            // The operation plan of the connection skips the subsystems the server does not have
+            List<MessagingServer> servers = RequestScheduler.inBackground(connection.getJmsService()::getMessagingServers);
+            List<EJBSnapshot> ejbs = RequestScheduler.inBackground(connection.getEjbService()::getEJBs);
+            connection.servers = servers;
+            connection.ejbs = ejbs;
+            // Discarded while loading, and disconnected then
+            if (!isOwned(connection)) {
+                return;
+            }
+            try {
+                snapshotStore.save(profile.getHost(), profile.getPort(), servers, ejbs);
+            } catch (IOException e) {
+                // Ready all the same, the next start only has no snapshot to show
+                connection.error = "Failed to save resources snapshot: " + e.getMessage();
+            }
+            connection.state = State.READY;
+        } catch (Exception e) {
+            // Still connected, the resources are loaded again when the connection is taken
+            connection.error = e.getMessage();
+            connection.state = State.READY;
+        }
+    }
+    
+    /**
+     * Check if a connection is still mapped to its profile, i.e. neither discarded nor taken.
+     */
+    private boolean isOwned(WarmConnection connection) {
+        return connections.get(connection.getProfile().getName()) == connection;
+    }
+}
@@ -0,0 +1,235 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.DeploymentInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Matrix of the deployments of several servers, telling for each deployment on which servers
+ * it is missing or has different content.
+ * <p>
+ * The content expected on every server is the one most of the servers having the deployment
+ * agree on (the first server's one on a tie); servers with another hash have drifted.
+ * The matrix is computed in a single pass over the deployments of each server.
+ */
+public class DeploymentComparison {
+    
+    /**
+     * State of a deployment on a server.
+     */
+    public enum Status {
+        /** Deployed with the expected content and enabled. */
+        MATCHING,
+        /** Deployed with another content than on most servers. */
+        DIFFERENT,
+        /** Deployed with the expected content, but disabled. */
+        DISABLED,
+        /** Not deployed on the server. */
+        MISSING,
+        /** The deployments of the server could not be read. */
+        UNREADABLE
+    }
+    
+    /**
+     * A deployment with its state on each server, in the order of the servers compared.
+     */
+    public static final class Row {
+        private final String name;
+        private final String expectedHash;
+        private final Status[] statuses;
+        private final String[] contentHashes;
+        private final boolean consistent;
+        
+        Row(String name, String expectedHash, Status[] statuses, String[] contentHashes) {
+            this.name = name;
+            this.expectedHash = expectedHash;
+            this.statuses = statuses;
+            this.contentHashes = contentHashes;
+            boolean consistent = true;
+            for (Status status : statuses) {
+                if (status != Status.MATCHING && status != Status.UNREADABLE) {
+                    consistent = false;
+                }
+            }
+            this.consistent = consistent;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Get the content hash most of the servers having the deployment agree on.
+         * 
+         * @return The hexadecimal hash, or null for unmanaged content
+         */
+        public String getExpectedHash() {
+            return expectedHash;
+        }
+        
+        /**
+         * Get the state of the deployment on a server.
+         * 
+         * @param node The index of the server in {@link DeploymentComparison#getNodes()}
+         * @return The state
+         */
+        public Status getStatus(int node) {
+            return statuses[node];
+        }
+        
+        /**
+         * Get the content hash of the deployment on a server.
+         * 
+         * @param node The index of the server in {@link DeploymentComparison#getNodes()}
+         * @return The hexadecimal hash, or null if it is not deployed there or its content is unmanaged
+         */
+        public String getContentHash(int node) {
+            return contentHashes[node];
+        }
+        
+        /**
+         * Check if the deployment is the same on every server read.
+         * 
+         * @return true if no server misses it, has other content or disabled it
+         */
+        public boolean isConsistent() {
+            return consistent;
+        }
+    }
+    
+    private final List<String> nodes;
+    private final List<Row> rows;
+    private final Map<String, String> errors;
+    
+    private DeploymentComparison(List<String> nodes, List<Row> rows, Map<String, String> errors) {
+        this.nodes = nodes;
+        this.rows = rows;
+        this.errors = errors;
+    }
+    
+    /**
+     * Compare the deployments of servers.
+     * 
+     * @param nodes The names of the servers, in the order of the columns of the matrix
+     * @param deployments The deployments by server name, without the servers that could not be read
+     * @param errors The reason each unread server could not be read, by server name
+     * @return The comparison, with the drifted deployments first and then by name
+     */
+    public static DeploymentComparison compare(List<String> nodes, Map<String, List<DeploymentInfo>> deployments,
+                                               Map<String, String> errors) {
+        // Deployment of each server, by deployment name
+        Map<String, DeploymentInfo[]> byName = new HashMap<>();
+        for (int node = 0; node < nodes.size(); node++) {
+            List<DeploymentInfo> infos = deployments.get(nodes.get(node));
+            if (infos == null) {
+                continue;
+            }
+            for (DeploymentInfo info : infos) {
+                byName.computeIfAbsent(info.getName(), key -> new DeploymentInfo[nodes.size()])[node] = info;
+            }
+        }
+        
+        List<Row> rows = new ArrayList<>(byName.size());
+        for (Map.Entry<String, DeploymentInfo[]> entry : byName.entrySet()) {
+            DeploymentInfo[] infos = entry.getValue();
+            String expectedHash = expectedHash(infos);
+            Status[] statuses = new Status[nodes.size()];
+            String[] contentHashes = new String[nodes.size()];
+            for (int node = 0; node < nodes.size(); node++) {
+                DeploymentInfo info = infos[node];
+                if (!deployments.containsKey(nodes.get(node))) {
+                    statuses[node] = Status.UNREADABLE;
+                } else if (info == null) {
+                    statuses[node] = Status.MISSING;
+                } else {
+                    contentHashes[node] = info.getContentHash();
+                    if (!Objects.equals(info.getContentHash(), expectedHash)) {
+                        statuses[node] = Status.DIFFERENT;
+                    } else {
+                        statuses[node] = info.isEnabled() ? Status.MATCHING : Status.DISABLED;
+                    }
+                }
+            }
+            rows.add(new Row(entry.getKey(), expectedHash, statuses, contentHashes));
+        }
+        rows.sort(Comparator.comparing(Row::isConsistent).thenComparing(Row::getName));
+        
+        return new DeploymentComparison(Collections.unmodifiableList(new ArrayList<>(nodes)),
+            Collections.unmodifiableList(rows), Collections.unmodifiableMap(new LinkedHashMap<>(errors)));
+    }
+    
+    /**
+     * Get the most frequent content hash of a deployment, the first server's one on a tie.
+     */
+    private static String expectedHash(DeploymentInfo[] infos) {
+        Map<String, Integer> counts = new HashMap<>();
+        int maxCount = 0;
+        for (DeploymentInfo info : infos) {
+            if (info != null) {
+                maxCount = Math.max(maxCount, counts.merge(key(info), 1, Integer::sum));
+            }
+        }
+        String expected = null;
+        for (DeploymentInfo info : infos) {
+            if (info != null && counts.get(key(info)) == maxCount) {
+                expected = info.getContentHash();
+                break;
+            }
+        }
+        return expected;
+    }
+    
+    private static String key(DeploymentInfo info) {
+        // Unmanaged contents have no hash, they are all counted as the same
+        return Objects.toString(info.getContentHash(), "");
+    }
+    
+    /**
+     * Get the names of the servers compared, in the order of the statuses of each row.
+     * 
+     * @return The server names
+     */
+    public List<String> getNodes() {
+        return nodes;
+    }
+    
+    /**
+     * Get the deployments of all servers, the drifted ones first and then by name.
+     * 
+     * @return The rows of the matrix
+     */
+    public List<Row> getRows() {
+        return rows;
+    }
+    
+    /**
+     * Get the servers whose deployments could not be read.
+     * 
+     * @return The errors by server name
+     */
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+    
+    /**
+     * Get the number of deployments missing on a server or with different content or state.
+     * 
+     * @return The number of drifted deployments
+     */
+    public int getDriftCount() {
+        int count = 0;
+        for (Row row : rows) {
+            if (!row.isConsistent()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
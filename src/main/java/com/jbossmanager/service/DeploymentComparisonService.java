@@ -0,0 +1,90 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.ConnectionProfile;
+import com.jbossmanager.model.DeploymentInfo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Service class comparing the deployments of several servers, e.g. the nodes of a cluster.
+ * <p>
+ * Each server is connected on its own with its saved profile, and the deployments of all
+ * servers are read in parallel, then compared by content hash into a {@link DeploymentComparison}.
+ */
+public class DeploymentComparisonService {
+    
+    /** Maximum number of servers read at the same time. */
+    public static final int MAX_PARALLEL_READS = 8;
+    
+    private final Supplier<ConnectionService> connectionFactory;
+    
+    public DeploymentComparisonService() {
+        this(ConnectionService::new);
+    }
+    
+    public DeploymentComparisonService(Supplier<ConnectionService> connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+    
+    /**
+     * Read and compare the deployments of servers. Blocks until all servers are read, so it
+     * must not be called on the JavaFX thread.
+     * 
+     * @param profiles The profiles of the servers, each one a column of the comparison
+     * @return The comparison, with the servers that could not be read in its errors
+     * @throws InterruptedException if interrupted while reading
+     */
+    public DeploymentComparison compare(List<ConnectionProfile> profiles) throws InterruptedException {
+        AtomicInteger threads = new AtomicInteger();
+        int parallelism = Math.max(1, Math.min(profiles.size(), MAX_PARALLEL_READS));
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "deployment-comparison-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        List<String> nodes = new ArrayList<>();
+        Map<String, List<DeploymentInfo>> deployments = new LinkedHashMap<>();
+        Map<String, String> errors = new LinkedHashMap<>();
+        try {
+            List<Future<List<DeploymentInfo>>> reads = new ArrayList<>();
+            for (ConnectionProfile profile : profiles) {
+                reads.add(executor.submit(() -> readDeployments(profile)));
+            }
+            for (int i = 0; i < profiles.size(); i++) {
+                String node = profiles.get(i).getName();
+                nodes.add(node);
+                try {
+                    deployments.put(node, reads.get(i).get());
+                } catch (ExecutionException e) {
+                    errors.put(node, e.getCause().getMessage());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return DeploymentComparison.compare(nodes, deployments, errors);
+    }
+    
+    private List<DeploymentInfo> readDeployments(ConnectionProfile profile) throws Exception {
+        ConnectionService connectionService = connectionFactory.get();
+        try {
+            if (!connectionService.connect(profile.getHost(), profile.getPort(), profile.getUsername(),
+                    profile.getPassword())) {
+                throw new Exception(connectionService.getConnectionSnapshot().connectionStatus());
+            }
+            return new EJBService(connectionService).getDeploymentInfos();
+        } finally {
+            connectionService.disconnectAndWait();
+        }
+    }
+}
@@ -1,171 +1,360 @@
 package com.jbossmanager.service;
 
-import com.jbossmanager.model.EJBComponent;
+import com.jbossmanager.model.DeploymentInfo;
+import com.jbossmanager.model.EJBSnapshot;
+import com.jbossmanager.model.EJBType;
 import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.Property;
 
 import java.io.File;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Service class for managing EJB components on JBoss/WildFly servers.
  */
 public class EJBService {
     
+    /** Invocation statistics of the bean resources, defined when statistics are enabled. */
+    static final List<String> STATISTICS = List.of("invocations", "execution-time", "peak-concurrent-usage");
+    
     private final ConnectionService connectionService;
+    private final List<Consumer<List<EJBSnapshot>>> refreshListeners = new CopyOnWriteArrayList<>();
     
     public EJBService(ConnectionService connectionService) {
         this.connectionService = connectionService;
     }
     
+    /**
+     * Add a listener called with the result of every {@link #getEJBs()} call that read all
+     * deployments, so that a deployment not read is not taken for a removed one.
+     * 
+     * @param listener The listener, called on the refreshing thread
+     */
+    public void addRefreshListener(Consumer<List<EJBSnapshot>> listener) {
+        refreshListeners.add(listener);
+    }
+    
+    /**
+     * Remove a refresh listener.
+     * 
+     * @param listener The listener
+     */
+    public void removeRefreshListener(Consumer<List<EJBSnapshot>> listener) {
+        refreshListeners.remove(listener);
+    }
+    
     /**
      * Get all EJB components from the server.
+     * <p>
+     * The reads follow the {@link OperationPlan} of the connection: nothing is read if the
+     * server has no EJB subsystem, all deployments are read at once when wildcard
+     * addresses are supported, and only the bean attributes shown are read.
+     * 
+     * @return List of EJB components
+     * @throws Exception if an error occurs
+     */
+    public List<EJBSnapshot> getEJBs() throws Exception {
+        return getEJBs(batch -> {
+        });
+    }
+    
+    /**
+     * Get all EJB components from the server, passing the components of each response to a
+     * listener as soon as it is read, so that they can be shown before the others are read.
+     * A deployment whose EJBs could not be read fails the call, see
+     * {@link #getEJBs(Consumer, Consumer)} to keep the others.
      * 
+     * @param batchListener The listener, called on the calling thread with the components of
+     *                      all deployments, or of each deployment when they are read one by one
      * @return List of EJB components
      * @throws Exception if an error occurs
      */
-    public List<EJBComponent> getEJBs() throws Exception {
+    public List<EJBSnapshot> getEJBs(Consumer<List<EJBSnapshot>> batchListener) throws Exception {
+        List<String> failures = new ArrayList<>();
+        List<EJBSnapshot> ejbs = getEJBs(batchListener, failures::add);
+        if (!failures.isEmpty()) {
+            throw new Exception("Failed to get EJBs of " + failures.get(0));
+        }
+        return ejbs;
+    }
+    
+    /**
+     * Get all EJB components from the server like {@link #getEJBs(Consumer)}, keeping the
+     * components of the deployments read when the EJBs of others could not be read.
+     * 
+     * @param batchListener The listener, called on the calling thread with the components of
+     *                      all deployments, or of each deployment when they are read one by one
+     * @param failureListener The listener, called on the calling thread with each deployment
+     *                        whose EJBs could not be read, e.g. "orders.jar: failure description"
+     * @return List of EJB components of the deployments read
+     * @throws Exception if an error occurs
+     */
+    public List<EJBSnapshot> getEJBs(Consumer<List<EJBSnapshot>> batchListener, Consumer<String> failureListener)
+            throws Exception {
         if (!connectionService.isConnected()) {
             throw new IllegalStateException("Not connected to server");
         }
         
-        List<EJBComponent> ejbs = new ArrayList<>();
+        OperationPlan plan = connectionService.getOperationPlan();
+        List<EJBSnapshot> ejbs = new ArrayList<>();
+        boolean[] complete = {true};
+        // Without an EJB container no deployment can have beans
+        if (plan.hasSubsystem(OperationPlan.EJB_SUBSYSTEM)) {
+            if (plan.supportsWildcardReads()) {
+                readAllEJBs(plan, ejbs, batchListener, failure -> {
+                    complete[0] = false;
+                    failureListener.accept(failure);
+                });
+            } else {
+                readEJBsPerDeployment(plan, ejbs, batchListener);
+            }
+        }
         
+        if (complete[0]) {
+            for (Consumer<List<EJBSnapshot>> listener : refreshListeners) {
+                listener.accept(ejbs);
+            }
+        }
+        return ejbs;
+    }
+    
+    /**
+     * Read the EJB subsystem of every deployment in a single request. The deployments that
+     * could not be read are given to the failure listener, a failure without the address of
+     * its deployment fails the whole read.
+     */
+    private void readAllEJBs(OperationPlan plan, List<EJBSnapshot> ejbs, Consumer<List<EJBSnapshot>> batchListener,
+                             Consumer<String> failureListener) throws Exception {
+        ModelNode result = executeEJBsRead(plan, "*");
+        
+        Map<String, ModelNode> subsystems = new LinkedHashMap<>();
+        ModelNode items = result.get("step-1", "result");
+        for (ModelNode item : items.isDefined() ? items.asList() : new ArrayList<ModelNode>()) {
+            String deploymentName = item.hasDefined("address") ? addressValue(item.get("address"), "deployment") : null;
+            if (!"success".equals(item.get("outcome").asString())) {
+                String description = item.get("failure-description").asString();
+                if (deploymentName == null) {
+                    throw new Exception("Failed to get EJBs: " + description);
+                }
+                failureListener.accept(deploymentName + ": " + description);
+                continue;
+            }
+            subsystems.put(deploymentName, item.get("result"));
+        }
+        addEJBs(plan, "*", result, subsystems, ejbs);
+        batchListener.accept(ejbs);
+    }
+    
+    /**
+     * Read the EJB subsystem of each deployment having one, one request per deployment.
+     */
+    private void readEJBsPerDeployment(OperationPlan plan, List<EJBSnapshot> ejbs,
+                                       Consumer<List<EJBSnapshot>> batchListener) throws Exception {
         // First, get all deployments
         ModelNode op = new ModelNode();
         op.get("operation").set("read-children-resources");
         op.get("child-type").set("deployment");
         op.get("address").setEmptyList();
         
-        ModelNode result = connectionService.getClient().execute(op);
+        ModelNode result = connectionService.execute(op);
         if ("success".equals(result.get("outcome").asString())) {
             ModelNode deploymentsNode = result.get("result");
             for (String deploymentName : deploymentsNode.keys()) {
-                // For each deployment, get EJBs
-                ejbs.addAll(getEJBsForDeployment(deploymentName));
+                // Deployments list their subsystems as children, skip the ones without EJBs
+                ModelNode deployment = deploymentsNode.get(deploymentName);
+                if (deployment.has("subsystem") && !deployment.get("subsystem").has(OperationPlan.EJB_SUBSYSTEM)) {
+                    continue;
+                }
+                List<EJBSnapshot> batch = getEJBsForDeployment(plan, deploymentName);
+                ejbs.addAll(batch);
+                batchListener.accept(batch);
             }
         } else {
             throw new Exception("Failed to get deployments: " + result.get("failure-description").asString());
         }
-        
-        return ejbs;
     }
     
     /**
      * Get all EJB components for a specific deployment.
      * 
+     * @param plan The operation plan of the connection
      * @param deploymentName The name of the deployment
      * @return List of EJB components in the deployment
      * @throws Exception if an error occurs
      */
-    private List<EJBComponent> getEJBsForDeployment(String deploymentName) throws Exception {
-        List<EJBComponent> ejbs = new ArrayList<>();
+    private List<EJBSnapshot> getEJBsForDeployment(OperationPlan plan, String deploymentName) throws Exception {
+        List<EJBSnapshot> ejbs = new ArrayList<>();
         
         // Query the EJB subsystem for this deployment
+        ModelNode result = executeEJBsRead(plan, deploymentName);
+        
+        Map<String, ModelNode> subsystems = new LinkedHashMap<>();
+        subsystems.put(deploymentName, result.get("step-1", "result"));
+        addEJBs(plan, deploymentName, result, subsystems, ejbs);
+        return ejbs;
+    }
+    
+    /**
+     * Execute the read of the EJBs of a deployment created by {@link #createEJBsRead}.
+     * 
+     * @return The results of the steps
+     */
+    private ModelNode executeEJBsRead(OperationPlan plan, String deploymentName) throws Exception {
+        ModelNode result = connectionService.execute(createEJBsRead(plan, deploymentName));
+        if (!"success".equals(result.get("outcome").asString())) {
+            String target = "*".equals(deploymentName) ? "EJBs" : "EJBs of " + deploymentName;
+            throw new Exception("Failed to get " + target + ": " + result.get("failure-description").asString());
+        }
+        return result.get("result");
+    }
+    
+    /**
+     * Create the read of the EJBs of a deployment: a composite reading the names of the beans
+     * from the EJB subsystem without its children, then only the bean attributes shown by the
+     * application (see {@link #beanProjections}).
+     * 
+     * @param plan The operation plan of the connection
+     * @param deploymentName The name of the deployment, or {@code *} for all deployments
+     * @return The composite operation
+     */
+    static ModelNode createEJBsRead(OperationPlan plan, String deploymentName) {
         ModelNode op = new ModelNode();
-        op.get("operation").set("read-resource");
-        op.get("recursive").set(true);
+        op.get("operation").set("composite");
+        op.get("address").setEmptyList();
+        ModelNode steps = op.get("steps");
         
-        // Set the address to the EJB3 subsystem for this deployment
-        ModelNode address = op.get("address");
-        address.add("deployment", deploymentName);
-        address.add("subsystem", "ejb3");
+        ModelNode names = steps.add();
+        names.get("operation").set("read-resource");
+        names.get("address").set(ejbSubsystemAddress(deploymentName));
         
-        ModelNode result = connectionService.getClient().execute(op);
-        if ("success".equals(result.get("outcome").asString())) {
-            ModelNode ejbSubsystem = result.get("result");
-            
-            // Process Stateless Session Beans
-            if (ejbSubsystem.hasDefined("stateless-session-bean")) {
-                ModelNode statelessBeans = ejbSubsystem.get("stateless-session-bean");
-                for (String beanName : statelessBeans.keys()) {
-                    ModelNode bean = statelessBeans.get(beanName);
-                    EJBComponent ejb = new EJBComponent();
-                    ejb.setName(beanName);
-                    ejb.setType("Stateless Session Bean");
-                    ejb.setDeploymentName(deploymentName);
-                    ejb.setStateful(false);
-                    
-                    // Get JNDI names
-                    if (bean.hasDefined("jndi-names") && bean.get("jndi-names").asList().size() > 0) {
-                        ejb.setJndiName(bean.get("jndi-names").asList().get(0).asString());
-                    }
-                    
-                    // Set status
-                    ejb.setStatus("Deployed");
-                    
-                    ejbs.add(ejb);
-                }
+        for (AttributeProjection projection : beanProjections(plan, deploymentName)) {
+            steps.add(projection.createRead(plan));
+        }
+        return op;
+    }
+    
+    /**
+     * Get the reads of the bean attributes shown by the application: the JNDI names of the
+     * session and singleton beans, and the statistics if the beans have them. Bean types
+     * without any of these attributes are not read.
+     * 
+     * @param plan The operation plan of the connection
+     * @param deploymentName The name of the deployment, or {@code *} for all deployments
+     * @return The projections, in the order of their composite steps
+     */
+    static List<AttributeProjection> beanProjections(OperationPlan plan, String deploymentName) {
+        List<AttributeProjection> projections = new ArrayList<>();
+        for (EJBType type : EJBType.values()) {
+            List<String> attributes = new ArrayList<>();
+            if (type != EJBType.MESSAGE_DRIVEN) {
+                attributes.add("jndi-names");
             }
-            
-            // Process Stateful Session Beans
-            if (ejbSubsystem.hasDefined("stateful-session-bean")) {
-                ModelNode statefulBeans = ejbSubsystem.get("stateful-session-bean");
-                for (String beanName : statefulBeans.keys()) {
-                    ModelNode bean = statefulBeans.get(beanName);
-                    EJBComponent ejb = new EJBComponent();
-                    ejb.setName(beanName);
-                    ejb.setType("Stateful Session Bean");
-                    ejb.setDeploymentName(deploymentName);
-                    ejb.setStateful(true);
-                    
-                    // Get JNDI names
-                    if (bean.hasDefined("jndi-names") && bean.get("jndi-names").asList().size() > 0) {
-                        ejb.setJndiName(bean.get("jndi-names").asList().get(0).asString());
-                    }
-                    
-                    // Set status
-                    ejb.setStatus("Deployed");
-                    
-                    ejbs.add(ejb);
-                }
+            attributes.addAll(STATISTICS);
+            attributes.removeIf(attribute -> !plan.hasBeanAttribute(attribute));
+            if (!attributes.isEmpty()) {
+                projections.add(new AttributeProjection(ejbSubsystemAddress(deploymentName), type.getResourceType(),
+                    attributes, plan.hasBeanStatistics()));
             }
-            
-            // Process Message-Driven Beans
-            if (ejbSubsystem.hasDefined("message-driven-bean")) {
-                ModelNode mdbBeans = ejbSubsystem.get("message-driven-bean");
-                for (String beanName : mdbBeans.keys()) {
-                    ModelNode bean = mdbBeans.get(beanName); // Get the bean node
-                    // Check if the bean is a message-driven bean
-                    EJBComponent ejb = new EJBComponent();
-                    ejb.setName(beanName);
-                    ejb.setType("Message-Driven Bean");
-                    ejb.setDeploymentName(deploymentName);
-                    ejb.setStateful(false);
-                    
-                    // Set status
-                    ejb.setStatus("Deployed");
-                    
-                    ejbs.add(ejb);
+        }
+        return projections;
+    }
+    
+    /**
+     * Add the beans read by {@link #createEJBsRead}.
+     * 
+     * @param plan The operation plan of the connection
+     * @param deploymentName The name of the deployment, or {@code *} for all deployments
+     * @param stepResults The results of the steps
+     * @param subsystems The EJB subsystem resources by deployment name, with the bean names
+     * @param ejbs The list to add the beans to
+     */
+    private static void addEJBs(OperationPlan plan, String deploymentName, ModelNode stepResults,
+                                Map<String, ModelNode> subsystems, List<EJBSnapshot> ejbs) {
+        // Put the projected attributes in place of the undefined beans of the subsystem resources
+        int step = 2;
+        for (AttributeProjection projection : beanProjections(plan, deploymentName)) {
+            for (ModelNode item : projection.items(stepResults.get("step-" + step++, "result"))) {
+                ModelNode subsystem = subsystems.get(addressValue(item.get("address"), "deployment"));
+                if (subsystem != null && "success".equals(item.get("outcome").asString())) {
+                    String beanName = addressValue(item.get("address"), projection.getChildType());
+                    subsystem.get(projection.getChildType(), beanName).set(item.get("result"));
                 }
             }
-            
-            // Process Singleton Beans
-            if (ejbSubsystem.hasDefined("singleton-bean")) {
-                ModelNode singletonBeans = ejbSubsystem.get("singleton-bean");
-                for (String beanName : singletonBeans.keys()) {
-                    ModelNode bean = singletonBeans.get(beanName);
-                    EJBComponent ejb = new EJBComponent();
-                    ejb.setName(beanName);
-                    ejb.setType("Singleton Bean");
-                    ejb.setDeploymentName(deploymentName);
-                    ejb.setStateful(false);
-                    
-                    // Get JNDI names
-                    if (bean.hasDefined("jndi-names") && bean.get("jndi-names").asList().size() > 0) {
-                        ejb.setJndiName(bean.get("jndi-names").asList().get(0).asString());
-                    }
-                    
-                    // Set status
-                    ejb.setStatus("Deployed");
-                    
-                    ejbs.add(ejb);
+        }
+        for (Map.Entry<String, ModelNode> subsystem : subsystems.entrySet()) {
+            addEJBs(subsystem.getKey(), subsystem.getValue(), ejbs);
+        }
+    }
+    
+    /**
+     * Build the address of the EJB subsystem of a deployment.
+     */
+    private static ModelNode ejbSubsystemAddress(String deploymentName) {
+        ModelNode address = new ModelNode();
+        address.add("deployment", deploymentName);
+        address.add("subsystem", OperationPlan.EJB_SUBSYSTEM);
+        return address;
+    }
+    
+    /**
+     * Get the value of one element of a resource address.
+     */
+    private static String addressValue(ModelNode address, String key) {
+        for (ModelNode element : address.asList()) {
+            if (element.has(key)) {
+                return element.get(key).asString();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Add the beans of the EJB subsystem resource of a deployment.
+     * 
+     * @param deploymentName The name of the deployment
+     * @param ejbSubsystem The EJB subsystem resource
+     * @param ejbs The list to add the beans to
+     */
+    private static void addEJBs(String deploymentName, ModelNode ejbSubsystem, List<EJBSnapshot> ejbs) {
+        for (EJBType type : EJBType.values()) {
+            if (ejbSubsystem.hasDefined(type.getResourceType())) {
+                ModelNode beans = ejbSubsystem.get(type.getResourceType());
+                for (String beanName : beans.keys()) {
+                    ejbs.add(toSnapshot(beanName, type, deploymentName, beans.get(beanName)));
                 }
             }
         }
-        
-        return ejbs;
+    }
+    
+    /**
+     * Create a bean from its resource, read with runtime attributes. The statistics are only
+     * defined when statistics are enabled in the EJB subsystem.
+     * 
+     * @param name The bean name
+     * @param type The bean type
+     * @param deploymentName The name of the deployment
+     * @param bean The bean resource
+     * @return The bean
+     */
+    static EJBSnapshot toSnapshot(String name, EJBType type, String deploymentName, ModelNode bean) {
+        // Get JNDI names, message-driven beans have none
+        String jndiName = "";
+        if (bean.hasDefined("jndi-names") && bean.get("jndi-names").asList().size() > 0) {
+            jndiName = bean.get("jndi-names").asList().get(0).asString();
+        }
+        return new EJBSnapshot(name, type, deploymentName, jndiName, statistic(bean, "invocations"),
+            statistic(bean, "execution-time"), statistic(bean, "peak-concurrent-usage"));
+    }
+    
+    private static long statistic(ModelNode bean, String name) {
+        return bean.hasDefined(name) ? bean.get(name).asLong() : 0;
     }
     
     /**
@@ -191,7 +380,7 @@ public class EJBService {
         op.get("name").set(ejbFile.getName());
         
         // Execute the operation
-        ModelNode result = connectionService.getClient().execute(op);
+        ModelNode result = connectionService.execute(op);
         return "success".equals(result.get("outcome").asString());
     }
     
@@ -214,7 +403,7 @@ public class EJBService {
         op.get("name").set(deploymentName);
         
         // Execute the operation
-        ModelNode result = connectionService.getClient().execute(op);
+        ModelNode result = connectionService.execute(op);
         return "success".equals(result.get("outcome").asString());
     }
     
@@ -238,7 +427,7 @@ public class EJBService {
         op.get("address").setEmptyList();
         
         // Execute the operation
-        ModelNode result = connectionService.getClient().execute(op);
+        ModelNode result = connectionService.execute(op);
         if ("success".equals(result.get("outcome").asString())) {
             List<ModelNode> deploymentNodes = result.get("result").asList();
             for (ModelNode deploymentNode : deploymentNodes) {
@@ -250,4 +439,50 @@ public class EJBService {
         
         return deployments;
     }
+    
+    /**
+     * Get all deployments from the server with their content hash, in a single read.
+     * 
+     * @return List of deployments, in the order of the server
+     * @throws Exception if an error occurs
+     */
+    public List<DeploymentInfo> getDeploymentInfos() throws Exception {
+        if (!connectionService.isConnected()) {
+            throw new IllegalStateException("Not connected to server");
+        }
+        
+        // The attributes of every deployment, without its subsystems
+        ModelNode op = new ModelNode();
+        op.get("operation").set("read-children-resources");
+        op.get("child-type").set("deployment");
+        op.get("address").setEmptyList();
+        
+        ModelNode result = connectionService.execute(op);
+        if (!"success".equals(result.get("outcome").asString())) {
+            throw new Exception("Failed to get deployments: " + result.get("failure-description").asString());
+        }
+        
+        List<DeploymentInfo> deployments = new ArrayList<>();
+        if (result.get("result").isDefined()) {
+            for (Property deployment : result.get("result").asPropertyList()) {
+                ModelNode attributes = deployment.getValue();
+                deployments.add(new DeploymentInfo(deployment.getName(), contentHash(attributes.get("content")),
+                    attributes.get("enabled").asBoolean(false)));
+            }
+        }
+        return deployments;
+    }
+    
+    /**
+     * Get the hexadecimal hash of a managed deployment content.
+     * 
+     * @return The hash, or null for unmanaged content (deployed from a path)
+     */
+    static String contentHash(ModelNode content) {
+        if (!content.isDefined() || content.asList().isEmpty()) {
+            return null;
+        }
+        ModelNode hash = content.get(0).get("hash");
+        return hash.isDefined() ? HexFormat.of().formatHex(hash.asBytes()) : null;
+    }
 }
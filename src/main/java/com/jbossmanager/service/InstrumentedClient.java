@@ -0,0 +1,179 @@
+package com.jbossmanager.service;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.as.controller.client.OperationResponse;
+import org.jboss.dmr.ModelNode;
+import org.jboss.threads.AsyncFuture;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Management client decorator recording the latency, payload sizes and errors of every
+ * synchronous operation in a {@link ManagementMetrics} registry, and emitting a
+ * {@link ManagementOperationEvent} for Java Flight Recorder.
+ * <p>
+ * The client does not expose the bytes it exchanges, so payload sizes are measured by encoding
+ * the nodes again. Responses can be megabytes, so only one operation in
+ * {@link #SIZE_SAMPLE_INTERVAL} is measured, plus those a flight recording will record.
+ */
+public class InstrumentedClient implements ModelControllerClient {
+    
+    /** Number of operations for each one whose payload sizes are measured. */
+    public static final int SIZE_SAMPLE_INTERVAL = 16;
+    
+    private final ModelControllerClient delegate;
+    private final ManagementMetrics metrics;
+    private final int sampleInterval;
+    private final AtomicLong executions = new AtomicLong();
+    
+    public InstrumentedClient(ModelControllerClient delegate, ManagementMetrics metrics) {
+        this(delegate, metrics, SIZE_SAMPLE_INTERVAL);
+    }
+    
+    InstrumentedClient(ModelControllerClient delegate, ManagementMetrics metrics, int sampleInterval) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.sampleInterval = sampleInterval;
+    }
+    
+    @Override
+    public ModelNode execute(ModelNode operation) throws IOException {
+        return execute(Operation.Factory.create(operation), OperationMessageHandler.DISCARD);
+    }
+    
+    @Override
+    public ModelNode execute(Operation operation) throws IOException {
+        return execute(operation, OperationMessageHandler.DISCARD);
+    }
+    
+    @Override
+    public ModelNode execute(ModelNode operation, OperationMessageHandler messageHandler) throws IOException {
+        return execute(Operation.Factory.create(operation), messageHandler);
+    }
+    
+    @Override
+    public ModelNode execute(Operation operation, OperationMessageHandler messageHandler) throws IOException {
+        ModelNode request = operation.getOperation();
+        String name = operationName(request);
+        ManagementOperationEvent event = new ManagementOperationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            ModelNode response = delegate.execute(operation, messageHandler);
+            long duration = System.nanoTime() - start;
+            event.end();
+            boolean error = !"success".equals(response.get("outcome").asString());
+            if (measureSizes(event)) {
+                long requestBytes = sizeOf(request);
+                long responseBytes = sizeOf(response);
+                metrics.record(name, duration, requestBytes, responseBytes, error);
+                event.complete(name, request, response, requestBytes, responseBytes);
+            } else {
+                metrics.record(name, duration, error);
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            long duration = System.nanoTime() - start;
+            event.end();
+            if (measureSizes(event)) {
+                long requestBytes = sizeOf(request);
+                metrics.record(name, duration, requestBytes, 0, true);
+                event.complete(name, request, null, requestBytes, 0);
+            } else {
+                metrics.record(name, duration, true);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Check if the payload sizes of an operation are measured: when its event will be recorded,
+     * and for one operation in the sample interval.
+     */
+    private boolean measureSizes(ManagementOperationEvent event) {
+        return executions.getAndIncrement() % sampleInterval == 0 || event.shouldCommit();
+    }
+    
+    /**
+     * Get the name an operation is recorded under. A composite operation is named after the
+     * distinct operations of its steps, e.g. {@code composite(read-attribute,read-resource)},
+     * so that the composites sent for different purposes are told apart.
+     * 
+     * @param request The operation
+     * @return The name
+     */
+    static String operationName(ModelNode request) {
+        if (!request.hasDefined("operation")) {
+            return "unknown";
+        }
+        String name = request.get("operation").asString();
+        if (!"composite".equals(name) || !request.hasDefined("steps")) {
+            return name;
+        }
+        Set<String> steps = new TreeSet<>();
+        for (ModelNode step : request.get("steps").asList()) {
+            steps.add(operationName(step));
+        }
+        return name + "(" + String.join(",", steps) + ")";
+    }
+    
+    @Override
+    public OperationResponse executeOperation(Operation operation, OperationMessageHandler messageHandler) throws IOException {
+        return delegate.executeOperation(operation, messageHandler);
+    }
+    
+    @Override
+    public AsyncFuture<ModelNode> executeAsync(Operation operation, OperationMessageHandler messageHandler) {
+        return delegate.executeAsync(operation, messageHandler);
+    }
+    
+    @Override
+    public AsyncFuture<OperationResponse> executeOperationAsync(Operation operation, OperationMessageHandler messageHandler) {
+        return delegate.executeOperationAsync(operation, messageHandler);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+    
+    /**
+     * Get the size of a node in the binary DMR encoding used on the wire.
+     * The node is written to a counting stream, no buffer is allocated.
+     * 
+     * @param node The node
+     * @return The size in bytes
+     */
+    static long sizeOf(ModelNode node) {
+        CountingOutputStream counter = new CountingOutputStream();
+        try {
+            node.writeExternal(counter);
+        } catch (IOException e) {
+            // Cannot happen, the stream discards everything
+        }
+        return counter.count;
+    }
+    
+    /**
+     * Output stream discarding its data and counting the bytes written.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+        
+        @Override
+        public void write(int b) {
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
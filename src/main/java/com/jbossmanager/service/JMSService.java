@@ -1,133 +1,372 @@
 package com.jbossmanager.service;
 
-import com.jbossmanager.model.JMSQueue;
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueSnapshot;
+import com.jbossmanager.model.TopicSnapshot;
 import org.jboss.dmr.ModelNode;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
- * Service class for managing JMS queues on JBoss/WildFly servers.
+ * Service class for managing JMS queues and topics on JBoss/WildFly servers.
  */
 public class JMSService {
     
+    /** Name of the messaging server configured by the default server profiles. */
+    public static final String DEFAULT_SERVER = "default";
+    
+    /** Attributes of the jms-queue resources shown by the application. */
+    static final List<String> QUEUE_ATTRIBUTES = List.of("entries", "durable", "message-count", "consumer-count",
+        "messages-added", "paused");
+    
+    /** Attributes of the jms-topic resources shown by the application. */
+    static final List<String> TOPIC_ATTRIBUTES = List.of("entries", "subscription-count",
+        "durable-subscription-count", "message-count", "durable-message-count");
+    
     private final ConnectionService connectionService;
+    private final List<Consumer<List<MessagingServer>>> refreshListeners = new CopyOnWriteArrayList<>();
     
     public JMSService(ConnectionService connectionService) {
         this.connectionService = connectionService;
     }
     
     /**
-     * Get all JMS queues from the server.
+     * Add a listener called with the result of every metrics refresh, i.e. every
+     * successful {@link #getMessagingServers()} call.
      * 
-     * @return List of JMS queues
+     * @param listener The listener, called on the refreshing thread
+     */
+    public void addRefreshListener(Consumer<List<MessagingServer>> listener) {
+        refreshListeners.add(listener);
+    }
+    
+    /**
+     * Remove a metrics refresh listener.
+     * 
+     * @param listener The listener
+     */
+    public void removeRefreshListener(Consumer<List<MessagingServer>> listener) {
+        refreshListeners.remove(listener);
+    }
+    
+    /**
+     * Get all messaging servers with their JMS queues and topics.
+     * <p>
+     * Servers, queues and topics are discovered with wildcard reads combined into a
+     * single composite request, which also returns the runtime metrics of every destination.
+     * Servers not supporting wildcard reads are read server by server, and nothing is read
+     * from servers without the messaging subsystem (see {@link OperationPlan}).
+     * 
+     * @return List of messaging servers
      * @throws Exception if an error occurs
      */
-    public List<JMSQueue> getQueues() throws Exception {
+    public List<MessagingServer> getMessagingServers() throws Exception {
         if (!connectionService.isConnected()) {
             throw new IllegalStateException("Not connected to server");
         }
         
-        List<JMSQueue> queues = new ArrayList<>();
+        OperationPlan plan = connectionService.getOperationPlan();
+        Map<String, MessagingServer> servers = new LinkedHashMap<>();
+        if (plan.hasSubsystem(OperationPlan.MESSAGING_SUBSYSTEM)) {
+            ModelNode stepResults = plan.supportsWildcardReads() ? readDestinations(plan) : readDestinationsPerServer(plan);
+            addDestinations(stepResults, servers);
+        }
         
-        // Create operation to read all JMS queues (child resources)
+        List<MessagingServer> refreshed = new ArrayList<>(servers.values());
+        for (Consumer<List<MessagingServer>> listener : refreshListeners) {
+            listener.accept(refreshed);
+        }
+        return refreshed;
+    }
+    
+    /**
+     * Read the servers and all their queues and topics in a single composite request.
+     * 
+     * @param plan The operation plan of the connection
+     * @return The results of the server names, queues and topics steps
+     */
+    private ModelNode readDestinations(OperationPlan plan) throws Exception {
+        // Create composite operation reading servers, queues and topics at once
         ModelNode op = new ModelNode();
-        op.get("operation").set("read-children-resources");
-        op.get("child-type").set("jms-queue");
+        op.get("operation").set("composite");
+        op.get("address").setEmptyList();
+        ModelNode steps = op.get("steps");
         
-        // Set the subsystem address (we can add custom ones later)
-        ModelNode address = op.get("address");
-        address.add("subsystem", "messaging-activemq");
-        address.add("server", "default");
+        steps.add(createServerNamesRead());
+        for (AttributeProjection projection : destinationProjections(plan, "*")) {
+            steps.add(projection.createRead(plan));
+        }
         
         // Execute the operation
-        ModelNode result = connectionService.getClient().execute(op);
-        if ("success".equals(result.get("outcome").asString())) {
-            ModelNode queuesNode = result.get("result");
-            for (String queueName : queuesNode.keys()) {
-                ModelNode queueNode = queuesNode.get(queueName);
-                JMSQueue queue = new JMSQueue();
-                queue.setName(queueName);
-                
-                // Get JNDI name from entries (first entry)
-                if (queueNode.hasDefined("entries") && queueNode.get("entries").asList().size() > 0) {
-                    queue.setJndiName(queueNode.get("entries").asList().get(0).asString());
-                }
-                
-                // Get durable property
-                if (queueNode.hasDefined("durable")) {
-                    queue.setDurable(queueNode.get("durable").asBoolean());
+        ModelNode result = connectionService.execute(op);
+        if (!"success".equals(result.get("outcome").asString())) {
+            throw new Exception("Failed to get JMS destinations: " + result.get("failure-description").asString());
+        }
+        return result.get("result");
+    }
+    
+    /**
+     * Read the servers, then the queues and topics of each server in a single composite
+     * request, for servers not supporting wildcard addresses.
+     * 
+     * @param plan The operation plan of the connection
+     * @return The results in the same form as {@link #readDestinations}
+     */
+    private ModelNode readDestinationsPerServer(OperationPlan plan) throws Exception {
+        ModelNode names = connectionService.execute(createServerNamesRead());
+        if (!"success".equals(names.get("outcome").asString())) {
+            throw new Exception("Failed to get messaging servers: " + names.get("failure-description").asString());
+        }
+        ModelNode stepResults = new ModelNode();
+        stepResults.get("step-1").set(names);
+        stepResults.get("step-2", "result").setEmptyList();
+        stepResults.get("step-3", "result").setEmptyList();
+        List<ModelNode> serverNames = listResult(names.get("result"));
+        if (serverNames.isEmpty()) {
+            return stepResults;
+        }
+        
+        ModelNode op = new ModelNode();
+        op.get("operation").set("composite");
+        op.get("address").setEmptyList();
+        ModelNode steps = op.get("steps");
+        for (ModelNode serverName : serverNames) {
+            for (AttributeProjection projection : destinationProjections(plan, serverName.asString())) {
+                steps.add(projection.createRead(plan));
+            }
+        }
+        
+        ModelNode result = connectionService.execute(op);
+        if (!"success".equals(result.get("outcome").asString())) {
+            throw new Exception("Failed to get JMS destinations: " + result.get("failure-description").asString());
+        }
+        
+        // Convert to the per-address items returned by wildcard reads
+        int step = 1;
+        for (ModelNode serverName : serverNames) {
+            for (AttributeProjection projection : destinationProjections(plan, serverName.asString())) {
+                ModelNode items = stepResults.get("jms-queue".equals(projection.getChildType()) ? "step-2" : "step-3", "result");
+                for (ModelNode item : projection.items(result.get("result", "step-" + step++, "result"))) {
+                    items.add(item);
                 }
-                
-                // Get queue status and metrics
-                updateQueueStatus(queue);
-                
-                queues.add(queue);
             }
-        } else {
-            throw new Exception("Failed to get JMS queues: " + result.get("failure-description").asString());
+        }
+        return stepResults;
+    }
+    
+    /**
+     * Add the servers, queues and topics of the results of {@link #readDestinations}. The
+     * destinations that could not be read are added to the failures of their server.
+     */
+    private static void addDestinations(ModelNode stepResults, Map<String, MessagingServer> servers) throws Exception {
+        for (ModelNode serverName : listResult(stepResults.get("step-1", "result"))) {
+            servers.put(serverName.asString(), new MessagingServer(serverName.asString()));
         }
         
+        // Add JMS queues
+        for (ModelNode item : listResult(stepResults.get("step-2", "result"))) {
+            if (!"success".equals(item.get("outcome").asString())) {
+                addFailure(item, "jms-queue", servers);
+                continue;
+            }
+            ModelNode address = item.get("address");
+            QueueSnapshot queue = queueSnapshot(addressValue(address, "server"), addressValue(address, "jms-queue"),
+                item.get("result"));
+            servers.computeIfAbsent(queue.serverName(), MessagingServer::new).getQueues().add(queue);
+        }
+        
+        // Add JMS topics
+        for (ModelNode item : listResult(stepResults.get("step-3", "result"))) {
+            if (!"success".equals(item.get("outcome").asString())) {
+                addFailure(item, "jms-topic", servers);
+                continue;
+            }
+            ModelNode address = item.get("address");
+            TopicSnapshot topic = topicSnapshot(addressValue(address, "server"), addressValue(address, "jms-topic"),
+                item.get("result"));
+            servers.computeIfAbsent(topic.serverName(), MessagingServer::new).getTopics().add(topic);
+        }
+    }
+    
+    /**
+     * Record a destination that could not be read on its server, so that the others are still
+     * shown. A failure without the address of the destination fails the whole read.
+     */
+    private static void addFailure(ModelNode item, String type, Map<String, MessagingServer> servers) throws Exception {
+        String description = item.get("failure-description").asString();
+        ModelNode address = item.hasDefined("address") ? item.get("address") : null;
+        String serverName = address != null ? addressValue(address, "server") : "";
+        if (serverName.isEmpty()) {
+            throw new Exception("Failed to get JMS destinations: " + description);
+        }
+        servers.computeIfAbsent(serverName, MessagingServer::new).getFailures()
+            .add(type + " " + addressValue(address, type) + ": " + description);
+    }
+    
+    /**
+     * Get all JMS queues from all messaging servers.
+     * 
+     * @return List of JMS queues
+     * @throws Exception if an error occurs
+     */
+    public List<QueueSnapshot> getQueues() throws Exception {
+        List<QueueSnapshot> queues = new ArrayList<>();
+        for (MessagingServer server : getMessagingServers()) {
+            queues.addAll(server.getQueues());
+        }
         return queues;
     }
     
     /**
-     * Update the status and metrics of a JMS queue.
+     * Get all JMS topics from all messaging servers.
+     * 
+     * @return List of JMS topics
+     * @throws Exception if an error occurs
+     */
+    public List<TopicSnapshot> getTopics() throws Exception {
+        List<TopicSnapshot> topics = new ArrayList<>();
+        for (MessagingServer server : getMessagingServers()) {
+            topics.addAll(server.getTopics());
+        }
+        return topics;
+    }
+    
+    /**
+     * Read the status and metrics of a JMS queue.
      * 
-     * @param queue The JMS queue to update
+     * @param serverName The name of the messaging server
+     * @param queueName The name of the JMS queue
+     * @return The queue as read now
      * @throws Exception if an error occurs
      */
-    public void updateQueueStatus(JMSQueue queue) throws Exception {
+    public QueueSnapshot readQueue(String serverName, String queueName) throws Exception {
         if (!connectionService.isConnected()) {
             throw new IllegalStateException("Not connected to server");
         }
         
-        // Create operation to read queue runtime information
+        // Create operation to read queue runtime information, only the attributes shown if possible
         ModelNode op = new ModelNode();
-        op.get("operation").set("read-resource");
-        op.get("include-runtime").set(true);
+        if (connectionService.getOperationPlan().supportsQueryReads()) {
+            op.get("operation").set("query");
+            for (String attribute : QUEUE_ATTRIBUTES) {
+                op.get("select").add(attribute);
+            }
+        } else {
+            op.get("operation").set("read-resource");
+            op.get("include-runtime").set(true);
+        }
+        op.get("address").set(queueAddress(serverName, queueName));
         
-        // Set the queue address
-        ModelNode address = op.get("address");
-        address.add("subsystem", "messaging-activemq");
-        address.add("server", "default");
-        address.add("jms-queue", queue.getName());
+        // Execute the operation
+        ModelNode result = connectionService.execute(op);
+        if (!"success".equals(result.get("outcome").asString())) {
+            throw new Exception("Failed to read queue " + queueName + ": "
+                + result.get("failure-description").asString());
+        }
+        return queueSnapshot(serverName, queueName, result.get("result"));
+    }
+    
+    /**
+     * List the messages currently held in a JMS queue.
+     * 
+     * @param serverName The name of the messaging server
+     * @param queueName The name of the queue
+     * @param filter JMS selector restricting the messages, or null for all messages
+     * @return List of message nodes as returned by the server
+     * @throws Exception if an error occurs
+     */
+    public List<ModelNode> listMessages(String serverName, String queueName, String filter) throws Exception {
+        ModelNode op = createMessagesOperation("list-messages", serverName, queueName, filter);
         
         // Execute the operation
-        ModelNode result = connectionService.getClient().execute(op);
+        ModelNode result = connectionService.execute(op);
         if ("success".equals(result.get("outcome").asString())) {
-            ModelNode queueNode = result.get("result");
-            
-            // Get message count
-            if (queueNode.hasDefined("message-count")) {
-                queue.setMessageCount(queueNode.get("message-count").asInt());
-            }
-            
-            // Get consumer count
-            if (queueNode.hasDefined("consumer-count")) {
-                queue.setConsumerCount(queueNode.get("consumer-count").asInt());
-            }
-            
-            // Determine status
-            if (queueNode.hasDefined("paused")) {
-                boolean paused = queueNode.get("paused").asBoolean();
-                queue.setStatus(paused ? "Paused" : "Running");
-            } else {
-                queue.setStatus("Unknown");
-            }
+            return listResult(result.get("result"));
+        } else {
+            throw new Exception("Failed to list messages: " + result.get("failure-description").asString());
+        }
+    }
+    
+    /**
+     * Count the messages currently held in a JMS queue, without reading them.
+     * 
+     * @param serverName The name of the messaging server
+     * @param queueName The name of the queue
+     * @param filter JMS selector restricting the messages, or null for all messages
+     * @return Number of messages
+     * @throws Exception if an error occurs
+     */
+    public long countMessages(String serverName, String queueName, String filter) throws Exception {
+        ModelNode op = createMessagesOperation("count-messages", serverName, queueName, filter);
+        
+        // Execute the operation
+        ModelNode result = connectionService.execute(op);
+        if ("success".equals(result.get("outcome").asString())) {
+            return result.get("result").asLong(0);
         } else {
-            queue.setStatus("Error");
+            throw new Exception("Failed to count messages: " + result.get("failure-description").asString());
         }
     }
     
+    /**
+     * Remove the messages matching a filter from a JMS queue.
+     * 
+     * @param serverName The name of the messaging server
+     * @param queueName The name of the queue
+     * @param filter JMS selector restricting the messages, or null for all messages
+     * @return Number of messages removed
+     * @throws Exception if an error occurs
+     */
+    public int removeMessages(String serverName, String queueName, String filter) throws Exception {
+        ModelNode op = createMessagesOperation("remove-messages", serverName, queueName, filter);
+        return executeMessagesOperation(op, "remove messages");
+    }
+    
+    /**
+     * Move the messages matching a filter from a JMS queue to another queue of the same server.
+     * 
+     * @param serverName The name of the messaging server
+     * @param queueName The name of the source queue
+     * @param filter JMS selector restricting the messages, or null for all messages
+     * @param otherQueueName The name of the destination queue
+     * @return Number of messages moved
+     * @throws Exception if an error occurs
+     */
+    public int moveMessages(String serverName, String queueName, String filter, String otherQueueName) throws Exception {
+        ModelNode op = createMessagesOperation("move-messages", serverName, queueName, filter);
+        op.get("other-queue-name").set(otherQueueName);
+        return executeMessagesOperation(op, "move messages");
+    }
+    
+    /**
+     * Expire the messages matching a filter in a JMS queue. Expired messages are sent
+     * to the queue's expiry address, if one is configured.
+     * 
+     * @param serverName The name of the messaging server
+     * @param queueName The name of the queue
+     * @param filter JMS selector restricting the messages, or null for all messages
+     * @return Number of messages expired
+     * @throws Exception if an error occurs
+     */
+    public int expireMessages(String serverName, String queueName, String filter) throws Exception {
+        ModelNode op = createMessagesOperation("expire-messages", serverName, queueName, filter);
+        return executeMessagesOperation(op, "expire messages");
+    }
+    
     /**
      * Start a JMS queue.
      * 
+     * @param serverName The name of the messaging server
      * @param queueName The name of the queue to start
      * @return true if successful, false otherwise
      * @throws Exception if an error occurs
      */
-    public boolean startQueue(String queueName) throws Exception {
+    public boolean startQueue(String serverName, String queueName) throws Exception {
         if (!connectionService.isConnected()) {
             throw new IllegalStateException("Not connected to server");
         }
@@ -135,26 +374,22 @@ public class JMSService {
         // Create operation to resume the queue
         ModelNode op = new ModelNode();
         op.get("operation").set("resume-queue");
-        
-        // Set the queue address
-        ModelNode address = op.get("address");
-        address.add("subsystem", "messaging-activemq");
-        address.add("server", "default");
-        address.add("jms-queue", queueName);
+        op.get("address").set(queueAddress(serverName, queueName));
         
         // Execute the operation
-        ModelNode result = connectionService.getClient().execute(op);
+        ModelNode result = connectionService.execute(op);
         return "success".equals(result.get("outcome").asString());
     }
     
     /**
      * Stop a JMS queue.
      * 
+     * @param serverName The name of the messaging server
      * @param queueName The name of the queue to stop
      * @return true if successful, false otherwise
      * @throws Exception if an error occurs
      */
-    public boolean stopQueue(String queueName) throws Exception {
+    public boolean stopQueue(String serverName, String queueName) throws Exception {
         if (!connectionService.isConnected()) {
             throw new IllegalStateException("Not connected to server");
         }
@@ -162,35 +397,168 @@ public class JMSService {
         // Create operation to pause the queue
         ModelNode op = new ModelNode();
         op.get("operation").set("pause-queue");
-        
-        // Set the queue address
-        ModelNode address = op.get("address");
-        address.add("subsystem", "messaging-activemq");
-        address.add("server", "default");
-        address.add("jms-queue", queueName);
+        op.get("address").set(queueAddress(serverName, queueName));
         
         // Execute the operation
-        ModelNode result = connectionService.getClient().execute(op);
+        ModelNode result = connectionService.execute(op);
         return "success".equals(result.get("outcome").asString());
     }
     
     /**
      * Restart a JMS queue.
      * 
+     * @param serverName The name of the messaging server
      * @param queueName The name of the queue to restart
      * @return true if successful, false otherwise
      * @throws Exception if an error occurs
      */
-    public boolean restartQueue(String queueName) throws Exception {
+    public boolean restartQueue(String serverName, String queueName) throws Exception {
         if (!connectionService.isConnected()) {
             throw new IllegalStateException("Not connected to server");
         }
         
         // Stop and then start the queue
-        boolean stopped = stopQueue(queueName);
+        boolean stopped = stopQueue(serverName, queueName);
         if (stopped) {
-            return startQueue(queueName);
+            return startQueue(serverName, queueName);
         }
         return false;
     }
+    
+    /**
+     * Build the address of a JMS queue.
+     * 
+     * @param serverName The name of the messaging server
+     * @param queueName The name of the queue
+     * @return The queue address
+     */
+    static ModelNode queueAddress(String serverName, String queueName) {
+        ModelNode address = new ModelNode();
+        address.add("subsystem", OperationPlan.MESSAGING_SUBSYSTEM);
+        address.add("server", serverName);
+        address.add("jms-queue", queueName);
+        return address;
+    }
+    
+    /**
+     * Create the read of the names of the messaging servers.
+     */
+    private static ModelNode createServerNamesRead() {
+        ModelNode step = new ModelNode();
+        step.get("operation").set("read-children-names");
+        step.get("child-type").set("server");
+        step.get("address").add("subsystem", OperationPlan.MESSAGING_SUBSYSTEM);
+        return step;
+    }
+    
+    /**
+     * Get the reads of the queue and topic attributes shown by the application.
+     * 
+     * @param plan The operation plan of the connection
+     * @param serverName The name of the messaging server, or {@code *} for all servers
+     * @return The queues projection, then the topics projection
+     */
+    static List<AttributeProjection> destinationProjections(OperationPlan plan, String serverName) {
+        ModelNode address = new ModelNode();
+        address.add("subsystem", OperationPlan.MESSAGING_SUBSYSTEM);
+        address.add("server", serverName);
+        
+        List<String> queueAttributes = new ArrayList<>(QUEUE_ATTRIBUTES);
+        queueAttributes.removeIf(attribute -> !plan.hasQueueAttribute(attribute));
+        return List.of(
+            new AttributeProjection(address, "jms-queue", queueAttributes.isEmpty() ? QUEUE_ATTRIBUTES : queueAttributes, true),
+            new AttributeProjection(address, "jms-topic", TOPIC_ATTRIBUTES, true));
+    }
+    
+    /**
+     * Get the elements of a list result, or an empty list when the result is undefined.
+     */
+    private static List<ModelNode> listResult(ModelNode result) {
+        return result.isDefined() ? result.asList() : new ArrayList<>();
+    }
+    
+    /**
+     * Get the value of one element of a resource address.
+     */
+    private static String addressValue(ModelNode address, String key) {
+        for (ModelNode element : address.asList()) {
+            if (element.has(key)) {
+                return element.get(key).asString();
+            }
+        }
+        return "";
+    }
+    
+    /**
+     * Create a queue from the attributes and runtime metrics of a jms-queue resource.
+     */
+    static QueueSnapshot queueSnapshot(String serverName, String queueName, ModelNode queueNode) {
+        // Determine status
+        String status = "Unknown";
+        if (queueNode.hasDefined("paused")) {
+            status = queueNode.get("paused").asBoolean() ? "Paused" : "Running";
+        }
+        return new QueueSnapshot(serverName, queueName, firstEntry(queueNode), status,
+            (int) longAttribute(queueNode, "message-count"),
+            (int) longAttribute(queueNode, "consumer-count"),
+            longAttribute(queueNode, "messages-added"),
+            queueNode.hasDefined("durable") && queueNode.get("durable").asBoolean());
+    }
+    
+    /**
+     * Create a topic from the attributes and runtime metrics of a jms-topic resource.
+     */
+    static TopicSnapshot topicSnapshot(String serverName, String topicName, ModelNode topicNode) {
+        return new TopicSnapshot(serverName, topicName, firstEntry(topicNode),
+            (int) longAttribute(topicNode, "subscription-count"),
+            (int) longAttribute(topicNode, "durable-subscription-count"),
+            longAttribute(topicNode, "message-count"),
+            longAttribute(topicNode, "durable-message-count"));
+    }
+    
+    /**
+     * Get the JNDI name of a destination from its entries (first entry).
+     */
+    private static String firstEntry(ModelNode destinationNode) {
+        if (destinationNode.hasDefined("entries") && destinationNode.get("entries").asList().size() > 0) {
+            return destinationNode.get("entries").asList().get(0).asString();
+        }
+        return "";
+    }
+    
+    /**
+     * Get a numeric attribute of a resource, 0 if it is not defined.
+     */
+    private static long longAttribute(ModelNode resourceNode, String name) {
+        return resourceNode.hasDefined(name) ? resourceNode.get(name).asLong() : 0;
+    }
+    
+    /**
+     * Create an operation on the messages of a JMS queue.
+     */
+    private ModelNode createMessagesOperation(String operation, String serverName, String queueName, String filter) {
+        if (!connectionService.isConnected()) {
+            throw new IllegalStateException("Not connected to server");
+        }
+        
+        ModelNode op = new ModelNode();
+        op.get("operation").set(operation);
+        op.get("address").set(queueAddress(serverName, queueName));
+        if (filter != null && !filter.isEmpty()) {
+            op.get("filter").set(filter);
+        }
+        return op;
+    }
+    
+    /**
+     * Execute a bulk message operation and return the number of affected messages.
+     */
+    private int executeMessagesOperation(ModelNode op, String description) throws Exception {
+        ModelNode result = connectionService.execute(op);
+        if ("success".equals(result.get("outcome").asString())) {
+            return result.get("result").asInt(0);
+        } else {
+            throw new Exception("Failed to " + description + ": " + result.get("failure-description").asString());
+        }
+    }
 }
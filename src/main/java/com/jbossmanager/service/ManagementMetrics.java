@@ -0,0 +1,217 @@
+package com.jbossmanager.service;
+
+import org.jboss.dmr.ModelNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of per-operation statistics for the management requests sent to the server.
+ * <p>
+ * Each operation type (read-resource, deploy, pause-queue...) gets a latency histogram and
+ * counters for errors and bytes exchanged. Time spent waiting in the request scheduler is
+ * recorded separately under {@link #QUEUE_WAIT}, so tool-side and server-side latency can be
+ * told apart.
+ * <p>
+ * Payload sizes are only measured for a sample of the requests; the byte totals are estimated
+ * from the mean size of the measured ones.
+ */
+public class ManagementMetrics {
+    
+    /** Pseudo-operation recording the time requests wait before being sent. */
+    public static final String QUEUE_WAIT = "(queue-wait)";
+    
+    /**
+     * Statistics of one operation type.
+     */
+    static final class OperationStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final LongAdder measured = new LongAdder();
+    }
+    
+    /**
+     * Immutable view of the statistics of one operation type.
+     */
+    public static final class Snapshot {
+        private final String operation;
+        private final long count;
+        private final long errors;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+        private final double meanMillis;
+        private final long requestBytes;
+        private final long responseBytes;
+        
+        Snapshot(String operation, OperationStats stats) {
+            this.operation = operation;
+            this.count = stats.latency.getCount();
+            this.errors = stats.errors.sum();
+            this.p50Millis = stats.latency.getPercentile(0.50) / 1000.0;
+            this.p99Millis = stats.latency.getPercentile(0.99) / 1000.0;
+            this.maxMillis = stats.latency.getMax() / 1000.0;
+            this.meanMillis = stats.latency.getMean() / 1000.0;
+            long measured = stats.measured.sum();
+            this.requestBytes = estimate(stats.requestBytes.sum(), measured, count);
+            this.responseBytes = estimate(stats.responseBytes.sum(), measured, count);
+        }
+        
+        /**
+         * Extrapolate the bytes of the measured requests to all of them.
+         */
+        private static long estimate(long measuredBytes, long measured, long count) {
+            if (measured == 0 || measured >= count) {
+                return measuredBytes;
+            }
+            return Math.round((double) measuredBytes * count / measured);
+        }
+        
+        public String getOperation() {
+            return operation;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public long getErrors() {
+            return errors;
+        }
+        
+        public double getP50Millis() {
+            return p50Millis;
+        }
+        
+        public double getP99Millis() {
+            return p99Millis;
+        }
+        
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+        
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+        
+        /**
+         * Get the bytes sent for this operation type, estimated if not every request was measured.
+         * 
+         * @return The request bytes
+         */
+        public long getRequestBytes() {
+            return requestBytes;
+        }
+        
+        /**
+         * Get the bytes received for this operation type, estimated if not every response was measured.
+         * 
+         * @return The response bytes
+         */
+        public long getResponseBytes() {
+            return responseBytes;
+        }
+    }
+    
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    
+    /**
+     * Record an executed management request whose payload sizes were measured.
+     * 
+     * @param operation The operation name
+     * @param durationNanos The time the request took
+     * @param requestBytes The size of the request
+     * @param responseBytes The size of the response
+     * @param error true if the request failed or returned a failed outcome
+     */
+    public void record(String operation, long durationNanos, long requestBytes, long responseBytes, boolean error) {
+        OperationStats stats = record(operation, durationNanos, error);
+        stats.requestBytes.add(requestBytes);
+        stats.responseBytes.add(responseBytes);
+        stats.measured.increment();
+    }
+    
+    /**
+     * Record an executed management request whose payload sizes were not measured.
+     * 
+     * @param operation The operation name
+     * @param durationNanos The time the request took
+     * @param error true if the request failed or returned a failed outcome
+     * @return The statistics of the operation type
+     */
+    OperationStats record(String operation, long durationNanos, boolean error) {
+        OperationStats stats = statsFor(operation);
+        stats.latency.record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        if (error) {
+            stats.errors.increment();
+        }
+        return stats;
+    }
+    
+    /**
+     * Record the time a request waited before being sent to the server.
+     * 
+     * @param waitNanos The waiting time
+     */
+    public void recordQueueWait(long waitNanos) {
+        statsFor(QUEUE_WAIT).latency.record(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+    }
+    
+    /**
+     * Get the current statistics of every operation type, sorted by operation name.
+     * 
+     * @return The statistics
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, OperationStats> entry : operations.entrySet()) {
+            snapshots.add(new Snapshot(entry.getKey(), entry.getValue()));
+        }
+        snapshots.sort((a, b) -> a.getOperation().compareTo(b.getOperation()));
+        return snapshots;
+    }
+    
+    /**
+     * Export the current statistics as a JSON document.
+     * 
+     * @return The statistics as JSON
+     */
+    public String toJson() {
+        ModelNode root = new ModelNode();
+        ModelNode operationsNode = root.get("operations").setEmptyObject();
+        for (Snapshot snapshot : snapshot()) {
+            ModelNode node = operationsNode.get(snapshot.getOperation());
+            node.get("count").set(snapshot.getCount());
+            node.get("errors").set(snapshot.getErrors());
+            node.get("p50-ms").set(snapshot.getP50Millis());
+            node.get("p99-ms").set(snapshot.getP99Millis());
+            node.get("max-ms").set(snapshot.getMaxMillis());
+            node.get("mean-ms").set(snapshot.getMeanMillis());
+            node.get("request-bytes").set(snapshot.getRequestBytes());
+            node.get("response-bytes").set(snapshot.getResponseBytes());
+        }
+        return root.toJSONString(false);
+    }
+    
+    /**
+     * Discard all recorded statistics.
+     */
+    public void reset() {
+        operations.clear();
+    }
+    
+    private OperationStats statsFor(String operation) {
+        OperationStats stats = operations.get(operation);
+        if (stats == null) {
+            stats = operations.computeIfAbsent(operation, key -> new OperationStats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,80 @@
+package com.jbossmanager.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Java Flight Recorder event emitted for every management operation sent to the server.
+ * <p>
+ * The event fields are only filled in when the event is enabled in the running recording,
+ * so with JFR disabled the cost is a single check.
+ */
+@Name("com.jbossmanager.ManagementOperation")
+@Label("Management Operation")
+@Category({"JBoss Manager", "Management"})
+@Description("Management operation executed on the JBoss/WildFly server")
+@StackTrace(false)
+public class ManagementOperationEvent extends jdk.jfr.Event {
+    
+    @Label("Operation")
+    String operation;
+    
+    @Label("Address")
+    String address;
+    
+    @Label("Request Size")
+    @DataAmount
+    long requestSize;
+    
+    @Label("Result Size")
+    @DataAmount
+    long resultSize;
+    
+    @Label("Outcome")
+    String outcome;
+    
+    /**
+     * Fill in the event from the request and its response, if the event will be recorded.
+     * The event must have been ended already.
+     * 
+     * @param name The name the operation is recorded under
+     * @param request The operation sent to the server
+     * @param response The response, or null if the operation failed with an exception
+     * @param requestBytes The size of the request
+     * @param responseBytes The size of the response
+     */
+    void complete(String name, ModelNode request, ModelNode response, long requestBytes, long responseBytes) {
+        if (shouldCommit()) {
+            operation = name;
+            address = formatAddress(request.get("address"));
+            requestSize = requestBytes;
+            resultSize = responseBytes;
+            outcome = response != null ? response.get("outcome").asString() : "exception";
+            commit();
+        }
+    }
+    
+    /**
+     * Format an address the way the management CLI does, e.g. {@code /subsystem=ejb3}.
+     * 
+     * @param address The address node
+     * @return The formatted address, "/" for the root resource
+     */
+    static String formatAddress(ModelNode address) {
+        if (!address.isDefined() || address.asList().isEmpty()) {
+            return "/";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (ModelNode element : address.asList()) {
+            for (String key : element.keys()) {
+                builder.append('/').append(key).append('=').append(element.get(key).asString());
+            }
+        }
+        return builder.toString();
+    }
+}
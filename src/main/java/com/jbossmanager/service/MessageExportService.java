@@ -0,0 +1,293 @@
+package com.jbossmanager.service;
+
+import org.jboss.dmr.ModelNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service class for exporting JMS queue messages to newline-delimited JSON files.
+ * <p>
+ * The messages are read in chunks bounded by a window of {@code JMSTimestamp}, oldest first.
+ * The windows are cut from counts of the messages older than a timestamp: each count is kept,
+ * and a window counted to hold more than twice a chunk is split where a chunk of evenly spread
+ * messages would end, or halfway after a split found no message, then counted again. Only the
+ * messages of one window are on the heap at a time, and a cancelled export stops after the
+ * current window instead of waiting for the whole queue to be read. The memory used thus
+ * follows the chunk size rather than the size of the queue, unless more than a chunk of
+ * messages share a millisecond. The last window has no upper bound, so that the messages
+ * stamped ahead of the local clock are exported too.
+ * <p>
+ * Each count and each read scans the whole queue on the server. The window of a count is read
+ * without being counted again, so an export costs about two scans per chunk, plus one count
+ * per doubling of the age of the oldest message, which also cuts the windows of older
+ * messages. A larger chunk size trades memory for fewer scans.
+ * <p>
+ * Messages are written one per line through a fixed-size buffer on a {@link FileChannel}.
+ */
+public class MessageExportService {
+    
+    /** Number of messages written between two flushes and progress reports. */
+    public static final int DEFAULT_PAGE_SIZE = 500;
+    
+    /** Number of messages aimed at by each read of the queue. */
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+    
+    /** Age of the messages counted first, doubled until no message is older. */
+    static final long INITIAL_WINDOW_MILLIS = 60_000;
+    
+    /** End of the last window, which has no upper bound. */
+    static final long OPEN = Long.MAX_VALUE;
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte NEWLINE = '\n';
+    
+    /**
+     * Callback receiving the progress of a running export.
+     */
+    public interface ProgressListener {
+        
+        /**
+         * Called after each page of messages has been written.
+         * 
+         * @param exported Number of messages written so far
+         * @param total Total number of messages to export
+         * @param bytesWritten Number of bytes written so far
+         * @param elapsedMillis Time spent since the export started
+         */
+        void onProgress(long exported, long total, long bytesWritten, long elapsedMillis);
+    }
+    
+    private final JMSService jmsService;
+    private final int pageSize;
+    private final int chunkSize;
+    
+    public MessageExportService(JMSService jmsService) {
+        this(jmsService, DEFAULT_PAGE_SIZE);
+    }
+    
+    public MessageExportService(JMSService jmsService, int pageSize) {
+        this(jmsService, pageSize, DEFAULT_CHUNK_SIZE);
+    }
+    
+    public MessageExportService(JMSService jmsService, int pageSize, int chunkSize) {
+        if (pageSize <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("Page and chunk sizes must be positive");
+        }
+        this.jmsService = jmsService;
+        this.pageSize = pageSize;
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Export the messages of a JMS queue to a newline-delimited JSON file, oldest first. The
+     * messages consumed or expired during the export are missing, so fewer messages than the
+     * total reported to the listener are then written. Those sent during the export may be
+     * exported or not.
+     * 
+     * @param serverName The name of the messaging server
+     * @param queueName The name of the queue to export
+     * @param filter JMS selector restricting the exported messages, or null for all messages
+     * @param target The file to write, replaced if it already exists
+     * @param listener Listener notified after each page, may be null
+     * @param cancelled Flag checked between reads and messages; setting it stops the export
+     * @return Number of messages written
+     * @throws Exception if an error occurs
+     */
+    public long exportMessages(String serverName, String queueName, String filter, Path target,
+                               ProgressListener listener, AtomicBoolean cancelled) throws Exception {
+        long total = jmsService.countMessages(serverName, queueName, filter);
+        long end = System.currentTimeMillis() + 1;
+        
+        // Number of messages older than each timestamp counted, all of them being older than OPEN
+        TreeMap<Long, Long> older = new TreeMap<>();
+        older.put(OPEN, total);
+        
+        // Find how old the messages are with counts only, doubling the age each time
+        long start = end - INITIAL_WINDOW_MILLIS;
+        while (start > 0 && !isCancelled(cancelled) && countOlder(serverName, queueName, filter, start, older) > 0) {
+            start = end - 2 * (end - start);
+        }
+        start = Math.max(start, 0);
+        older.put(start, 0L);
+        
+        try (MessageWriter writer = new MessageWriter(target, total, listener)) {
+            long openCountedFrom = -1;
+            boolean bisect = false;
+            for (long from = start; from != OPEN && !isCancelled(cancelled); ) {
+                long before = older.get(from);
+                if (older.higherKey(from) == OPEN && openCountedFrom != from) {
+                    // Messages may have been sent since the total was counted
+                    older.put(OPEN, before + jmsService.countMessages(serverName, queueName,
+                        windowFilter(filter, from, OPEN)));
+                    openCountedFrom = from;
+                }
+                
+                // The farthest window counted to hold at most a chunk, or else the nearest one
+                Map.Entry<Long, Long> window = older.higherEntry(from);
+                for (Map.Entry<Long, Long> next = window; next != null && next.getValue() - before <= chunkSize;
+                        next = older.higherEntry(next.getKey())) {
+                    window = next;
+                }
+                long to = window.getKey();
+                long count = window.getValue() - before;
+                if (count > 2L * chunkSize && (to == OPEN || to - from > 1)) {
+                    // Counted again up to where a chunk of evenly spread messages would end, or
+                    // halfway once the messages turned out to be grouped at the end
+                    long span = to == OPEN ? Math.max(end - from, INITIAL_WINDOW_MILLIS) : to - from;
+                    long split = from + Math.max(1, Math.min(span - 1, bisect ? span / 2 : span * chunkSize / count));
+                    bisect = countOlder(serverName, queueName, filter, split, older) <= before;
+                    continue;
+                }
+                
+                if (count > 0) {
+                    writer.write(jmsService.listMessages(serverName, queueName, windowFilter(filter, from, to)), cancelled);
+                    bisect = false;
+                }
+                from = to;
+            }
+            return writer.finish();
+        }
+    }
+    
+    /**
+     * Count the messages older than a timestamp, keeping the count for the next windows.
+     * 
+     * @return The number of messages
+     */
+    private long countOlder(String serverName, String queueName, String filter, long timestamp,
+                            Map<Long, Long> older) throws Exception {
+        long count = jmsService.countMessages(serverName, queueName, windowFilter(filter, 0, timestamp));
+        older.put(timestamp, count);
+        return count;
+    }
+    
+    /**
+     * Write message nodes to a newline-delimited JSON file.
+     * 
+     * @param messages The messages to write
+     * @param target The file to write, replaced if it already exists
+     * @param listener Listener notified after each page, may be null
+     * @param cancelled Flag checked between messages; setting it stops the export
+     * @return Number of messages written
+     * @throws IOException if the file cannot be written
+     */
+    long writeMessages(List<ModelNode> messages, Path target,
+                       ProgressListener listener, AtomicBoolean cancelled) throws IOException {
+        try (MessageWriter writer = new MessageWriter(target, messages.size(), listener)) {
+            writer.write(messages, cancelled);
+            return writer.finish();
+        }
+    }
+    
+    /**
+     * Get the selector of the messages of a time window.
+     * 
+     * @param filter JMS selector restricting the messages, or null for all messages
+     * @param from Start of the window in milliseconds since the epoch, inclusive
+     * @param to End of the window in milliseconds since the epoch, exclusive, or {@link #OPEN}
+     * @return The selector of the messages matching the filter within the window
+     */
+    static String windowFilter(String filter, long from, long to) {
+        String window = to == OPEN ? "JMSTimestamp >= " + from : "JMSTimestamp >= " + from + " AND JMSTimestamp < " + to;
+        return filter == null || filter.isEmpty() ? window : "(" + filter + ") AND " + window;
+    }
+    
+    private static boolean isCancelled(AtomicBoolean cancelled) {
+        return cancelled != null && cancelled.get();
+    }
+    
+    /**
+     * Writer of the messages of an export, one page at a time.
+     */
+    private final class MessageWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final long total;
+        private final ProgressListener listener;
+        private final long start = System.currentTimeMillis();
+        private long exported;
+        private long bytesWritten;
+        
+        MessageWriter(Path target, long total, ProgressListener listener) throws IOException {
+            this.channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.total = total;
+            this.listener = listener;
+        }
+        
+        /**
+         * Write messages, reporting the progress after each page.
+         */
+        void write(List<ModelNode> messages, AtomicBoolean cancelled) throws IOException {
+            for (ModelNode message : messages) {
+                if (isCancelled(cancelled)) {
+                    break;
+                }
+                
+                byte[] line = message.toJSONString(true).getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < line.length + 1) {
+                    drain(buffer, channel);
+                }
+                if (line.length + 1 > buffer.capacity()) {
+                    // Message larger than the buffer, write it directly
+                    writeFully(ByteBuffer.wrap(line), channel);
+                    buffer.put(NEWLINE);
+                } else {
+                    buffer.put(line).put(NEWLINE);
+                }
+                bytesWritten += line.length + 1;
+                exported++;
+                
+                if (exported % pageSize == 0) {
+                    drain(buffer, channel);
+                    if (listener != null) {
+                        listener.onProgress(exported, total, bytesWritten, System.currentTimeMillis() - start);
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Write the buffered messages and report the final progress.
+         * 
+         * @return Number of messages written
+         */
+        long finish() throws IOException {
+            drain(buffer, channel);
+            if (listener != null) {
+                listener.onProgress(exported, total, bytesWritten, System.currentTimeMillis() - start);
+            }
+            return exported;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+    
+    /**
+     * Write the buffered bytes to the channel and reset the buffer.
+     */
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        writeFully(buffer, channel);
+        buffer.clear();
+    }
+    
+    private static void writeFully(ByteBuffer buffer, FileChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
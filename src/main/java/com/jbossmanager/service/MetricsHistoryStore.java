@@ -0,0 +1,897 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.EJBSnapshot;
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueSnapshot;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Append-only store of metric samples kept on disk between runs.
+ * <p>
+ * Every sample is a fixed-width record (timestamp, series id, value, previous record of the
+ * series) appended to a memory-mapped segment file. The newest segment is reopened for
+ * appending after a restart; when a segment is full a new one is started, and the oldest
+ * segments are deleted once they are older than the retention period or the samples written
+ * grow over the size limit. Retention is also checked once a minute of samples, so that a
+ * segment filling slowly does not keep expired samples.
+ * <p>
+ * The records of a series are chained within each segment, and the last record of every
+ * series in a segment is kept in memory (and next to the segment file once it is full or the
+ * store closed). A query follows the chain of its series only, so reading one queue does not
+ * scan the samples of all the others, and no file is ever read onto the heap.
+ * <p>
+ * Segments expired while the store was closed are deleted before being mapped. A segment
+ * expiring while mapped is dropped from the store first; where the file of a mapped segment
+ * cannot be deleted (Windows), the deletion is retried on the next rotations.
+ * <p>
+ * Series are identified by name (see {@link #queueSeries} and {@link #ejbSeries}); the
+ * mapping from names to the ids written in the records is kept in {@code series.idx}.
+ * <p>
+ * When the polls cannot be recorded (disk full, store closed), the failure is given once to
+ * the {@link #setFailureListener failure listener} and recording pauses for a while before
+ * being tried again; a failure after recording worked again is reported again.
+ */
+public class MetricsHistoryStore implements Closeable {
+    
+    /**
+     * Size of a record: timestamp (8 bytes), series id (4 bytes), value (8 bytes) and the
+     * index plus one of the previous record of the series in the segment, 0 if none (4 bytes).
+     */
+    public static final int RECORD_SIZE = 24;
+    
+    /** Default size of a segment file. */
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    
+    /** Default retention period of the samples. */
+    public static final Duration DEFAULT_RETENTION = Duration.ofDays(7);
+    
+    /**
+     * Default maximum size of all segments. 100 queues polled every 5 seconds write about
+     * 5 MB an hour, so this keeps four days of them; 10,000 queues write about 520 MB an
+     * hour and need the limit raised with {@link #MAX_SIZE_PROPERTY}.
+     */
+    public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+    
+    /** System property overriding the retention period, in days. */
+    public static final String RETENTION_PROPERTY = "jbossmanager.historyRetentionDays";
+    
+    /** System property overriding the maximum size of all segments, in megabytes. */
+    public static final String MAX_SIZE_PROPERTY = "jbossmanager.historyMaxMegabytes";
+    
+    /** Interval of sample time between two checks of the retention limits. */
+    static final long RETENTION_CHECK_MILLIS = 60_000;
+    
+    /** Time during which the polls are not recorded after they could not be. */
+    static final long RECORD_RETRY_MILLIS = 60_000;
+    
+    // Segment header: magic, record size and number of committed records
+    static final int HEADER_SIZE = 16;
+    private static final int MAGIC = 0x4A424D48;
+    private static final int COUNT_OFFSET = 8;
+    private static final int PREVIOUS_OFFSET = 20;
+    private static final String SEGMENT_PREFIX = "metrics-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String HEADS_SUFFIX = ".heads";
+    private static final String SERIES_INDEX = "series.idx";
+    
+    /**
+     * Callback receiving the samples of a query, in time order.
+     */
+    public interface SampleVisitor {
+        
+        /**
+         * Called for each sample in the requested range.
+         * 
+         * @param timestamp Time of the sample in milliseconds since the epoch
+         * @param value Value of the sample
+         */
+        void visit(long timestamp, long value);
+    }
+    
+    /**
+     * A segment file mapped in memory.
+     */
+    private static final class Segment {
+        private final Path path;
+        private final long startTime;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        // Written by the appending thread, read by queries
+        private volatile int count;
+        private volatile long lastTimestamp;
+        // Index plus one of the last record of each series id, guarded by the store
+        private int[] heads = new int[0];
+        
+        Segment(Path path, long startTime, MappedByteBuffer buffer, int count) {
+            this.path = path;
+            this.startTime = startTime;
+            this.buffer = buffer;
+            this.capacity = (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE;
+            this.count = count;
+            this.lastTimestamp = count > 0 ? buffer.getLong(offset(count - 1)) : startTime;
+        }
+        
+        long timestamp(int index) {
+            return buffer.getLong(offset(index));
+        }
+        
+        /**
+         * Get the last record of a series.
+         * 
+         * @return The index plus one of the record, 0 if the series has none in this segment
+         */
+        int head(int id) {
+            return id < heads.length ? heads[id] : 0;
+        }
+        
+        /**
+         * Make a record the last one of its series.
+         */
+        void link(int id, int index) {
+            if (id >= heads.length) {
+                heads = Arrays.copyOf(heads, Math.max(id + 1, heads.length * 2));
+            }
+            heads[id] = index + 1;
+        }
+        
+        /**
+         * Rebuild the last records of the series from the records after the first ones.
+         */
+        void scanHeads(int from) {
+            for (int i = from; i < count; i++) {
+                link(buffer.getInt(offset(i) + 8), i);
+            }
+        }
+        
+        long usedBytes() {
+            return usedBytes(count);
+        }
+        
+        static long usedBytes(int count) {
+            return HEADER_SIZE + (long) count * RECORD_SIZE;
+        }
+        
+        static int offset(int index) {
+            return HEADER_SIZE + index * RECORD_SIZE;
+        }
+    }
+    
+    /**
+     * Header of a segment file, read without mapping the file.
+     */
+    private static final class SegmentFile {
+        private final Path path;
+        private final long startTime;
+        private final int capacity;
+        private final int count;
+        private final long lastTimestamp;
+        
+        private SegmentFile(Path path, long startTime, int capacity, int count, long lastTimestamp) {
+            this.path = path;
+            this.startTime = startTime;
+            this.capacity = capacity;
+            this.count = count;
+            this.lastTimestamp = lastTimestamp;
+        }
+        
+        /**
+         * Read the header and the last timestamp of a segment file.
+         * 
+         * @return The segment file, or null if it is not a valid segment
+         */
+        static SegmentFile read(Path path) throws IOException {
+            String name = path.getFileName().toString();
+            String time = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+            int dash = time.indexOf('-');
+            long startTime;
+            try {
+                startTime = Long.parseLong(dash < 0 ? time : time.substring(0, dash));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                    return null;
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                readFully(channel, header, 0);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != RECORD_SIZE) {
+                    return null;
+                }
+                int capacity = (int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE);
+                int count = (int) Math.min(Math.max(header.getLong(COUNT_OFFSET), 0), capacity);
+                long lastTimestamp = startTime;
+                if (count > 0) {
+                    ByteBuffer timestamp = ByteBuffer.allocate(Long.BYTES);
+                    readFully(channel, timestamp, Segment.offset(count - 1));
+                    lastTimestamp = timestamp.getLong(0);
+                }
+                return new SegmentFile(path, startTime, capacity, count, lastTimestamp);
+            }
+        }
+        
+        /**
+         * Map the segment file in memory.
+         * 
+         * @param writable true to append to it, false to only query it
+         */
+        Segment map(boolean writable) throws IOException {
+            MappedByteBuffer buffer;
+            if (writable) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                }
+            } else {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            return new Segment(path, startTime, buffer, count);
+        }
+        
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Truncated segment file");
+                }
+            }
+        }
+    }
+    
+    private final Path directory;
+    private final long segmentBytes;
+    private final Duration retention;
+    private final long maxBytes;
+    private final Map<String, Integer> seriesIds = new ConcurrentHashMap<>();
+    private final BufferedWriter seriesWriter;
+    
+    // Guarded by this; the list is copied on write so that it can be iterated without locking
+    private volatile List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private boolean closed;
+    private int nextSeriesId;
+    private long lastRetentionCheck = Long.MIN_VALUE;
+    // Files of dropped segments that could not be deleted yet, guarded by this
+    private final List<Path> pendingDeletes = new ArrayList<>();
+    // Time the polls last failed to be recorded, and whether that was reported; guarded by this
+    private long recordFailedAt;
+    private boolean recordFailureReported;
+    // Failure to save the heads of a segment to report, and whether one was; guarded by this
+    private IOException headsFailure;
+    private boolean headsFailureReported;
+    private volatile Consumer<IOException> failureListener = e -> { };
+    
+    /**
+     * Open the store in {@code ~/.jbossmanager/history} with the configured limits, see
+     * {@link #RETENTION_PROPERTY} and {@link #MAX_SIZE_PROPERTY}.
+     * 
+     * @throws IOException if the store cannot be opened
+     */
+    public MetricsHistoryStore() throws IOException {
+        this(Paths.get(System.getProperty("user.home"), ".jbossmanager", "history"),
+            DEFAULT_SEGMENT_BYTES, configuredRetention(), configuredMaxBytes());
+    }
+    
+    /**
+     * Open a store, creating its directory if needed.
+     * 
+     * @param directory The directory holding the segment files
+     * @param segmentBytes The size of a segment file
+     * @param retention How long samples are kept
+     * @param maxBytes The maximum size of all segment files
+     * @throws IOException if the store cannot be opened
+     */
+    public MetricsHistoryStore(Path directory, long segmentBytes, Duration retention, long maxBytes) throws IOException {
+        if (segmentBytes < HEADER_SIZE + RECORD_SIZE || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retention = retention;
+        this.maxBytes = maxBytes;
+        
+        Files.createDirectories(directory);
+        loadSeriesIndex();
+        seriesWriter = Files.newBufferedWriter(directory.resolve(SERIES_INDEX), StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        loadSegments(System.currentTimeMillis());
+    }
+    
+    /**
+     * Get the retention period configured with {@link #RETENTION_PROPERTY}.
+     * 
+     * @return The retention period, {@link #DEFAULT_RETENTION} if not configured
+     */
+    public static Duration configuredRetention() {
+        String days = System.getProperty(RETENTION_PROPERTY);
+        return days == null || days.isBlank() ? DEFAULT_RETENTION : Duration.ofDays(Long.parseLong(days.trim()));
+    }
+    
+    /**
+     * Get the maximum size configured with {@link #MAX_SIZE_PROPERTY}.
+     * 
+     * @return The maximum size in bytes, {@link #DEFAULT_MAX_BYTES} if not configured
+     */
+    public static long configuredMaxBytes() {
+        String megabytes = System.getProperty(MAX_SIZE_PROPERTY);
+        return megabytes == null || megabytes.isBlank()
+            ? DEFAULT_MAX_BYTES : Long.parseLong(megabytes.trim()) * 1024 * 1024;
+    }
+    
+    /**
+     * Get the name of a queue metric series.
+     * 
+     * @param serverName The messaging server
+     * @param queueName The queue
+     * @param metric The metric, e.g. "messageCount"
+     * @return The series name
+     */
+    public static String queueSeries(String serverName, String queueName, String metric) {
+        return "queue/" + serverName + "/" + queueName + "/" + metric;
+    }
+    
+    /**
+     * Get the name of an EJB metric series.
+     * 
+     * @param deploymentName The deployment
+     * @param beanName The bean
+     * @param metric The metric, e.g. "invocations"
+     * @return The series name
+     */
+    public static String ejbSeries(String deploymentName, String beanName, String metric) {
+        return "ejb/" + deploymentName + "/" + beanName + "/" + metric;
+    }
+    
+    /**
+     * Get the id of a series, registering it if needed.
+     * 
+     * @param name The series name
+     * @return The series id
+     * @throws IOException if a new series cannot be registered
+     */
+    public synchronized int seriesId(String name) throws IOException {
+        int id = register(name);
+        seriesWriter.flush();
+        return id;
+    }
+    
+    /**
+     * Append samples of series given by name, taken at the same time. The series are
+     * resolved and the new ones registered with a single write of the series index.
+     * 
+     * @param timestamp Time of the samples in milliseconds since the epoch
+     * @param series The series names
+     * @param values The values, in the same order as the series
+     * @param length The number of samples to append
+     * @throws IOException if a new series or segment cannot be created
+     */
+    public synchronized void append(long timestamp, String[] series, long[] values, int length) throws IOException {
+        int[] ids = new int[length];
+        for (int i = 0; i < length; i++) {
+            ids[i] = register(series[i]);
+        }
+        seriesWriter.flush();
+        append(timestamp, ids, values, length);
+    }
+    
+    /**
+     * Append samples taken at the same time.
+     * 
+     * @param timestamp Time of the samples in milliseconds since the epoch
+     * @param ids The series ids, see {@link #seriesId}
+     * @param values The values, in the same order as the ids
+     * @param length The number of samples to append
+     * @throws IOException if a new segment cannot be created
+     */
+    public synchronized void append(long timestamp, int[] ids, long[] values, int length) throws IOException {
+        checkOpen();
+        if (timestamp - lastRetentionCheck >= RETENTION_CHECK_MILLIS) {
+            lastRetentionCheck = timestamp;
+            if (active != null && active.count > 0 && active.startTime < timestamp - retention.toMillis()) {
+                // The active segment holds expired samples, started again so that it expires too
+                rotate(timestamp);
+            } else {
+                enforceRetention(timestamp);
+            }
+        }
+        
+        int written = 0;
+        while (written < length) {
+            if (active == null || active.count == active.capacity) {
+                rotate(timestamp);
+            }
+            
+            // Records must stay in time order, a clock going backwards reuses the last timestamp
+            long time = Math.max(timestamp, active.lastTimestamp);
+            MappedByteBuffer buffer = active.buffer;
+            int count = active.count;
+            int batch = Math.min(length - written, active.capacity - count);
+            for (int i = 0; i < batch; i++) {
+                int id = ids[written + i];
+                int offset = Segment.offset(count + i);
+                buffer.putLong(offset, time);
+                buffer.putInt(offset + 8, id);
+                buffer.putLong(offset + 12, values[written + i]);
+                buffer.putInt(offset + PREVIOUS_OFFSET, active.head(id));
+                active.link(id, count + i);
+            }
+            count += batch;
+            buffer.putLong(COUNT_OFFSET, count);
+            active.lastTimestamp = time;
+            active.count = count;
+            written += batch;
+        }
+    }
+    
+    /**
+     * Append a single sample.
+     * 
+     * @param timestamp Time of the sample in milliseconds since the epoch
+     * @param series The series name
+     * @param value The value
+     * @throws IOException if the sample cannot be written
+     */
+    public void append(long timestamp, String series, long value) throws IOException {
+        append(timestamp, new int[] {seriesId(series)}, new long[] {value}, 1);
+    }
+    
+    /**
+     * Record the depth, consumer count and added messages of every queue.
+     * Suitable as a {@link JMSService#addRefreshListener refresh listener}.
+     * 
+     * @param servers The messaging servers returned by the last poll
+     */
+    public void recordMessaging(List<MessagingServer> servers) {
+        int size = 0;
+        for (MessagingServer server : servers) {
+            size += server.getQueues().size() * 3;
+        }
+        String[] series = new String[size];
+        long[] values = new long[size];
+        int length = 0;
+        for (MessagingServer server : servers) {
+            for (QueueSnapshot queue : server.getQueues()) {
+                series[length] = queueSeries(server.getName(), queue.name(), "messageCount");
+                values[length++] = queue.messageCount();
+                series[length] = queueSeries(server.getName(), queue.name(), "consumerCount");
+                values[length++] = queue.consumerCount();
+                series[length] = queueSeries(server.getName(), queue.name(), "messagesAdded");
+                values[length++] = queue.messagesAdded();
+            }
+        }
+        record(System.currentTimeMillis(), series, values, length);
+    }
+    
+    /**
+     * Record the invocation statistics of every EJB.
+     * Suitable as an {@link EJBService#addRefreshListener refresh listener}.
+     * 
+     * @param ejbs The EJB components returned by the last read
+     */
+    public void recordEJBs(List<EJBSnapshot> ejbs) {
+        String[] series = new String[ejbs.size() * 2];
+        long[] values = new long[ejbs.size() * 2];
+        int length = 0;
+        for (EJBSnapshot ejb : ejbs) {
+            series[length] = ejbSeries(ejb.deploymentName(), ejb.name(), "invocations");
+            values[length++] = ejb.invocations();
+            series[length] = ejbSeries(ejb.deploymentName(), ejb.name(), "executionTime");
+            values[length++] = ejb.executionTime();
+        }
+        record(System.currentTimeMillis(), series, values, length);
+    }
+    
+    /**
+     * Set the listener told when the polls cannot be recorded, once until they are again, and
+     * when the last records of the series of a segment cannot be saved, once until they are.
+     * 
+     * @param listener The listener, called on the thread recording the poll
+     */
+    public void setFailureListener(Consumer<IOException> listener) {
+        failureListener = listener;
+    }
+    
+    /**
+     * Append the samples of a poll, unless recording failed a short while ago. A failure
+     * never reaches the poller, it is reported to the failure listener the first time.
+     */
+    void record(long timestamp, String[] series, long[] values, int length) {
+        IOException failure = null;
+        synchronized (this) {
+            if (recordFailureReported && timestamp - recordFailedAt < RECORD_RETRY_MILLIS) {
+                return;
+            }
+            try {
+                append(timestamp, series, values, length);
+                recordFailureReported = false;
+            } catch (IOException e) {
+                recordFailedAt = timestamp;
+                if (!recordFailureReported) {
+                    recordFailureReported = true;
+                    failure = e;
+                }
+            }
+        }
+        reportHeadsFailure();
+        if (failure != null) {
+            failureListener.accept(failure);
+        }
+    }
+    
+    /**
+     * Give the failure to save the heads of a segment, if any, to the failure listener,
+     * outside of the lock like the recording failures.
+     */
+    private void reportHeadsFailure() {
+        IOException failure;
+        synchronized (this) {
+            failure = headsFailure;
+            headsFailure = null;
+        }
+        if (failure != null) {
+            failureListener.accept(failure);
+        }
+    }
+    
+    /**
+     * Visit the samples of a series within a time range, in time order. Samples older than
+     * the retention period are not visited, even if their segment is not deleted yet.
+     * 
+     * @param series The series name
+     * @param from Start of the range in milliseconds since the epoch, inclusive
+     * @param to End of the range in milliseconds since the epoch, inclusive
+     * @param visitor The visitor receiving the samples
+     * @return The number of samples visited
+     */
+    public long query(String series, long from, long to, SampleVisitor visitor) {
+        Integer id = seriesIds.get(series);
+        if (id == null) {
+            return 0;
+        }
+        long start = Math.max(from, System.currentTimeMillis() - retention.toMillis());
+        
+        // The last record of the series in each segment, taken under the lock so that the
+        // chains behind them are complete; they are followed without it
+        List<Segment> overlapping = new ArrayList<>();
+        int[] heads;
+        synchronized (this) {
+            for (Segment segment : segments) {
+                if (segment.count > 0 && segment.lastTimestamp >= start && segment.startTime <= to
+                        && segment.head(id) > 0) {
+                    overlapping.add(segment);
+                }
+            }
+            heads = new int[overlapping.size()];
+            for (int i = 0; i < heads.length; i++) {
+                heads[i] = overlapping.get(i).head(id);
+            }
+        }
+        
+        long visited = 0;
+        int[] indexes = new int[64];
+        for (int segment = 0; segment < heads.length; segment++) {
+            MappedByteBuffer buffer = overlapping.get(segment).buffer;
+            // Walk back from the newest record, then visit in time order
+            int found = 0;
+            for (int next = heads[segment]; next > 0; next = buffer.getInt(Segment.offset(next - 1) + PREVIOUS_OFFSET)) {
+                long timestamp = buffer.getLong(Segment.offset(next - 1));
+                if (timestamp < start) {
+                    break;
+                }
+                if (timestamp <= to) {
+                    if (found == indexes.length) {
+                        indexes = Arrays.copyOf(indexes, found * 2);
+                    }
+                    indexes[found++] = next - 1;
+                }
+            }
+            for (int i = found - 1; i >= 0; i--) {
+                int offset = Segment.offset(indexes[i]);
+                visitor.visit(buffer.getLong(offset), buffer.getLong(offset + 12));
+                visited++;
+            }
+        }
+        return visited;
+    }
+    
+    /**
+     * Get the names of all known series.
+     * 
+     * @return The series names
+     */
+    public List<String> getSeries() {
+        return new ArrayList<>(seriesIds.keySet());
+    }
+    
+    /**
+     * Get the size of the samples written in the segment files, counted by the size limit.
+     * 
+     * @return The size in bytes
+     */
+    public long getSizeBytes() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.usedBytes();
+        }
+        return size;
+    }
+    
+    /**
+     * Get the number of segment files.
+     * 
+     * @return The number of segments
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+    
+    /**
+     * Close the store. Samples appended afterwards, e.g. by a refresh still running when the
+     * application exits, fail instead of creating a new segment.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (active != null) {
+                active.buffer.force();
+                writeHeads(active);
+            }
+            segments = new ArrayList<>();
+            active = null;
+            seriesWriter.close();
+        }
+        reportHeadsFailure();
+    }
+    
+    /**
+     * Get the id of a series, registering it if needed. The series index is not flushed.
+     */
+    private int register(String name) throws IOException {
+        Integer id = seriesIds.get(name);
+        if (id == null) {
+            checkOpen();
+            id = nextSeriesId++;
+            seriesWriter.write(id + "\t" + name);
+            seriesWriter.newLine();
+            seriesIds.put(name, id);
+        }
+        return id;
+    }
+    
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Metrics history is closed");
+        }
+    }
+    
+    /**
+     * Start a new segment and apply the retention limits.
+     */
+    private void rotate(long timestamp) throws IOException {
+        if (active != null) {
+            active.buffer.force();
+            writeHeads(active);
+        }
+        
+        long startTime = Math.max(timestamp, active != null ? active.lastTimestamp : 0);
+        Path path = directory.resolve(SEGMENT_PREFIX + startTime + SEGMENT_SUFFIX);
+        for (int suffix = 1; Files.exists(path); suffix++) {
+            path = directory.resolve(SEGMENT_PREFIX + startTime + "-" + suffix + SEGMENT_SUFFIX);
+        }
+        
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, RECORD_SIZE);
+        buffer.putLong(COUNT_OFFSET, 0);
+        
+        active = new Segment(path, startTime, buffer, 0);
+        List<Segment> updated = new ArrayList<>(segments);
+        updated.add(active);
+        segments = updated;
+        lastRetentionCheck = timestamp;
+        enforceRetention(timestamp);
+    }
+    
+    /**
+     * Delete the oldest segments older than the retention period or over the size limit.
+     * The active segment is never deleted.
+     */
+    private void enforceRetention(long now) {
+        retryPendingDeletes();
+        
+        List<Segment> kept = new ArrayList<>(segments);
+        long size = 0;
+        for (Segment segment : kept) {
+            size += segment.usedBytes();
+        }
+        
+        long oldest = now - retention.toMillis();
+        List<Segment> removed = new ArrayList<>();
+        while (!kept.isEmpty() && kept.get(0) != active
+                && (kept.get(0).lastTimestamp < oldest || size > maxBytes)) {
+            Segment segment = kept.remove(0);
+            size -= segment.usedBytes();
+            removed.add(segment);
+        }
+        
+        // Dropped before their files are deleted; the mappings stay valid for running queries
+        // until they are garbage collected
+        segments = kept;
+        for (Segment segment : removed) {
+            delete(segment.path);
+            delete(headsPath(segment.path));
+        }
+    }
+    
+    /**
+     * Save the last records of the series of a segment next to it, so that they are not
+     * rebuilt from all its records when the store is opened again.
+     * The file starts with the number of records it covers. A failure only slows down the
+     * next start, it is kept for the failure listener the first time.
+     */
+    private void writeHeads(Segment segment) {
+        ByteBuffer data = ByteBuffer.allocate(Long.BYTES + segment.heads.length * Integer.BYTES);
+        data.putLong(segment.count);
+        data.asIntBuffer().put(segment.heads);
+        try {
+            Files.write(headsPath(segment.path), data.array());
+            headsFailureReported = false;
+        } catch (IOException e) {
+            // Rebuilt from the records on the next start
+            if (!headsFailureReported) {
+                headsFailureReported = true;
+                headsFailure = new IOException("Cannot save the series heads of "
+                    + segment.path.getFileName() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+    
+    /**
+     * Load the last records of the series of a segment, saved when it was filled or the store
+     * closed, and complete them with the records appended since, e.g. before a crash.
+     */
+    private static void readHeads(Segment segment) {
+        int covered = 0;
+        Path path = headsPath(segment.path);
+        try {
+            if (Files.exists(path)) {
+                ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+                long count = data.getLong();
+                if (count <= segment.count) {
+                    int[] heads = new int[data.remaining() / Integer.BYTES];
+                    data.asIntBuffer().get(heads);
+                    segment.heads = heads;
+                    covered = (int) count;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            segment.heads = new int[0];
+            covered = 0;
+        }
+        segment.scanHeads(covered);
+    }
+    
+    private static Path headsPath(Path segmentPath) {
+        return segmentPath.resolveSibling(segmentPath.getFileName() + HEADS_SUFFIX);
+    }
+    
+    /**
+     * Delete the file of a segment no longer in the store, retrying later if the file is
+     * still mapped and the platform refuses to delete it.
+     */
+    private void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            pendingDeletes.add(path);
+        }
+    }
+    
+    private void retryPendingDeletes() {
+        for (Iterator<Path> paths = pendingDeletes.iterator(); paths.hasNext();) {
+            try {
+                Files.deleteIfExists(paths.next());
+                paths.remove();
+            } catch (IOException e) {
+                // Still mapped, retried on the next rotation
+            }
+        }
+    }
+    
+    private void loadSeriesIndex() throws IOException {
+        Path index = directory.resolve(SERIES_INDEX);
+        if (!Files.exists(index)) {
+            return;
+        }
+        for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab > 0) {
+                try {
+                    int id = Integer.parseInt(line.substring(0, tab));
+                    seriesIds.put(line.substring(tab + 1), id);
+                    // New ids follow the highest one, lines may be missing or repeated
+                    nextSeriesId = Math.max(nextSeriesId, id + 1);
+                } catch (NumberFormatException e) {
+                    // Line truncated by a crash
+                }
+            }
+        }
+    }
+    
+    /**
+     * Map the existing segments in time order, after deleting the ones expired while the store
+     * was closed. The newest segment is mapped for appending, unless it is full.
+     */
+    private void loadSegments(long now) throws IOException {
+        List<SegmentFile> files = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : paths) {
+                SegmentFile file = SegmentFile.read(path);
+                if (file != null) {
+                    files.add(file);
+                } else {
+                    // Written in another format, e.g. by an older version, or truncated
+                    delete(path);
+                    delete(headsPath(path));
+                }
+            }
+        }
+        files.sort((a, b) -> Long.compare(a.startTime, b.startTime));
+        
+        // Expired segments are deleted without ever being mapped
+        long size = 0;
+        for (SegmentFile file : files) {
+            size += Segment.usedBytes(file.count);
+        }
+        long oldest = now - retention.toMillis();
+        while (!files.isEmpty()
+                && (files.get(0).lastTimestamp < oldest || (size > maxBytes && files.size() > 1))) {
+            SegmentFile removed = files.remove(0);
+            size -= Segment.usedBytes(removed.count);
+            delete(removed.path);
+            delete(headsPath(removed.path));
+        }
+        
+        List<Segment> loaded = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            SegmentFile file = files.get(i);
+            boolean last = i == files.size() - 1;
+            Segment segment = file.map(last && file.count < file.capacity);
+            readHeads(segment);
+            loaded.add(segment);
+            if (last && segment.count < segment.capacity && !segment.buffer.isReadOnly()) {
+                active = segment;
+            }
+        }
+        segments = loaded;
+    }
+}
@@ -0,0 +1,127 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.MessagingServer;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Service class refreshing the JMS metrics in the background at a fixed interval, and the
+ * EJB statistics too when an {@link EJBService} is given, e.g. for the metrics endpoint.
+ * Its requests are issued with background priority, so user operations run first.
+ * <p>
+ * As a {@link ConnectionMonitor.Subscription}, polling pauses while the connection is lost
+ * and starts again with the same settings once reconnected.
+ */
+public class MetricsPoller implements ConnectionMonitor.Subscription {
+    
+    /** Default number of seconds between two refreshes. */
+    public static final int DEFAULT_INTERVAL_SECONDS = 5;
+    
+    private final JMSService jmsService;
+    private final EJBService ejbService;
+    private ScheduledExecutorService executor;
+    private int intervalSeconds;
+    private Consumer<List<MessagingServer>> onRefresh;
+    private Consumer<Exception> onError;
+    
+    public MetricsPoller(JMSService jmsService) {
+        this(jmsService, null);
+    }
+    
+    /**
+     * Create a poller also reading the EJB statistics at each refresh. The EJBs read are
+     * passed to the {@link EJBService#addRefreshListener refresh listeners} of the service.
+     * 
+     * @param jmsService The service reading the JMS metrics
+     * @param ejbService The service reading the EJB statistics, null to read the JMS metrics only
+     */
+    public MetricsPoller(JMSService jmsService, EJBService ejbService) {
+        this.jmsService = jmsService;
+        this.ejbService = ejbService;
+    }
+    
+    /**
+     * Start polling. Does nothing if the poller is already running.
+     * 
+     * @param intervalSeconds The number of seconds between two refreshes
+     * @param onRefresh Called on the polling thread with the refreshed messaging servers
+     * @param onError Called on the polling thread when a refresh fails
+     */
+    public synchronized void start(int intervalSeconds, Consumer<List<MessagingServer>> onRefresh,
+                                   Consumer<Exception> onError) {
+        if (executor != null) {
+            return;
+        }
+        this.intervalSeconds = intervalSeconds;
+        this.onRefresh = onRefresh;
+        this.onError = onError;
+        schedule();
+    }
+    
+    /**
+     * Stop polling.
+     */
+    public synchronized void stop() {
+        suspend();
+        onRefresh = null;
+        onError = null;
+    }
+    
+    /**
+     * Pause polling, keeping the settings of the last {@link #start}.
+     */
+    @Override
+    public synchronized void suspend() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+    
+    /**
+     * Start polling again with the settings of the last {@link #start}, unless stopped since.
+     */
+    @Override
+    public synchronized void resume() {
+        if (executor == null && onRefresh != null) {
+            schedule();
+        }
+    }
+    
+    private void schedule() {
+        Consumer<List<MessagingServer>> onRefresh = this.onRefresh;
+        Consumer<Exception> onError = this.onError;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                onRefresh.accept(RequestScheduler.inBackground(jmsService::getMessagingServers));
+            } catch (Exception e) {
+                onError.accept(e);
+            }
+            if (ejbService != null) {
+                try {
+                    RequestScheduler.inBackground(ejbService::getEJBs);
+                } catch (Exception e) {
+                    onError.accept(e);
+                }
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Check if the poller is running.
+     * 
+     * @return true if running, false otherwise
+     */
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+}
@@ -0,0 +1,264 @@
+package com.jbossmanager.service;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * What the services may ask a server, so that they never send operations that are bound to
+ * fail: which of the subsystems read by the application are installed, whether wildcard
+ * addresses and the {@code query} operation are accepted, and which attributes the EJB and
+ * queue resources have.
+ * <p>
+ * A plan is probed once with a single composite reading the resource descriptions, and cached
+ * by {@link ConnectionService} for every server of the same version and subsystems.
+ * {@link #DEFAULT} assumes that everything is available, as before probing.
+ */
+public final class OperationPlan {
+    
+    /** Name of the EJB subsystem. */
+    public static final String EJB_SUBSYSTEM = "ejb3";
+    
+    /** Name of the messaging subsystem. */
+    public static final String MESSAGING_SUBSYSTEM = "messaging-activemq";
+    
+    /** Plan of a server that was not probed: every subsystem, attribute and wildcard read is assumed available. */
+    public static final OperationPlan DEFAULT = new OperationPlan(null, null, true, true, null, null);
+    
+    private final String serverVersion;
+    private final Set<String> subsystems;
+    private final boolean wildcardReads;
+    private final boolean queryReads;
+    private final Set<String> beanAttributes;
+    private final Set<String> queueAttributes;
+    
+    OperationPlan(String serverVersion, Set<String> subsystems, boolean wildcardReads, boolean queryReads,
+                  Set<String> beanAttributes, Set<String> queueAttributes) {
+        this.serverVersion = serverVersion;
+        this.subsystems = subsystems;
+        this.wildcardReads = wildcardReads;
+        this.queryReads = queryReads;
+        this.beanAttributes = beanAttributes;
+        this.queueAttributes = queueAttributes;
+    }
+    
+    /**
+     * Get the version of the server the plan was probed on.
+     * 
+     * @return The product version, or null if not probed
+     */
+    public String getServerVersion() {
+        return serverVersion;
+    }
+    
+    /**
+     * Check if a subsystem read by the application is installed.
+     * 
+     * @param name The subsystem name, {@link #EJB_SUBSYSTEM} or {@link #MESSAGING_SUBSYSTEM}
+     * @return true if installed or unknown, false otherwise
+     */
+    public boolean hasSubsystem(String name) {
+        return subsystems == null || subsystems.contains(name);
+    }
+    
+    /**
+     * Check if resources can be read with wildcard addresses such as {@code deployment=*}.
+     * 
+     * @return true if supported or unknown, false otherwise
+     */
+    public boolean supportsWildcardReads() {
+        return wildcardReads;
+    }
+    
+    /**
+     * Check if resources can be read with the {@code query} operation, which returns only the
+     * selected attributes.
+     * 
+     * @return true if supported or unknown, false otherwise
+     */
+    public boolean supportsQueryReads() {
+        return queryReads;
+    }
+    
+    /**
+     * Check if session and singleton bean resources have an attribute.
+     * 
+     * @param name The attribute name
+     * @return true if the attribute exists or is unknown, false otherwise
+     */
+    public boolean hasBeanAttribute(String name) {
+        return beanAttributes == null || beanAttributes.contains(name);
+    }
+    
+    /**
+     * Check if bean resources have invocation statistics, which are only returned when
+     * reading runtime attributes.
+     * 
+     * @return true if the statistics exist or are unknown, false otherwise
+     */
+    public boolean hasBeanStatistics() {
+        return hasBeanAttribute("invocations") || hasBeanAttribute("execution-time")
+            || hasBeanAttribute("peak-concurrent-usage");
+    }
+    
+    /**
+     * Check if JMS queue resources have an attribute.
+     * 
+     * @param name The attribute name
+     * @return true if the attribute exists or is unknown, false otherwise
+     */
+    public boolean hasQueueAttribute(String name) {
+        return queueAttributes == null || queueAttributes.contains(name);
+    }
+    
+    /**
+     * Keep only the subsystems a plan depends on.
+     * 
+     * @param subsystems All installed subsystems
+     * @return The installed subsystems read by the application
+     */
+    static Set<String> relevantSubsystems(Set<String> subsystems) {
+        Set<String> relevant = new TreeSet<>();
+        for (String name : new String[] {EJB_SUBSYSTEM, MESSAGING_SUBSYSTEM}) {
+            if (subsystems.contains(name)) {
+                relevant.add(name);
+            }
+        }
+        return Collections.unmodifiableSet(relevant);
+    }
+    
+    /**
+     * Create the composite reading the descriptions of the resources of the installed
+     * subsystems, with wildcard addresses, and the description of the {@code query} operation.
+     * 
+     * @param subsystems The installed subsystems read by the application
+     * @return The probe operation, or null if there is nothing to probe
+     */
+    static ModelNode createProbeOperation(Set<String> subsystems) {
+        if (subsystems.isEmpty()) {
+            return null;
+        }
+        ModelNode op = new ModelNode();
+        op.get("operation").set("composite");
+        op.get("address").setEmptyList();
+        ModelNode steps = op.get("steps");
+        
+        if (subsystems.contains(EJB_SUBSYSTEM)) {
+            ModelNode step = steps.add();
+            step.get("operation").set("read-resource-description");
+            ModelNode address = step.get("address");
+            address.add("deployment", "*");
+            address.add("subsystem", EJB_SUBSYSTEM);
+            address.add("stateless-session-bean", "*");
+        }
+        if (subsystems.contains(MESSAGING_SUBSYSTEM)) {
+            ModelNode step = steps.add();
+            step.get("operation").set("read-resource-description");
+            ModelNode address = step.get("address");
+            address.add("subsystem", MESSAGING_SUBSYSTEM);
+            address.add("server", "*");
+            address.add("jms-queue", "*");
+        }
+        ModelNode query = steps.add();
+        query.get("operation").set("read-operation-description");
+        query.get("name").set("query");
+        query.get("address").setEmptyList();
+        return op;
+    }
+    
+    /**
+     * Build a plan from the response to {@link #createProbeOperation}.
+     * A description step failing tells that wildcard addresses are not supported, the last
+     * step failing that the {@code query} operation is not; attributes whose description
+     * cannot be read are left unknown.
+     * 
+     * @param serverVersion The product version of the server
+     * @param subsystems The installed subsystems read by the application
+     * @param response The response to the probe operation
+     * @return The plan
+     */
+    static OperationPlan fromProbeResponse(String serverVersion, Set<String> subsystems, ModelNode response) {
+        boolean wildcardReads = true;
+        boolean queryReads = true;
+        Set<String> beanAttributes = null;
+        Set<String> queueAttributes = null;
+        
+        ModelNode steps = response.get("result");
+        int step = 1;
+        for (String subsystem : subsystems) {
+            ModelNode stepResult = stepResult(steps, step++);
+            if ("failed".equals(stepResult.get("outcome").asString(""))) {
+                wildcardReads = false;
+                continue;
+            }
+            Set<String> attributes = describedAttributes(stepResult.get("result"));
+            if (EJB_SUBSYSTEM.equals(subsystem)) {
+                beanAttributes = attributes;
+            } else {
+                queueAttributes = attributes;
+            }
+        }
+        if ("failed".equals(stepResult(steps, step).get("outcome").asString(""))) {
+            queryReads = false;
+        }
+        return new OperationPlan(serverVersion, subsystems, wildcardReads, queryReads, beanAttributes, queueAttributes);
+    }
+    
+    /**
+     * Check if every step of the response to {@link #createProbeOperation} succeeded. The plan
+     * of a partly failed probe may only hold for the server probed, e.g. when the user lacks
+     * a permission there, so it is not reused for other servers of the same kind.
+     * 
+     * @param response The response to the probe operation
+     * @return true if the probe fully succeeded
+     */
+    static boolean isCompleteProbe(ModelNode response) {
+        if (!"success".equals(response.get("outcome").asString(""))) {
+            return false;
+        }
+        ModelNode steps = response.get("result");
+        if (steps.getType() == ModelType.OBJECT) {
+            for (String step : steps.keys()) {
+                if ("failed".equals(steps.get(step).get("outcome").asString(""))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Get the result of a step of a composite, or an undefined node if there is none.
+     */
+    private static ModelNode stepResult(ModelNode steps, int step) {
+        return steps.getType() == ModelType.OBJECT && steps.has("step-" + step) ? steps.get("step-" + step) : new ModelNode();
+    }
+    
+    /**
+     * Get the attribute names of a resource description, which is a list of descriptions
+     * per matching address when read with a wildcard address.
+     * 
+     * @return The attribute names, or null if the description has no attributes
+     */
+    private static Set<String> describedAttributes(ModelNode description) {
+        if (description.getType() == ModelType.LIST) {
+            if (description.asList().isEmpty()) {
+                return null;
+            }
+            description = description.get(0).get("result");
+        }
+        if (!description.hasDefined("attributes")) {
+            return null;
+        }
+        return Collections.unmodifiableSet(new TreeSet<>(description.get("attributes").keys()));
+    }
+    
+    @Override
+    public String toString() {
+        return "OperationPlan[version=" + serverVersion + ", subsystems=" + subsystems
+            + ", wildcardReads=" + wildcardReads + ", queryReads=" + queryReads + "]";
+    }
+}
@@ -0,0 +1,274 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.EJBSnapshot;
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueSnapshot;
+import com.jbossmanager.model.TopicSnapshot;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Local HTTP endpoint serving the last polled queue and EJB metrics in the Prometheus
+ * text exposition format on {@code /metrics}.
+ * <p>
+ * The response body is serialized once when new metrics arrive, so a scrape only writes
+ * the prepared bytes. The server listens on the loopback interface only.
+ */
+public class PrometheusExporter {
+    
+    /** System property enabling the endpoint on the given port. */
+    public static final String PORT_PROPERTY = "jbossmanager.metricsPort";
+    
+    /** Path of the metrics endpoint. */
+    public static final String PATH = "/metrics";
+    
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    
+    private final Object lock = new Object();
+    private String messagingSection = "";
+    private String ejbSection = "";
+    private volatile byte[] body = new byte[0];
+    private HttpServer server;
+    
+    /**
+     * Get the port configured with {@link #PORT_PROPERTY}.
+     * 
+     * @return The configured port, or -1 if the endpoint is not enabled
+     */
+    public static int configuredPort() {
+        String port = System.getProperty(PORT_PROPERTY);
+        return port == null || port.isBlank() ? -1 : Integer.parseInt(port.trim());
+    }
+    
+    /**
+     * Start serving the metrics. Does nothing if the endpoint is already started.
+     * 
+     * @param port The local port to listen on, 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            return;
+        }
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext(PATH, this::handleScrape);
+        
+        // The dispatcher thread inherits the daemon status of the thread starting the server,
+        // start it from a daemon thread so that it never keeps the application alive
+        Thread starter = new Thread(httpServer::start, "metrics-endpoint-start");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server = httpServer;
+    }
+    
+    /**
+     * Stop serving the metrics.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+    
+    /**
+     * Get the port the endpoint listens on.
+     * 
+     * @return The port, or -1 if the endpoint is not started
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+    
+    /**
+     * Replace the exported queue and topic metrics.
+     * Suitable as a {@link JMSService#addRefreshListener refresh listener}.
+     * 
+     * @param servers The messaging servers returned by the last poll
+     */
+    public void updateMessaging(List<MessagingServer> servers) {
+        StringBuilder text = new StringBuilder(256 + servers.size() * 1024);
+        
+        header(text, "jboss_jms_queue_messages", "gauge", "Number of messages currently in the queue.");
+        for (MessagingServer server : servers) {
+            for (QueueSnapshot queue : server.getQueues()) {
+                queueSample(text, "jboss_jms_queue_messages", queue, queue.messageCount());
+            }
+        }
+        header(text, "jboss_jms_queue_consumers", "gauge", "Number of consumers of the queue.");
+        for (MessagingServer server : servers) {
+            for (QueueSnapshot queue : server.getQueues()) {
+                queueSample(text, "jboss_jms_queue_consumers", queue, queue.consumerCount());
+            }
+        }
+        header(text, "jboss_jms_queue_messages_added_total", "counter", "Number of messages added to the queue since the server started.");
+        for (MessagingServer server : servers) {
+            for (QueueSnapshot queue : server.getQueues()) {
+                queueSample(text, "jboss_jms_queue_messages_added_total", queue, queue.messagesAdded());
+            }
+        }
+        header(text, "jboss_jms_queue_paused", "gauge", "Whether the queue is paused (1) or running (0).");
+        for (MessagingServer server : servers) {
+            for (QueueSnapshot queue : server.getQueues()) {
+                queueSample(text, "jboss_jms_queue_paused", queue, "Paused".equals(queue.status()) ? 1 : 0);
+            }
+        }
+        header(text, "jboss_jms_topic_messages", "gauge", "Number of messages currently in the topic subscriptions.");
+        for (MessagingServer server : servers) {
+            for (TopicSnapshot topic : server.getTopics()) {
+                topicSample(text, "jboss_jms_topic_messages", topic, topic.messageCount());
+            }
+        }
+        header(text, "jboss_jms_topic_subscriptions", "gauge", "Number of subscriptions of the topic.");
+        for (MessagingServer server : servers) {
+            for (TopicSnapshot topic : server.getTopics()) {
+                topicSample(text, "jboss_jms_topic_subscriptions", topic, topic.subscriptionCount());
+            }
+        }
+        header(text, "jboss_manager_messaging_poll_timestamp_seconds", "gauge", "Time of the last queue metrics poll.");
+        text.append("jboss_manager_messaging_poll_timestamp_seconds ").append(System.currentTimeMillis() / 1000).append('\n');
+        
+        synchronized (lock) {
+            messagingSection = text.toString();
+            rebuildBody();
+        }
+    }
+    
+    /**
+     * Replace the exported EJB metrics.
+     * Suitable as an {@link EJBService#addRefreshListener refresh listener}.
+     * 
+     * @param ejbs The EJB components returned by the last read
+     */
+    public void updateEJBs(List<EJBSnapshot> ejbs) {
+        StringBuilder text = new StringBuilder(256 + ejbs.size() * 512);
+        
+        header(text, "jboss_ejb_invocations_total", "counter", "Number of invocations of the bean.");
+        for (EJBSnapshot ejb : ejbs) {
+            ejbSample(text, "jboss_ejb_invocations_total", ejb, ejb.invocations());
+        }
+        header(text, "jboss_ejb_execution_time_milliseconds_total", "counter", "Total time spent executing the bean methods.");
+        for (EJBSnapshot ejb : ejbs) {
+            ejbSample(text, "jboss_ejb_execution_time_milliseconds_total", ejb, ejb.executionTime());
+        }
+        header(text, "jboss_ejb_peak_concurrent_usage", "gauge", "Highest number of concurrent invocations of the bean.");
+        for (EJBSnapshot ejb : ejbs) {
+            ejbSample(text, "jboss_ejb_peak_concurrent_usage", ejb, ejb.peakConcurrentUsage());
+        }
+        header(text, "jboss_manager_ejb_poll_timestamp_seconds", "gauge", "Time of the last EJB metrics poll.");
+        text.append("jboss_manager_ejb_poll_timestamp_seconds ").append(System.currentTimeMillis() / 1000).append('\n');
+        
+        synchronized (lock) {
+            ejbSection = text.toString();
+            rebuildBody();
+        }
+    }
+    
+    /**
+     * Remove all exported metrics, e.g. after disconnecting.
+     */
+    public void clear() {
+        synchronized (lock) {
+            messagingSection = "";
+            ejbSection = "";
+            rebuildBody();
+        }
+    }
+    
+    /**
+     * Get the serialized response body.
+     * 
+     * @return The metrics in the Prometheus text format
+     */
+    String getBody() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+    
+    private void rebuildBody() {
+        body = (messagingSection + ejbSection).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private void handleScrape(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] current = body;
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, current.length == 0 ? -1 : current.length);
+            if (current.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(current);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    private static void header(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+    
+    private static void queueSample(StringBuilder text, String name, QueueSnapshot queue, long value) {
+        text.append(name).append("{server=\"");
+        escape(text, queue.serverName());
+        text.append("\",queue=\"");
+        escape(text, queue.name());
+        text.append("\"} ").append(value).append('\n');
+    }
+    
+    private static void topicSample(StringBuilder text, String name, TopicSnapshot topic, long value) {
+        text.append(name).append("{server=\"");
+        escape(text, topic.serverName());
+        text.append("\",topic=\"");
+        escape(text, topic.name());
+        text.append("\"} ").append(value).append('\n');
+    }
+    
+    private static void ejbSample(StringBuilder text, String name, EJBSnapshot ejb, long value) {
+        text.append(name).append("{deployment=\"");
+        escape(text, ejb.deploymentName());
+        text.append("\",bean=\"");
+        escape(text, ejb.name());
+        text.append("\",type=\"");
+        escape(text, ejb.type().getDisplayName());
+        text.append("\"} ").append(value).append('\n');
+    }
+    
+    /**
+     * Append a label value, escaping backslashes, double quotes and line feeds.
+     */
+    private static void escape(StringBuilder text, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    text.append("\\\\");
+                    break;
+                case '"':
+                    text.append("\\\"");
+                    break;
+                case '\n':
+                    text.append("\\n");
+                    break;
+                default:
+                    text.append(c);
+            }
+        }
+    }
+}
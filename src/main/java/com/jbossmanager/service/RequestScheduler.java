@@ -0,0 +1,383 @@
+package com.jbossmanager.service;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.dmr.ModelNode;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schedules management requests on a client by priority.
+ * <p>
+ * Requests issued by the user run before any pending background request, and background
+ * requests (such as metrics polling) are throttled by a token bucket so that they stay under
+ * a configurable number of requests per second. Requests are taken in the order of their
+ * priority and then of their submission by one worker thread per client of the
+ * {@link ClientPool}, so a pool of a single client executes them one at a time.
+ */
+public class RequestScheduler {
+    
+    /** System property overriding the default background request budget. */
+    public static final String RATE_PROPERTY = "jbossmanager.backgroundRequestsPerSecond";
+    
+    /** Default number of background requests per second. */
+    public static final double DEFAULT_BACKGROUND_RATE = 10.0;
+    
+    /**
+     * Priority of a management request.
+     */
+    public enum Priority {
+        /** Request triggered by the user, never throttled. */
+        USER,
+        /** Request issued by background work, throttled to the request budget. */
+        BACKGROUND
+    }
+    
+    private static final ThreadLocal<Priority> CURRENT_PRIORITY = ThreadLocal.withInitial(() -> Priority.USER);
+    
+    /**
+     * A request waiting to be executed.
+     */
+    private static final class Request {
+        private final ModelNode operation;
+        private final CompletableFuture<ModelNode> result = new CompletableFuture<>();
+        private final long submitted = System.nanoTime();
+        
+        Request(ModelNode operation) {
+            this.operation = operation;
+        }
+    }
+    
+    private final ClientPool pool;
+    private final ManagementMetrics metrics;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Deque<Request> userRequests = new ArrayDeque<>();
+    private final Deque<Request> backgroundRequests = new ArrayDeque<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final Set<Request> inFlight = Collections.newSetFromMap(new IdentityHashMap<>());
+    
+    // Token bucket for background requests, guarded by lock
+    private double backgroundRate;
+    private double tokens;
+    private long lastRefill;
+    private boolean running = true;
+    
+    public RequestScheduler(ModelControllerClient client) {
+        this(client, configuredBackgroundRate(), null);
+    }
+    
+    public RequestScheduler(ModelControllerClient client, double backgroundRate) {
+        this(client, backgroundRate, null);
+    }
+    
+    public RequestScheduler(ModelControllerClient client, double backgroundRate, ManagementMetrics metrics) {
+        this(new ClientPool(List.of(client)), backgroundRate, metrics);
+    }
+    
+    public RequestScheduler(ClientPool pool, double backgroundRate, ManagementMetrics metrics) {
+        this.pool = pool;
+        this.metrics = metrics;
+        setBackgroundRate(backgroundRate);
+        this.tokens = 1.0;
+        this.lastRefill = System.nanoTime();
+        
+        for (int i = 1; i <= pool.size(); i++) {
+            Thread worker = new Thread(this::processRequests, pool.size() == 1 ? "management-requests" : "management-requests-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+        workers.forEach(Thread::start);
+    }
+    
+    /**
+     * Get the background request budget configured with {@link #RATE_PROPERTY}.
+     * 
+     * @return The configured number of background requests per second
+     */
+    public static double configuredBackgroundRate() {
+        return Double.parseDouble(System.getProperty(RATE_PROPERTY, String.valueOf(DEFAULT_BACKGROUND_RATE)));
+    }
+    
+    /**
+     * Run a task whose management requests are issued with background priority.
+     * 
+     * @param task The task to run on the current thread
+     * @return The result of the task
+     * @throws Exception if the task fails
+     */
+    public static <T> T inBackground(Callable<T> task) throws Exception {
+        Priority previous = CURRENT_PRIORITY.get();
+        CURRENT_PRIORITY.set(Priority.BACKGROUND);
+        try {
+            return task.call();
+        } finally {
+            CURRENT_PRIORITY.set(previous);
+        }
+    }
+    
+    /**
+     * Get the priority of requests issued by the current thread.
+     * 
+     * @return The current priority
+     */
+    public static Priority currentPriority() {
+        return CURRENT_PRIORITY.get();
+    }
+    
+    /**
+     * Set the maximum number of background requests per second.
+     * 
+     * @param requestsPerSecond The request budget, must be positive
+     */
+    public void setBackgroundRate(double requestsPerSecond) {
+        if (!(requestsPerSecond > 0)) {
+            throw new IllegalArgumentException("Request rate must be positive");
+        }
+        lock.lock();
+        try {
+            backgroundRate = requestsPerSecond;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Get the maximum number of background requests per second.
+     * 
+     * @return The request budget
+     */
+    public double getBackgroundRate() {
+        lock.lock();
+        try {
+            return backgroundRate;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Execute an operation with the priority of the current thread and wait for its result.
+     * 
+     * @param operation The operation to execute
+     * @return The result of the operation
+     * @throws IOException if the operation cannot be executed
+     */
+    public ModelNode execute(ModelNode operation) throws IOException {
+        return execute(operation, currentPriority());
+    }
+    
+    /**
+     * Execute an operation with the given priority and wait for its result.
+     * 
+     * @param operation The operation to execute
+     * @param priority The priority of the operation
+     * @return The result of the operation
+     * @throws IOException if the operation cannot be executed
+     */
+    public ModelNode execute(ModelNode operation, Priority priority) throws IOException {
+        Request request = new Request(operation);
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IOException("Request scheduler is shut down");
+            }
+            (priority == Priority.USER ? userRequests : backgroundRequests).add(request);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        
+        try {
+            return request.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the server", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+    
+    /**
+     * Get the number of requests waiting to be executed.
+     * 
+     * @return The number of pending requests
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return userRequests.size() + backgroundRequests.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Stop the worker thread and fail all pending requests, as well as the running one
+     * (which may never return if the connection is hung).
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            running = false;
+            IOException closed = new IOException("Request scheduler is shut down");
+            for (Request request : userRequests) {
+                request.result.completeExceptionally(closed);
+            }
+            for (Request request : backgroundRequests) {
+                request.result.completeExceptionally(closed);
+            }
+            userRequests.clear();
+            backgroundRequests.clear();
+            for (Request request : inFlight) {
+                request.result.completeExceptionally(closed);
+            }
+            inFlight.clear();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Stop accepting requests and fail the pending ones, then wait for the running requests
+     * to complete. Requests still running after the timeout are failed.
+     * 
+     * @param timeoutMillis The maximum time to wait for the running requests
+     * @return true if all running requests completed in time, false otherwise
+     */
+    public boolean drain(long timeoutMillis) {
+        lock.lock();
+        try {
+            running = false;
+            IOException closed = new IOException("Request scheduler is shut down");
+            for (Request request : userRequests) {
+                request.result.completeExceptionally(closed);
+            }
+            for (Request request : backgroundRequests) {
+                request.result.completeExceptionally(closed);
+            }
+            userRequests.clear();
+            backgroundRequests.clear();
+            changed.signalAll();
+            
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (!inFlight.isEmpty() && remaining > 0) {
+                remaining = changed.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        
+        lock.lock();
+        try {
+            if (inFlight.isEmpty()) {
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        shutdown();
+        return false;
+    }
+    
+    /**
+     * Worker loop executing the pending requests one at a time.
+     */
+    private void processRequests() {
+        while (true) {
+            Request request;
+            try {
+                request = nextRequest();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (request == null) {
+                return;
+            }
+            
+            if (metrics != null) {
+                metrics.recordQueueWait(System.nanoTime() - request.submitted);
+            }
+            try {
+                ModelControllerClient client = pool.lease();
+                try {
+                    request.result.complete(client.execute(request.operation));
+                } finally {
+                    pool.release(client);
+                }
+            } catch (Throwable t) {
+                request.result.completeExceptionally(t);
+            } finally {
+                lock.lock();
+                try {
+                    inFlight.remove(request);
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Wait for the next request allowed to run, or return null once shut down.
+     */
+    private Request nextRequest() throws InterruptedException {
+        lock.lock();
+        try {
+            while (running) {
+                if (!userRequests.isEmpty()) {
+                    return start(userRequests.poll());
+                }
+                if (backgroundRequests.isEmpty()) {
+                    changed.await();
+                    continue;
+                }
+                
+                refillTokens();
+                if (tokens >= 1.0) {
+                    tokens -= 1.0;
+                    return start(backgroundRequests.poll());
+                }
+                
+                // Wait for the next token, or for a user request to arrive
+                long waitNanos = (long) ((1.0 - tokens) / backgroundRate * TimeUnit.SECONDS.toNanos(1));
+                changed.awaitNanos(Math.max(waitNanos, 1));
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private Request start(Request request) {
+        inFlight.add(request);
+        return request;
+    }
+    
+    private void refillTokens() {
+        long now = System.nanoTime();
+        tokens = Math.min(1.0, tokens + (now - lastRefill) * backgroundRate / TimeUnit.SECONDS.toNanos(1));
+        lastRefill = now;
+    }
+}
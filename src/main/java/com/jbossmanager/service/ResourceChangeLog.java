@@ -0,0 +1,70 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.ResourceChange;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Change listener keeping an audit trail of the deployments, beans and queues that came and
+ * went, and of the queues paused or left without consumers, one line per change.
+ * <p>
+ * A gap in the trail is given to the failure listener once, when a first write fails; it is
+ * reported again if writing fails after it worked again.
+ */
+public class ResourceChangeLog implements ResourceChangeTracker.ChangeListener {
+    
+    private final Path logFile;
+    private volatile Consumer<IOException> failureListener = e -> { };
+    // Guarded by this
+    private boolean failing;
+    
+    public ResourceChangeLog() {
+        this(Paths.get(System.getProperty("user.home"), ".jbossmanager", "changes.log"));
+    }
+    
+    public ResourceChangeLog(Path logFile) {
+        this.logFile = logFile;
+    }
+    
+    /**
+     * Get the file the changes are written to.
+     * 
+     * @return The log file
+     */
+    public Path getLogFile() {
+        return logFile;
+    }
+    
+    /**
+     * Set the listener told when the changes cannot be written, once until they are again.
+     * 
+     * @param listener The listener, called on the thread comparing the resources
+     */
+    public void setFailureListener(Consumer<IOException> listener) {
+        failureListener = listener;
+    }
+    
+    @Override
+    public synchronized void onChange(ResourceChange change) {
+        try {
+            if (logFile.getParent() != null) {
+                Files.createDirectories(logFile.getParent());
+            }
+            Files.writeString(logFile, change + System.lineSeparator(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            failing = false;
+        } catch (IOException e) {
+            // The audit trail is best effort, a refresh never fails because of it
+            if (!failing) {
+                failing = true;
+                failureListener.accept(e);
+            }
+        }
+    }
+}
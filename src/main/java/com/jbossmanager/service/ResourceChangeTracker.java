@@ -0,0 +1,211 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.EJBSnapshot;
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueSnapshot;
+import com.jbossmanager.model.ResourceChange;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Service class comparing each read of the queues and EJBs with the previous one and
+ * publishing what changed, so that listeners react to changes instead of rescanning every
+ * resource on every refresh.
+ * <p>
+ * Each comparison is a single pass over the new read with hash lookups in the state kept
+ * from the previous one, then a pass over that state for the removed resources. The first
+ * read after {@link #reset()} only records the state.
+ * <p>
+ * A deployment added or removed is published as one change, without a change per bean.
+ */
+public class ResourceChangeTracker {
+    
+    /**
+     * Listener notified of every change.
+     */
+    public interface ChangeListener {
+        
+        /**
+         * Called on the refreshing thread for every change, in the order found.
+         * 
+         * @param change The change
+         */
+        void onChange(ResourceChange change);
+    }
+    
+    /**
+     * State of a queue compared between reads.
+     */
+    private static final class QueueState {
+        private final boolean paused;
+        private final int consumerCount;
+        
+        QueueState(boolean paused, int consumerCount) {
+            this.paused = paused;
+            this.consumerCount = consumerCount;
+        }
+    }
+    
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    
+    // Guarded by this, keyed by server and queue name
+    private Map<String, QueueState> queues;
+    
+    // Guarded by this, bean names ("type/name") by deployment name
+    private Map<String, Set<String>> deployments;
+    
+    /**
+     * Add a listener of the changes.
+     * 
+     * @param listener The listener
+     */
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Remove a listener of the changes.
+     * 
+     * @param listener The listener
+     */
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Forget the previous reads, when connecting to another server.
+     */
+    public synchronized void reset() {
+        queues = null;
+        deployments = null;
+    }
+    
+    /**
+     * Compare a read of the queues with the previous one and publish the changes.
+     * Suitable as a {@link JMSService#addRefreshListener refresh listener}.
+     * 
+     * @param servers The messaging servers returned by the last read
+     * @return The changes, in the order published
+     */
+    public List<ResourceChange> compareMessaging(List<MessagingServer> servers) {
+        List<ResourceChange> changes = new ArrayList<>();
+        Instant now = Instant.now();
+        synchronized (this) {
+            Map<String, QueueState> previous = queues;
+            Map<String, QueueState> current = new HashMap<>();
+            for (MessagingServer server : servers) {
+                for (QueueSnapshot queue : server.getQueues()) {
+                    String key = server.getName() + "/" + queue.name();
+                    QueueState state = new QueueState("Paused".equals(queue.status()), queue.consumerCount());
+                    current.put(key, state);
+                    if (previous == null) {
+                        continue;
+                    }
+                    QueueState before = previous.get(key);
+                    if (before == null) {
+                        changes.add(queueChange(now, ResourceChange.Type.QUEUE_ADDED, server, queue));
+                        continue;
+                    }
+                    if (state.paused != before.paused) {
+                        changes.add(queueChange(now, state.paused ? ResourceChange.Type.QUEUE_PAUSED
+                            : ResourceChange.Type.QUEUE_RESUMED, server, queue));
+                    }
+                    if (state.consumerCount == 0 && before.consumerCount > 0) {
+                        changes.add(queueChange(now, ResourceChange.Type.QUEUE_CONSUMERS_LOST, server, queue));
+                    } else if (state.consumerCount > 0 && before.consumerCount == 0) {
+                        changes.add(queueChange(now, ResourceChange.Type.QUEUE_CONSUMERS_RESTORED, server, queue));
+                    }
+                }
+            }
+            if (previous != null) {
+                for (String key : previous.keySet()) {
+                    if (!current.containsKey(key)) {
+                        int separator = key.indexOf('/');
+                        changes.add(new ResourceChange(now, ResourceChange.Type.QUEUE_REMOVED,
+                            key.substring(0, separator), key.substring(separator + 1)));
+                    }
+                }
+            }
+            queues = current;
+        }
+        publish(changes);
+        return changes;
+    }
+    
+    /**
+     * Compare a read of the EJBs with the previous one and publish the changes.
+     * Suitable as an {@link EJBService#addRefreshListener refresh listener}.
+     * 
+     * @param ejbs The EJB components returned by the last read
+     * @return The changes, in the order published
+     */
+    public List<ResourceChange> compareEJBs(List<EJBSnapshot> ejbs) {
+        List<ResourceChange> changes = new ArrayList<>();
+        Instant now = Instant.now();
+        synchronized (this) {
+            Map<String, Set<String>> previous = deployments;
+            Map<String, Set<String>> current = new HashMap<>();
+            for (EJBSnapshot ejb : ejbs) {
+                Set<String> beans = current.get(ejb.deploymentName());
+                if (beans == null) {
+                    beans = new HashSet<>();
+                    current.put(ejb.deploymentName(), beans);
+                    if (previous != null && !previous.containsKey(ejb.deploymentName())) {
+                        changes.add(new ResourceChange(now, ResourceChange.Type.DEPLOYMENT_ADDED,
+                            ejb.deploymentName(), null));
+                    }
+                }
+                String bean = beanKey(ejb.type().getResourceType(), ejb.name());
+                beans.add(bean);
+                Set<String> before = previous == null ? null : previous.get(ejb.deploymentName());
+                if (before != null && !before.contains(bean)) {
+                    changes.add(new ResourceChange(now, ResourceChange.Type.BEAN_ADDED,
+                        ejb.deploymentName(), ejb.name()));
+                }
+            }
+            if (previous != null) {
+                for (Map.Entry<String, Set<String>> deployment : previous.entrySet()) {
+                    Set<String> beans = current.get(deployment.getKey());
+                    if (beans == null) {
+                        changes.add(new ResourceChange(now, ResourceChange.Type.DEPLOYMENT_REMOVED,
+                            deployment.getKey(), null));
+                        continue;
+                    }
+                    for (String bean : deployment.getValue()) {
+                        if (!beans.contains(bean)) {
+                            changes.add(new ResourceChange(now, ResourceChange.Type.BEAN_REMOVED,
+                                deployment.getKey(), bean.substring(bean.indexOf('/') + 1)));
+                        }
+                    }
+                }
+            }
+            deployments = current;
+        }
+        publish(changes);
+        return changes;
+    }
+    
+    private static String beanKey(String resourceType, String name) {
+        return resourceType + "/" + name;
+    }
+    
+    private static ResourceChange queueChange(Instant timestamp, ResourceChange.Type type, MessagingServer server,
+                                              QueueSnapshot queue) {
+        return new ResourceChange(timestamp, type, server.getName(), queue.name());
+    }
+    
+    private void publish(List<ResourceChange> changes) {
+        for (ResourceChange change : changes) {
+            for (ChangeListener listener : listeners) {
+                listener.onChange(change);
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.jbossmanager.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * In-memory index finding resources whose names contain a text, without scanning every
+ * resource on each keystroke.
+ * <p>
+ * The lowercase texts of every resource (such as its name and JNDI name) are split into
+ * trigrams, each mapped to the sorted ids of the resources containing it. A search intersects
+ * the lists of the trigrams of the query, starting with the shortest, and only checks the
+ * texts of the resources found in all of them. Queries shorter than a trigram check the
+ * texts in order until enough results are found.
+ * <p>
+ * Resources are added and removed one at a time, as they are loaded or change; ids are never
+ * reused, and the lists are rebuilt by {@link #compact()}, called periodically by the owner of
+ * the index and anyway once more than half of the ids belong to removed resources.
+ * Results are returned in the order the resources were added.
+ * 
+ * @param <T> The type of the indexed resources
+ */
+public class ResourceSearchIndex<T> {
+    
+    private static final int GRAM_LENGTH = 3;
+    
+    // Separates the texts of a resource, so that no match spans two of them
+    private static final char TEXT_SEPARATOR = '\n';
+    
+    /**
+     * Indexed resource with its lowercase texts.
+     */
+    private static final class Entry<T> {
+        private final T value;
+        private final String text;
+        
+        Entry(T value, String text) {
+            this.value = value;
+            this.text = text;
+        }
+    }
+    
+    /**
+     * Growable sorted list of resource ids.
+     */
+    private static final class IdList {
+        private int[] ids = new int[4];
+        private int size;
+        
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+        
+        void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+        
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+    
+    // Indexed resources by id, null once removed
+    private final List<Entry<T>> entries = new ArrayList<>();
+    private final Map<T, Integer> ids = new HashMap<>();
+    private final Map<String, IdList> grams = new HashMap<>();
+    
+    /**
+     * Add a resource, or replace the texts of a resource already indexed.
+     * 
+     * @param value The resource
+     * @param texts The texts to find it by, null ones ignored
+     */
+    public synchronized void add(T value, String... texts) {
+        remove(value);
+        StringBuilder text = new StringBuilder();
+        for (String part : texts) {
+            if (part != null && !part.isEmpty()) {
+                if (text.length() > 0) {
+                    text.append(TEXT_SEPARATOR);
+                }
+                text.append(part.toLowerCase(Locale.ROOT));
+            }
+        }
+        
+        int id = entries.size();
+        Entry<T> entry = new Entry<>(value, text.toString());
+        entries.add(entry);
+        ids.put(value, id);
+        for (String gram : grams(entry.text)) {
+            grams.computeIfAbsent(gram, key -> new IdList()).add(id);
+        }
+    }
+    
+    /**
+     * Remove a resource.
+     * 
+     * @param value The resource
+     * @return true if it was indexed, false otherwise
+     */
+    public synchronized boolean remove(T value) {
+        Integer id = ids.remove(value);
+        if (id == null) {
+            return false;
+        }
+        Entry<T> entry = entries.set(id, null);
+        for (String gram : grams(entry.text)) {
+            IdList list = grams.get(gram);
+            list.remove(id);
+            if (list.size == 0) {
+                grams.remove(gram);
+            }
+        }
+        if (entries.size() > 1024 && ids.size() < entries.size() / 2) {
+            compact();
+        }
+        return true;
+    }
+    
+    /**
+     * Remove the resources matching a condition, checking every resource.
+     * 
+     * @param filter The condition
+     * @return The number of resources removed
+     */
+    public synchronized int removeIf(Predicate<? super T> filter) {
+        List<T> removed = new ArrayList<>();
+        for (T value : ids.keySet()) {
+            if (filter.test(value)) {
+                removed.add(value);
+            }
+        }
+        for (T value : removed) {
+            remove(value);
+        }
+        return removed.size();
+    }
+    
+    /**
+     * Remove all resources.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        ids.clear();
+        grams.clear();
+    }
+    
+    /**
+     * Check if a resource is indexed.
+     * 
+     * @param value The resource
+     * @return true if it was added and not removed since
+     */
+    public synchronized boolean contains(T value) {
+        return ids.containsKey(value);
+    }
+    
+    /**
+     * Get the number of indexed resources.
+     * 
+     * @return The number of resources
+     */
+    public synchronized int size() {
+        return ids.size();
+    }
+    
+    /**
+     * Find the resources with a text containing the query, ignoring case.
+     * 
+     * @param query The text to look for
+     * @param limit The maximum number of results
+     * @return The resources found, in the order they were added
+     */
+    public synchronized List<T> search(String query, int limit) {
+        List<T> results = new ArrayList<>();
+        String text = query.toLowerCase(Locale.ROOT);
+        if (text.isEmpty() || limit <= 0) {
+            return results;
+        }
+        if (text.length() < GRAM_LENGTH) {
+            for (Entry<T> entry : entries) {
+                if (entry != null && entry.text.contains(text)) {
+                    results.add(entry.value);
+                    if (results.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            return results;
+        }
+        
+        List<IdList> lists = new ArrayList<>();
+        for (String gram : grams(text)) {
+            IdList list = grams.get(gram);
+            if (list == null) {
+                return results;
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        
+        IdList shortest = lists.get(0);
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            int id = shortest.ids[i];
+            for (int j = 1; j < lists.size(); j++) {
+                if (!lists.get(j).contains(id)) {
+                    continue candidates;
+                }
+            }
+            // Having all the trigrams does not mean having them in a row
+            Entry<T> entry = entries.get(id);
+            if (entry.text.contains(text)) {
+                results.add(entry.value);
+                if (results.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Index the remaining resources again with consecutive ids, dropping the room left by the
+     * removed ones. Does nothing if no resource was removed since the last compaction.
+     */
+    public synchronized void compact() {
+        if (ids.size() == entries.size()) {
+            return;
+        }
+        List<Entry<T>> remaining = new ArrayList<>(ids.size());
+        for (Entry<T> entry : entries) {
+            if (entry != null) {
+                remaining.add(entry);
+            }
+        }
+        entries.clear();
+        ids.clear();
+        grams.clear();
+        for (Entry<T> entry : remaining) {
+            int id = entries.size();
+            entries.add(entry);
+            ids.put(entry.value, id);
+            for (String gram : grams(entry.text)) {
+                grams.computeIfAbsent(gram, key -> new IdList()).add(id);
+            }
+        }
+    }
+    
+    /**
+     * Get the distinct trigrams of a text, except those spanning two texts of a resource.
+     */
+    private static Set<String> grams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            String gram = text.substring(i, i + GRAM_LENGTH);
+            if (gram.indexOf(TEXT_SEPARATOR) < 0) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,212 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.EJBSnapshot;
+import com.jbossmanager.model.EJBType;
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueSnapshot;
+import com.jbossmanager.model.TopicSnapshot;
+import org.jboss.dmr.ModelNode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Service class keeping the last loaded queues, topics and EJBs of each server on disk,
+ * so that they can be shown immediately the next time the server is connected.
+ * <p>
+ * Snapshots are written in the compact binary DMR encoding (the one used on the wire by
+ * the management protocol), one file per host and port.
+ */
+public class ResourceSnapshotStore {
+    
+    /**
+     * Resources of a server as they were when the snapshot was saved.
+     */
+    public static final class Snapshot {
+        private final long savedAt;
+        private final List<MessagingServer> servers;
+        private final List<EJBSnapshot> ejbs;
+        
+        Snapshot(long savedAt, List<MessagingServer> servers, List<EJBSnapshot> ejbs) {
+            this.savedAt = savedAt;
+            this.servers = servers;
+            this.ejbs = ejbs;
+        }
+        
+        public long getSavedAt() {
+            return savedAt;
+        }
+        
+        public List<MessagingServer> getServers() {
+            return servers;
+        }
+        
+        public List<EJBSnapshot> getEjbs() {
+            return ejbs;
+        }
+    }
+    
+    private static final int VERSION = 1;
+    
+    private final Path directory;
+    
+    public ResourceSnapshotStore() {
+        this(Paths.get(System.getProperty("user.home"), ".jbossmanager", "snapshots"));
+    }
+    
+    public ResourceSnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+    
+    /**
+     * Save the resources of a server, replacing its previous snapshot.
+     * 
+     * @param host The server host
+     * @param port The management port
+     * @param servers The messaging servers with their queues and topics
+     * @param ejbs The EJB components
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void save(String host, int port, List<MessagingServer> servers, List<EJBSnapshot> ejbs) throws IOException {
+        ModelNode snapshot = toModelNode(System.currentTimeMillis(), servers, ejbs);
+        
+        Files.createDirectories(directory);
+        Path target = snapshotFile(host, port);
+        Path temporary = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                snapshot.writeExternal(out);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+    
+    /**
+     * Load the snapshot of a server.
+     * 
+     * @param host The server host
+     * @param port The management port
+     * @return The snapshot, or null if there is none or it cannot be read
+     */
+    public Snapshot load(String host, int port) {
+        Path file = snapshotFile(host, port);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            ModelNode snapshot = new ModelNode();
+            snapshot.readExternal(in);
+            return fromModelNode(snapshot);
+        } catch (IOException | RuntimeException e) {
+            // A snapshot is only a cache, an unreadable one is ignored
+            return null;
+        }
+    }
+    
+    /**
+     * Get the snapshot file of a server.
+     */
+    Path snapshotFile(String host, int port) {
+        return directory.resolve(host.replaceAll("[^A-Za-z0-9.-]", "_") + "_" + port + ".dmr");
+    }
+    
+    static ModelNode toModelNode(long savedAt, List<MessagingServer> servers, List<EJBSnapshot> ejbs) {
+        ModelNode snapshot = new ModelNode();
+        snapshot.get("version").set(VERSION);
+        snapshot.get("saved-at").set(savedAt);
+        
+        ModelNode serverList = snapshot.get("servers").setEmptyList();
+        for (MessagingServer server : servers) {
+            ModelNode serverNode = serverList.add();
+            serverNode.get("name").set(server.getName());
+            ModelNode queues = serverNode.get("queues").setEmptyList();
+            for (QueueSnapshot queue : server.getQueues()) {
+                ModelNode node = queues.add();
+                node.get("name").set(queue.name());
+                node.get("jndi-name").set(queue.jndiName());
+                node.get("status").set(queue.status());
+                node.get("message-count").set(queue.messageCount());
+                node.get("consumer-count").set(queue.consumerCount());
+                node.get("messages-added").set(queue.messagesAdded());
+                node.get("durable").set(queue.durable());
+            }
+            ModelNode topics = serverNode.get("topics").setEmptyList();
+            for (TopicSnapshot topic : server.getTopics()) {
+                ModelNode node = topics.add();
+                node.get("name").set(topic.name());
+                node.get("jndi-name").set(topic.jndiName());
+                node.get("subscription-count").set(topic.subscriptionCount());
+                node.get("durable-subscription-count").set(topic.durableSubscriptionCount());
+                node.get("message-count").set(topic.messageCount());
+                node.get("durable-message-count").set(topic.durableMessageCount());
+            }
+        }
+        
+        ModelNode ejbList = snapshot.get("ejbs").setEmptyList();
+        for (EJBSnapshot ejb : ejbs) {
+            ModelNode node = ejbList.add();
+            node.get("name").set(ejb.name());
+            node.get("type").set(ejb.type().getDisplayName());
+            node.get("deployment").set(ejb.deploymentName());
+            node.get("jndi-name").set(ejb.jndiName());
+        }
+        return snapshot;
+    }
+    
+    static Snapshot fromModelNode(ModelNode snapshot) {
+        if (snapshot.get("version").asInt(0) != VERSION) {
+            return null;
+        }
+        
+        List<MessagingServer> servers = new ArrayList<>();
+        for (ModelNode serverNode : list(snapshot.get("servers"))) {
+            MessagingServer server = new MessagingServer(serverNode.get("name").asString());
+            for (ModelNode node : list(serverNode.get("queues"))) {
+                server.getQueues().add(new QueueSnapshot(server.getName(), node.get("name").asString(),
+                    node.get("jndi-name").asString(""),
+                    node.get("status").asString("Unknown"),
+                    node.get("message-count").asInt(0),
+                    node.get("consumer-count").asInt(0),
+                    node.get("messages-added").asLong(0),
+                    node.get("durable").asBoolean(false)));
+            }
+            for (ModelNode node : list(serverNode.get("topics"))) {
+                server.getTopics().add(new TopicSnapshot(server.getName(), node.get("name").asString(),
+                    node.get("jndi-name").asString(""),
+                    node.get("subscription-count").asInt(0),
+                    node.get("durable-subscription-count").asInt(0),
+                    node.get("message-count").asLong(0),
+                    node.get("durable-message-count").asLong(0)));
+            }
+            servers.add(server);
+        }
+        
+        List<EJBSnapshot> ejbs = new ArrayList<>();
+        for (ModelNode node : list(snapshot.get("ejbs"))) {
+            EJBType type = EJBType.fromDisplayName(node.get("type").asString(""));
+            if (type == null) {
+                continue;
+            }
+            ejbs.add(new EJBSnapshot(node.get("name").asString(), type, node.get("deployment").asString(""),
+                node.get("jndi-name").asString("")));
+        }
+        
+        return new Snapshot(snapshot.get("saved-at").asLong(0), servers, ejbs);
+    }
+    
+    private static List<ModelNode> list(ModelNode node) {
+        return node.isDefined() ? node.asList() : Collections.emptyList();
+    }
+}
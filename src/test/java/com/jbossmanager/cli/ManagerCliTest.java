@@ -0,0 +1,124 @@
+package com.jbossmanager.cli;
+
+import com.jbossmanager.service.ConnectionService;
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for ManagerCli and OutputFormat.
+ * Note: These tests don't actually connect to a server, they use a mocked client.
+ */
+public class ManagerCliTest {
+    
+    @Test
+    public void testListQueuesAsCsv() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        ModelNode steps = response.get("result");
+        steps.get("step-1", "result").add("default");
+        ModelNode queue = steps.get("step-2", "result").add();
+        queue.get("address").set(queueAddress("default", "orders,eu"));
+        queue.get("outcome").set("success");
+        queue.get("result", "message-count").set(12);
+        queue.get("result", "consumer-count").set(2);
+        steps.get("step-3", "result").setEmptyList();
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenReturn(response);
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exit = new ManagerCli(connectedService(client)).run(new String[] {"--format", "csv", "queues"},
+            new PrintStream(out, true, StandardCharsets.UTF_8), System.err);
+        
+        assertEquals(ManagerCli.EXIT_OK, exit);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\\R");
+        assertEquals("server,name,jndiName,status,messageCount,consumerCount,durable", lines[0]);
+        assertTrue(lines[1].startsWith("default,\"orders,eu\","));
+        assertTrue(lines[1].contains(",12,2,"));
+    }
+    
+    @Test
+    public void testPauseQueue() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenReturn(response);
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exit = new ManagerCli(connectedService(client)).run(new String[] {"pause", "backup/ordersQueue"},
+            new PrintStream(out, true, StandardCharsets.UTF_8), System.err);
+        assertEquals(ManagerCli.EXIT_OK, exit);
+        
+        ArgumentCaptor<ModelNode> op = ArgumentCaptor.forClass(ModelNode.class);
+        verify(client).execute(op.capture());
+        assertEquals("pause-queue", op.getValue().get("operation").asString());
+        assertEquals(queueAddress("backup", "ordersQueue"), op.getValue().get("address"));
+        
+        ModelNode result = ModelNode.fromJSONString(out.toString(StandardCharsets.UTF_8));
+        assertEquals("success", result.get(0).get("outcome").asString());
+        assertEquals("backup/ordersQueue", result.get(0).get("target").asString());
+    }
+    
+    @Test
+    public void testUsageErrors() {
+        ConnectionService connectionService = mock(ConnectionService.class);
+        ManagerCli cli = new ManagerCli(connectionService);
+        PrintStream err = new PrintStream(new ByteArrayOutputStream());
+        
+        assertEquals(ManagerCli.EXIT_USAGE, cli.run(new String[0], System.out, err));
+        assertEquals(ManagerCli.EXIT_USAGE, cli.run(new String[] {"deploy"}, System.out, err));
+        assertEquals(ManagerCli.EXIT_USAGE, cli.run(new String[] {"--format", "xml", "queues"}, System.out, err));
+        assertEquals(ManagerCli.EXIT_USAGE, cli.run(new String[] {"reboot"}, System.out, err));
+        verifyNoInteractions(connectionService);
+    }
+    
+    @Test
+    public void testJsonOutputTypes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<List<Object>> rows = Arrays.asList(Arrays.asList("q1", 5, 7L, true, null));
+        OutputFormat.JSON.write(Arrays.asList("name", "count", "bytes", "paused", "jndi"), rows,
+            new PrintStream(out, true, StandardCharsets.UTF_8));
+        
+        ModelNode row = ModelNode.fromJSONString(out.toString(StandardCharsets.UTF_8)).get(0);
+        assertEquals("q1", row.get("name").asString());
+        assertEquals(5, row.get("count").asInt());
+        assertEquals(7L, row.get("bytes").asLong());
+        assertTrue(row.get("paused").asBoolean());
+        assertFalse(row.get("jndi").isDefined());
+    }
+    
+    private static ModelNode queueAddress(String serverName, String queueName) {
+        ModelNode address = new ModelNode();
+        address.add("subsystem", "messaging-activemq");
+        address.add("server", serverName);
+        address.add("jms-queue", queueName);
+        return address;
+    }
+    
+    private ConnectionService connectedService(ModelControllerClient client) {
+        return new ConnectionService() {
+            @Override
+            public ModelNode execute(ModelNode operation) throws IOException {
+                return client.execute(operation);
+            }
+            
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,168 @@
+package com.jbossmanager.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for FxStallWatchdog.
+ * Note: These tests don't start JavaFX, the probes are collected instead of posted, the probes
+ * and checks are called with prepared times and a blocked thread stands for the JavaFX thread.
+ */
+public class FxStallWatchdogTest {
+    
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    public void testStallReportedWithTaskAndStack() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Thread blocked = new Thread(() -> awaitRelease(release), "blocked-fx");
+        blocked.start();
+        try {
+            Path logFile = tempDir.resolve("stalls.log");
+            List<Runnable> probes = new ArrayList<>();
+            FxStallWatchdog watchdog = new FxStallWatchdog(blocked, probes::add, delay -> { }, 500, logFile,
+                FxStallWatchdog.DEFAULT_MAX_LOG_BYTES);
+            long start = System.nanoTime();
+            watchdog.check(start);
+            assertEquals(1, probes.size());
+            String previous = watchdog.beginTask("tree rebuild");
+            
+            // Let the blocked thread reach the latch
+            Thread.sleep(50);
+            watchdog.check(start + 100 * MILLIS);
+            assertEquals(0, watchdog.getStallCount());
+            watchdog.check(start + 600 * MILLIS);
+            assertEquals(1, watchdog.getStallCount());
+            // Reported with its stack as soon as detected, even if the thread never recovers
+            String report = Files.readString(logFile);
+            assertTrue(report.contains("JavaFX thread stalled for more than 600 ms in tree rebuild"), report);
+            assertTrue(report.contains("awaitRelease"), report);
+            watchdog.check(start + 900 * MILLIS);
+            assertEquals(report, Files.readString(logFile));
+            // A single probe is pending at a time
+            assertEquals(1, probes.size());
+            
+            // Duration reported once the probe ran, and the next probe posted
+            watchdog.endTask(previous);
+            watchdog.probeRan(start, start + 1200 * MILLIS);
+            watchdog.check(start + 1210 * MILLIS);
+            report = Files.readString(logFile);
+            assertTrue(report.contains("JavaFX thread stalled 1200 ms in tree rebuild"), report);
+            assertEquals(2, probes.size());
+            
+            watchdog.probeRan(start + 1210 * MILLIS, start + 1220 * MILLIS);
+            watchdog.check(start + 1300 * MILLIS);
+            assertEquals(1, watchdog.getStallCount());
+        } finally {
+            release.countDown();
+            blocked.join();
+        }
+    }
+    
+    @Test
+    public void testReportLogRotated() throws Exception {
+        Path logFile = tempDir.resolve("stalls.log");
+        List<Runnable> probes = new ArrayList<>();
+        FxStallWatchdog watchdog = new FxStallWatchdog(Thread.currentThread(), probes::add, delay -> { }, 500,
+            logFile, 200);
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            long posted = start + i * 2000 * MILLIS;
+            watchdog.check(posted);
+            watchdog.check(posted + 600 * MILLIS);
+            watchdog.probeRan(posted, posted + 700 * MILLIS);
+            watchdog.check(posted + 800 * MILLIS);
+        }
+        assertEquals(3, watchdog.getStallCount());
+        
+        // Each stack report is longer than the limit, only the last stall and its duration are kept
+        Path rotated = tempDir.resolve("stalls.log.1");
+        assertTrue(Files.exists(rotated));
+        String rotatedReport = Files.readString(rotated);
+        assertEquals(1, rotatedReport.split("JavaFX thread stalled for more than", -1).length - 1);
+        assertTrue(rotatedReport.contains("    at "), rotatedReport);
+        String report = Files.readString(logFile);
+        assertEquals(1, report.split("JavaFX thread stalled 1900 ms", -1).length - 1, report);
+        assertFalse(report.contains("    at "), report);
+    }
+    
+    @Test
+    public void testWriteFailureReportedOnce() throws Exception {
+        // A directory where the log should be
+        Path logFile = Files.createDirectory(tempDir.resolve("stalls.log"));
+        List<Exception> failures = new ArrayList<>();
+        FxStallWatchdog watchdog = new FxStallWatchdog(Thread.currentThread(), probe -> { }, delay -> { }, 500,
+            logFile, FxStallWatchdog.DEFAULT_MAX_LOG_BYTES);
+        watchdog.setFailureListener(failures::add);
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            long posted = start + i * 2000 * MILLIS;
+            watchdog.check(posted);
+            watchdog.check(posted + 600 * MILLIS);
+            watchdog.probeRan(posted, posted + 700 * MILLIS);
+            watchdog.check(posted + 800 * MILLIS);
+        }
+        assertEquals(3, watchdog.getStallCount());
+        assertEquals(1, failures.size());
+        
+        // Reported again once a report was written
+        Files.delete(logFile);
+        long posted = start + 6000 * MILLIS;
+        watchdog.check(posted);
+        watchdog.check(posted + 600 * MILLIS);
+        Files.delete(logFile);
+        Files.createDirectory(logFile);
+        watchdog.probeRan(posted, posted + 700 * MILLIS);
+        watchdog.check(posted + 800 * MILLIS);
+        assertEquals(2, failures.size());
+    }
+    
+    @Test
+    public void testStallAttributedToInnermostApplicationFrame() {
+        StackTraceElement[] stack = {
+            new StackTraceElement("javafx.scene.Parent", "layout", "Parent.java", 1),
+            new StackTraceElement("com.jbossmanager.controller.MainController", "addEJBItems", "MainController.java", 2),
+            new StackTraceElement("com.jbossmanager.controller.MainController", "appendResources", "MainController.java", 3)
+        };
+        assertEquals("MainController.addEJBItems", FxStallWatchdog.attribute(null, stack));
+        assertEquals("metrics update", FxStallWatchdog.attribute("metrics update", stack));
+        assertEquals("unknown task", FxStallWatchdog.attribute(null, new StackTraceElement[0]));
+    }
+    
+    @Test
+    public void testLongestDelayGivenEverySecond() {
+        long[] longest = {-1};
+        FxStallWatchdog watchdog = new FxStallWatchdog(Thread.currentThread(), probe -> { },
+            delay -> longest[0] = delay, 500, tempDir.resolve("stalls.log"), FxStallWatchdog.DEFAULT_MAX_LOG_BYTES);
+        
+        long start = System.nanoTime();
+        watchdog.probeRan(start, start + 2 * MILLIS);
+        watchdog.probeRan(start + 100 * MILLIS, start + 180 * MILLIS);
+        watchdog.probeRan(start + 200 * MILLIS, start + 204 * MILLIS);
+        assertEquals(-1, longest[0]);
+        watchdog.probeRan(start + 1090 * MILLIS, start + 1100 * MILLIS);
+        assertEquals(80 * MILLIS, longest[0]);
+    }
+    
+    private static void awaitRelease(CountDownLatch release) {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.jbossmanager.controller;
+
+import com.jbossmanager.model.JMSQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for QueueDashboardController.
+ * Note: These tests don't start JavaFX, they check the sorting of the rows.
+ */
+public class QueueDashboardControllerTest {
+    
+    @Test
+    public void testIsSorted() {
+        Comparator<JMSQueue> byDepthDescending = Comparator.comparingInt(JMSQueue::getMessageCount).reversed();
+        List<JMSQueue> queues = List.of(queue("orders", 50), queue("invoices", 50), queue("refunds", 3));
+        
+        assertTrue(QueueDashboardController.isSorted(queues, byDepthDescending));
+        assertTrue(QueueDashboardController.isSorted(List.of(), byDepthDescending));
+        
+        queues.get(2).setMessageCount(80);
+        assertFalse(QueueDashboardController.isSorted(queues, byDepthDescending));
+    }
+    
+    @Test
+    public void testCheckingOrderOf10kQueuesIsCheap() {
+        Comparator<JMSQueue> byDepthDescending = Comparator.comparingInt(JMSQueue::getMessageCount).reversed();
+        List<JMSQueue> queues = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            queues.add(queue("queue" + i, 10000 - i));
+        }
+        
+        // Warm up, then keep the best of a few runs to leave out pauses of the test machine
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 20; run++) {
+            long start = System.nanoTime();
+            assertTrue(QueueDashboardController.isSorted(queues, byDepthDescending));
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        assertTrue(best < 5_000_000, "Checking the order took " + best / 1000 + " us");
+    }
+    
+    private JMSQueue queue(String name, int depth) {
+        JMSQueue queue = new JMSQueue(name, "java:/jms/queue/" + name);
+        queue.setMessageCount(depth);
+        return queue;
+    }
+}
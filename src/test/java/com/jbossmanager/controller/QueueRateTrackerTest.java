@@ -0,0 +1,58 @@
+package com.jbossmanager.controller;
+
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for QueueRateTracker.
+ */
+public class QueueRateTrackerTest {
+    
+    private static final long SECONDS = TimeUnit.SECONDS.toNanos(1);
+    
+    @Test
+    public void testRateFromSuccessivePolls() {
+        QueueRateTracker tracker = new QueueRateTracker();
+        long start = System.nanoTime();
+        
+        // Nothing to compare the first poll with
+        assertTrue(tracker.update(poll(100, 50), start).isEmpty());
+        
+        Map<String, Double> rates = tracker.update(poll(150, 50), start + 5 * SECONDS);
+        assertEquals(10.0, rates.get("default/OrdersQueue"), 1e-9);
+        assertEquals(0.0, rates.get("default/AuditQueue"), 1e-9);
+        
+        // Measured from the time of the polls, however late they are shown
+        rates = tracker.update(poll(170, 50), start + 7 * SECONDS);
+        assertEquals(10.0, rates.get("default/OrdersQueue"), 1e-9);
+    }
+    
+    @Test
+    public void testNoRateAfterCounterResetOrReset() {
+        QueueRateTracker tracker = new QueueRateTracker();
+        long start = System.nanoTime();
+        tracker.update(poll(100, 50), start);
+        
+        // The server restarted
+        Map<String, Double> rates = tracker.update(poll(20, 60), start + SECONDS);
+        assertFalse(rates.containsKey("default/OrdersQueue"));
+        assertEquals(10.0, rates.get("default/AuditQueue"), 1e-9);
+        
+        tracker.reset();
+        assertTrue(tracker.update(poll(40, 70), start + 2 * SECONDS).isEmpty());
+    }
+    
+    private static List<MessagingServer> poll(long ordersAdded, long auditAdded) {
+        MessagingServer server = new MessagingServer("default");
+        server.getQueues().add(new QueueSnapshot("default", "OrdersQueue", "", "Running", 0, 1, ordersAdded, true));
+        server.getQueues().add(new QueueSnapshot("default", "AuditQueue", "", "Running", 0, 1, auditAdded, true));
+        return List.of(server);
+    }
+}
@@ -0,0 +1,80 @@
+package com.jbossmanager.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for UiUpdateDispatcher.
+ * Note: These tests don't start JavaFX, the batches are run by the test instead of a pulse.
+ */
+public class UiUpdateDispatcherTest {
+    
+    @Test
+    public void testOneBatchScheduledUntilApplied() {
+        List<Runnable> batches = new ArrayList<>();
+        UiUpdateDispatcher dispatcher = new UiUpdateDispatcher(batches::add);
+        List<String> applied = new ArrayList<>();
+        
+        dispatcher.post(() -> applied.add("a"));
+        dispatcher.post(() -> applied.add("b"));
+        assertEquals(1, batches.size());
+        assertEquals(2, dispatcher.getPendingCount());
+        assertTrue(applied.isEmpty());
+        
+        batches.get(0).run();
+        assertEquals(List.of("a", "b"), applied);
+        assertEquals(0, dispatcher.getPendingCount());
+        
+        dispatcher.post(() -> applied.add("c"));
+        assertEquals(2, batches.size());
+    }
+    
+    @Test
+    public void testLatestUpdatePerKeyWins() {
+        List<Runnable> batches = new ArrayList<>();
+        UiUpdateDispatcher dispatcher = new UiUpdateDispatcher(batches::add);
+        List<String> applied = new ArrayList<>();
+        
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            dispatcher.post("latency", () -> applied.add("latency " + value));
+        }
+        dispatcher.post(() -> applied.add("lost"));
+        dispatcher.post("latency", () -> applied.add("latency after"));
+        batches.get(0).run();
+        
+        // The replaced update moves after the updates posted in between
+        assertEquals(List.of("lost", "latency after"), applied);
+        assertEquals(2, dispatcher.getUpdateCount());
+        assertEquals(100, dispatcher.getCoalescedCount());
+        assertEquals(2, dispatcher.getMaxPendingCount());
+        assertEquals(1, dispatcher.getBatchTimes().getCount());
+    }
+    
+    @Test
+    public void testFailingUpdateDoesNotStopBatch() {
+        List<Runnable> batches = new ArrayList<>();
+        UiUpdateDispatcher dispatcher = new UiUpdateDispatcher(batches::add);
+        List<String> applied = new ArrayList<>();
+        List<Throwable> uncaught = new ArrayList<>();
+        Thread.UncaughtExceptionHandler previous = Thread.currentThread().getUncaughtExceptionHandler();
+        Thread.currentThread().setUncaughtExceptionHandler((thread, e) -> uncaught.add(e));
+        try {
+            dispatcher.post(() -> {
+                throw new IllegalStateException("broken");
+            });
+            dispatcher.post(() -> applied.add("next"));
+            batches.get(0).run();
+        } finally {
+            Thread.currentThread().setUncaughtExceptionHandler(previous);
+        }
+        
+        assertEquals(List.of("next"), applied);
+        assertEquals(1, uncaught.size());
+        assertEquals("broken", uncaught.get(0).getMessage());
+    }
+}
@@ -94,4 +94,23 @@ public class EJBComponentTest {
         ejb.statefulProperty().set(true);
         assertTrue(ejb.isStateful());
     }
+    
+    @Test
+    public void testFromSnapshot() {
+        EJBSnapshot snapshot = new EJBSnapshot("CartBean", EJBType.STATEFUL, "shop.ear", "java:global/shop/CartBean", 5, 40, 2);
+        EJBComponent ejb = new EJBComponent(snapshot);
+        
+        assertEquals("CartBean", ejb.getName());
+        assertEquals("Stateful Session Bean", ejb.getType());
+        assertEquals("shop.ear", ejb.getDeploymentName());
+        assertEquals("java:global/shop/CartBean", ejb.getJndiName());
+        assertEquals("Deployed", ejb.getStatus());
+        assertTrue(ejb.isStateful());
+        assertEquals(5, ejb.getInvocations());
+        assertEquals(40, ejb.getExecutionTime());
+        assertEquals(2, ejb.getPeakConcurrentUsage());
+        
+        assertEquals(EJBType.STATEFUL, EJBType.fromDisplayName(ejb.getType()));
+        assertNull(EJBType.fromDisplayName("Entity Bean"));
+    }
 }
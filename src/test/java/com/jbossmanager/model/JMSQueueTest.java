@@ -14,6 +14,7 @@ public class JMSQueueTest {
         
         // Verify default values
         assertEquals("", queue.getName());
+        assertEquals("default", queue.getServerName());
         assertEquals("", queue.getJndiName());
         assertEquals("Unknown", queue.getStatus());
         assertEquals(0, queue.getMessageCount());
@@ -93,5 +94,29 @@ public class JMSQueueTest {
         
         queue.durableProperty().set(true);
         assertTrue(queue.isDurable());
+        
+        queue.messageRateProperty().set(12.5);
+        assertEquals(12.5, queue.getMessageRate());
+    }
+    
+    @Test
+    public void testUpdateFromSnapshot() {
+        JMSQueue queue = new JMSQueue(new QueueSnapshot("backup", "orders", "java:/jms/queue/orders", "Running",
+            12, 2, 100, true));
+        assertEquals("backup", queue.getServerName());
+        assertEquals("orders", queue.getName());
+        assertEquals(12, queue.getMessageCount());
+        assertTrue(queue.isDurable());
+        
+        // The rate and the alert are computed by the application and survive a refresh
+        queue.setMessageRate(3.5);
+        queue.setAlerting(true);
+        queue.update(new QueueSnapshot("backup", "orders", "java:/jms/queue/orders", "Paused", 40, 0, 130, true));
+        assertEquals("Paused", queue.getStatus());
+        assertEquals(40, queue.getMessageCount());
+        assertEquals(0, queue.getConsumerCount());
+        assertEquals(130, queue.getMessagesAdded());
+        assertEquals(3.5, queue.getMessageRate());
+        assertTrue(queue.isAlerting());
     }
 }
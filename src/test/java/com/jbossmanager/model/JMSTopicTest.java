@@ -0,0 +1,46 @@
+package com.jbossmanager.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for JMSTopic model.
+ */
+public class JMSTopicTest {
+    
+    @Test
+    public void testDefaultConstructor() {
+        JMSTopic topic = new JMSTopic();
+        
+        // Verify default values
+        assertEquals("", topic.getName());
+        assertEquals("default", topic.getServerName());
+        assertEquals("", topic.getJndiName());
+        assertEquals(0, topic.getSubscriptionCount());
+        assertEquals(0, topic.getDurableSubscriptionCount());
+        assertEquals(0, topic.getMessageCount());
+        assertEquals(0, topic.getDurableMessageCount());
+    }
+    
+    @Test
+    public void testSettersAndGetters() {
+        JMSTopic topic = new JMSTopic("testTopic", "java:/jms/topic/test");
+        
+        // Set values
+        topic.setServerName("backup");
+        topic.setSubscriptionCount(3);
+        topic.setDurableSubscriptionCount(2);
+        topic.setMessageCount(40);
+        topic.setDurableMessageCount(25);
+        
+        // Verify values
+        assertEquals("testTopic", topic.getName());
+        assertEquals("java:/jms/topic/test", topic.getJndiName());
+        assertEquals("backup", topic.getServerName());
+        assertEquals(3, topic.getSubscriptionCount());
+        assertEquals(2, topic.getDurableSubscriptionCount());
+        assertEquals(40, topic.getMessageCount());
+        assertEquals(25, topic.getDurableMessageCount());
+        assertEquals("testTopic", topic.toString());
+    }
+}
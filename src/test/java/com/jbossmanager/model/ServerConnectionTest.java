@@ -102,4 +102,19 @@ public class ServerConnectionTest {
         connection.connectionStatusProperty().set("newStatus");
         assertEquals("newStatus", connection.getConnectionStatus());
     }
+    
+    @Test
+    public void testUpdateFromSnapshot() {
+        ServerConnection connection = new ServerConnection("example.com", 8080, "admin", "password");
+        connection.update(new ConnectionSnapshot("other.com", 9990, "operator", "26.1.0.Final", true, "Connected"));
+        
+        assertEquals("other.com", connection.getHost());
+        assertEquals(9990, connection.getPort());
+        assertEquals("operator", connection.getUsername());
+        assertEquals("26.1.0.Final", connection.getServerVersion());
+        assertTrue(connection.isConnected());
+        assertEquals("Connected", connection.getConnectionStatus());
+        // The snapshots never carry the password
+        assertEquals("password", connection.getPassword());
+    }
 }
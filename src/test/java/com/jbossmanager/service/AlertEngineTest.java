@@ -0,0 +1,183 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueAlert;
+import com.jbossmanager.model.QueueSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for AlertEngine.
+ * Note: These tests don't actually connect to a server, they feed prepared metrics to the engine.
+ */
+public class AlertEngineTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    public void testThresholdAlertFiresAndResolvesOnce() {
+        AlertEngine engine = new AlertEngine(List.of(AlertRule.depthAbove(100)));
+        List<QueueAlert> alerts = new ArrayList<>();
+        engine.addAlertListener(alerts::add);
+        
+        engine.evaluate(servers(queue("orders", 50, 1)));
+        assertTrue(alerts.isEmpty());
+        
+        engine.evaluate(servers(queue("orders", 150, 1)));
+        engine.evaluate(servers(queue("orders", 200, 1)));
+        assertEquals(1, alerts.size());
+        assertEquals(QueueAlert.State.FIRING, alerts.get(0).getState());
+        assertEquals("orders", alerts.get(0).getQueueName());
+        assertTrue(engine.isFiring("default", "orders"));
+        
+        engine.evaluate(servers(queue("orders", 10, 1)));
+        assertEquals(2, alerts.size());
+        assertEquals(QueueAlert.State.RESOLVED, alerts.get(1).getState());
+        assertFalse(engine.isFiring("default", "orders"));
+    }
+    
+    @Test
+    public void testNoConsumersAndDeadLetterRules() {
+        AlertEngine engine = new AlertEngine(List.of(AlertRule.noConsumersWithBacklog(), AlertRule.deadLetterNotEmpty()));
+        List<QueueAlert> alerts = new ArrayList<>();
+        engine.addAlertListener(alerts::add);
+        
+        engine.evaluate(servers(queue("orders", 0, 0), queue("DLQ", 3, 1)));
+        
+        assertEquals(1, alerts.size());
+        assertEquals("dlq-not-empty", alerts.get(0).getRuleName());
+        assertFalse(engine.isFiring("default", "orders"));
+        
+        engine.evaluate(servers(queue("orders", 5, 0), queue("DLQ", 3, 1)));
+        assertEquals(2, alerts.size());
+        assertEquals("no-consumers", alerts.get(1).getRuleName());
+    }
+    
+    @Test
+    public void testDepthIncreasingTrend() {
+        AlertEngine engine = new AlertEngine(List.of(AlertRule.depthIncreasing(3)));
+        List<QueueAlert> alerts = new ArrayList<>();
+        engine.addAlertListener(alerts::add);
+        
+        // The first sample has no previous value, then three increases are needed
+        long[] depths = {10, 20, 30, 30, 40, 50, 60};
+        for (long depth : depths) {
+            engine.evaluate(servers(queue("orders", depth, 1)));
+        }
+        
+        assertEquals(1, alerts.size());
+        assertEquals(QueueAlert.State.FIRING, alerts.get(0).getState());
+        assertTrue(alerts.get(0).getMessage().contains("60"));
+    }
+    
+    @Test
+    public void testOnlyChangedQueuesAreEvaluated() {
+        AtomicInteger checks = new AtomicInteger();
+        AlertEngine engine = new AlertEngine(List.of(new AlertRule("counted", state -> {
+            checks.incrementAndGet();
+            return state.getDepth() > 100;
+        }, state -> "Too deep")));
+        List<QueueAlert> alerts = new ArrayList<>();
+        engine.addAlertListener(alerts::add);
+        
+        List<QueueSnapshot> queues = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            queues.add(queue("queue-" + i, 10, 1));
+        }
+        engine.evaluate(servers(queues.toArray(new QueueSnapshot[0])));
+        assertEquals(1000, checks.get());
+        
+        // Unchanged queues keep their alert state without the rules being checked again
+        queues.set(7, queue("queue-7", 500, 1));
+        engine.evaluate(servers(queues.toArray(new QueueSnapshot[0])));
+        assertEquals(1001, checks.get());
+        assertEquals(1, alerts.size());
+        // The end of its increasing streak changes the state of queue-7 once more
+        engine.evaluate(servers(queues.toArray(new QueueSnapshot[0])));
+        engine.evaluate(servers(queues.toArray(new QueueSnapshot[0])));
+        assertEquals(1002, checks.get());
+        assertEquals(1, alerts.size());
+        assertTrue(engine.isFiring("default", "queue-7"));
+    }
+    
+    @Test
+    public void testRemovedQueueResolvesAlerts() {
+        AlertEngine engine = new AlertEngine(List.of(AlertRule.depthAbove(0)));
+        List<QueueAlert> alerts = new ArrayList<>();
+        engine.addAlertListener(alerts::add);
+        
+        engine.evaluate(servers(queue("orders", 5, 1), queue("invoices", 5, 1)));
+        engine.evaluate(servers(queue("orders", 5, 1)));
+        
+        assertEquals(3, alerts.size());
+        assertEquals("invoices", alerts.get(2).getQueueName());
+        assertEquals(QueueAlert.State.RESOLVED, alerts.get(2).getState());
+        assertFalse(engine.isFiring("default", "invoices"));
+    }
+    
+    @Test
+    public void testAlertLog() throws Exception {
+        Path logFile = tempDir.resolve("logs").resolve("alerts.log");
+        AlertEngine engine = new AlertEngine(List.of(AlertRule.depthAbove(0)));
+        AlertLog log = new AlertLog(logFile);
+        engine.addAlertListener(log);
+        
+        engine.evaluate(servers(queue("orders", 5, 1)));
+        engine.evaluate(servers(queue("orders", 0, 1)));
+        log.close();
+        
+        List<String> lines = Files.readAllLines(logFile);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("FIRING default/orders [depth-above-0]"));
+        assertTrue(lines.get(1).contains("RESOLVED default/orders"));
+    }
+    
+    @Test
+    public void testAlertLogFailureReportedOnce() throws Exception {
+        // The log directory cannot be created
+        Path file = Files.createFile(tempDir.resolve("logs"));
+        AlertEngine engine = new AlertEngine(List.of(AlertRule.depthAbove(0)));
+        AlertLog log = new AlertLog(file.resolve("alerts.log"));
+        List<IOException> failures = new ArrayList<>();
+        log.setFailureListener(failures::add);
+        engine.addAlertListener(log);
+        
+        engine.evaluate(servers(queue("orders", 5, 1)));
+        engine.evaluate(servers(queue("orders", 0, 1)));
+        engine.evaluate(servers(queue("orders", 5, 1)));
+        log.close();
+        assertEquals(1, failures.size());
+    }
+    
+    @Test
+    public void testTooManyRules() {
+        List<AlertRule> rules = new ArrayList<>();
+        for (int i = 0; i <= AlertEngine.MAX_RULES; i++) {
+            rules.add(AlertRule.depthAbove(i));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new AlertEngine(rules));
+        
+        AlertEngine engine = new AlertEngine(rules.subList(0, AlertEngine.MAX_RULES));
+        assertThrows(UnsupportedOperationException.class, () -> engine.getRules().add(AlertRule.depthAbove(0)));
+    }
+    
+    private QueueSnapshot queue(String name, long depth, int consumers) {
+        return new QueueSnapshot("default", name, "java:/jms/queue/" + name, "Running", (int) depth, consumers, 0, false);
+    }
+    
+    private List<MessagingServer> servers(QueueSnapshot... queues) {
+        MessagingServer server = new MessagingServer("default");
+        server.getQueues().addAll(List.of(queues));
+        return List.of(server);
+    }
+}
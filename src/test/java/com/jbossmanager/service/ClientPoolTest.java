@@ -0,0 +1,81 @@
+package com.jbossmanager.service;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for ClientPool.
+ */
+public class ClientPoolTest {
+    
+    @Test
+    public void testLeaseAndRelease() throws Exception {
+        ModelControllerClient first = mock(ModelControllerClient.class);
+        ModelControllerClient second = mock(ModelControllerClient.class);
+        ClientPool pool = new ClientPool(List.of(first, second));
+        
+        ModelControllerClient a = pool.lease();
+        ModelControllerClient b = pool.lease();
+        assertNotSame(a, b);
+        assertEquals(2, pool.getLeasedCount());
+        assertThrows(IOException.class, () -> pool.lease(20));
+        
+        pool.release(a);
+        assertSame(a, pool.lease(20));
+        pool.release(a);
+        pool.release(b);
+        assertEquals(0, pool.getLeasedCount());
+    }
+    
+    @Test
+    public void testDrainWaitsForLeasedClients() throws Exception {
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        ClientPool pool = new ClientPool(List.of(client));
+        ModelControllerClient leased = pool.lease();
+        
+        CountDownLatch drained = new CountDownLatch(1);
+        Thread drain = new Thread(() -> {
+            assertTrue(pool.drain(5000));
+            drained.countDown();
+        });
+        drain.start();
+        
+        // New leases are refused while draining, the leased client is not closed yet
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                pool.release(pool.lease(0));
+                Thread.sleep(5);
+            } catch (IOException e) {
+                break;
+            }
+        }
+        assertThrows(IOException.class, () -> pool.lease(0));
+        assertFalse(drained.await(50, TimeUnit.MILLISECONDS));
+        verify(client, never()).close();
+        
+        pool.release(leased);
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        verify(client).close();
+        assertTrue(pool.isClosed());
+    }
+    
+    @Test
+    public void testDrainTimeoutClosesLeasedClients() throws Exception {
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        ClientPool pool = new ClientPool(List.of(client));
+        pool.lease();
+        
+        assertFalse(pool.drain(20));
+        verify(client).close();
+        assertEquals(0, pool.getLeasedCount());
+    }
+}
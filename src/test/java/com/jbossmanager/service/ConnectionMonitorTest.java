@@ -0,0 +1,188 @@
+package com.jbossmanager.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ConnectionMonitor.
+ * Note: These tests don't actually connect to a server, the heartbeat and the reconnection are simulated.
+ */
+public class ConnectionMonitorTest {
+    
+    @Test
+    public void testBackoffDelay() {
+        Random random = new Random(42);
+        for (int attempt = 1; attempt <= 12; attempt++) {
+            long ceiling = Math.min(60000, 1000L << (attempt - 1));
+            for (int i = 0; i < 100; i++) {
+                long delay = ConnectionMonitor.backoffDelay(attempt, 1000, 60000, random);
+                assertTrue(delay >= ceiling / 2 && delay <= ceiling, "Delay " + delay + " of attempt " + attempt);
+            }
+        }
+        
+        // Capped without overflowing after many attempts
+        long delay = ConnectionMonitor.backoffDelay(1000, 1000, 60000, random);
+        assertTrue(delay >= 30000 && delay <= 60000);
+    }
+    
+    @Test
+    public void testReconnectAfterHeartbeatFailure() throws Exception {
+        AtomicInteger pings = new AtomicInteger();
+        AtomicInteger reconnects = new AtomicInteger();
+        ConnectionService connectionService = new ConnectionService() {
+            @Override
+            public long ping(long timeoutMillis) throws IOException {
+                if (pings.incrementAndGet() == 2) {
+                    throw new IOException("Connection reset");
+                }
+                return TimeUnit.MILLISECONDS.toNanos(3);
+            }
+            
+            @Override
+            public boolean reconnect() {
+                // The server is back on the third attempt
+                return reconnects.incrementAndGet() == 3;
+            }
+        };
+        
+        List<String> events = new CopyOnWriteArrayList<>();
+        CountDownLatch reconnected = new CountDownLatch(1);
+        ConnectionMonitor monitor = new ConnectionMonitor(connectionService, 10, 1000, 5, 20);
+        monitor.addListener(new ConnectionMonitor.Listener() {
+            @Override
+            public void heartbeat(long roundTripNanos) {
+                events.add("heartbeat");
+            }
+            
+            @Override
+            public void connectionLost(String reason) {
+                events.add("lost: " + reason);
+            }
+            
+            @Override
+            public void reconnecting(int attempt, long delayMillis) {
+                events.add("reconnecting " + attempt);
+            }
+            
+            @Override
+            public void reconnected() {
+                events.add("reconnected");
+                reconnected.countDown();
+            }
+        });
+        monitor.addSubscription(new ConnectionMonitor.Subscription() {
+            @Override
+            public void suspend() {
+                events.add("suspend");
+            }
+            
+            @Override
+            public void resume() {
+                events.add("resume");
+            }
+        });
+        
+        monitor.start();
+        try {
+            assertTrue(reconnected.await(5, TimeUnit.SECONDS));
+            assertFalse(monitor.isReconnecting());
+            assertEquals(List.of("heartbeat", "suspend", "lost: Connection reset", "reconnecting 1",
+                "reconnecting 2", "reconnecting 3", "resume", "reconnected"), events.subList(0, 8));
+            
+            // Heartbeats go on once reconnected
+            long deadline = System.currentTimeMillis() + 5000;
+            while (monitor.getLastRoundTripNanos() < 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(3), monitor.getLastRoundTripNanos());
+        } finally {
+            monitor.stop();
+        }
+        assertFalse(monitor.isRunning());
+    }
+    
+    @Test
+    public void testReconnectInProgressDroppedAfterRestart() throws Exception {
+        AtomicInteger pings = new AtomicInteger();
+        CountDownLatch reconnectStarted = new CountDownLatch(1);
+        CountDownLatch releaseReconnect = new CountDownLatch(1);
+        CountDownLatch reconnectReturned = new CountDownLatch(1);
+        ConnectionService connectionService = new ConnectionService() {
+            @Override
+            public long ping(long timeoutMillis) throws IOException {
+                if (pings.incrementAndGet() == 1) {
+                    throw new IOException("Connection reset");
+                }
+                return TimeUnit.MILLISECONDS.toNanos(3);
+            }
+            
+            @Override
+            public boolean reconnect() {
+                // Blocked in the handshake, not interrupted when the monitor stops
+                reconnectStarted.countDown();
+                try {
+                    while (true) {
+                        try {
+                            releaseReconnect.await();
+                            return true;
+                        } catch (InterruptedException e) {
+                            // Ignored, like the remoting handshake
+                        }
+                    }
+                } finally {
+                    reconnectReturned.countDown();
+                }
+            }
+        };
+        
+        AtomicInteger resumed = new AtomicInteger();
+        AtomicInteger reconnected = new AtomicInteger();
+        ConnectionMonitor monitor = new ConnectionMonitor(connectionService, 10, 1000, 5, 20);
+        monitor.addListener(new ConnectionMonitor.Listener() {
+            @Override
+            public void reconnected() {
+                reconnected.incrementAndGet();
+            }
+        });
+        monitor.addSubscription(new ConnectionMonitor.Subscription() {
+            @Override
+            public void suspend() {
+            }
+            
+            @Override
+            public void resume() {
+                resumed.incrementAndGet();
+            }
+        });
+        
+        monitor.start();
+        try {
+            assertTrue(reconnectStarted.await(5, TimeUnit.SECONDS));
+            // Disconnect and connect again while the reconnection is in progress
+            monitor.stop();
+            monitor.start();
+            releaseReconnect.countDown();
+            assertTrue(reconnectReturned.await(5, TimeUnit.SECONDS));
+            
+            // A single heartbeat chain goes on, the subscriptions are not resumed again
+            int before = pings.get();
+            Thread.sleep(200);
+            int heartbeats = pings.get() - before;
+            assertTrue(heartbeats > 0 && heartbeats <= 200 / 10 + 2, "Heartbeats: " + heartbeats);
+            assertEquals(0, resumed.get());
+            assertEquals(0, reconnected.get());
+            assertFalse(monitor.isReconnecting());
+        } finally {
+            monitor.stop();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.ConnectionProfile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ConnectionProfileStore.
+ */
+public class ConnectionProfileStoreTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        ConnectionProfileStore store = new ConnectionProfileStore(directory.resolve("profiles.json"));
+        assertTrue(store.load().isEmpty());
+        
+        store.save(Arrays.asList(
+            new ConnectionProfile("prod", "prod.example.com", 9990, "admin", "secret", true, true),
+            new ConnectionProfile("test", "test.example.com", 10090, "", "", false, false)));
+        
+        List<ConnectionProfile> profiles = store.load();
+        assertEquals(2, profiles.size());
+        ConnectionProfile prod = profiles.get(0);
+        assertEquals("prod", prod.getName());
+        assertEquals("prod.example.com", prod.getHost());
+        assertEquals("secret", prod.getPassword());
+        assertTrue(prod.isPasswordSaved());
+        assertTrue(prod.isConnectOnStartup());
+        assertTrue(prod.matches("prod.example.com", 9990, "admin"));
+        assertFalse(prod.matches("prod.example.com", 9990, "other"));
+        assertEquals(10090, profiles.get(1).getPort());
+        assertFalse(profiles.get(1).isConnectOnStartup());
+        
+        if (Files.getFileStore(directory).supportsFileAttributeView("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(
+                Files.getPosixFilePermissions(directory.resolve("profiles.json"))));
+        }
+    }
+    
+    @Test
+    public void testPasswordOnlySavedOnRequest() throws Exception {
+        Path file = directory.resolve("profiles.json");
+        ConnectionProfileStore store = new ConnectionProfileStore(file);
+        store.save(List.of(new ConnectionProfile("prod", "prod.example.com", 9990, "admin", "secret", false, false)));
+        
+        assertFalse(Files.readString(file).contains("secret"));
+        ConnectionProfile prod = store.load().get(0);
+        assertEquals("", prod.getPassword());
+        assertFalse(prod.isPasswordSaved());
+        
+        // A password saved before the choice existed is not loaded
+        Files.writeString(file, "{\"profiles\": [{\"name\": \"old\", \"host\": \"old.example.com\", "
+            + "\"username\": \"admin\", \"password\": \"secret\", \"connect-on-startup\": true}]}");
+        ConnectionProfile old = store.load().get(0);
+        assertEquals("", old.getPassword());
+        assertFalse(old.isPasswordSaved());
+    }
+}
@@ -1,9 +1,28 @@
 package com.jbossmanager.service;
 
+import com.jbossmanager.model.ConnectionSnapshot;
 import com.jbossmanager.model.ServerConnection;
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.dmr.ModelNode;
+import org.jboss.threads.AsyncFuture;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.security.auth.callback.CallbackHandler;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 /**
  * Test class for ConnectionService.
@@ -57,4 +76,339 @@ public class ConnectionServiceTest {
         serverConnection.setPort(8080);
         assertEquals("example.com:8080", serverConnection.toString());
     }
+    
+    @Test
+    public void testHandshakeInSingleRequest() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        response.get("result", "step-1", "result").set("running");
+        response.get("result", "step-2", "result").set("26.1.0.Final");
+        response.get("result", "step-3", "result").add("ejb3");
+        response.get("result", "step-3", "result").add("messaging-activemq");
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(Operation.class), any(OperationMessageHandler.class))).thenReturn(response);
+        ConnectionService connectionService = serviceWithClient(client);
+        
+        assertTrue(connectionService.connect("localhost", 9990, "admin", "secret"));
+        assertEquals("26.1.0.Final", connectionService.getConnectionSnapshot().serverVersion());
+        assertTrue(connectionService.getSubsystems().contains("messaging-activemq"));
+        
+        // The handshake is the first request, then the operation plan is probed
+        ArgumentCaptor<Operation> op = ArgumentCaptor.forClass(Operation.class);
+        verify(client, atLeastOnce()).execute(op.capture(), any(OperationMessageHandler.class));
+        ModelNode handshake = op.getAllValues().get(0).getOperation();
+        assertEquals("composite", handshake.get("operation").asString());
+        assertEquals(3, handshake.get("steps").asList().size());
+        assertTrue(op.getAllValues().size() <= 2);
+        
+        connectionService.disconnect();
+        assertTrue(connectionService.getSubsystems().isEmpty());
+    }
+    
+    @Test
+    public void testHandshakeFailure() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("failed");
+        response.get("failure-description").set("WFLYCTL0216: Management resource not found");
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(Operation.class), any(OperationMessageHandler.class))).thenReturn(response);
+        ConnectionService connectionService = serviceWithClient(client);
+        
+        assertFalse(connectionService.connect("localhost", 9990, "admin", "secret"));
+        assertFalse(connectionService.isConnected());
+        assertTrue(connectionService.getConnectionSnapshot().connectionStatus().contains("WFLYCTL0216"));
+    }
+    
+    @Test
+    public void testRequestsFailFastAfterConnectionLost() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        response.get("result", "step-2", "result").set("26.1.0.Final");
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(Operation.class), any(OperationMessageHandler.class))).thenReturn(response);
+        ConnectionService connectionService = serviceWithClient(client);
+        assertTrue(connectionService.connect("localhost", 9990, "admin", "secret"));
+        
+        connectionService.connectionLost("No answer from server in 10000 ms");
+        assertFalse(connectionService.isConnected());
+        assertTrue(connectionService.isConnectionLost());
+        verify(client, atLeastOnce()).close();
+        IOException failure = assertThrows(IOException.class, () -> connectionService.execute(new ModelNode()));
+        assertTrue(failure.getMessage().contains("reconnecting"));
+        
+        // Reconnecting uses the credentials of the lost connection
+        assertTrue(connectionService.reconnect());
+        assertTrue(connectionService.isConnected());
+        assertFalse(connectionService.isConnectionLost());
+        assertEquals("admin", connectionService.getConnectionSnapshot().username());
+    }
+    
+    @Test
+    public void testReconnectDoesNotReplaceClosedOrNewConnection() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        response.get("result", "step-2", "result").set("26.1.0.Final");
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(Operation.class), any(OperationMessageHandler.class))).thenReturn(response);
+        ConnectionService connectionService = serviceWithClient(client);
+        assertTrue(connectionService.connect("localhost", 9990, "admin", "secret"));
+        
+        // Disconnected by the user during the outage
+        connectionService.connectionLost("Connection reset");
+        connectionService.disconnect();
+        assertFalse(connectionService.reconnect());
+        assertFalse(connectionService.isConnected());
+        assertEquals("Disconnected", connectionService.getConnectionSnapshot().connectionStatus());
+        
+        // Connected again by the user during the outage
+        assertTrue(connectionService.connect("localhost", 9990, "admin", "secret"));
+        ClientPool pool = connectionService.getClientPool();
+        assertFalse(connectionService.reconnect());
+        assertSame(pool, connectionService.getClientPool());
+        assertTrue(connectionService.isConnected());
+        connectionService.disconnect();
+    }
+    
+    @Test
+    public void testConcurrentReadsWhileConnectingAndDisconnecting() throws Exception {
+        List<ModelControllerClient> clients = new CopyOnWriteArrayList<>();
+        ConnectionService connectionService = new ConnectionService() {
+            @Override
+            protected ModelControllerClient createClient(String host, int port, CallbackHandler callbackHandler)
+                    throws IOException {
+                ModelControllerClient client = mock(ModelControllerClient.class);
+                when(client.execute(any(Operation.class), any(OperationMessageHandler.class))).thenAnswer(invocation -> {
+                    Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                    ModelNode response = new ModelNode();
+                    response.get("outcome").set("success");
+                    response.get("result", "step-2", "result").set("26.1.0.Final");
+                    return response;
+                });
+                clients.add(client);
+                return client;
+            }
+        };
+        
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        List<Throwable> unexpected = new CopyOnWriteArrayList<>();
+        List<Thread> readers = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread reader = new Thread(() -> {
+                ModelNode op = new ModelNode();
+                op.get("operation").set("read-resource");
+                while (running.get()) {
+                    try {
+                        if ("success".equals(connectionService.execute(op).get("outcome").asString())) {
+                            succeeded.incrementAndGet();
+                        }
+                    } catch (IOException | IllegalStateException e) {
+                        // Not connected, or disconnected while the request was waiting
+                        refused.incrementAndGet();
+                    } catch (Throwable t) {
+                        unexpected.add(t);
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        
+        for (int i = 0; i < 40; i++) {
+            assertTrue(connectionService.connect("localhost", 9990, "admin", "secret"));
+            Thread.sleep(5);
+            if (i % 2 == 0) {
+                connectionService.disconnect();
+            } else {
+                connectionService.connectionLost("Connection reset");
+            }
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join(10000);
+            assertFalse(reader.isAlive(), "Reader blocked after disconnect");
+        }
+        
+        assertTrue(unexpected.isEmpty(), () -> "Unexpected failures: " + unexpected);
+        assertTrue(succeeded.get() > 0);
+        assertTrue(refused.get() > 0);
+        // The pool and the heartbeat client of every connection
+        assertEquals(40 * (ConnectionService.configuredPoolSize() + 1), clients.size());
+        // Every client is closed once its pool is drained
+        for (ModelControllerClient client : clients) {
+            verify(client, timeout(10000).atLeastOnce()).close();
+        }
+    }
+    
+    @Test
+    public void testClientsClosedWhenOneCannotBeCreated() throws Exception {
+        List<ModelControllerClient> clients = new ArrayList<>();
+        ConnectionService connectionService = new ConnectionService() {
+            @Override
+            protected ModelControllerClient createClient(String host, int port, CallbackHandler callbackHandler)
+                    throws IOException {
+                if (clients.size() == ConnectionService.configuredPoolSize()) {
+                    throw new IOException("Too many open files");
+                }
+                ModelControllerClient client = mock(ModelControllerClient.class);
+                clients.add(client);
+                return client;
+            }
+        };
+        
+        assertFalse(connectionService.connect("localhost", 9990, "admin", "secret"));
+        assertTrue(connectionService.getConnectionSnapshot().connectionStatus().contains("Too many open files"));
+        assertEquals(ConnectionService.configuredPoolSize(), clients.size());
+        for (ModelControllerClient client : clients) {
+            verify(client).close();
+        }
+    }
+    
+    @Test
+    public void testStatePublishedToListeners() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        response.get("result", "step-2", "result").set("26.1.0.Final");
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(Operation.class), any(OperationMessageHandler.class))).thenReturn(response);
+        ConnectionService connectionService = serviceWithClient(client);
+        List<ConnectionSnapshot> states = new ArrayList<>();
+        connectionService.addStateListener(states::add);
+        
+        assertTrue(connectionService.connect("localhost", 9990, "admin", "secret"));
+        connectionService.disconnectAndWait();
+        
+        assertEquals(2, states.size());
+        assertTrue(states.get(0).connected());
+        assertEquals("26.1.0.Final", states.get(0).serverVersion());
+        assertFalse(states.get(1).connected());
+        assertEquals("Disconnected", states.get(1).connectionStatus());
+        assertEquals("admin", states.get(1).username());
+        assertSame(states.get(1), connectionService.getConnectionSnapshot());
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPingWhileAllClientsBusy() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        response.get("result", "step-2", "result").set("26.1.0.Final");
+        AsyncFuture<ModelNode> answer = mock(AsyncFuture.class);
+        when(answer.get(anyLong(), any(TimeUnit.class))).thenReturn(response);
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(Operation.class), any(OperationMessageHandler.class))).thenReturn(response);
+        when(client.executeAsync(any(Operation.class), any(OperationMessageHandler.class))).thenReturn(answer);
+        ConnectionService connectionService = serviceWithClient(client);
+        assertTrue(connectionService.connect("localhost", 9990, "admin", "secret"));
+        
+        // Long requests hold every client of the pool, the server is busy but alive; the
+        // requests of the connection may still be giving their client back
+        ClientPool pool = connectionService.getClientPool();
+        List<ModelControllerClient> leased = new ArrayList<>();
+        for (int i = 0; i < pool.size(); i++) {
+            leased.add(pool.lease(5000));
+        }
+        assertTrue(connectionService.ping(100) >= 0);
+        for (ModelControllerClient busy : leased) {
+            pool.release(busy);
+        }
+        connectionService.disconnectAndWait();
+    }
+    
+    @Test
+    public void testOperationPlanProbedOncePerVersion() throws Exception {
+        ModelNode handshake = new ModelNode();
+        handshake.get("outcome").set("success");
+        handshake.get("result", "step-2", "result").set("27.0.0.Test");
+        handshake.get("result", "step-3", "result").add("ejb3");
+        handshake.get("result", "step-3", "result").add("logging");
+        
+        ModelNode probe = new ModelNode();
+        probe.get("outcome").set("success");
+        ModelNode description = probe.get("result", "step-1", "result").add();
+        description.get("outcome").set("success");
+        description.get("result", "attributes", "jndi-names", "type").set("LIST");
+        description.get("result", "attributes", "component-class-name", "type").set("STRING");
+        
+        AtomicInteger probes = new AtomicInteger();
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(Operation.class), any(OperationMessageHandler.class))).thenAnswer(invocation -> {
+            ModelNode operation = invocation.getArgument(0, Operation.class).getOperation();
+            if ("read-resource-description".equals(operation.get("steps").get(0).get("operation").asString())) {
+                probes.incrementAndGet();
+                return probe;
+            }
+            return handshake;
+        });
+        
+        ConnectionService first = serviceWithClient(client);
+        assertTrue(first.connect("one.example.com", 9990, "admin", "secret"));
+        ConnectionService second = serviceWithClient(client);
+        assertTrue(second.connect("two.example.com", 9990, "admin", "secret"));
+        assertEquals(1, probes.get());
+        
+        OperationPlan plan = second.getOperationPlan();
+        assertSame(first.getOperationPlan(), plan);
+        assertEquals("27.0.0.Test", plan.getServerVersion());
+        assertTrue(plan.hasSubsystem(OperationPlan.EJB_SUBSYSTEM));
+        assertFalse(plan.hasSubsystem(OperationPlan.MESSAGING_SUBSYSTEM));
+        assertTrue(plan.supportsWildcardReads());
+        assertTrue(plan.hasBeanAttribute("jndi-names"));
+        assertFalse(plan.hasBeanStatistics());
+        
+        first.disconnect();
+        assertSame(OperationPlan.DEFAULT, first.getOperationPlan());
+    }
+    
+    @Test
+    public void testPartlyFailedProbeNotReused() throws Exception {
+        ModelNode handshake = new ModelNode();
+        handshake.get("outcome").set("success");
+        handshake.get("result", "step-2", "result").set("26.0.0.Test");
+        handshake.get("result", "step-3", "result").add("ejb3");
+        
+        // The description of the beans cannot be read on this server
+        ModelNode probe = new ModelNode();
+        probe.get("outcome").set("failed");
+        probe.get("result", "step-1", "outcome").set("failed");
+        probe.get("result", "step-2", "outcome").set("success");
+        
+        AtomicInteger probes = new AtomicInteger();
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(Operation.class), any(OperationMessageHandler.class))).thenAnswer(invocation -> {
+            ModelNode operation = invocation.getArgument(0, Operation.class).getOperation();
+            if ("read-resource-description".equals(operation.get("steps").get(0).get("operation").asString())) {
+                probes.incrementAndGet();
+                return probe;
+            }
+            return handshake;
+        });
+        
+        ConnectionService first = serviceWithClient(client);
+        assertTrue(first.connect("one.example.com", 9990, "admin", "secret"));
+        assertFalse(first.getOperationPlan().supportsWildcardReads());
+        ConnectionService second = serviceWithClient(client);
+        assertTrue(second.connect("two.example.com", 9990, "admin", "secret"));
+        assertEquals(2, probes.get());
+        assertNotSame(first.getOperationPlan(), second.getOperationPlan());
+        
+        first.disconnect();
+        second.disconnect();
+    }
+    
+    static ConnectionService serviceWithClient(ModelControllerClient client) {
+        return new ConnectionService() {
+            @Override
+            protected ModelControllerClient createClient(String host, int port, CallbackHandler callbackHandler) {
+                return client;
+            }
+        };
+    }
 }
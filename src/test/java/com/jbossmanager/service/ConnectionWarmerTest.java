@@ -0,0 +1,179 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.ConnectionProfile;
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for ConnectionWarmer.
+ * Note: These tests don't actually connect to a server, they use mocked clients.
+ */
+public class ConnectionWarmerTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    public void testProfilesConnectedInParallel() throws Exception {
+        // Every handshake waits until both profiles are connecting
+        CountDownLatch handshakes = new CountDownLatch(2);
+        AtomicInteger clients = new AtomicInteger();
+        ConnectionWarmer warmer = new ConnectionWarmer(() -> {
+            clients.incrementAndGet();
+            return ConnectionServiceTest.serviceWithClient(serverClient(handshakes));
+        }, new ResourceSnapshotStore(directory));
+        
+        try {
+            warmer.warmUp(Arrays.asList(
+                new ConnectionProfile("one", "one.example.com", 9990, "admin", "secret", true, true),
+                new ConnectionProfile("two", "two.example.com", 9990, "admin", "secret", true, true)));
+            
+            waitForState(warmer, "one", ConnectionWarmer.State.READY);
+            waitForState(warmer, "two", ConnectionWarmer.State.READY);
+            assertEquals(2, clients.get());
+            
+            ConnectionWarmer.WarmConnection one = warmer.take("one");
+            assertNotNull(one);
+            assertTrue(one.getConnectionService().isConnected());
+            assertEquals(0, one.getServers().size());
+            assertEquals(0, one.getEjbs().size());
+            assertNull(warmer.take("one"));
+            
+            // The initial snapshot was saved for the next start
+            assertNotNull(new ResourceSnapshotStore(directory).load("two.example.com", 9990));
+        } finally {
+            warmer.shutdown();
+        }
+    }
+    
+    @Test
+    public void testSnapshotSaveFailureRecorded() throws Exception {
+        // The snapshot directory cannot be created
+        Path file = Files.createFile(directory.resolve("snapshots"));
+        ConnectionWarmer warmer = new ConnectionWarmer(
+            () -> ConnectionServiceTest.serviceWithClient(serverClient(new CountDownLatch(0))),
+            new ResourceSnapshotStore(file));
+        
+        try {
+            warmer.warmUp(List.of(new ConnectionProfile("one", "one.example.com", 9990, "admin", "secret", true, true)));
+            waitForState(warmer, "one", ConnectionWarmer.State.READY);
+            String error = warmer.get("one").getError();
+            assertNotNull(error);
+            assertTrue(error.startsWith("Failed to save resources snapshot"), error);
+        } finally {
+            warmer.shutdown();
+        }
+    }
+    
+    @Test
+    public void testDiscardDisconnects() throws Exception {
+        ConnectionWarmer warmer = new ConnectionWarmer(
+            () -> ConnectionServiceTest.serviceWithClient(serverClient(new CountDownLatch(0))),
+            new ResourceSnapshotStore(directory));
+        
+        try {
+            warmer.warmUp(List.of(new ConnectionProfile("one", "one.example.com", 9990, "admin", "secret", true, true)));
+            waitForState(warmer, "one", ConnectionWarmer.State.READY);
+            ConnectionService connectionService = warmer.get("one").getConnectionService();
+            
+            warmer.discard("one");
+            assertNull(warmer.get("one"));
+            assertNull(warmer.take("one"));
+            assertFalse(connectionService.isConnected());
+        } finally {
+            warmer.shutdown();
+        }
+    }
+    
+    @Test
+    public void testDiscardDuringHandshake() throws Exception {
+        // The handshake waits until the test counts down a second time
+        CountDownLatch handshakes = new CountDownLatch(2);
+        List<String> statuses = new CopyOnWriteArrayList<>();
+        ConnectionWarmer warmer = new ConnectionWarmer(() -> {
+            ConnectionService connectionService = ConnectionServiceTest.serviceWithClient(serverClient(handshakes));
+            connectionService.addStateListener(state -> statuses.add(state.connectionStatus()));
+            return connectionService;
+        }, new ResourceSnapshotStore(directory));
+        
+        try {
+            warmer.warmUp(List.of(new ConnectionProfile("one", "one.example.com", 9990, "admin", "secret", true, true)));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (handshakes.getCount() == 2) {
+                assertTrue(System.currentTimeMillis() < deadline, "Handshake not started");
+                Thread.sleep(10);
+            }
+            assertEquals(ConnectionWarmer.State.CONNECTING, warmer.get("one").getState());
+            ConnectionService connectionService = warmer.get("one").getConnectionService();
+            
+            warmer.discard("one");
+            handshakes.countDown();
+            
+            // The session published by the handshake is closed by the warm-up thread
+            while (!statuses.contains("Disconnected")) {
+                assertTrue(System.currentTimeMillis() < deadline, "Connection not closed: " + statuses);
+                Thread.sleep(10);
+            }
+            assertTrue(statuses.contains("Connected"));
+            assertFalse(connectionService.isConnected());
+            assertNull(warmer.get("one"));
+        } finally {
+            warmer.shutdown();
+        }
+    }
+    
+    private static void waitForState(ConnectionWarmer warmer, String profile, ConnectionWarmer.State state)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (warmer.get(profile) == null || warmer.get(profile).getState() != state) {
+            assertTrue(System.currentTimeMillis() < deadline, "Profile " + profile + " not " + state);
+            Thread.sleep(10);
+        }
+    }
+    
+    /**
+     * Client of a server without messaging and without deployments.
+     */
+    private static ModelControllerClient serverClient(CountDownLatch handshakes) {
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        try {
+            when(client.execute(any(Operation.class), any(OperationMessageHandler.class))).thenAnswer(invocation -> {
+                ModelNode op = invocation.getArgument(0, Operation.class).getOperation();
+                ModelNode response = new ModelNode();
+                response.get("outcome").set("success");
+                if ("read-attribute".equals(op.get("steps").get(0).get("operation").asString(""))) {
+                    handshakes.countDown();
+                    assertTrue(handshakes.await(5, TimeUnit.SECONDS), "Profiles not connected in parallel");
+                    response.get("result", "step-1", "result").set("running");
+                    response.get("result", "step-2", "result").set("26.1.0.Final");
+                    response.get("result", "step-3", "result").add("ejb3");
+                } else {
+                    response.get("result").setEmptyObject();
+                }
+                return response;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return client;
+    }
+}
@@ -0,0 +1,160 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.ConnectionProfile;
+import com.jbossmanager.model.DeploymentInfo;
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+
+import javax.security.auth.callback.CallbackHandler;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for DeploymentComparison and DeploymentComparisonService.
+ * Note: These tests don't actually connect to a server, they use mocked clients.
+ */
+public class DeploymentComparisonTest {
+    
+    @Test
+    public void testDriftedDeploymentsFound() {
+        Map<String, List<DeploymentInfo>> deployments = new HashMap<>();
+        deployments.put("node1", Arrays.asList(
+            new DeploymentInfo("orders.ear", "aaaa", true),
+            new DeploymentInfo("billing.war", "bbbb", true)));
+        deployments.put("node2", Arrays.asList(
+            new DeploymentInfo("billing.war", "bbbb", true),
+            new DeploymentInfo("orders.ear", "cccc", true)));
+        deployments.put("node3", Arrays.asList(
+            new DeploymentInfo("orders.ear", "aaaa", true),
+            new DeploymentInfo("billing.war", "bbbb", false)));
+        deployments.put("node4", Arrays.asList(
+            new DeploymentInfo("billing.war", "bbbb", true)));
+        
+        DeploymentComparison comparison = DeploymentComparison.compare(
+            Arrays.asList("node1", "node2", "node3", "node4"), deployments, Map.of());
+        assertEquals(2, comparison.getRows().size());
+        assertEquals(2, comparison.getDriftCount());
+        
+        DeploymentComparison.Row billing = comparison.getRows().get(0);
+        assertEquals("billing.war", billing.getName());
+        assertFalse(billing.isConsistent());
+        assertEquals(DeploymentComparison.Status.MATCHING, billing.getStatus(0));
+        assertEquals(DeploymentComparison.Status.DISABLED, billing.getStatus(2));
+        
+        // Most nodes have the first content, the stale node is the different one
+        DeploymentComparison.Row orders = comparison.getRows().get(1);
+        assertEquals("orders.ear", orders.getName());
+        assertEquals("aaaa", orders.getExpectedHash());
+        assertEquals(DeploymentComparison.Status.MATCHING, orders.getStatus(0));
+        assertEquals(DeploymentComparison.Status.DIFFERENT, orders.getStatus(1));
+        assertEquals("cccc", orders.getContentHash(1));
+        assertEquals(DeploymentComparison.Status.MATCHING, orders.getStatus(2));
+        assertEquals(DeploymentComparison.Status.MISSING, orders.getStatus(3));
+        assertNull(orders.getContentHash(3));
+    }
+    
+    @Test
+    public void testTieExpectsFirstNodeContent() {
+        Map<String, List<DeploymentInfo>> deployments = new HashMap<>();
+        deployments.put("node1", List.of(new DeploymentInfo("app.war", "aaaa", true)));
+        deployments.put("node2", List.of(new DeploymentInfo("app.war", "bbbb", true)));
+        deployments.put("node3", List.of(new DeploymentInfo("app.war", "bbbb", true)));
+        deployments.put("node4", List.of(new DeploymentInfo("app.war", "aaaa", true)));
+        
+        DeploymentComparison comparison = DeploymentComparison.compare(
+            Arrays.asList("node1", "node2", "node3", "node4"), deployments, Map.of());
+        assertEquals("aaaa", comparison.getRows().get(0).getExpectedHash());
+        assertEquals(DeploymentComparison.Status.DIFFERENT, comparison.getRows().get(0).getStatus(1));
+    }
+    
+    @Test
+    public void testUnreadableNodeIsNotDrift() {
+        Map<String, List<DeploymentInfo>> deployments = new HashMap<>();
+        deployments.put("node1", List.of(new DeploymentInfo("app.war", "aaaa", true)));
+        deployments.put("node2", List.of(new DeploymentInfo("app.war", "aaaa", true)));
+        
+        DeploymentComparison comparison = DeploymentComparison.compare(
+            Arrays.asList("node1", "node2", "node3"), deployments, Map.of("node3", "Connection refused"));
+        DeploymentComparison.Row row = comparison.getRows().get(0);
+        assertEquals(DeploymentComparison.Status.UNREADABLE, row.getStatus(2));
+        assertTrue(row.isConsistent());
+        assertEquals(0, comparison.getDriftCount());
+        assertEquals("Connection refused", comparison.getErrors().get("node3"));
+    }
+    
+    @Test
+    public void testServersReadInParallel() throws Exception {
+        // Every read waits until both servers are being read
+        CountDownLatch reads = new CountDownLatch(2);
+        Map<String, ModelControllerClient> clients = new HashMap<>();
+        clients.put("one.example.com", serverClient(reads, "aaaa"));
+        clients.put("two.example.com", serverClient(reads, "bbbb"));
+        DeploymentComparisonService service = new DeploymentComparisonService(() -> new ConnectionService() {
+            @Override
+            protected ModelControllerClient createClient(String host, int port, CallbackHandler callbackHandler) {
+                return clients.get(host);
+            }
+        });
+        
+        DeploymentComparison comparison = service.compare(Arrays.asList(
+            new ConnectionProfile("one", "one.example.com", 9990, "admin", "secret", true, false),
+            new ConnectionProfile("two", "two.example.com", 9990, "admin", "secret", true, false)));
+        assertEquals(Arrays.asList("one", "two"), comparison.getNodes());
+        assertTrue(comparison.getErrors().isEmpty());
+        
+        DeploymentComparison.Row row = comparison.getRows().get(0);
+        assertEquals("orders.ear", row.getName());
+        assertEquals("aaaa", row.getContentHash(0));
+        assertEquals(DeploymentComparison.Status.DIFFERENT, row.getStatus(1));
+        
+        // Each server was disconnected after its read
+        for (ModelControllerClient client : clients.values()) {
+            verify(client, atLeastOnce()).close();
+        }
+    }
+    
+    /**
+     * Client of a server with a single deployment of the given content.
+     */
+    private static ModelControllerClient serverClient(CountDownLatch reads, String hash) {
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        try {
+            when(client.execute(any(Operation.class), any(OperationMessageHandler.class))).thenAnswer(invocation -> {
+                ModelNode op = invocation.getArgument(0, Operation.class).getOperation();
+                ModelNode response = new ModelNode();
+                response.get("outcome").set("success");
+                if ("read-children-resources".equals(op.get("operation").asString())) {
+                    reads.countDown();
+                    assertTrue(reads.await(5, TimeUnit.SECONDS), "Servers not read in parallel");
+                    ModelNode deployment = response.get("result", "orders.ear");
+                    deployment.get("content").add().get("hash").set(HexFormat.of().parseHex(hash));
+                    deployment.get("enabled").set(true);
+                } else if ("read-attribute".equals(op.get("steps").get(0).get("operation").asString(""))) {
+                    response.get("result", "step-1", "result").set("running");
+                    response.get("result", "step-2", "result").set("26.1.0.Final");
+                    response.get("result", "step-3", "result").add("ejb3");
+                } else {
+                    response.get("result").setEmptyObject();
+                }
+                return response;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return client;
+    }
+}
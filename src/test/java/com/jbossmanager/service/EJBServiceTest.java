@@ -1,9 +1,25 @@
 package com.jbossmanager.service;
 
+import com.jbossmanager.model.DeploymentInfo;
 import com.jbossmanager.model.EJBComponent;
+import com.jbossmanager.model.EJBSnapshot;
+import com.jbossmanager.model.EJBType;
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.dmr.ModelNode;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 /**
  * Test class for EJBService.
@@ -70,4 +86,440 @@ public class EJBServiceTest {
         ejbComponent.setType("Singleton Bean");
         assertEquals("Singleton Bean", ejbComponent.getType());
     }
+    
+    @Test
+    public void testToSnapshot() {
+        ModelNode bean = new ModelNode();
+        bean.get("jndi-names").add("java:global/test/TestEJB");
+        bean.get("invocations").set(42L);
+        bean.get("execution-time").set(1200L);
+        bean.get("peak-concurrent-usage").set(3L);
+        
+        EJBSnapshot ejb = EJBService.toSnapshot("TestEJB", EJBType.STATELESS, "test.ear", bean);
+        assertEquals("java:global/test/TestEJB", ejb.jndiName());
+        assertEquals(42, ejb.invocations());
+        assertEquals(1200, ejb.executionTime());
+        assertEquals(3, ejb.peakConcurrentUsage());
+        
+        // Statistics disabled on the server: nothing is defined
+        EJBSnapshot other = EJBService.toSnapshot("TestMDB", EJBType.MESSAGE_DRIVEN, "test.ear", new ModelNode());
+        assertEquals(0, other.invocations());
+        assertEquals("", other.jndiName());
+        
+        // Deployment names are shared by all the beans of a deployment
+        assertSame(ejb.deploymentName(), other.deploymentName());
+    }
+    
+    @Test
+    public void testAllDeploymentsReadAtOnce() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        // Bean names of every deployment, then the selected attributes of each bean type
+        ModelNode names = response.get("result", "step-1", "result");
+        ModelNode orders = names.add();
+        orders.get("address").add("deployment", "orders.jar");
+        orders.get("address").add("subsystem", "ejb3");
+        orders.get("outcome").set("success");
+        orders.get("result", "stateless-session-bean", "OrderService");
+        orders.get("result", "message-driven-bean", "OrderListener");
+        ModelNode billing = names.add();
+        billing.get("address").add("deployment", "billing.jar");
+        billing.get("address").add("subsystem", "ejb3");
+        billing.get("outcome").set("success");
+        billing.get("result", "singleton-bean", "InvoiceCounter");
+        
+        ModelNode orderService = response.get("result", "step-2", "result").add();
+        orderService.get("address").add("deployment", "orders.jar");
+        orderService.get("address").add("subsystem", "ejb3");
+        orderService.get("address").add("stateless-session-bean", "OrderService");
+        orderService.get("outcome").set("success");
+        orderService.get("result", "jndi-names").add("java:global/orders/OrderService");
+        ModelNode orderListener = response.get("result", "step-4", "result").add();
+        orderListener.get("address").add("deployment", "orders.jar");
+        orderListener.get("address").add("subsystem", "ejb3");
+        orderListener.get("address").add("message-driven-bean", "OrderListener");
+        orderListener.get("outcome").set("success");
+        orderListener.get("result", "invocations").set(3L);
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenReturn(response);
+        
+        List<EJBSnapshot> ejbs = new EJBService(connectedService(client, OperationPlan.DEFAULT)).getEJBs();
+        assertEquals(3, ejbs.size());
+        assertEquals("orders.jar", ejbs.get(0).deploymentName());
+        assertEquals("java:global/orders/OrderService", ejbs.get(0).jndiName());
+        assertEquals(3L, ejbs.get(1).invocations());
+        assertEquals("billing.jar", ejbs.get(2).deploymentName());
+        assertEquals("InvoiceCounter", ejbs.get(2).name());
+        
+        ArgumentCaptor<ModelNode> op = ArgumentCaptor.forClass(ModelNode.class);
+        verify(client, times(1)).execute(op.capture());
+        ModelNode steps = op.getValue().get("steps");
+        assertEquals("*", steps.get(0).get("address").get(0).get("deployment").asString());
+        assertFalse(steps.get(0).get("recursive").asBoolean(false));
+        assertEquals("query", steps.get(1).get("operation").asString());
+    }
+    
+    @Test
+    public void testFailedDeploymentReadIsReported() throws Exception {
+        ModelNode deployments = new ModelNode();
+        deployments.get("outcome").set("success");
+        deployments.get("result", "orders.jar", "subsystem", "ejb3");
+        deployments.get("result", "static.war", "subsystem", "undertow");
+        
+        ModelNode failed = new ModelNode();
+        failed.get("outcome").set("failed");
+        failed.get("failure-description").set("WFLYCTL0030: No resource definition is registered");
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenReturn(deployments, failed);
+        OperationPlan plan = new OperationPlan("7.0.0", Set.of("ejb3"), false, false, null, null);
+        
+        Exception e = assertThrows(Exception.class, () -> new EJBService(connectedService(client, plan)).getEJBs());
+        assertTrue(e.getMessage().contains("orders.jar"));
+        assertTrue(e.getMessage().contains("WFLYCTL0030"));
+        
+        // The deployment without EJB subsystem is never read
+        verify(client, times(2)).execute(any(ModelNode.class));
+    }
+    
+    @Test
+    public void testFailedDeploymentKeepsTheOthers() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        ModelNode names = response.get("result", "step-1", "result");
+        ModelNode orders = names.add();
+        orders.get("address").add("deployment", "orders.jar");
+        orders.get("address").add("subsystem", "ejb3");
+        orders.get("outcome").set("success");
+        orders.get("result", "singleton-bean", "OrderCounter");
+        ModelNode broken = names.add();
+        broken.get("address").add("deployment", "broken.jar");
+        broken.get("address").add("subsystem", "ejb3");
+        broken.get("outcome").set("failed");
+        broken.get("failure-description").set("WFLYCTL0030: No resource definition is registered");
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenReturn(response);
+        EJBService ejbService = new EJBService(connectedService(client, OperationPlan.DEFAULT));
+        List<List<EJBSnapshot>> refreshes = new ArrayList<>();
+        ejbService.addRefreshListener(refreshes::add);
+        
+        List<String> failures = new ArrayList<>();
+        List<EJBSnapshot> ejbs = ejbService.getEJBs(batch -> { }, failures::add);
+        assertEquals(1, ejbs.size());
+        assertEquals("OrderCounter", ejbs.get(0).name());
+        assertEquals(List.of("broken.jar: WFLYCTL0030: No resource definition is registered"), failures);
+        // The beans of the deployment not read are not taken for removed ones
+        assertTrue(refreshes.isEmpty());
+        
+        // Callers not given the failures still see them
+        Exception e = assertThrows(Exception.class, ejbService::getEJBs);
+        assertTrue(e.getMessage().contains("broken.jar"), e.getMessage());
+    }
+        
+    @Test
+    public void testDeploymentsAreStreamedInBatches() throws Exception {
+        ModelNode deployments = new ModelNode();
+        deployments.get("outcome").set("success");
+        deployments.get("result", "orders.jar", "subsystem", "ejb3");
+        deployments.get("result", "billing.jar", "subsystem", "ejb3");
+        
+        ModelNode orders = new ModelNode();
+        orders.get("outcome").set("success");
+        orders.get("result", "step-1", "result", "stateless-session-bean", "OrderService");
+        orders.get("result", "step-2", "result", "OrderService", "jndi-names").add("java:global/orders/OrderService");
+        ModelNode billing = new ModelNode();
+        billing.get("outcome").set("success");
+        billing.get("result", "step-1", "result", "singleton-bean", "InvoiceCounter");
+        billing.get("result", "step-1", "result", "singleton-bean", "TaxTable");
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenReturn(deployments, orders, billing);
+        OperationPlan plan = new OperationPlan("7.0.0", Set.of("ejb3"), false, false, null, null);
+        
+        List<List<EJBSnapshot>> batches = new ArrayList<>();
+        List<EJBSnapshot> ejbs = new EJBService(connectedService(client, plan)).getEJBs(batches::add);
+        assertEquals(3, ejbs.size());
+        assertEquals(2, batches.size());
+        assertEquals("java:global/orders/OrderService", batches.get(0).get(0).jndiName());
+        assertEquals(2, batches.get(1).size());
+        assertEquals("billing.jar", batches.get(1).get(0).deploymentName());
+    }
+    
+    @Test
+    public void testUndeployRunsBeforeQueuedLoadReads() throws Exception {
+        ModelNode deployments = new ModelNode();
+        deployments.get("outcome").set("success");
+        deployments.get("result", "orders.jar", "subsystem", "ejb3");
+        ModelNode orders = new ModelNode();
+        orders.get("outcome").set("success");
+        orders.get("result", "step-1", "result", "stateless-session-bean", "OrderService");
+        ModelNode success = new ModelNode();
+        success.get("outcome").set("success");
+        
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenAnswer(invocation -> {
+            String operation = invocation.<ModelNode>getArgument(0).get("operation").asString();
+            if (executed.isEmpty()) {
+                firstStarted.countDown();
+                releaseFirst.await(5, TimeUnit.SECONDS);
+            }
+            executed.add(operation);
+            switch (operation) {
+                case "read-children-resources":
+                    return deployments;
+                case "composite":
+                    return orders;
+                default:
+                    return success;
+            }
+        });
+        
+        RequestScheduler scheduler = new RequestScheduler(client, 1000);
+        OperationPlan plan = new OperationPlan("7.0.0", Set.of("ejb3"), false, false, null, null);
+        EJBService service = new EJBService(new ConnectionService() {
+            @Override
+            public ModelNode execute(ModelNode operation) throws IOException {
+                return scheduler.execute(operation);
+            }
+            
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+            
+            @Override
+            public OperationPlan getOperationPlan() {
+                return plan;
+            }
+        });
+        try {
+            // Two tree loads, the second waiting behind the first read
+            List<Thread> loads = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                Thread load = new Thread(() -> {
+                    try {
+                        RequestScheduler.inBackground(service::getEJBs);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                load.start();
+                loads.add(load);
+                if (i == 0) {
+                    assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+                }
+            }
+            waitForPending(scheduler, 1);
+            
+            // The undeploy issued by the user meanwhile is sent before the queued reads
+            Thread undeploy = new Thread(() -> {
+                try {
+                    service.undeployEJB("orders.jar");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            undeploy.start();
+            waitForPending(scheduler, 2);
+            releaseFirst.countDown();
+            undeploy.join(5000);
+            for (Thread load : loads) {
+                load.join(5000);
+            }
+            
+            assertEquals(List.of("read-children-resources", "undeploy", "read-children-resources"),
+                executed.subList(0, 3));
+            assertEquals(5, executed.size());
+        } finally {
+            releaseFirst.countDown();
+            scheduler.shutdown();
+        }
+    }
+    
+    @Test
+    public void testNoReadsWithoutEJBSubsystem() throws Exception {
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        OperationPlan plan = new OperationPlan("26.1.0.Final", Set.of("messaging-activemq"), true, true, null, null);
+        
+        assertTrue(new EJBService(connectedService(client, plan)).getEJBs().isEmpty());
+        verifyNoInteractions(client);
+    }
+    
+    @Test
+    public void testOnlyShownAttributesAreRead() {
+        ModelNode query = EJBService.createEJBsRead(OperationPlan.DEFAULT, "*").get("steps").get(1);
+        assertEquals("query", query.get("operation").asString());
+        assertEquals("*", query.get("address").get(2).get("stateless-session-bean").asString());
+        assertEquals(4, query.get("select").asList().size());
+        
+        // Without statistics, message-driven beans have nothing to read but their names
+        OperationPlan withoutStatistics = new OperationPlan("7.0.0", Set.of("ejb3"), true, false,
+            Set.of("jndi-names", "component-class-name"), null);
+        List<ModelNode> steps = EJBService.createEJBsRead(withoutStatistics, "*").get("steps").asList();
+        assertEquals(4, steps.size());
+        for (ModelNode step : steps.subList(1, steps.size())) {
+            assertEquals("read-resource", step.get("operation").asString());
+            assertTrue(step.get("attributes-only").asBoolean());
+            assertFalse(step.get("include-runtime").asBoolean());
+        }
+        
+        // Without wildcard addresses, the beans are read as children of the subsystem
+        OperationPlan withoutWildcards = new OperationPlan("7.0.0", Set.of("ejb3"), false, false, null, null);
+        ModelNode children = EJBService.createEJBsRead(withoutWildcards, "orders.jar").get("steps").get(1);
+        assertEquals("read-children-resources", children.get("operation").asString());
+        assertEquals("orders.jar", children.get("address").get(0).get("deployment").asString());
+    }
+    
+    @Test
+    public void testProjectedReadShrinksLargeDeployment() throws Exception {
+        // Recursive read of a deployment of 2000 beans, as returned before the projection
+        ModelNode subsystem = new ModelNode();
+        for (int i = 0; i < 2000; i++) {
+            ModelNode bean = subsystem.get(EJBType.values()[i % 4].getResourceType(), "Bean" + i);
+            bean.get("component-class-name").set("com.example.large.service.Bean" + i);
+            bean.get("declared-roles").setEmptyList();
+            bean.get("run-as-role");
+            bean.get("security-domain").set("other");
+            bean.get("pool-name").set("slsb-strict-max-pool");
+            bean.get("pool-max-size").set(20);
+            bean.get("pool-available-count").set(20);
+            bean.get("pool-create-count").set(1);
+            bean.get("pool-current-size").set(1);
+            bean.get("pool-remove-count").set(0);
+            bean.get("wait-time").set(0L);
+            bean.get("transaction-type").set("CONTAINER");
+            bean.get("business-local").add("com.example.large.service.Bean" + i + "Local");
+            bean.get("business-remote");
+            bean.get("timeout-method");
+            bean.get("async-methods");
+            for (String method : new String[] {"create", "read", "update", "delete", "find", "count"}) {
+                bean.get("methods", method, "invocations").set(7L);
+                bean.get("methods", method, "execution-time").set(12L);
+                bean.get("methods", method, "wait-time").set(0L);
+            }
+            bean.get("jndi-names").add("java:global/large/Bean" + i + "!com.example.large.service.Bean" + i);
+            bean.get("jndi-names").add("java:app/large/Bean" + i + "!com.example.large.service.Bean" + i);
+            bean.get("jndi-names").add("java:module/Bean" + i + "!com.example.large.service.Bean" + i);
+            bean.get("invocations").set(7L);
+            bean.get("execution-time").set(12L);
+            bean.get("peak-concurrent-usage").set(1L);
+            bean.get("service", "timer-service", "timer").setEmptyObject();
+        }
+        ModelNode before = new ModelNode();
+        before.get("outcome").set("success");
+        before.get("result").set(subsystem);
+        
+        // Same deployment answered to the projected read
+        ModelNode op = EJBService.createEJBsRead(OperationPlan.DEFAULT, "*");
+        ModelNode after = new ModelNode();
+        after.get("outcome").set("success");
+        ModelNode deployment = after.get("result", "step-1", "result").add();
+        deployment.get("address").add("deployment", "large.ear");
+        deployment.get("address").add("subsystem", "ejb3");
+        deployment.get("outcome").set("success");
+        ModelNode names = deployment.get("result");
+        for (EJBType type : EJBType.values()) {
+            for (String beanName : subsystem.get(type.getResourceType()).keys()) {
+                names.get(type.getResourceType(), beanName);
+            }
+        }
+        List<ModelNode> steps = op.get("steps").asList();
+        for (int step = 1; step < steps.size(); step++) {
+            String beanType = steps.get(step).get("address").get(2).keys().iterator().next();
+            ModelNode items = after.get("result", "step-" + (step + 1), "result").setEmptyList();
+            for (String beanName : subsystem.get(beanType).keys()) {
+                ModelNode item = items.add();
+                item.get("address").set(steps.get(step).get("address"));
+                item.get("address").get(0).get("deployment").set("large.ear");
+                item.get("address").get(2).get(beanType).set(beanName);
+                item.get("outcome").set("success");
+                for (ModelNode attribute : steps.get(step).get("select").asList()) {
+                    if (subsystem.get(beanType, beanName).has(attribute.asString())) {
+                        item.get("result", attribute.asString()).set(subsystem.get(beanType, beanName, attribute.asString()));
+                    }
+                }
+            }
+        }
+        
+        long bytesBefore = InstrumentedClient.sizeOf(before);
+        long bytesAfter = InstrumentedClient.sizeOf(after);
+        assertTrue(bytesAfter * 3 < bytesBefore, "Projected response of " + bytesAfter + " bytes, recursive " + bytesBefore);
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenReturn(after);
+        List<EJBSnapshot> ejbs = new EJBService(connectedService(client, OperationPlan.DEFAULT)).getEJBs();
+        assertEquals(2000, ejbs.size());
+        EJBSnapshot last = ejbs.get(ejbs.size() - 1);
+        assertEquals("large.ear", last.deploymentName());
+        assertEquals(EJBType.SINGLETON, last.type());
+        assertTrue(last.jndiName().startsWith("java:global/large/"));
+        assertEquals(7, last.invocations());
+    }
+    
+    @Test
+    public void testDeploymentContentHashes() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        ModelNode managed = response.get("result", "orders.ear");
+        managed.get("content").add().get("hash").set(new byte[] {0x0a, (byte) 0xff, 0x10});
+        managed.get("enabled").set(true);
+        managed.get("subsystem", "ejb3");
+        ModelNode unmanaged = response.get("result", "exploded.war");
+        unmanaged.get("content").add().get("path").set("/opt/apps/exploded.war");
+        unmanaged.get("enabled").set(false);
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenReturn(response);
+        
+        List<DeploymentInfo> deployments = new EJBService(connectedService(client, OperationPlan.DEFAULT))
+            .getDeploymentInfos();
+        assertEquals(2, deployments.size());
+        assertEquals("orders.ear", deployments.get(0).getName());
+        assertEquals("0aff10", deployments.get(0).getContentHash());
+        assertTrue(deployments.get(0).isEnabled());
+        assertEquals("exploded.war", deployments.get(1).getName());
+        assertNull(deployments.get(1).getContentHash());
+        assertFalse(deployments.get(1).isEnabled());
+        
+        // All deployments in a single read
+        ArgumentCaptor<ModelNode> op = ArgumentCaptor.forClass(ModelNode.class);
+        verify(client, times(1)).execute(op.capture());
+        assertEquals("read-children-resources", op.getValue().get("operation").asString());
+        assertEquals("deployment", op.getValue().get("child-type").asString());
+    }
+    
+    private void waitForPending(RequestScheduler scheduler, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getPendingCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, scheduler.getPendingCount());
+    }
+    
+    /**
+     * Create a connection service that reports being connected through the given client.
+     */
+    private ConnectionService connectedService(ModelControllerClient client, OperationPlan plan) {
+        return new ConnectionService() {
+            @Override
+            public ModelNode execute(ModelNode operation) throws IOException {
+                return client.execute(operation);
+            }
+            
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+            
+            @Override
+            public OperationPlan getOperationPlan() {
+                return plan;
+            }
+        };
+    }
 }
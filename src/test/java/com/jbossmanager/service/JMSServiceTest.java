@@ -1,9 +1,20 @@
 package com.jbossmanager.service;
 
 import com.jbossmanager.model.JMSQueue;
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueSnapshot;
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.dmr.ModelNode;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 /**
  * Test class for JMSService.
@@ -48,4 +59,205 @@ public class JMSServiceTest {
         jmsQueue.setStatus("Stopped");
         assertEquals("Stopped", jmsQueue.getStatus());
     }
+    
+    @Test
+    public void testBulkMessageOperations() throws Exception {
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        response.get("result").set(7);
+        when(client.execute(any(ModelNode.class))).thenReturn(response);
+        
+        JMSService jmsService = new JMSService(connectedService(client));
+        assertEquals(7, jmsService.removeMessages("default", "testQueue", "JMSPriority > 5"));
+        assertEquals(7, jmsService.moveMessages("default", "testQueue", "", "otherQueue"));
+        assertEquals(7, jmsService.expireMessages("default", "testQueue", null));
+        
+        ArgumentCaptor<ModelNode> ops = ArgumentCaptor.forClass(ModelNode.class);
+        verify(client, times(3)).execute(ops.capture());
+        
+        ModelNode remove = ops.getAllValues().get(0);
+        assertEquals("remove-messages", remove.get("operation").asString());
+        assertEquals("JMSPriority > 5", remove.get("filter").asString());
+        assertEquals("testQueue", remove.get("address").asList().get(2).get("jms-queue").asString());
+        
+        ModelNode move = ops.getAllValues().get(1);
+        assertEquals("move-messages", move.get("operation").asString());
+        assertEquals("otherQueue", move.get("other-queue-name").asString());
+        assertFalse(move.hasDefined("filter"));
+        
+        assertEquals("expire-messages", ops.getAllValues().get(2).get("operation").asString());
+        
+        assertEquals(7, jmsService.countMessages("default", "testQueue", "JMSTimestamp < 1000"));
+        verify(client, times(4)).execute(ops.capture());
+        assertEquals("count-messages", ops.getValue().get("operation").asString());
+    }
+    
+    @Test
+    public void testBulkMessageOperationFailure() throws Exception {
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("failed");
+        response.get("failure-description").set("Invalid filter");
+        when(client.execute(any(ModelNode.class))).thenReturn(response);
+        
+        JMSService jmsService = new JMSService(connectedService(client));
+        Exception e = assertThrows(Exception.class, () -> jmsService.removeMessages("default", "testQueue", "bad ="));
+        assertTrue(e.getMessage().contains("Invalid filter"));
+    }
+    
+    @Test
+    public void testGetMessagingServers() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        ModelNode steps = response.get("result");
+        steps.get("step-1", "outcome").set("success");
+        steps.get("step-1", "result").add("default");
+        steps.get("step-1", "result").add("backup");
+        steps.get("step-1", "result").add("idle");
+        
+        ModelNode queue = steps.get("step-2", "result").add();
+        queue.get("address").set(JMSService.queueAddress("backup", "ordersQueue"));
+        queue.get("outcome").set("success");
+        queue.get("result", "entries").add("java:/jms/queue/orders");
+        queue.get("result", "message-count").set(12);
+        queue.get("result", "consumer-count").set(2);
+        queue.get("result", "paused").set(true);
+        
+        ModelNode topic = steps.get("step-3", "result").add();
+        topic.get("address").add("subsystem", "messaging-activemq");
+        topic.get("address").add("server", "default");
+        topic.get("address").add("jms-topic", "eventsTopic");
+        topic.get("outcome").set("success");
+        topic.get("result", "subscription-count").set(4);
+        topic.get("result", "durable-subscription-count").set(1);
+        topic.get("result", "durable-message-count").set(250L);
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenReturn(response);
+        
+        List<MessagingServer> servers = new JMSService(connectedService(client)).getMessagingServers();
+        
+        // A single composite request discovers everything
+        ArgumentCaptor<ModelNode> ops = ArgumentCaptor.forClass(ModelNode.class);
+        verify(client, times(1)).execute(ops.capture());
+        assertEquals("composite", ops.getValue().get("operation").asString());
+        assertEquals("*", ops.getValue().get("steps").get(1).get("address").get(1).get("server").asString());
+        
+        assertEquals(3, servers.size());
+        assertEquals("default", servers.get(0).getName());
+        assertEquals(1, servers.get(0).getTopics().size());
+        assertEquals(250, servers.get(0).getTopics().get(0).durableMessageCount());
+        assertEquals(4, servers.get(0).getTopics().get(0).subscriptionCount());
+        
+        MessagingServer backup = servers.get(1);
+        assertEquals(1, backup.getQueues().size());
+        QueueSnapshot orders = backup.getQueues().get(0);
+        assertEquals("ordersQueue", orders.name());
+        assertEquals("backup", orders.serverName());
+        assertEquals("java:/jms/queue/orders", orders.jndiName());
+        assertEquals(12, orders.messageCount());
+        assertEquals("Paused", orders.status());
+        
+        assertTrue(servers.get(2).getQueues().isEmpty());
+        assertTrue(servers.get(2).getTopics().isEmpty());
+    }
+    
+    @Test
+    public void testUnreadDestinationsAreReported() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        ModelNode steps = response.get("result");
+        steps.get("step-1", "outcome").set("success");
+        steps.get("step-1", "result").add("default");
+        ModelNode queue = steps.get("step-2", "result").add();
+        queue.get("address").set(JMSService.queueAddress("default", "ordersQueue"));
+        queue.get("outcome").set("success");
+        queue.get("result", "message-count").set(3);
+        ModelNode failed = steps.get("step-2", "result").add();
+        failed.get("address").set(JMSService.queueAddress("default", "brokenQueue"));
+        failed.get("outcome").set("failed");
+        failed.get("failure-description").set("WFLYCTL0216: Resource not found");
+        steps.get("step-3", "result").setEmptyList();
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenReturn(response);
+        
+        // The queues read are kept, the others are reported on their server
+        List<MessagingServer> servers = new JMSService(connectedService(client)).getMessagingServers();
+        assertEquals(1, servers.size());
+        assertEquals(1, servers.get(0).getQueues().size());
+        assertEquals(List.of("jms-queue brokenQueue: WFLYCTL0216: Resource not found"), servers.get(0).getFailures());
+        
+        // Without its address, the failure cannot be told apart from a failed read
+        failed.remove("address");
+        Exception e = assertThrows(Exception.class, () -> new JMSService(connectedService(client)).getMessagingServers());
+        assertTrue(e.getMessage().contains("WFLYCTL0216"), e.getMessage());
+    }
+    
+    @Test
+    public void testGetMessagingServersWithoutWildcards() throws Exception {
+        ModelNode names = new ModelNode();
+        names.get("outcome").set("success");
+        names.get("result").add("default");
+        
+        ModelNode destinations = new ModelNode();
+        destinations.get("outcome").set("success");
+        destinations.get("result", "step-1", "result", "ordersQueue", "message-count").set(5);
+        destinations.get("result", "step-1", "result", "ordersQueue", "paused").set(false);
+        destinations.get("result", "step-2", "result", "eventsTopic", "subscription-count").set(2);
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenReturn(names, destinations);
+        OperationPlan plan = new OperationPlan("7.0.0", Set.of("messaging-activemq"), false, false, null, null);
+        
+        List<MessagingServer> servers = new JMSService(connectedService(client, plan)).getMessagingServers();
+        assertEquals(1, servers.size());
+        QueueSnapshot queue = servers.get(0).getQueues().get(0);
+        assertEquals("ordersQueue", queue.name());
+        assertEquals("default", queue.serverName());
+        assertEquals(5, queue.messageCount());
+        assertEquals("Running", queue.status());
+        assertEquals(2, servers.get(0).getTopics().get(0).subscriptionCount());
+        
+        ArgumentCaptor<ModelNode> ops = ArgumentCaptor.forClass(ModelNode.class);
+        verify(client, times(2)).execute(ops.capture());
+        assertEquals("read-children-resources",
+            ops.getAllValues().get(1).get("steps").get(0).get("operation").asString());
+    }
+    
+    @Test
+    public void testNoReadsWithoutMessagingSubsystem() throws Exception {
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        OperationPlan plan = new OperationPlan("26.1.0.Final", Set.of("ejb3"), true, true, null, null);
+        
+        assertTrue(new JMSService(connectedService(client, plan)).getMessagingServers().isEmpty());
+        verifyNoInteractions(client);
+    }
+    
+    /**
+     * Create a connection service that reports being connected through the given client.
+     */
+    private ConnectionService connectedService(ModelControllerClient client) {
+        return connectedService(client, OperationPlan.DEFAULT);
+    }
+    
+    private ConnectionService connectedService(ModelControllerClient client, OperationPlan plan) {
+        return new ConnectionService() {
+            @Override
+            public ModelNode execute(ModelNode operation) throws IOException {
+                return client.execute(operation);
+            }
+            
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+            
+            @Override
+            public OperationPlan getOperationPlan() {
+                return plan;
+            }
+        };
+    }
 }
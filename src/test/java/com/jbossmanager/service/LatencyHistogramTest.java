@@ -0,0 +1,73 @@
+package com.jbossmanager.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+    
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(0.99));
+        assertEquals(0.0, histogram.getMean());
+    }
+    
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        
+        // 1 ms to 100 ms in 1 ms steps
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000L);
+        }
+        
+        assertEquals(100, histogram.getCount());
+        assertEquals(100_000, histogram.getMax());
+        assertEquals(50_500, histogram.getMean(), 0.001);
+        
+        // Percentiles are upper bounds within 12.5% of the exact value
+        long p50 = histogram.getPercentile(0.50);
+        assertTrue(p50 >= 50_000 && p50 <= 50_000 * 1.125, "p50 was " + p50);
+        long p99 = histogram.getPercentile(0.99);
+        assertTrue(p99 >= 99_000 && p99 <= 100_000, "p99 was " + p99);
+        assertEquals(100_000, histogram.getPercentile(1.0));
+    }
+    
+    @Test
+    public void testBucketBoundaries() {
+        for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789L, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= value, "Upper bound below " + value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value, "Wrong bucket for " + value);
+            }
+        }
+    }
+    
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(9_999, histogram.getMax());
+    }
+}
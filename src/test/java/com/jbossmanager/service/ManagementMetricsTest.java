@@ -0,0 +1,118 @@
+package com.jbossmanager.service;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for ManagementMetrics and InstrumentedClient.
+ * Note: These tests don't actually connect to a server, they use a mocked client.
+ */
+public class ManagementMetricsTest {
+    
+    @Test
+    public void testInstrumentedClientRecordsOperations() throws Exception {
+        ModelNode success = new ModelNode();
+        success.get("outcome").set("success");
+        success.get("result").set("running");
+        ModelNode failure = new ModelNode();
+        failure.get("outcome").set("failed");
+        
+        ModelControllerClient delegate = mock(ModelControllerClient.class);
+        when(delegate.execute(any(Operation.class), any(OperationMessageHandler.class)))
+            .thenReturn(success, failure)
+            .thenThrow(new IOException("Connection reset"));
+        
+        ManagementMetrics metrics = new ManagementMetrics();
+        // Every payload measured
+        ModelControllerClient client = new InstrumentedClient(delegate, metrics, 1);
+        
+        client.execute(operation("read-attribute"));
+        client.execute(operation("read-attribute"));
+        assertThrows(IOException.class, () -> client.execute(operation("pause-queue")));
+        
+        List<ManagementMetrics.Snapshot> snapshots = metrics.snapshot();
+        assertEquals(2, snapshots.size());
+        
+        ManagementMetrics.Snapshot pause = snapshots.get(0);
+        assertEquals("pause-queue", pause.getOperation());
+        assertEquals(1, pause.getCount());
+        assertEquals(1, pause.getErrors());
+        assertEquals(0, pause.getResponseBytes());
+        
+        ManagementMetrics.Snapshot read = snapshots.get(1);
+        assertEquals("read-attribute", read.getOperation());
+        assertEquals(2, read.getCount());
+        assertEquals(1, read.getErrors());
+        assertEquals(2 * InstrumentedClient.sizeOf(operation("read-attribute")), read.getRequestBytes());
+        assertEquals(InstrumentedClient.sizeOf(success) + InstrumentedClient.sizeOf(failure), read.getResponseBytes());
+    }
+    
+    @Test
+    public void testSampledPayloadSizes() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        response.get("result").set("running");
+        
+        ModelControllerClient delegate = mock(ModelControllerClient.class);
+        when(delegate.execute(any(Operation.class), any(OperationMessageHandler.class))).thenReturn(response);
+        
+        ManagementMetrics metrics = new ManagementMetrics();
+        ModelControllerClient client = new InstrumentedClient(delegate, metrics, 4);
+        for (int i = 0; i < 8; i++) {
+            client.execute(operation("read-attribute"));
+        }
+        
+        // Two responses measured, the total extrapolated to the eight of them
+        ManagementMetrics.Snapshot read = metrics.snapshot().get(0);
+        assertEquals(8, read.getCount());
+        assertEquals(8 * InstrumentedClient.sizeOf(response), read.getResponseBytes());
+        assertEquals(8 * InstrumentedClient.sizeOf(operation("read-attribute")), read.getRequestBytes());
+    }
+    
+    @Test
+    public void testCompositeNamedAfterSteps() {
+        ModelNode composite = operation("composite");
+        composite.get("steps").add(operation("read-resource"));
+        composite.get("steps").add(operation("read-attribute"));
+        composite.get("steps").add(operation("read-resource"));
+        
+        assertEquals("composite(read-attribute,read-resource)", InstrumentedClient.operationName(composite));
+        assertEquals("pause-queue", InstrumentedClient.operationName(operation("pause-queue")));
+        assertEquals("unknown", InstrumentedClient.operationName(new ModelNode()));
+    }
+    
+    @Test
+    public void testJsonExport() {
+        ManagementMetrics metrics = new ManagementMetrics();
+        metrics.record("deploy", 250_000_000L, 2048, 64, false);
+        metrics.recordQueueWait(1_000_000L);
+        
+        ModelNode json = ModelNode.fromJSONString(metrics.toJson());
+        ModelNode deploy = json.get("operations", "deploy");
+        assertEquals(1, deploy.get("count").asLong());
+        assertEquals(0, deploy.get("errors").asLong());
+        assertEquals(250.0, deploy.get("max-ms").asDouble(), 0.001);
+        assertEquals(2048, deploy.get("request-bytes").asLong());
+        assertTrue(json.get("operations").has(ManagementMetrics.QUEUE_WAIT));
+        
+        metrics.reset();
+        assertTrue(metrics.snapshot().isEmpty());
+    }
+    
+    private ModelNode operation(String name) {
+        ModelNode op = new ModelNode();
+        op.get("operation").set(name);
+        op.get("address").setEmptyList();
+        return op;
+    }
+}
@@ -0,0 +1,83 @@
+package com.jbossmanager.service;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for ManagementOperationEvent.
+ * Note: These tests don't actually connect to a server, they use a mocked client.
+ */
+public class ManagementOperationEventTest {
+    
+    @Test
+    public void testFormatAddress() {
+        assertEquals("/", ManagementOperationEvent.formatAddress(new ModelNode()));
+        
+        ModelNode address = new ModelNode();
+        address.add("subsystem", "messaging-activemq");
+        address.add("server", "default");
+        address.add("jms-queue", "TestQueue");
+        assertEquals("/subsystem=messaging-activemq/server=default/jms-queue=TestQueue",
+            ManagementOperationEvent.formatAddress(address));
+    }
+    
+    @Test
+    public void testEventsRecorded() throws Exception {
+        ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        response.get("result").set(42);
+        
+        ModelControllerClient delegate = mock(ModelControllerClient.class);
+        when(delegate.execute(any(Operation.class), any(OperationMessageHandler.class)))
+            .thenReturn(response)
+            .thenThrow(new IOException("Connection reset"));
+        ModelControllerClient client = new InstrumentedClient(delegate, new ManagementMetrics());
+        
+        ModelNode operation = new ModelNode();
+        operation.get("operation").set("read-attribute");
+        operation.get("address").add("subsystem", "ejb3");
+        
+        Path file = Files.createTempFile("management", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ManagementOperationEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            client.execute(operation);
+            assertThrows(IOException.class, () -> client.execute(operation));
+            recording.stop();
+            recording.dump(file);
+            
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            events.removeIf(event -> !event.getEventType().getName().equals("com.jbossmanager.ManagementOperation"));
+            assertEquals(2, events.size());
+            
+            RecordedEvent success = events.get(0);
+            assertEquals("read-attribute", success.getString("operation"));
+            assertEquals("/subsystem=ejb3", success.getString("address"));
+            assertEquals("success", success.getString("outcome"));
+            assertEquals(InstrumentedClient.sizeOf(response), success.getLong("resultSize"));
+            assertEquals(InstrumentedClient.sizeOf(operation), success.getLong("requestSize"));
+            
+            RecordedEvent failure = events.get(1);
+            assertEquals("exception", failure.getString("outcome"));
+            assertEquals(0, failure.getLong("resultSize"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
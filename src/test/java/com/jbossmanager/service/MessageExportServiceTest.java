@@ -0,0 +1,236 @@
+package com.jbossmanager.service;
+
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MessageExportService.
+ * Note: These tests don't actually connect to a server, they write prepared message nodes and
+ * export a queue simulated by evaluating the selectors of the export.
+ */
+public class MessageExportServiceTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    public void testWritesOneLinePerMessage() throws Exception {
+        MessageExportService exportService = new MessageExportService(null, 2);
+        Path target = tempDir.resolve("queue.ndjson");
+        
+        long exported = exportService.writeMessages(createMessages(5), target, null, new AtomicBoolean(false));
+        
+        assertEquals(5, exported);
+        List<String> lines = Files.readAllLines(target, StandardCharsets.UTF_8);
+        assertEquals(5, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            ModelNode message = ModelNode.fromJSONString(lines.get(i));
+            assertEquals("ID:" + i, message.get("JMSMessageID").asString());
+        }
+    }
+    
+    @Test
+    public void testLargeMessage() throws Exception {
+        MessageExportService exportService = new MessageExportService(null);
+        Path target = tempDir.resolve("large.ndjson");
+        
+        List<ModelNode> messages = createMessages(2);
+        messages.get(0).get("body").set("x".repeat(200 * 1024));
+        exportService.writeMessages(messages, target, null, new AtomicBoolean(false));
+        
+        List<String> lines = Files.readAllLines(target, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals(200 * 1024, ModelNode.fromJSONString(lines.get(0)).get("body").asString().length());
+        assertEquals("ID:1", ModelNode.fromJSONString(lines.get(1)).get("JMSMessageID").asString());
+    }
+    
+    @Test
+    public void testProgressAndCancellation() throws Exception {
+        MessageExportService exportService = new MessageExportService(null, 3);
+        Path target = tempDir.resolve("cancelled.ndjson");
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        AtomicInteger reports = new AtomicInteger();
+        
+        long exported = exportService.writeMessages(createMessages(10), target,
+            (count, total, bytes, elapsed) -> {
+                reports.incrementAndGet();
+                assertEquals(10, total);
+                assertTrue(bytes > 0);
+                // Cancel after the first page
+                cancelled.set(true);
+            },
+            cancelled);
+        
+        assertEquals(3, exported);
+        assertEquals(2, reports.get());
+        assertEquals(3, Files.readAllLines(target, StandardCharsets.UTF_8).size());
+    }
+    
+    @Test
+    public void testExportReadsTimeWindowsOldestFirst() throws Exception {
+        // Messages sent over the last ten hours, most of them in a burst an hour ago
+        long now = System.currentTimeMillis();
+        List<ModelNode> queue = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long age = i < 500 ? TimeUnit.HOURS.toMillis(10) - i * 60_000L : TimeUnit.HOURS.toMillis(1) - i;
+            ModelNode message = new ModelNode();
+            message.get("JMSMessageID").set("ID:" + i);
+            message.get("JMSTimestamp").set(now - age);
+            message.get("JMSPriority").set(i % 10);
+            queue.add(message);
+        }
+        
+        List<Integer> chunkSizes = new ArrayList<>();
+        AtomicInteger counts = new AtomicInteger();
+        JMSService jmsService = new JMSService(null) {
+            @Override
+            public long countMessages(String serverName, String queueName, String filter) {
+                counts.incrementAndGet();
+                return select(queue, filter).size();
+            }
+            
+            @Override
+            public List<ModelNode> listMessages(String serverName, String queueName, String filter) {
+                List<ModelNode> chunk = select(queue, filter);
+                chunkSizes.add(chunk.size());
+                return chunk;
+            }
+        };
+        
+        MessageExportService exportService = new MessageExportService(jmsService, 50, 100);
+        Path target = tempDir.resolve("windows.ndjson");
+        long[] reportedTotal = {-1};
+        long exported = exportService.exportMessages("default", "orders", "JMSPriority < 5", target,
+            (count, total, bytes, elapsed) -> reportedTotal[0] = total, new AtomicBoolean(false));
+        
+        assertEquals(1000, exported);
+        assertEquals(1000, reportedTotal[0]);
+        List<String> lines = Files.readAllLines(target, StandardCharsets.UTF_8);
+        assertEquals(1000, lines.size());
+        long previous = Long.MIN_VALUE;
+        for (String line : lines) {
+            ModelNode message = ModelNode.fromJSONString(line);
+            assertTrue(message.get("JMSPriority").asInt() < 5);
+            assertTrue(message.get("JMSTimestamp").asLong() >= previous);
+            previous = message.get("JMSTimestamp").asLong();
+        }
+        // Never more than twice a chunk at once
+        assertTrue(chunkSizes.size() > 5, "Chunks: " + chunkSizes);
+        assertTrue(chunkSizes.stream().allMatch(size -> size <= 200), "Chunks: " + chunkSizes);
+        // Beyond the total and the eleven counts finding the age, about one count per chunk
+        assertTrue(counts.get() - 12 <= 2 * chunkSizes.size(), counts + " counts for chunks " + chunkSizes);
+    }
+    
+    @Test
+    public void testMessagesAheadOfTheClockAreExported() throws Exception {
+        // Sent by a producer whose clock is ten minutes ahead
+        long now = System.currentTimeMillis();
+        List<ModelNode> queue = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            ModelNode message = new ModelNode();
+            message.get("JMSMessageID").set("ID:" + i);
+            message.get("JMSTimestamp").set(now - 60_000 + i * 2000L);
+            queue.add(message);
+        }
+        
+        JMSService jmsService = new JMSService(null) {
+            @Override
+            public long countMessages(String serverName, String queueName, String filter) {
+                return select(queue, filter).size();
+            }
+            
+            @Override
+            public List<ModelNode> listMessages(String serverName, String queueName, String filter) {
+                return select(queue, filter);
+            }
+        };
+        
+        Path target = tempDir.resolve("ahead.ndjson");
+        long exported = new MessageExportService(jmsService, 10, 100).exportMessages("default", "orders", null,
+            target, null, new AtomicBoolean(false));
+        assertEquals(300, exported);
+        assertEquals(300, Files.readAllLines(target, StandardCharsets.UTF_8).size());
+    }
+    
+    @Test
+    public void testCancelledExportStopsReading() throws Exception {
+        long now = System.currentTimeMillis();
+        List<ModelNode> queue = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ModelNode message = new ModelNode();
+            message.get("JMSMessageID").set("ID:" + i);
+            message.get("JMSTimestamp").set(now - 1_000_000 + i * 1000L);
+            queue.add(message);
+        }
+        
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        AtomicInteger reads = new AtomicInteger();
+        JMSService jmsService = new JMSService(null) {
+            @Override
+            public long countMessages(String serverName, String queueName, String filter) {
+                return select(queue, filter).size();
+            }
+            
+            @Override
+            public List<ModelNode> listMessages(String serverName, String queueName, String filter) {
+                // Cancelled while the second chunk is read
+                if (reads.incrementAndGet() == 2) {
+                    cancelled.set(true);
+                }
+                return select(queue, filter);
+            }
+        };
+        
+        long exported = new MessageExportService(jmsService, 10, 100).exportMessages("default", "orders", null,
+            tempDir.resolve("cancelled.ndjson"), null, cancelled);
+        assertEquals(2, reads.get());
+        assertTrue(exported > 0 && exported < 1000, "Exported " + exported);
+    }
+    
+    /**
+     * Select the messages matching a selector of the form "[(JMSPriority < n)][ AND ][JMSTimestamp
+     * >= from[ AND JMSTimestamp < to]]", the only ones sent by the export.
+     */
+    private static List<ModelNode> select(List<ModelNode> queue, String filter) {
+        Matcher matcher = Pattern.compile("(?:\\(?JMSPriority < (\\d+)\\)?)?(?: AND )?"
+            + "(?:JMSTimestamp >= (\\d+)(?: AND JMSTimestamp < (\\d+))?)?").matcher(filter == null ? "" : filter);
+        assertTrue(matcher.matches(), filter);
+        int priority = matcher.group(1) != null ? Integer.parseInt(matcher.group(1)) : Integer.MAX_VALUE;
+        long from = matcher.group(2) != null ? Long.parseLong(matcher.group(2)) : Long.MIN_VALUE;
+        long to = matcher.group(3) != null ? Long.parseLong(matcher.group(3)) : Long.MAX_VALUE;
+        List<ModelNode> selected = new ArrayList<>();
+        for (ModelNode message : queue) {
+            long timestamp = message.get("JMSTimestamp").asLong();
+            if (timestamp >= from && timestamp < to && message.get("JMSPriority").asInt(0) < priority) {
+                selected.add(message);
+            }
+        }
+        return selected;
+    }
+    
+    private List<ModelNode> createMessages(int count) {
+        List<ModelNode> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ModelNode message = new ModelNode();
+            message.get("JMSMessageID").set("ID:" + i);
+            message.get("JMSPriority").set(4);
+            message.get("body").set("message " + i);
+            messages.add(message);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,301 @@
+package com.jbossmanager.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MetricsHistoryStore.
+ */
+public class MetricsHistoryStoreTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    public void testQueryTimeRange() throws Exception {
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, 1024 * 1024, Duration.ofDays(1), Long.MAX_VALUE)) {
+            String depth = MetricsHistoryStore.queueSeries("default", "orders", "messageCount");
+            String consumers = MetricsHistoryStore.queueSeries("default", "orders", "consumerCount");
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < 100; i++) {
+                store.append(now + i * 5000L, depth, i);
+                store.append(now + i * 5000L, consumers, 2);
+            }
+            
+            List<Long> values = new ArrayList<>();
+            long visited = store.query(depth, now + 10 * 5000L, now + 19 * 5000L, (timestamp, value) -> values.add(value));
+            assertEquals(10, visited);
+            assertEquals(10L, values.get(0));
+            assertEquals(19L, values.get(9));
+            assertEquals(0, store.query("queue/default/unknown/messageCount", 0, Long.MAX_VALUE, (t, v) -> fail()));
+        }
+    }
+    
+    @Test
+    public void testQueryFollowsSeriesAcrossSegmentsAndRestarts() throws Exception {
+        long segmentBytes = MetricsHistoryStore.HEADER_SIZE + 50 * MetricsHistoryStore.RECORD_SIZE;
+        long now = System.currentTimeMillis();
+        String[] series = {"a", "b", "c"};
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, segmentBytes, Duration.ofDays(1), Long.MAX_VALUE)) {
+            // Interleaved samples of three series over several segments
+            for (int i = 0; i < 60; i++) {
+                store.append(now + i, series, new long[] {i, 100 + i, 200 + i}, 3);
+            }
+            assertEquals(4, store.getSegmentCount());
+            assertEquals(seriesValues(100, 160), query(store, "b", 0, Long.MAX_VALUE));
+            assertEquals(seriesValues(210, 221), query(store, "c", now + 10, now + 20));
+        }
+        
+        // Reopened with the saved index, then without it as after a crash
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, segmentBytes, Duration.ofDays(1), Long.MAX_VALUE)) {
+            store.append(now + 60, "a", 60);
+            assertEquals(seriesValues(0, 61), query(store, "a", 0, Long.MAX_VALUE));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.toString().endsWith(".heads")) {
+                    Files.delete(file);
+                }
+            }
+        }
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, segmentBytes, Duration.ofDays(1), Long.MAX_VALUE)) {
+            assertEquals(seriesValues(0, 61), query(store, "a", 0, Long.MAX_VALUE));
+            assertEquals(seriesValues(200, 260), query(store, "c", 0, Long.MAX_VALUE));
+        }
+    }
+    
+    @Test
+    public void testRetentionCheckedWithoutRotation() throws Exception {
+        long now = System.currentTimeMillis();
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, 1024 * 1024, Duration.ofHours(1), Long.MAX_VALUE)) {
+            store.append(now - Duration.ofHours(2).toMillis(), "series", 1);
+            
+            // The segment started with a sample now expired is closed before the next samples,
+            // and deleted once all its samples expired, long before it would be full
+            store.append(now - Duration.ofMinutes(30).toMillis(), "series", 2);
+            store.append(now, "series", 3);
+            assertEquals(1, store.getSegmentCount());
+            assertEquals(List.of(2L, 3L), query(store, "series", 0, Long.MAX_VALUE));
+        }
+    }
+    
+    @Test
+    public void testSeriesIdsFollowHighestSavedId() throws Exception {
+        Files.writeString(directory.resolve("series.idx"), "0\ta\n2\tb\n2\tb\n5\n");
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, 4096, Duration.ofDays(1), Long.MAX_VALUE)) {
+            assertEquals(2, store.seriesId("b"));
+            assertEquals(3, store.seriesId("c"));
+            store.append(System.currentTimeMillis(), new String[] {"b", "d"}, new long[] {1, 2}, 2);
+            assertEquals(4, store.seriesId("d"));
+            assertEquals(List.of(1L), query(store, "b", 0, Long.MAX_VALUE));
+        }
+    }
+    
+    @Test
+    public void testAppendAfterCloseFails() throws Exception {
+        MetricsHistoryStore store = new MetricsHistoryStore(directory, 4096, Duration.ofDays(1), Long.MAX_VALUE);
+        store.append(System.currentTimeMillis(), "a", 1);
+        store.close();
+        store.close();
+        
+        assertThrows(IOException.class, () -> store.append(System.currentTimeMillis(), "a", 2));
+        assertThrows(IOException.class, () -> store.seriesId("b"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(file -> file.toString().endsWith(".seg")).count());
+        }
+    }
+    
+    @Test
+    public void testRecordingFailureReportedOnce() throws Exception {
+        MetricsHistoryStore store = new MetricsHistoryStore(directory, 4096, Duration.ofDays(1), Long.MAX_VALUE);
+        List<IOException> failures = new ArrayList<>();
+        store.setFailureListener(failures::add);
+        String[] series = {"a"};
+        long now = System.currentTimeMillis();
+        store.record(now, series, new long[] {1}, 1);
+        store.close();
+        
+        // Every poll fails, the failure is only reported the first time
+        for (int i = 1; i <= 3; i++) {
+            store.record(now + i * MetricsHistoryStore.RECORD_RETRY_MILLIS, series, new long[] {1}, 1);
+            store.record(now + i * MetricsHistoryStore.RECORD_RETRY_MILLIS + 5000, series, new long[] {1}, 1);
+        }
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0).getMessage().contains("closed"));
+    }
+    
+    @Test
+    public void testHeadsFailureReportedOnce() throws Exception {
+        long segmentBytes = MetricsHistoryStore.HEADER_SIZE + 10 * MetricsHistoryStore.RECORD_SIZE;
+        MetricsHistoryStore store = new MetricsHistoryStore(directory, segmentBytes, Duration.ofDays(1), Long.MAX_VALUE);
+        List<IOException> failures = new ArrayList<>();
+        store.setFailureListener(failures::add);
+        String[] series = {"a"};
+        long now = System.currentTimeMillis();
+        store.record(now, series, new long[] {0}, 1);
+        
+        // The heads of the first segment cannot be written over a directory
+        try (Stream<Path> files = Files.list(directory)) {
+            Path segment = files.filter(path -> path.toString().endsWith(".seg")).findFirst().orElseThrow();
+            Files.createDirectory(segment.resolveSibling(segment.getFileName() + ".heads"));
+        }
+        for (int i = 1; i < 25; i++) {
+            store.record(now + i, series, new long[] {i}, 1);
+        }
+        store.close();
+        
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0).getMessage().contains("heads"), failures.get(0).getMessage());
+        // Rebuilt from the records
+        try (MetricsHistoryStore reopened = new MetricsHistoryStore(directory, segmentBytes, Duration.ofDays(1), Long.MAX_VALUE)) {
+            assertEquals(seriesValues(0, 25), query(reopened, "a", 0, Long.MAX_VALUE));
+        }
+    }
+    
+    @Test
+    public void testRotationAndSizeRetention() throws Exception {
+        int recordsPerSegment = 100;
+        long segmentBytes = MetricsHistoryStore.HEADER_SIZE + recordsPerSegment * MetricsHistoryStore.RECORD_SIZE;
+        long now = System.currentTimeMillis();
+        
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, segmentBytes, Duration.ofDays(1), 3 * segmentBytes)) {
+            for (int i = 0; i < 1000; i++) {
+                store.append(now + i, "series", i);
+            }
+            // Only the three most recent segments are kept
+            assertEquals(3, store.getSegmentCount());
+            assertTrue(store.getSizeBytes() <= 3 * segmentBytes);
+            
+            List<Long> values = new ArrayList<>();
+            store.query("series", 0, Long.MAX_VALUE, (timestamp, value) -> values.add(value));
+            assertEquals(300, values.size());
+            assertEquals(700L, values.get(0));
+            assertEquals(999L, values.get(299));
+        }
+    }
+    
+    @Test
+    public void testAgeRetention() throws Exception {
+        long segmentBytes = MetricsHistoryStore.HEADER_SIZE + 10 * MetricsHistoryStore.RECORD_SIZE;
+        long now = System.currentTimeMillis();
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, segmentBytes, Duration.ofHours(1), Long.MAX_VALUE)) {
+            for (int i = 0; i < 10; i++) {
+                store.append(now - Duration.ofHours(2).toMillis(), "series", i);
+            }
+            store.append(now, "series", 10);
+            assertEquals(1, store.getSegmentCount());
+            assertEquals(1, store.query("series", 0, Long.MAX_VALUE, (t, v) -> assertEquals(10, v)));
+        }
+    }
+    
+    @Test
+    public void testSamplesPersistAcrossRestarts() throws Exception {
+        long now = System.currentTimeMillis();
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, 4096, Duration.ofDays(1), Long.MAX_VALUE)) {
+            store.append(now, "a", 1);
+            store.append(now + 1, "b", 2);
+        }
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, 4096, Duration.ofDays(1), Long.MAX_VALUE)) {
+            store.append(now + 2, "a", 3);
+            
+            List<Long> values = new ArrayList<>();
+            store.query("a", 0, Long.MAX_VALUE, (timestamp, value) -> values.add(value));
+            assertEquals(List.of(1L, 3L), values);
+            assertEquals(2, store.getSeries().size());
+        }
+    }
+    
+    @Test
+    public void testRestartAppendsToLastSegment() throws Exception {
+        long segmentBytes = MetricsHistoryStore.HEADER_SIZE + 100 * MetricsHistoryStore.RECORD_SIZE;
+        long now = System.currentTimeMillis();
+        // The size limit only allows two full segments, restarts must not use it up
+        for (int restart = 0; restart < 20; restart++) {
+            try (MetricsHistoryStore store = new MetricsHistoryStore(directory, segmentBytes, Duration.ofDays(1),
+                    2 * segmentBytes)) {
+                store.append(now + restart, "series", restart);
+            }
+        }
+        
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, segmentBytes, Duration.ofDays(1),
+                2 * segmentBytes)) {
+            assertEquals(1, store.getSegmentCount());
+            assertEquals(MetricsHistoryStore.HEADER_SIZE + 20 * MetricsHistoryStore.RECORD_SIZE, store.getSizeBytes());
+            assertEquals(20, store.query("series", 0, Long.MAX_VALUE, (t, v) -> { }));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(file -> file.toString().endsWith(".seg")).count());
+        }
+    }
+    
+    @Test
+    public void testExpiredSegmentsDeletedOnOpen() throws Exception {
+        long segmentBytes = MetricsHistoryStore.HEADER_SIZE + 10 * MetricsHistoryStore.RECORD_SIZE;
+        long old = System.currentTimeMillis() - Duration.ofHours(2).toMillis();
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, segmentBytes, Duration.ofDays(1), Long.MAX_VALUE)) {
+            for (int i = 0; i < 15; i++) {
+                store.append(old + i, "series", i);
+            }
+            assertEquals(2, store.getSegmentCount());
+        }
+        
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, segmentBytes, Duration.ofHours(1), Long.MAX_VALUE)) {
+            assertEquals(0, store.getSegmentCount());
+            store.append(System.currentTimeMillis(), "series", 15);
+            assertEquals(1, store.query("series", 0, Long.MAX_VALUE, (t, v) -> assertEquals(15, v)));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(file -> file.toString().endsWith(".seg")).count());
+        }
+    }
+    
+    @Test
+    public void testWriteThroughput() throws Exception {
+        int seriesCount = 10_000;
+        try (MetricsHistoryStore store = new MetricsHistoryStore(directory, MetricsHistoryStore.DEFAULT_SEGMENT_BYTES,
+                Duration.ofDays(1), Long.MAX_VALUE)) {
+            int[] ids = new int[seriesCount];
+            long[] values = new long[seriesCount];
+            for (int i = 0; i < seriesCount; i++) {
+                ids[i] = store.seriesId("queue/default/q" + i + "/messageCount");
+                values[i] = i;
+            }
+            
+            // 10k series sampled every 5 seconds, one hour of samples
+            long now = System.currentTimeMillis();
+            long start = System.nanoTime();
+            for (int sample = 0; sample < 720; sample++) {
+                store.append(now + sample * 5000L, ids, values, seriesCount);
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            
+            // A batch must take a small fraction of the 5 second interval
+            assertTrue(millis / 720.0 < 100, "Average batch took " + millis / 720.0 + " ms");
+            assertEquals(720, store.query("queue/default/q42/messageCount", 0, Long.MAX_VALUE, (t, v) -> assertEquals(42, v)));
+        }
+    }
+    
+    private static List<Long> query(MetricsHistoryStore store, String series, long from, long to) {
+        List<Long> values = new ArrayList<>();
+        store.query(series, from, to, (timestamp, value) -> values.add(value));
+        return values;
+    }
+    
+    private static List<Long> seriesValues(long from, long to) {
+        List<Long> values = new ArrayList<>();
+        for (long value = from; value < to; value++) {
+            values.add(value);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,84 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.EJBSnapshot;
+import com.jbossmanager.model.EJBType;
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueSnapshot;
+import com.jbossmanager.model.TopicSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for PrometheusExporter.
+ */
+public class PrometheusExporterTest {
+    
+    @Test
+    public void testMessagingMetrics() {
+        PrometheusExporter exporter = new PrometheusExporter();
+        exporter.updateMessaging(servers());
+        String body = exporter.getBody();
+        
+        assertTrue(body.contains("# TYPE jboss_jms_queue_messages gauge\n"));
+        assertTrue(body.contains("jboss_jms_queue_messages{server=\"default\",queue=\"orders\\\"eu\"} 12\n"));
+        assertTrue(body.contains("jboss_jms_queue_consumers{server=\"default\",queue=\"orders\\\"eu\"} 3\n"));
+        assertTrue(body.contains("jboss_jms_queue_messages_added_total{server=\"default\",queue=\"orders\\\"eu\"} 1500\n"));
+        assertTrue(body.contains("jboss_jms_queue_paused{server=\"default\",queue=\"orders\\\"eu\"} 1\n"));
+        assertTrue(body.contains("jboss_jms_topic_subscriptions{server=\"default\",topic=\"events\"} 2\n"));
+        assertFalse(body.contains("jboss_ejb_"));
+    }
+    
+    @Test
+    public void testEJBMetricsKeptAcrossPolls() {
+        EJBSnapshot ejb = new EJBSnapshot("OrderBean", EJBType.STATELESS, "orders.ear", "", 42, 1200, 0);
+        
+        PrometheusExporter exporter = new PrometheusExporter();
+        exporter.updateEJBs(Collections.singletonList(ejb));
+        exporter.updateMessaging(servers());
+        exporter.updateMessaging(servers());
+        
+        String body = exporter.getBody();
+        assertTrue(body.contains("jboss_ejb_invocations_total{deployment=\"orders.ear\",bean=\"OrderBean\",type=\"Stateless Session Bean\"} 42\n"));
+        assertTrue(body.contains("jboss_ejb_execution_time_milliseconds_total{deployment=\"orders.ear\",bean=\"OrderBean\",type=\"Stateless Session Bean\"} 1200\n"));
+        assertEquals(body.indexOf("# TYPE jboss_jms_queue_messages "), body.lastIndexOf("# TYPE jboss_jms_queue_messages "));
+        assertTrue(body.contains("# TYPE jboss_manager_ejb_poll_timestamp_seconds gauge\n"));
+        
+        exporter.clear();
+        assertEquals("", exporter.getBody());
+    }
+    
+    @Test
+    public void testScrape() throws Exception {
+        PrometheusExporter exporter = new PrometheusExporter();
+        exporter.updateMessaging(servers());
+        exporter.start(0);
+        try {
+            URL url = new URL("http://localhost:" + exporter.getPort() + PrometheusExporter.PATH);
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+            try (InputStream in = connection.getInputStream()) {
+                assertEquals(exporter.getBody(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } finally {
+            exporter.stop();
+        }
+        assertEquals(-1, exporter.getPort());
+    }
+    
+    private static List<MessagingServer> servers() {
+        MessagingServer server = new MessagingServer("default");
+        server.getQueues().add(new QueueSnapshot("default", "orders\"eu", "java:/jms/queue/orders", "Paused",
+            12, 3, 1500, false));
+        server.getTopics().add(new TopicSnapshot("default", "events", "java:/jms/topic/events", 2, 0, 0, 0));
+        return Collections.singletonList(server);
+    }
+}
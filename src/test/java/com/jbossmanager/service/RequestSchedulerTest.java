@@ -0,0 +1,173 @@
+package com.jbossmanager.service;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for RequestScheduler.
+ * Note: These tests don't actually connect to a server, they use a mocked client.
+ */
+public class RequestSchedulerTest {
+    
+    @Test
+    public void testUserRequestsJumpAheadOfBackgroundRequests() throws Exception {
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenAnswer(invocation -> {
+            ModelNode op = invocation.getArgument(0);
+            String name = op.get("name").asString();
+            if ("blocker".equals(name)) {
+                firstStarted.countDown();
+                releaseFirst.await(5, TimeUnit.SECONDS);
+            }
+            executed.add(name);
+            return success();
+        });
+        
+        RequestScheduler scheduler = new RequestScheduler(client, 1000);
+        try {
+            List<Thread> threads = new ArrayList<>();
+            threads.add(submit(scheduler, "blocker", RequestScheduler.Priority.BACKGROUND));
+            assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+            
+            // Queue background polling, then a user action behind it. Each poll is queued before
+            // the next is submitted, since requests of the same priority run in submission order
+            for (int i = 0; i < 3; i++) {
+                threads.add(submit(scheduler, "poll-" + i, RequestScheduler.Priority.BACKGROUND));
+                waitForPending(scheduler, i + 1);
+            }
+            threads.add(submit(scheduler, "pause-queue", RequestScheduler.Priority.USER));
+            waitForPending(scheduler, 4);
+            
+            releaseFirst.countDown();
+            for (Thread thread : threads) {
+                thread.join(5000);
+            }
+            
+            assertEquals(List.of("blocker", "pause-queue", "poll-0", "poll-1", "poll-2"), executed);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+    
+    @Test
+    public void testBackgroundRequestsAreThrottled() throws Exception {
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenReturn(success());
+        
+        RequestScheduler scheduler = new RequestScheduler(client, 50);
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < 11; i++) {
+                RequestScheduler.inBackground(() -> scheduler.execute(new ModelNode()));
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            
+            // The first request uses the initial token, the next ten need 20 ms each
+            assertTrue(elapsedMillis >= 180, "Background requests ran too fast: " + elapsedMillis + " ms");
+            
+            // User requests are not throttled
+            start = System.nanoTime();
+            for (int i = 0; i < 20; i++) {
+                scheduler.execute(new ModelNode());
+            }
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 180);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+    
+    @Test
+    public void testPriorityContext() throws Exception {
+        assertEquals(RequestScheduler.Priority.USER, RequestScheduler.currentPriority());
+        RequestScheduler.Priority inside = RequestScheduler.inBackground(RequestScheduler::currentPriority);
+        assertEquals(RequestScheduler.Priority.BACKGROUND, inside);
+        assertEquals(RequestScheduler.Priority.USER, RequestScheduler.currentPriority());
+    }
+    
+    @Test
+    public void testShutdown() throws Exception {
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        RequestScheduler scheduler = new RequestScheduler(client, 10);
+        scheduler.shutdown();
+        
+        assertThrows(IOException.class, () -> scheduler.execute(new ModelNode()));
+        assertThrows(IllegalArgumentException.class, () -> scheduler.setBackgroundRate(0));
+    }
+    
+    @Test
+    public void testShutdownFailsHungRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ModelControllerClient client = mock(ModelControllerClient.class);
+        when(client.execute(any(ModelNode.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return success();
+        });
+        
+        RequestScheduler scheduler = new RequestScheduler(client, 10);
+        try {
+            Thread shutdown = new Thread(() -> {
+                try {
+                    assertTrue(started.await(5, TimeUnit.SECONDS));
+                    scheduler.shutdown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            shutdown.start();
+            
+            // The waiting caller is released although the server never answers
+            long start = System.nanoTime();
+            assertThrows(IOException.class, () -> scheduler.execute(new ModelNode(), RequestScheduler.Priority.USER));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            shutdown.join(5000);
+        } finally {
+            release.countDown();
+        }
+    }
+    
+    private Thread submit(RequestScheduler scheduler, String name, RequestScheduler.Priority priority) {
+        ModelNode op = new ModelNode();
+        op.get("name").set(name);
+        Thread thread = new Thread(() -> {
+            try {
+                scheduler.execute(op, priority);
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+    
+    private void waitForPending(RequestScheduler scheduler, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getPendingCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, scheduler.getPendingCount());
+    }
+    
+    private ModelNode success() {
+        ModelNode result = new ModelNode();
+        result.get("outcome").set("success");
+        return result;
+    }
+}
@@ -0,0 +1,167 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.EJBSnapshot;
+import com.jbossmanager.model.EJBType;
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueSnapshot;
+import com.jbossmanager.model.ResourceChange;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ResourceChangeTracker.
+ * Note: These tests don't actually connect to a server, they feed prepared reads to the tracker.
+ */
+public class ResourceChangeTrackerTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    public void testFirstReadIsBaseline() {
+        ResourceChangeTracker tracker = new ResourceChangeTracker();
+        List<ResourceChange> published = new ArrayList<>();
+        tracker.addChangeListener(published::add);
+        
+        assertTrue(tracker.compareMessaging(servers(queue("orders", "Running", 1))).isEmpty());
+        assertTrue(tracker.compareEJBs(List.of(bean("OrderBean", "orders.war"))).isEmpty());
+        assertTrue(published.isEmpty());
+    }
+    
+    @Test
+    public void testQueueChanges() {
+        ResourceChangeTracker tracker = new ResourceChangeTracker();
+        List<ResourceChange> published = new ArrayList<>();
+        tracker.addChangeListener(published::add);
+        
+        tracker.compareMessaging(servers(queue("orders", "Running", 2), queue("invoices", "Running", 0)));
+        List<ResourceChange> changes = tracker.compareMessaging(servers(queue("orders", "Paused", 0),
+            queue("payments", "Running", 1)));
+        
+        assertEquals(List.of(ResourceChange.Type.QUEUE_PAUSED, ResourceChange.Type.QUEUE_CONSUMERS_LOST,
+            ResourceChange.Type.QUEUE_ADDED, ResourceChange.Type.QUEUE_REMOVED), types(changes));
+        assertEquals(changes, published);
+        assertEquals("default", changes.get(3).getParentName());
+        assertEquals("invoices", changes.get(3).getName());
+        assertTrue(changes.get(2).isStructural());
+        assertFalse(changes.get(0).isStructural());
+        
+        // Unchanged state publishes nothing, then the queue is resumed with consumers again
+        assertTrue(tracker.compareMessaging(servers(queue("orders", "Paused", 0), queue("payments", "Running", 1))).isEmpty());
+        assertEquals(List.of(ResourceChange.Type.QUEUE_RESUMED, ResourceChange.Type.QUEUE_CONSUMERS_RESTORED),
+            types(tracker.compareMessaging(servers(queue("orders", "Running", 3), queue("payments", "Running", 1)))));
+    }
+    
+    @Test
+    public void testDeploymentAndBeanChanges() {
+        ResourceChangeTracker tracker = new ResourceChangeTracker();
+        
+        tracker.compareEJBs(List.of(bean("OrderBean", "orders.war"), bean("AuditBean", "audit.war")));
+        List<ResourceChange> changes = tracker.compareEJBs(List.of(bean("OrderBean", "orders.war"),
+            bean("RefundBean", "orders.war"), bean("ShippingBean", "shipping.war")));
+        
+        // A new deployment is one change, not one per bean
+        assertEquals(List.of(ResourceChange.Type.BEAN_ADDED, ResourceChange.Type.DEPLOYMENT_ADDED,
+            ResourceChange.Type.DEPLOYMENT_REMOVED), types(changes));
+        assertEquals("orders.war", changes.get(0).getParentName());
+        assertEquals("RefundBean", changes.get(0).getName());
+        assertEquals("shipping.war", changes.get(1).getParentName());
+        assertNull(changes.get(1).getName());
+        assertEquals("audit.war", changes.get(2).getParentName());
+        
+        changes = tracker.compareEJBs(List.of(bean("OrderBean", "orders.war"), bean("ShippingBean", "shipping.war")));
+        assertEquals(List.of(ResourceChange.Type.BEAN_REMOVED), types(changes));
+        assertEquals("RefundBean", changes.get(0).getName());
+    }
+    
+    @Test
+    public void testResetForgetsPreviousRead() {
+        ResourceChangeTracker tracker = new ResourceChangeTracker();
+        tracker.compareMessaging(servers(queue("orders", "Running", 1)));
+        
+        tracker.reset();
+        
+        assertTrue(tracker.compareMessaging(servers(queue("payments", "Running", 1))).isEmpty());
+        assertEquals(1, tracker.compareMessaging(servers()).size());
+    }
+    
+    @Test
+    public void testLargeReadIsComparedInLinearTime() {
+        ResourceChangeTracker tracker = new ResourceChangeTracker();
+        List<EJBSnapshot> ejbs = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            ejbs.add(bean("Bean" + i, "app" + (i / 100) + ".war"));
+        }
+        tracker.compareEJBs(ejbs);
+        
+        List<EJBSnapshot> next = new ArrayList<>(ejbs.subList(1, ejbs.size()));
+        next.add(bean("NewBean", "app0.war"));
+        long start = System.nanoTime();
+        List<ResourceChange> changes = tracker.compareEJBs(next);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        
+        assertEquals(List.of(ResourceChange.Type.BEAN_ADDED, ResourceChange.Type.BEAN_REMOVED), types(changes));
+        // A quadratic comparison of 100k beans takes minutes
+        assertTrue(elapsedMillis < 2000, "Comparison took " + elapsedMillis + " ms");
+    }
+    
+    @Test
+    public void testChangeLog() throws Exception {
+        Path logFile = tempDir.resolve("logs").resolve("changes.log");
+        ResourceChangeTracker tracker = new ResourceChangeTracker();
+        tracker.addChangeListener(new ResourceChangeLog(logFile));
+        
+        tracker.compareMessaging(servers(queue("orders", "Running", 1)));
+        tracker.compareMessaging(servers(queue("orders", "Paused", 1)));
+        
+        List<String> lines = Files.readAllLines(logFile);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith("QUEUE_PAUSED default/orders"));
+    }
+    
+    @Test
+    public void testChangeLogFailureReportedOnce() throws Exception {
+        // The log directory cannot be created
+        Path file = Files.createFile(tempDir.resolve("logs"));
+        ResourceChangeTracker tracker = new ResourceChangeTracker();
+        ResourceChangeLog log = new ResourceChangeLog(file.resolve("changes.log"));
+        List<IOException> failures = new ArrayList<>();
+        log.setFailureListener(failures::add);
+        tracker.addChangeListener(log);
+        
+        tracker.compareMessaging(servers(queue("orders", "Running", 1)));
+        tracker.compareMessaging(servers(queue("orders", "Paused", 1)));
+        tracker.compareMessaging(servers(queue("orders", "Running", 0)));
+        assertEquals(1, failures.size());
+    }
+    
+    private QueueSnapshot queue(String name, String status, int consumers) {
+        return new QueueSnapshot("default", name, "java:/jms/queue/" + name, status, 0, consumers, 0, false);
+    }
+    
+    private List<MessagingServer> servers(QueueSnapshot... queues) {
+        MessagingServer server = new MessagingServer("default");
+        server.getQueues().addAll(List.of(queues));
+        return List.of(server);
+    }
+    
+    private EJBSnapshot bean(String name, String deploymentName) {
+        return new EJBSnapshot(name, EJBType.STATELESS, deploymentName, "java:global/" + name);
+    }
+    
+    private List<ResourceChange.Type> types(List<ResourceChange> changes) {
+        List<ResourceChange.Type> types = new ArrayList<>();
+        for (ResourceChange change : changes) {
+            types.add(change.getType());
+        }
+        return types;
+    }
+}
@@ -0,0 +1,135 @@
+package com.jbossmanager.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ResourceSearchIndex.
+ */
+public class ResourceSearchIndexTest {
+    
+    @Test
+    public void testSearchNamesAndJndiNames() {
+        ResourceSearchIndex<String> index = new ResourceSearchIndex<>();
+        index.add("orders", "OrdersQueue", "java:/jms/queue/orders");
+        index.add("invoices", "InvoicesQueue", "java:/jms/queue/invoices");
+        index.add("bean", "OrderServiceBean", "java:global/shop/OrderServiceBean");
+        
+        assertEquals(List.of("orders", "bean"), index.search("ORDER", 10));
+        assertEquals(List.of("invoices"), index.search("queue/inv", 10));
+        assertEquals(List.of("orders", "invoices", "bean"), index.search("o", 10));
+        assertEquals(List.of("orders"), index.search("o", 1));
+        assertTrue(index.search("payments", 10).isEmpty());
+        assertTrue(index.search("", 10).isEmpty());
+    }
+    
+    @Test
+    public void testMatchNeedsTrigramsInARow() {
+        ResourceSearchIndex<String> index = new ResourceSearchIndex<>();
+        index.add("scattered", "abcd-bcde");
+        index.add("together", "xabcdex");
+        
+        assertEquals(List.of("together"), index.search("abcde", 10));
+    }
+    
+    @Test
+    public void testNoMatchAcrossTexts() {
+        ResourceSearchIndex<String> index = new ResourceSearchIndex<>();
+        index.add("queue", "orders", "java:/jms/queue/orders");
+        
+        assertTrue(index.search("ordersjava", 10).isEmpty());
+    }
+    
+    @Test
+    public void testAddAndRemoveIncrementally() {
+        ResourceSearchIndex<String> index = new ResourceSearchIndex<>();
+        index.add("orders", "OrdersQueue");
+        index.add("refunds", "RefundsQueue");
+        assertEquals(2, index.size());
+        
+        assertTrue(index.remove("orders"));
+        assertFalse(index.remove("orders"));
+        assertEquals(List.of("refunds"), index.search("queue", 10));
+        
+        // Adding again replaces the texts
+        index.add("refunds", "ReturnsQueue");
+        assertTrue(index.search("refunds", 10).isEmpty());
+        assertEquals(List.of("refunds"), index.search("returns", 10));
+        assertEquals(1, index.size());
+    }
+    
+    @Test
+    public void testRemovedIdsAreCompacted() {
+        ResourceSearchIndex<Integer> index = new ResourceSearchIndex<>();
+        for (int i = 0; i < 5000; i++) {
+            index.add(i, "queue-" + i);
+        }
+        for (int i = 0; i < 5000; i += 2) {
+            index.remove(i);
+        }
+        for (int i = 0; i < 5000; i += 4) {
+            index.remove(i + 1);
+        }
+        
+        assertEquals(1250, index.size());
+        assertEquals(List.of(3, 7, 11), index.search("queue-", 3));
+        assertEquals(List.of(4999), index.search("queue-4999", 10));
+    }
+    
+    @Test
+    public void testRemoveIfAndExplicitCompaction() {
+        ResourceSearchIndex<String> index = new ResourceSearchIndex<>();
+        index.add("ejb/orders.ear/OrderBean", "OrderBean");
+        index.add("ejb/orders.ear/InvoiceBean", "InvoiceBean");
+        index.add("ejb/billing.ear/BillingBean", "BillingBean");
+        
+        assertEquals(2, index.removeIf(key -> key.startsWith("ejb/orders.ear/")));
+        assertFalse(index.contains("ejb/orders.ear/OrderBean"));
+        assertTrue(index.contains("ejb/billing.ear/BillingBean"));
+        
+        // Compacting keeps the remaining resources findable, and again does nothing
+        index.compact();
+        index.compact();
+        assertEquals(List.of("ejb/billing.ear/BillingBean"), index.search("bean", 10));
+        index.add("ejb/orders.ear/OrderBean", "OrderBean");
+        assertEquals(List.of("ejb/billing.ear/BillingBean", "ejb/orders.ear/OrderBean"), index.search("bean", 10));
+        
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(index.search("bean", 10).isEmpty());
+    }
+    
+    @Test
+    public void testSearch100kEntriesInUnder10Millis() {
+        ResourceSearchIndex<Integer> index = new ResourceSearchIndex<>();
+        for (int i = 0; i < 100000; i++) {
+            String name = "Queue" + (i % 1000) + "Deployment" + (i / 1000);
+            index.add(i, name, "java:/jms/queue/app" + (i / 1000) + "/" + name);
+        }
+        List<String> queries = List.of("queue42deployment7", "deployment99", "app57/queue9", "missing", "queue1");
+        
+        // Warm up, then keep the best of a few runs to leave out pauses of the test machine
+        for (String query : queries) {
+            index.search(query, 1001);
+        }
+        for (String query : queries) {
+            long best = Long.MAX_VALUE;
+            List<Integer> results = new ArrayList<>();
+            for (int run = 0; run < 5; run++) {
+                long start = System.nanoTime();
+                results = index.search(query, 1001);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            assertTrue(best < 10_000_000, query + " took " + best / 1000 + " us");
+            if (query.equals("queue42deployment7")) {
+                // Deployments 70 to 79 match too
+                assertEquals(11, results.size());
+                assertEquals(7042, results.get(0));
+            }
+        }
+    }
+}
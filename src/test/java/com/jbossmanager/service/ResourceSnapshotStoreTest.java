@@ -0,0 +1,94 @@
+package com.jbossmanager.service;
+
+import com.jbossmanager.model.EJBSnapshot;
+import com.jbossmanager.model.EJBType;
+import com.jbossmanager.model.MessagingServer;
+import com.jbossmanager.model.QueueSnapshot;
+import com.jbossmanager.model.TopicSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ResourceSnapshotStore.
+ */
+public class ResourceSnapshotStoreTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        MessagingServer server = new MessagingServer("backup");
+        server.getQueues().add(new QueueSnapshot("backup", "orders", "java:/jms/queue/orders", "Paused", 12, 2, 0, true));
+        server.getTopics().add(new TopicSnapshot("backup", "events", "java:/jms/topic/events", 0, 0, 0, 250));
+        
+        EJBSnapshot ejb = new EJBSnapshot("OrderBean", EJBType.STATEFUL, "orders.ear", "java:global/orders/OrderBean");
+        
+        ResourceSnapshotStore store = new ResourceSnapshotStore(directory);
+        assertNull(store.load("myhost", 9990));
+        store.save("myhost", 9990, Collections.singletonList(server), Collections.singletonList(ejb));
+        
+        ResourceSnapshotStore.Snapshot snapshot = store.load("myhost", 9990);
+        assertNotNull(snapshot);
+        assertTrue(snapshot.getSavedAt() > 0);
+        assertNull(store.load("myhost", 10090));
+        
+        MessagingServer loadedServer = snapshot.getServers().get(0);
+        assertEquals("backup", loadedServer.getName());
+        QueueSnapshot loadedQueue = loadedServer.getQueues().get(0);
+        assertEquals("orders", loadedQueue.name());
+        assertEquals("backup", loadedQueue.serverName());
+        assertEquals("Paused", loadedQueue.status());
+        assertEquals(12, loadedQueue.messageCount());
+        assertEquals(2, loadedQueue.consumerCount());
+        assertTrue(loadedQueue.durable());
+        assertEquals(250, loadedServer.getTopics().get(0).durableMessageCount());
+        
+        EJBSnapshot loadedEjb = snapshot.getEjbs().get(0);
+        assertEquals("OrderBean", loadedEjb.name());
+        assertEquals("orders.ear", loadedEjb.deploymentName());
+        assertEquals("java:global/orders/OrderBean", loadedEjb.jndiName());
+        assertTrue(loadedEjb.isStateful());
+    }
+    
+    @Test
+    public void testUnreadableSnapshotIgnored() throws Exception {
+        ResourceSnapshotStore store = new ResourceSnapshotStore(directory);
+        Path file = store.snapshotFile("my:host/x", 9990);
+        assertEquals("my_host_x_9990.dmr", file.getFileName().toString());
+        
+        Files.write(file, new byte[] {1, 2, 3});
+        assertNull(store.load("my:host/x", 9990));
+    }
+    
+    @Test
+    public void testLargeSnapshotLoadsQuickly() throws Exception {
+        MessagingServer server = new MessagingServer("default");
+        for (int i = 0; i < 10_000; i++) {
+            server.getQueues().add(new QueueSnapshot("default", "queue" + i, "java:/jms/queue/queue" + i));
+        }
+        List<EJBSnapshot> ejbs = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ejbs.add(new EJBSnapshot("Bean" + i, EJBType.STATELESS, "app" + (i / 100) + ".ear", ""));
+        }
+        
+        ResourceSnapshotStore store = new ResourceSnapshotStore(directory);
+        store.save("localhost", 9990, Collections.singletonList(server), ejbs);
+        
+        long start = System.nanoTime();
+        ResourceSnapshotStore.Snapshot snapshot = store.load("localhost", 9990);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        
+        assertEquals(10_000, snapshot.getServers().get(0).getQueues().size());
+        assertEquals(10_000, snapshot.getEjbs().size());
+        assertTrue(millis < 1000, "Loading took " + millis + " ms");
+    }
+}